@@ -0,0 +1,216 @@
+/**
+ * Copyright 2012 NetDigital Sweden AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.nginious.http.ant;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+import org.apache.tools.ant.BuildException;
+import org.apache.tools.ant.DirectoryScanner;
+import org.apache.tools.ant.Project;
+import org.apache.tools.ant.taskdefs.MatchingTask;
+
+import com.nginious.http.annotation.Controller;
+import com.nginious.http.application.ApplicationClassLoader;
+import com.nginious.http.application.ControllerServiceFactory;
+import com.nginious.http.application.ControllerServiceFactoryException;
+
+/**
+ * An ant task for precompiling controller services for all controllers in a web application. Below is an
+ * example that precompiles controller services for all controllers found in the classes directory and jar
+ * libraries of web application 'webapps/test'. Precompiled controller services are stored in directory
+ * 'webapps/test/WEB-INF/services' where they are used by the server instead of generating controller services
+ * when the web application is published in production mode. Controller services are only precompiled if no
+ * controller service exists for the current version of the controller class.
+ * 
+ * <pre>
+ * <precompile webappdir="webapps/test" />
+ * </pre>
+ * 
+ * The precompile task accepts the following attributes.
+ * 
+ * <ul>
+ * 	<li>webappdir - web application directory containing the <code>WEB-INF</code> directory.</li>
+ * 	<li>destdir - destination directory for precompiled controller services, defaults to
+ * 	<code>WEB-INF/services</code> in the web application directory.</li>
+ * </ul>
+ * 
+ * Controller services must be precompiled with the same server version that the web application is published
+ * with, other precompiled controller services are ignored. The build fails if a controller service can not
+ * be precompiled.
+ * 
+ * @author Bojan Pisler, NetDigital Sweden AB
+ *
+ */
+public class PrecompileTask extends MatchingTask {
+	
+	private File webappDir;
+	
+	private File destDir;
+	
+    /**
+     * Constructs a new precompile task.
+     */
+    public PrecompileTask() {
+		super();
+	}
+    
+    /**
+     * Sets the web application directory to the specified directory.
+     * 
+     * @param webappDir the web application directory
+     */
+    public void setWebappdir(File webappDir) {
+    	this.webappDir = webappDir;
+    }
+    
+    /**
+     * Returns the web application directory for this precompile task.
+     * 
+     * @return the web application directory
+     */
+    public File getWebappdir() {
+    	return this.webappDir;
+    }
+    
+    /**
+     * Sets the destination directory for precompiled controller services to the specified directory.
+     * 
+     * @param destDir the precompiled controller services destination directory
+     */
+    public void setDestdir(File destDir) {
+    	this.destDir = destDir;
+    }
+    
+    /**
+     * Returns the destination directory for precompiled controller services. Defaults to the
+     * <code>WEB-INF/services</code> directory in the web application directory.
+     *  
+     * @return the precompiled controller services destination directory
+     */
+    public File getDestdir() {
+    	return this.destDir != null ? this.destDir : new File(this.webappDir, "WEB-INF/services");
+    }
+    
+    /**
+     * Executes this precompile task by loading all classes found in the web applications classes directory
+     * and jar libraries and precompiling controller services for all controllers among them.
+     * 
+     * @throws BuildException if the web application directory is invalid
+     */
+    public void execute() throws BuildException {
+    	checkParameters();
+    	List<String> classNames = new ArrayList<String>();
+    	File classesDir = new File(this.webappDir, "WEB-INF/classes");
+    	
+    	if(classesDir.isDirectory()) {
+    		DirectoryScanner ds = this.getDirectoryScanner(classesDir);
+    		
+    		for(String file : ds.getIncludedFiles()) {
+    			addClassName(file.replace(File.separatorChar, '/'), classNames);
+    		}
+    	}
+    	
+    	File[] libs = new File(this.webappDir, "WEB-INF/lib").listFiles();
+    	
+    	if(libs != null) {
+    		for(File lib : libs) {
+    			if(lib.isFile() && lib.getName().endsWith(".jar")) {
+    				findJarClasses(lib, classNames);
+    			}
+    		}
+    	}
+    	
+    	precompile(classNames);
+    }
+    
+    private void findJarClasses(File lib, List<String> classNames) throws BuildException {
+    	JarFile jar = null;
+    	
+    	try {
+    		jar = new JarFile(lib);
+    		Enumeration<JarEntry> entries = jar.entries();
+    		
+    		while(entries.hasMoreElements()) {
+    			addClassName(entries.nextElement().getName(), classNames);
+    		}
+    	} catch(IOException e) {
+    		throw new BuildException("Unable to read jar library \"" + lib.getPath() + "\"", e, getLocation());
+    	} finally {
+    		if(jar != null) {
+    			try { jar.close(); } catch(IOException e) {}
+    		}
+    	}
+    }
+    
+    private void addClassName(String path, List<String> classNames) {
+    	if(path.endsWith(".class")) {
+    		classNames.add(path.substring(0, path.length() - 6).replace('/', '.'));
+    	}
+    }
+    
+    protected void precompile(List<String> classNames) throws BuildException {
+    	ApplicationClassLoader classLoader = new ApplicationClassLoader(getClass().getClassLoader(), this.webappDir);
+    	
+    	try {
+    		ControllerServiceFactory factory = new ControllerServiceFactory(classLoader);
+    		File servicesDir = getDestdir();
+    		boolean noneCompiled = true;
+    		
+    		for(String className : classNames) {
+    			try {
+    				Class<?> clazz = classLoader.loadClass(className);
+    				
+    				if(clazz.isAnnotationPresent(Controller.class) && factory.precompileControllerService(clazz, servicesDir)) {
+    					System.out.println("Precompiled " + className);
+    					noneCompiled = false;
+    				}
+    			} catch(ClassNotFoundException e) {
+    				log("Unable to load " + className + " " + e.getMessage(), Project.MSG_VERBOSE);
+    			} catch(NoClassDefFoundError e) {
+    				log("Unable to load " + className + " " + e.getMessage(), Project.MSG_VERBOSE);
+    			} catch(ControllerServiceFactoryException e) {
+    				throw new BuildException("Unable to precompile controller " + className, e, getLocation());
+    			}
+    		}
+    		
+    		if(noneCompiled) {
+    			System.out.println("No new or modified controllers");
+    		}
+    	} finally {
+    		classLoader.release();
+    	}
+    }
+    
+    protected void checkParameters() throws BuildException {
+    	if(webappDir == null) {
+    		throw new BuildException("webappdir attribute must be set!", getLocation());
+    	}
+    	
+    	if(!webappDir.isDirectory()) {
+    		throw new BuildException("web application directory \""
+    				+ webappDir
+    				+ "\" does not exist "
+    				+ "or is not a directory", getLocation());
+    	}
+    }
+}
@@ -162,6 +162,15 @@ public interface HttpRequest {
 	 */
 	public String[] getParameterNames();
 	
+	/**
+	 * Returns value of the path parameter with the specified name. Path parameters are captured from path
+	 * segments on the form <code>{name}</code> in the path of the controller handling this HTTP request.
+	 * 
+	 * @param name the path parameter name
+	 * @return the path parameter value or <code>null</code> if not captured
+	 */
+	public String getPathParameter(String name);
+	
 	/**
 	 * Sets attribute with the specified name and value for this HTTP request.
 	 * 
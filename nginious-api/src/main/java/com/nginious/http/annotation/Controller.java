@@ -40,6 +40,19 @@ import java.lang.annotation.Target;
  * }
  * </pre>
  * 
+ * <p>
+ * Requests are by default handed over from the thread that parsed the request to a separate pool of
+ * request threads for execution. Controllers that respond quickly without blocking, for example small
+ * REST controllers, can set the inline attribute to have requests executed directly on the thread that
+ * parsed the request. An inline controller that blocks delays parsing of requests from other connections.
+ * </p>
+ * 
+ * <p>
+ * Responses from controllers are compressed for clients accepting gzip or deflate encoding when the response
+ * content type is configured for compression. Controllers which compress their own responses or stream data
+ * that must reach the client without delay can set the compress attribute to false.
+ * </p>
+ * 
  * @see com.nginious.http.annotation.Request
  * @see com.nginious.http.HttpRequest
  * @see com.nginious.http.HttpResponse
@@ -70,4 +83,20 @@ public @interface Controller {
 	 * @return filter index
 	 */
 	int index() default 0;
+	
+	/**
+	 * Whether or not requests are executed on the thread that parsed the request instead of being handed over
+	 * to the request threads. Only applies to controllers bound to a path.
+	 * 
+	 * @return <code>true</code> if requests are executed inline, <code>false</code> otherwise
+	 */
+	boolean inline() default false;
+	
+	/**
+	 * Whether or not responses are compressed for clients accepting compressed responses. Only applies to
+	 * controllers bound to a path.
+	 * 
+	 * @return <code>true</code> if responses are compressed, <code>false</code> otherwise
+	 */
+	boolean compress() default true;
 }
@@ -19,18 +19,25 @@ package com.nginious.http.server;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
-import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
 
 /**
- * A log consumer which writes log entries to a file. Log entries are queued when added. A separate thread 
- * takes log entries from the queue and writes them to the log file.
+ * A log consumer which writes log entries to a file. Log entries are queued in a lock free ring buffer
+ * when added. A separate writer thread takes log entries from the ring buffer, collects them in a direct
+ * buffer and writes them to the log file in one batch once every flush interval.
  * 
  * <p>
- * The maximum queue size is 1000 entries. When this limit is reached callers block until a slot in the 
- * queue is available.
+ * The default ring buffer size is 1024 entries. What happens when the ring buffer is full is decided by
+ * the {@link OverflowPolicy}. By default callers block until a slot in the ring buffer is available.
  * </p>
  * 
  * <p>
@@ -44,11 +51,61 @@ import java.util.concurrent.TimeUnit;
  */
 public class FileLogConsumer {
 	
-	private ArrayBlockingQueue<byte[]> queue;
+	/**
+	 * Policy for log entries consumed when the ring buffer is full.
+	 * 
+	 * @author Bojan Pisler, NetDigital Sweden AB
+	 *
+	 */
+	public enum OverflowPolicy {
+		
+		/**
+		 * The caller blocks until the writer thread has made room for the log entry.
+		 */
+		BLOCK,
+		
+		/**
+		 * The log entry is dropped and counted, see {@link FileLogConsumer#getNumDroppedLines()}.
+		 */
+		DROP,
+		
+		/**
+		 * The log entry is spilled to an unbounded overflow queue which the writer thread empties after
+		 * the ring buffer. Entries are written in approximate order while the ring buffer is full.
+		 */
+		SPILL;
+		
+		/**
+		 * Returns the overflow policy with the specified case insensitive name.
+		 * 
+		 * @param name the overflow policy name
+		 * @return the overflow policy
+		 * @throws IllegalArgumentException if no overflow policy has the specified name
+		 */
+		public static OverflowPolicy parse(String name) {
+			return valueOf(name.trim().toUpperCase());
+		}
+	}
+	
+	private static final int DEFAULT_CAPACITY = 1024;
+	
+	private static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 100L;
+	
+	private static final int BATCH_BUFFER_SIZE = 64 * 1024;
+	
+	private RingBuffer ring;
+	
+	private ConcurrentLinkedQueue<byte[]> spill;
+	
+	private OverflowPolicy overflowPolicy;
+	
+	private long flushIntervalMillis;
+	
+	private AtomicLong numDroppedLines;
 	
 	private Thread thread;
 	
-	private Writer writer;
+	private volatile Writer writer;
 	
 	private String fileNamePrefix;
 	
@@ -59,9 +116,27 @@ public class FileLogConsumer {
 	 * @param fileNamePrefix the file name prefix
 	 */
 	public FileLogConsumer(String fileNamePrefix) {
+		this(fileNamePrefix, DEFAULT_CAPACITY, DEFAULT_FLUSH_INTERVAL_MILLIS, OverflowPolicy.BLOCK);
+	}
+	
+	/**
+	 * Constructs a new file log consumer which writes log entries to a log file with the specified
+	 * file name prefix. Up to the specified capacity log entries are queued and written to the log
+	 * file once every flush interval. The specified overflow policy is applied when the queue is full.
+	 * 
+	 * @param fileNamePrefix the file name prefix
+	 * @param capacity number of queued log entries, rounded up to the nearest power of two
+	 * @param flushIntervalMillis interval in milliseconds between writes to the log file
+	 * @param overflowPolicy the policy for log entries consumed when the queue is full
+	 */
+	public FileLogConsumer(String fileNamePrefix, int capacity, long flushIntervalMillis, OverflowPolicy overflowPolicy) {
 		super();
-		this.queue = new ArrayBlockingQueue<byte[]>(1000);
 		this.fileNamePrefix = fileNamePrefix;
+		this.ring = new RingBuffer(capacity);
+		this.spill = new ConcurrentLinkedQueue<byte[]>();
+		this.flushIntervalMillis = flushIntervalMillis > 0L ? flushIntervalMillis : 1L;
+		this.overflowPolicy = overflowPolicy;
+		this.numDroppedLines = new AtomicLong(0L);
 	}
 	
 	/**
@@ -72,38 +147,176 @@ public class FileLogConsumer {
 	public void start() throws IOException {
 		this.writer = new Writer(this.fileNamePrefix);
 		this.thread = new Thread(this.writer);
-		thread.start();		
+		thread.setDaemon(true);
+		thread.start();
 	}
 	
 	/**
-	 * Stops this file log consumer.
+	 * Stops this file log consumer. Waits for all queued log entries to be written.
 	 * 
 	 * @throws IOException if unable to close log files
 	 */
 	public void stop() throws IOException {
 		if(this.writer != null) {
 			writer.stop();
-			thread.interrupt();
+			LockSupport.unpark(this.thread);
 			
 			try {
 				thread.join();
 			} catch(InterruptedException e) {}
 			
-			queue.clear();
-		}		
+			this.writer = null;
+			ring.clear();
+			spill.clear();
+		}
 	}
 	
 	/**
-	 * Queues the specified log line for writing to the log file.
+	 * Returns number of log entries dropped because the queue was full and the overflow policy
+	 * is {@link OverflowPolicy#DROP}.
+	 * 
+	 * @return the number of dropped log entries
+	 */
+	public long getNumDroppedLines() {
+		return numDroppedLines.get();
+	}
+	
+	/**
+	 * Queues the specified log line for writing to the log file. The log line must not be modified
+	 * by the caller after it has been queued.
+	 * 
+	 * @param logLine the log line
 	 */
 	public void consume(byte[] logLine) {
-		try {
-			queue.put(logLine);
-		} catch(InterruptedException e) {}
+		if(overflowPolicy == OverflowPolicy.SPILL && !spill.isEmpty()) {
+			spill.add(logLine);
+			return;
+		}
+		
+		if(ring.offer(logLine)) {
+			return;
+		}
+		
+		Thread writerThread = this.thread;
+		
+		if(writerThread != null) {
+			LockSupport.unpark(writerThread);
+		}
+		
+		switch(overflowPolicy) {
+		case DROP:
+			numDroppedLines.incrementAndGet();
+			break;
+			
+		case SPILL:
+			spill.add(logLine);
+			break;
+			
+		default:
+			while(!ring.offer(logLine)) {
+				Writer curWriter = this.writer;
+				
+				if(curWriter == null || curWriter.stopped) {
+					return;
+				}
+				
+				LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(100L));
+			}
+		}
 	}
-
+	
+	/**
+	 * Bounded lock free queue for many producers and one consumer. Each slot has a sequence number which tells
+	 * whether the slot is free for the producer claiming the position or filled for the consumer. See Dmitry
+	 * Vyukov's bounded MPMC queue.
+	 * 
+	 * @author Bojan Pisler, NetDigital Sweden AB
+	 *
+	 */
+	private static class RingBuffer {
+		
+		private int mask;
+		
+		private AtomicReferenceArray<byte[]> slots;
+		
+		private AtomicLongArray sequences;
+		
+		private AtomicLong tail;
+		
+		private long head;
+		
+		private RingBuffer(int capacity) {
+			super();
+			int size = 1;
+			
+			while(size < capacity) {
+				size <<= 1;
+			}
+			
+			this.mask = size - 1;
+			this.slots = new AtomicReferenceArray<byte[]>(size);
+			this.sequences = new AtomicLongArray(size);
+			this.tail = new AtomicLong(0L);
+			
+			for(int i = 0; i < size; i++) {
+				sequences.set(i, i);
+			}
+		}
+		
+		/**
+		 * Adds the specified entry if a slot is free. Safe for concurrent producers.
+		 */
+		private boolean offer(byte[] entry) {
+			long pos = tail.get();
+			
+			while(true) {
+				int index = (int)(pos & mask);
+				long diff = sequences.get(index) - pos;
+				
+				if(diff == 0L) {
+					if(tail.compareAndSet(pos, pos + 1)) {
+						slots.set(index, entry);
+						sequences.set(index, pos + 1);
+						return true;
+					}
+					
+					pos = tail.get();
+				} else if(diff < 0L) {
+					return false;
+				} else {
+					pos = tail.get();
+				}
+			}
+		}
+		
+		/**
+		 * Removes and returns the oldest entry or <code>null</code> if empty. Must only be called by the consumer.
+		 */
+		private byte[] poll() {
+			int index = (int)(head & mask);
+			
+			if(sequences.get(index) != head + 1) {
+				return null;
+			}
+			
+			byte[] entry = slots.get(index);
+			slots.set(index, null);
+			sequences.set(index, head + mask + 1);
+			head++;
+			return entry;
+		}
+		
+		/**
+		 * Removes all entries. Must only be called by the consumer.
+		 */
+		private void clear() {
+			while(poll() != null) {}
+		}
+	}
+	
 	/**
-	 * Implements writer for writing entries from queue to access log file. Log file is rotated once
+	 * Implements writer for writing entries from queue to access log file. Queued entries are collected in a
+	 * direct buffer and written with one file channel write per flush interval. Log file is rotated once
 	 * every 24 hours at midnight. A history of 5 days is kept.
 	 * 
 	 * @author Bojan Pisler, NetDigital Sweden AB
@@ -115,9 +328,13 @@ public class FileLogConsumer {
 		
 		private FileOutputStream out;
 		
+		private FileChannel channel;
+		
+		private ByteBuffer batch;
+		
 		private String fileNamePrefix;
 		
-		private boolean stopped;
+		private volatile boolean stopped;
 		
 		private long nextRotationMillis;
 		
@@ -129,6 +346,7 @@ public class FileLogConsumer {
 		Writer(String fileNamePrefix) throws IOException {
 			super();
 			this.fileNamePrefix = fileNamePrefix;
+			this.batch = ByteBuffer.allocateDirect(BATCH_BUFFER_SIZE);
 			this.nextRotationMillis = calculateNextRotationTime();
 			createNew();
 		}
@@ -141,55 +359,86 @@ public class FileLogConsumer {
 		}
 		
 		/**
-		 * Reads log entries from queue and writes them to the access log file.
+		 * Reads log entries from queue and writes them to the access log file once every flush interval.
 		 */
 		public void run() {
 			try {
+				long flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+				
 				while(!this.stopped) {
-					try {
-						byte[] b = null;
-						long maxWaitTime = this.nextRotationMillis - System.currentTimeMillis();
-						
-						if(maxWaitTime > 0L) {
-							b = queue.poll(maxWaitTime, TimeUnit.MILLISECONDS);
-						}
-						
-						if(System.currentTimeMillis() > this.nextRotationMillis) {
-							rotate();
-						}
-						
-						if(b != null) {
-							out.write(b);
-						}
-					} catch(IOException e) {
-						this.stopped = true;
-						return;
-					} catch(InterruptedException e) {}
+					if(System.currentTimeMillis() > this.nextRotationMillis) {
+						writeQueued();
+						rotate();
+					}
+					
+					writeQueued();
+					LockSupport.parkNanos(flushIntervalNanos);
 				}
 				
-				if(this.stopped) {
-					writeRemaining();
-				}
+				writeQueued();
+			} catch(IOException e) {
+				this.stopped = true;
 			} finally {
 				try {
-					out.flush();
 					out.close();
 				} catch(IOException e) {}
 			}
 		}
 		
 		/**
-		 * Writes any remaining log entries from queue to access log file when stop flag has been
-		 * raised and access log is preparing to stop.
+		 * Takes all queued log entries and writes them to the access log file.
+		 * 
+		 * @throws IOException if unable to write to access log file
 		 */
-		private void writeRemaining() {
-			try {
-				byte[] b = null;
+		private void writeQueued() throws IOException {
+			byte[] b = null;
+			
+			while((b = ring.poll()) != null) {
+				append(b);
+			}
+			
+			while((b = spill.poll()) != null) {
+				append(b);
+			}
+			
+			flush();
+		}
+		
+		/**
+		 * Appends the specified log entry to the batch buffer, writing the batch buffer to the access log
+		 * file first if it is full.
+		 * 
+		 * @param b the log entry
+		 * @throws IOException if unable to write to access log file
+		 */
+		private void append(byte[] b) throws IOException {
+			if(b.length > batch.remaining()) {
+				flush();
 				
-				while((b = queue.poll()) != null) {
-					out.write(b);
+				if(b.length > batch.capacity()) {
+					write(ByteBuffer.wrap(b));
+					return;
 				}
-			} catch(IOException e) {}
+			}
+			
+			batch.put(b);
+		}
+		
+		/**
+		 * Writes the contents of the batch buffer to the access log file.
+		 * 
+		 * @throws IOException if unable to write to access log file
+		 */
+		private void flush() throws IOException {
+			batch.flip();
+			write(this.batch);
+			batch.clear();
+		}
+		
+		private void write(ByteBuffer buffer) throws IOException {
+			while(buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
 		}
 		
 		/**
@@ -215,6 +464,7 @@ public class FileLogConsumer {
 		private void createNew() throws IOException {
 			File outFile = new File(this.fileNamePrefix);
 			this.out = new FileOutputStream(outFile, true);
+			this.channel = out.getChannel();
 		}
 		
 		/**
@@ -245,7 +495,7 @@ public class FileLogConsumer {
 				StringBuffer fileName = new StringBuffer(this.fileNamePrefix);
 				fileName.append(".");
 				SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd");
-				fileName.append(format.format(this.nextRotationMillis - 1000L));
+				fileName.append(format.format(cal.getTimeInMillis()));
 				File oldFile = new File(fileName.toString());
 				oldFile.delete();
 			}
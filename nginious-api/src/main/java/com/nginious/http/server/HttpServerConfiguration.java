@@ -26,6 +26,20 @@ import com.nginious.http.annotation.CommandLine;
  * <li>Port - Listen port for HTTP server. Default is "80"</li>
  * <li>Webappsdir - Directory where web applications are deployed. Default is "webapps"</li>
  * <li>AdminPwd - Administration password for application management. Default is "admin"</li>
+ * <li>Reactors - Number of selector threads handling connection I/O. Default is one per processor core.</li>
+ * <li>PipelineDepth - Maximum number of pipelined requests parsed ahead per connection. Default is "16"</li>
+ * <li>Executor - Strategy for executing requests and web socket messages (platform|virtual|bounded). Default is "platform"</li>
+ * <li>MaxVirtualThreads - Maximum number of concurrently executing virtual threads for the bounded executor. Default is "5000"</li>
+ * <li>MinThreads - Minimum number of threads kept in the platform executor worker pool. Default is "5"</li>
+ * <li>MaxThreads - Maximum number of threads in the platform executor worker pool. Default is "500"</li>
+ * <li>QueueSize - Maximum number of requests queued when all worker pool threads are busy. Default is "5000"</li>
+ * <li>TargetQueueWait - Target average queue wait in milliseconds for tuning the number of worker pool threads. Default is "0", no tuning</li>
+ * <li>StaticCacheSize - Maximum number of bytes of static content cached in memory by each web application. Default is "33554432"</li>
+ * <li>CompressTypes - Comma separated list of content types compressed in dynamic responses and static content. Default is text, JSON, XML and JavaScript types</li>
+ * <li>CompressMinSize - Minimum content length in bytes of dynamic responses and static content to compress. Default is "1024"</li>
+ * <li>AccessLogFlushInterval - Interval in milliseconds between batched writes to the access log. Default is "100"</li>
+ * <li>AccessLogOverflow - Policy when the access log queue is full (block|drop|spill). Default is "block"</li>
+ * <li>DeploymentMode - Deployment mode for web applications (development|production). Default is "development"</li>
  * </ul>
  * 
  * @author Bojan Pisler, NetDigital Sweden AB
@@ -49,6 +63,34 @@ public class HttpServerConfiguration {
 	
 	private String serverLogPath;
 	
+	private int reactors;
+	
+	private int pipelineDepth;
+	
+	private String executor;
+	
+	private int maxVirtualThreads;
+	
+	private int minThreads;
+	
+	private int maxThreads;
+	
+	private int queueSize;
+	
+	private long targetQueueWait;
+	
+	private long staticCacheSize;
+	
+	private String compressTypes;
+	
+	private int compressMinSize;
+	
+	private long accessLogFlushInterval;
+	
+	private String accessLogOverflow;
+	
+	private String deploymentMode;
+	
 	/**
 	 * Constructs a new HTTP server configuration.
 	 */
@@ -62,6 +104,20 @@ public class HttpServerConfiguration {
 		this.session = "memory";
 		this.accessLogPath = "logs/access.log";
 		this.serverLogPath = "logs/server.log";
+		this.reactors = Runtime.getRuntime().availableProcessors();
+		this.pipelineDepth = 16;
+		this.executor = "platform";
+		this.maxVirtualThreads = 5000;
+		this.minThreads = 5;
+		this.maxThreads = 500;
+		this.queueSize = 5000;
+		this.targetQueueWait = 0L;
+		this.staticCacheSize = 32L * 1024L * 1024L;
+		this.compressTypes = "text/html,text/plain,text/css,text/xml,text/javascript,application/json,application/xml,application/javascript";
+		this.compressMinSize = 1024;
+		this.accessLogFlushInterval = 100L;
+		this.accessLogOverflow = "block";
+		this.deploymentMode = "development";
 	}
 	
 	/**
@@ -239,4 +295,335 @@ public class HttpServerConfiguration {
 	public void setServerLogPath(String serverLogPath) {
 		this.serverLogPath = serverLogPath;
 	}
+	
+	/**
+	 * Returns the number of reactors, each running a selector thread which handles I/O for its
+	 * share of all connections.
+	 * 
+	 * @return the number of reactors
+	 */
+	public int getReactors() {
+		return this.reactors;
+	}
+	
+	/**
+	 * Sets the number of reactors to the specified number.
+	 * 
+	 * @param reactors the number of reactors
+	 */
+	@CommandLine(shortName="-r",
+			longName="--reactors",
+			mandatory=false,
+			description="Number of selector threads handling connection I/O")
+	public void setReactors(int reactors) {
+		this.reactors = reactors;
+	}
+	
+	/**
+	 * Returns the maximum number of pipelined requests parsed ahead for each connection while
+	 * an earlier request on the same connection is being processed.
+	 * 
+	 * @return the maximum pipeline depth
+	 */
+	public int getPipelineDepth() {
+		return this.pipelineDepth;
+	}
+	
+	/**
+	 * Sets the maximum number of pipelined requests parsed ahead for each connection to the
+	 * specified depth.
+	 * 
+	 * @param pipelineDepth the maximum pipeline depth
+	 */
+	@CommandLine(shortName="-l",
+			longName="--pipelineDepth",
+			mandatory=false,
+			description="Maximum number of pipelined requests parsed ahead per connection")
+	public void setPipelineDepth(int pipelineDepth) {
+		this.pipelineDepth = pipelineDepth;
+	}
+	
+	/**
+	 * Returns strategy for executing requests and web socket messages.
+	 * 
+	 * @return the executor strategy
+	 */
+	public String getExecutor() {
+		return this.executor;
+	}
+	
+	/**
+	 * Sets strategy for executing requests and web socket messages to the specified strategy. The platform
+	 * strategy uses a bounded pool of platform threads, the virtual strategy uses one virtual thread per
+	 * request and the bounded strategy uses one virtual thread per request with a maximum number of
+	 * concurrently executing requests.
+	 * 
+	 * @param executor the executor strategy
+	 */
+	@CommandLine(shortName="-e",
+			longName="--executor",
+			mandatory=false,
+			description="Request executor strategy (platform|virtual|bounded)")
+	public void setExecutor(String executor) {
+		this.executor = executor;
+	}
+	
+	/**
+	 * Returns maximum number of concurrently executing virtual threads for the bounded executor strategy.
+	 * 
+	 * @return the maximum number of virtual threads
+	 */
+	public int getMaxVirtualThreads() {
+		return this.maxVirtualThreads;
+	}
+	
+	/**
+	 * Sets maximum number of concurrently executing virtual threads for the bounded executor strategy to
+	 * the specified number. Requests exceeding the maximum are rejected.
+	 * 
+	 * @param maxVirtualThreads the maximum number of virtual threads
+	 */
+	@CommandLine(shortName="-v",
+			longName="--maxVirtualThreads",
+			mandatory=false,
+			description="Maximum number of executing virtual threads for bounded executor")
+	public void setMaxVirtualThreads(int maxVirtualThreads) {
+		this.maxVirtualThreads = maxVirtualThreads;
+	}
+	
+	/**
+	 * Returns minimum number of threads kept in the platform executor worker pool.
+	 * 
+	 * @return the minimum number of threads
+	 */
+	public int getMinThreads() {
+		return this.minThreads;
+	}
+	
+	/**
+	 * Sets minimum number of threads kept in the platform executor worker pool to the specified number.
+	 * 
+	 * @param minThreads the minimum number of threads
+	 */
+	@CommandLine(shortName="-m",
+			longName="--minThreads",
+			mandatory=false,
+			description="Minimum number of worker pool threads")
+	public void setMinThreads(int minThreads) {
+		this.minThreads = minThreads;
+	}
+	
+	/**
+	 * Returns maximum number of threads in the platform executor worker pool.
+	 * 
+	 * @return the maximum number of threads
+	 */
+	public int getMaxThreads() {
+		return this.maxThreads;
+	}
+	
+	/**
+	 * Sets maximum number of threads in the platform executor worker pool to the specified number. New threads
+	 * are started, up to the maximum, before requests are queued.
+	 * 
+	 * @param maxThreads the maximum number of threads
+	 */
+	@CommandLine(shortName="-x",
+			longName="--maxThreads",
+			mandatory=false,
+			description="Maximum number of worker pool threads")
+	public void setMaxThreads(int maxThreads) {
+		this.maxThreads = maxThreads;
+	}
+	
+	/**
+	 * Returns maximum number of requests queued when all worker pool threads are busy.
+	 * 
+	 * @return the maximum queue size
+	 */
+	public int getQueueSize() {
+		return this.queueSize;
+	}
+	
+	/**
+	 * Sets maximum number of requests queued when all worker pool threads are busy to the specified
+	 * number. Requests exceeding the queue size are rejected.
+	 * 
+	 * @param queueSize the maximum queue size
+	 */
+	@CommandLine(shortName="-q",
+			longName="--queueSize",
+			mandatory=false,
+			description="Maximum number of queued requests when all worker pool threads are busy")
+	public void setQueueSize(int queueSize) {
+		this.queueSize = queueSize;
+	}
+	
+	/**
+	 * Returns target average queue wait in milliseconds for tuning the number of worker pool threads.
+	 * 
+	 * @return the target queue wait in milliseconds or zero if tuning is disabled
+	 */
+	public long getTargetQueueWait() {
+		return this.targetQueueWait;
+	}
+	
+	/**
+	 * Sets target average queue wait in milliseconds for tuning the number of worker pool threads to the
+	 * specified number of milliseconds. The worker pool raises its maximum number of threads when requests
+	 * wait longer than the target and lowers it when threads are idle. Zero disables tuning.
+	 * 
+	 * @param targetQueueWait the target queue wait in milliseconds
+	 */
+	@CommandLine(shortName="-t",
+			longName="--targetQueueWait",
+			mandatory=false,
+			description="Target queue wait in milliseconds for tuning worker pool threads, 0 disables")
+	public void setTargetQueueWait(long targetQueueWait) {
+		this.targetQueueWait = targetQueueWait;
+	}
+	
+	/**
+	 * Returns maximum number of bytes of static content cached in memory by each web application.
+	 * 
+	 * @return the static content cache size in bytes
+	 */
+	public long getStaticCacheSize() {
+		return this.staticCacheSize;
+	}
+	
+	/**
+	 * Sets maximum number of bytes of static content cached in memory by each web application to the
+	 * specified number of bytes. Least recently used content is evicted once the cache is full. Zero
+	 * disables caching of static content.
+	 * 
+	 * @param staticCacheSize the static content cache size in bytes
+	 */
+	@CommandLine(shortName="-c",
+			longName="--staticCacheSize",
+			mandatory=false,
+			description="Maximum bytes of static content cached per web application, 0 disables")
+	public void setStaticCacheSize(long staticCacheSize) {
+		this.staticCacheSize = staticCacheSize;
+	}
+	
+	/**
+	 * Returns comma separated list of content types that are compressed when written by controllers or
+	 * served as static content.
+	 * 
+	 * @return the compressed content types
+	 */
+	public String getCompressTypes() {
+		return this.compressTypes;
+	}
+	
+	/**
+	 * Sets comma separated list of content types that are compressed when written by controllers or served as
+	 * static content to the specified list. Responses are only compressed for clients accepting gzip or deflate
+	 * encoding. Static content is compressed once when a web application is published. An empty list disables
+	 * compression.
+	 * 
+	 * @param compressTypes the compressed content types
+	 */
+	@CommandLine(shortName="-z",
+			longName="--compressTypes",
+			mandatory=false,
+			description="Comma separated content types compressed in dynamic responses and static content, empty disables")
+	public void setCompressTypes(String compressTypes) {
+		this.compressTypes = compressTypes;
+	}
+	
+	/**
+	 * Returns minimum content length in bytes for dynamic responses and static content to be compressed.
+	 * 
+	 * @return the minimum content length
+	 */
+	public int getCompressMinSize() {
+		return this.compressMinSize;
+	}
+	
+	/**
+	 * Sets minimum content length in bytes for dynamic responses and static content to be compressed to the
+	 * specified size. Dynamic responses with unknown content length are always compressed.
+	 * 
+	 * @param compressMinSize the minimum content length
+	 */
+	@CommandLine(shortName="-Z",
+			longName="--compressMinSize",
+			mandatory=false,
+			description="Minimum content length of dynamic responses and static content to compress")
+	public void setCompressMinSize(int compressMinSize) {
+		this.compressMinSize = compressMinSize;
+	}
+	
+	/**
+	 * Returns interval in milliseconds between batched writes of queued entries to the access log.
+	 * 
+	 * @return the access log flush interval in milliseconds
+	 */
+	public long getAccessLogFlushInterval() {
+		return this.accessLogFlushInterval;
+	}
+	
+	/**
+	 * Sets interval in milliseconds between batched writes of queued entries to the access log to the
+	 * specified number of milliseconds. Longer intervals mean fewer and larger writes.
+	 * 
+	 * @param accessLogFlushInterval the access log flush interval in milliseconds
+	 */
+	@CommandLine(shortName="-f",
+			longName="--accessLogFlushInterval",
+			mandatory=false,
+			description="Interval in milliseconds between batched writes to the access log")
+	public void setAccessLogFlushInterval(long accessLogFlushInterval) {
+		this.accessLogFlushInterval = accessLogFlushInterval;
+	}
+	
+	/**
+	 * Returns policy for access log entries when the access log queue is full.
+	 * 
+	 * @return the access log overflow policy, one of "block", "drop" or "spill"
+	 */
+	public String getAccessLogOverflow() {
+		return this.accessLogOverflow;
+	}
+	
+	/**
+	 * Sets policy for access log entries when the access log queue is full to the specified policy. With
+	 * "block" request threads wait for room in the queue, with "drop" entries are dropped and counted and
+	 * with "spill" entries are kept in an unbounded overflow queue.
+	 * 
+	 * @param accessLogOverflow the access log overflow policy
+	 */
+	@CommandLine(shortName="-o",
+			longName="--accessLogOverflow",
+			mandatory=false,
+			description="Policy when the access log queue is full (block|drop|spill)")
+	public void setAccessLogOverflow(String accessLogOverflow) {
+		this.accessLogOverflow = accessLogOverflow;
+	}
+	
+	/**
+	 * Returns deployment mode for web applications.
+	 * 
+	 * @return the deployment mode, one of "development" or "production"
+	 */
+	public String getDeploymentMode() {
+		return this.deploymentMode;
+	}
+	
+	/**
+	 * Sets deployment mode for web applications to the specified mode. In "development" mode changed controller
+	 * classes and XSP pages are reloaded without redeploying the web application. In "production" mode web
+	 * application classes are expected not to change after deployment and no reload checks are made.
+	 * 
+	 * @param deploymentMode the deployment mode
+	 */
+	@CommandLine(shortName="-D",
+			longName="--deploymentMode",
+			mandatory=false,
+			description="Deployment mode for web applications (development|production)")
+	public void setDeploymentMode(String deploymentMode) {
+		this.deploymentMode = deploymentMode;
+	}
 }
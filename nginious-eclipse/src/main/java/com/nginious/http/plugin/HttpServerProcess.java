@@ -126,7 +126,7 @@ class HttpServerProcess {
 		classPath.append(File.pathSeparator);
 		classPath.append(jsonElement);
 		
-		URL asmURL = NginiousPlugin.getJar("asm-3.3.1.jar");
+		URL asmURL = NginiousPlugin.getJar("asm-9.8.jar");
 		String asmElement = createClasspathElement(asmURL);
 		classPath.append(File.pathSeparator);
 		classPath.append(asmElement);
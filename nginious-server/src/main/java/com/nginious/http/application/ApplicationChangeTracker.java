@@ -0,0 +1,198 @@
+/**
+ * Copyright 2012 NetDigital Sweden AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.nginious.http.application;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.log4j.LogMF;
+import org.apache.log4j.Logger;
+
+/**
+ * Tracks changes to the classes directory and jar libraries of a web application. A watch service is registered
+ * for the <code>WEB-INF</code>, <code>WEB-INF/lib</code> and all <code>WEB-INF/classes</code> directories and a
+ * background thread increases a version counter for each batch of file system events.
+ * 
+ * <p>
+ * Reload checks compare the current version with the version at their last check and only inspect class files
+ * when the version has changed. Reading the version is a single volatile read. If the file system does not
+ * support watch services the version changes on every read, which makes reload checks inspect class files on
+ * every invocation.
+ * </p>
+ * 
+ * @author Bojan Pisler, NetDigital Sweden AB
+ * @see ReloadableControllerService
+ * @see ControllerIndex
+ *
+ */
+class ApplicationChangeTracker implements Runnable {
+	
+	private static Logger logger = Logger.getLogger(ApplicationChangeTracker.class);
+	
+	private String name;
+	
+	private Path webInfDir;
+	
+	private WatchService watcher;
+	
+	private ConcurrentHashMap<WatchKey, Path> keys;
+	
+	private Thread thread;
+	
+	private volatile long version;
+	
+	private volatile boolean polling;
+	
+	/**
+	 * Constructs a new change tracker for the web application with the specified name and directory.
+	 * 
+	 * @param name the web application name
+	 * @param webAppDir the web application directory
+	 */
+	ApplicationChangeTracker(String name, File webAppDir) {
+		super();
+		this.name = name;
+		this.webInfDir = new File(webAppDir, "WEB-INF").toPath();
+		this.keys = new ConcurrentHashMap<WatchKey, Path>();
+	}
+	
+	/**
+	 * Returns the current version of the tracked directories. The version changes when any class file, jar library
+	 * or directory in the tracked directories is created, modified or deleted.
+	 * 
+	 * @return the current version
+	 */
+	long getVersion() {
+		return this.polling ? System.nanoTime() : this.version;
+	}
+	
+	/**
+	 * Starts tracking changes. Falls back to changing version on every read if no watch service can be
+	 * registered for the tracked directories.
+	 */
+	void start() {
+		try {
+			this.watcher = FileSystems.getDefault().newWatchService();
+			register(this.webInfDir, false);
+			register(webInfDir.resolve("lib"), false);
+			register(webInfDir.resolve("classes"), true);
+			
+			this.thread = new Thread(this, "nginious-change-tracker-" + this.name);
+			thread.setDaemon(true);
+			thread.start();
+		} catch(IOException e) {
+			LogMF.warn(logger, "Unable to track changes for {0}, checking classes on every request", this.name);
+			this.polling = true;
+			stop();
+		}
+	}
+	
+	/**
+	 * Stops tracking changes and waits for the background thread to exit.
+	 */
+	void stop() {
+		if(this.watcher != null) {
+			try { watcher.close(); } catch(IOException e) {}
+		}
+		
+		if(this.thread != null && thread != Thread.currentThread()) {
+			try { thread.join(1000L); } catch(InterruptedException e) {}
+		}
+	}
+	
+	/**
+	 * Takes watch keys signalled by the watch service and increases the version for each signalled key. Directories
+	 * created in the classes directory are registered with the watch service before the version is increased.
+	 */
+	public void run() {
+		while(true) {
+			WatchKey key = null;
+			
+			try {
+				key = watcher.take();
+			} catch(InterruptedException e) {
+				return;
+			} catch(ClosedWatchServiceException e) {
+				return;
+			}
+			
+			Path dir = keys.get(key);
+			
+			for(WatchEvent<?> event : key.pollEvents()) {
+				if(dir != null && event.kind() == ENTRY_CREATE) {
+					Path child = dir.resolve((Path)event.context());
+					
+					if(!dir.equals(this.webInfDir) || child.endsWith("classes")) {
+						registerQuietly(child, true);
+					} else if(child.endsWith("lib")) {
+						registerQuietly(child, false);
+					}
+				}
+			}
+			
+			this.version++;
+			
+			if(!key.reset()) {
+				keys.remove(key);
+			}
+		}
+	}
+	
+	private void registerQuietly(Path dir, boolean recursive) {
+		try {
+			register(dir, recursive);
+		} catch(ClosedWatchServiceException e) {
+		} catch(IOException e) {
+			LogMF.warn(logger, "Unable to track changes in {0}", dir);
+		}
+	}
+	
+	private void register(Path dir, boolean recursive) throws IOException {
+		File file = dir.toFile();
+		
+		if(!file.isDirectory()) {
+			return;
+		}
+		
+		WatchKey key = dir.register(this.watcher, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY, OVERFLOW);
+		keys.put(key, dir);
+		
+		if(recursive) {
+			File[] subFiles = file.listFiles();
+			
+			if(subFiles != null) {
+				for(File subFile : subFiles) {
+					if(subFile.isDirectory()) {
+						register(subFile.toPath(), true);
+					}
+				}
+			}
+		}
+	}
+}
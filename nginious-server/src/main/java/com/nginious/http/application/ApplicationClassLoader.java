@@ -19,11 +19,20 @@ package com.nginious.http.application;
 import java.io.File;
 import java.io.IOException;
 import java.net.URL;
-import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+import org.apache.log4j.LogMF;
+import org.apache.log4j.Logger;
 
 import com.nginious.http.common.IteratorEnumeration;
 
@@ -46,17 +55,62 @@ import com.nginious.http.common.IteratorEnumeration;
  * since class loaders are immutable.
  * </p>
  * 
+ * <p>
+ * Classes and resources are first looked up in the classes directory and then in the jar
+ * libraries that contain the package of the class or resource. Packages of jar libraries
+ * are indexed when a jar library is added or replaced, lookups never search jar libraries
+ * that don't contain the package. The <code>WEB-INF/lib</code> directory is only listed
+ * for new jar libraries when its modification time has changed.
+ * </p>
+ * 
+ * <p>
+ * Jar libraries which are identical by content to a jar library in another web application
+ * are loaded once by a {@link SharedLibraryClassLoader} if self contained. The number of
+ * classes and class file bytes this class loader has reused from shared jar libraries
+ * instead of defining them again is available as an estimate of saved metaspace.
+ * </p>
+ * 
  * @author Bojan Pisler, NetDigital Sweden AB
  *
  */
 public class ApplicationClassLoader extends ClassLoader {
 	
+	private static Logger logger = Logger.getLogger(ApplicationClassLoader.class);
+	
+	static {
+		ClassLoader.registerAsParallelCapable();
+	}
+	
+	private static final File[] NO_JARS = new File[0];
+	
+	private static final long RACY_INTERVAL = 2000L;
+	
 	private ConcurrentHashMap<File, SubApplicationClassLoader> subClassLoaders;
-
+	
+	private ConcurrentHashMap<File, SharedLibrary> sharedLibraries;
+	
+	private volatile HashMap<String, File[]> packages;
+	
+	private final Object indexLock = new Object();
+	
 	private ClassLoader parent;
 	
 	private File webAppDir;
 	
+	private File classesDir;
+	
+	private long libModified;
+	
+	private long libListed;
+	
+	private Set<String> sharedClassNames;
+	
+	private AtomicInteger numSharedClasses;
+	
+	private AtomicLong sharedClassBytes;
+	
+	private SharedLibraryRegistry registry;
+	
 	/**
 	 * Constructs a new app class loader which uses the specified parent class loader.
 	 * 
@@ -75,9 +129,29 @@ public class ApplicationClassLoader extends ClassLoader {
 	 * @param webAppDir the web application directory
 	 */
 	public ApplicationClassLoader(ClassLoader parent, File webAppDir) {
+		this(parent, webAppDir, SharedLibraryRegistry.getDefault());
+	}
+	
+	/**
+	 * Constructs a new app class loader which uses the specified parent class
+	 * loader and loads classes for the web application in the specified
+	 * web application directory. Shared jar libraries are acquired from the
+	 * specified registry.
+	 * 
+	 * @param parent the parent class loaader
+	 * @param webAppDir the web application directory
+	 * @param registry the registry to acquire shared jar libraries from
+	 */
+	ApplicationClassLoader(ClassLoader parent, File webAppDir, SharedLibraryRegistry registry) {
 		super(parent);
 		this.parent = parent;
+		this.registry = registry;
 		this.subClassLoaders = new ConcurrentHashMap<File, SubApplicationClassLoader>();
+		this.sharedLibraries = new ConcurrentHashMap<File, SharedLibrary>();
+		this.packages = new HashMap<String, File[]>();
+		this.sharedClassNames = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+		this.numSharedClasses = new AtomicInteger(0);
+		this.sharedClassBytes = new AtomicLong(0L);
 		setWebAppDir(webAppDir);
 	}
 	
@@ -104,6 +178,12 @@ public class ApplicationClassLoader extends ClassLoader {
 			}
 		}
 		
+		for(SharedLibrary library : sharedLibraries.values()) {
+			if(loader == library.loader) {
+				return true;
+			}
+		}
+		
 		return false;
 	}
 	
@@ -131,6 +211,15 @@ public class ApplicationClassLoader extends ClassLoader {
 			}
 		}
 		
+		for(File jarFile : sharedLibraries.keySet()) {
+			SharedLibrary library = sharedLibraries.get(jarFile);
+			
+			if(library != null && loader == library.loader && library.isModified()) {
+				reloadSharedLibrary(jarFile, library);
+				return true;
+			}
+		}
+		
 		return false;
 	}
 	
@@ -145,6 +234,49 @@ public class ApplicationClassLoader extends ClassLoader {
 		}
 	}
 	
+	/**
+	 * Returns number of jar libraries loaded by shared class loaders.
+	 * 
+	 * @return the number of shared jar libraries
+	 */
+	int getNumSharedLibraries() {
+		return sharedLibraries.size();
+	}
+	
+	/**
+	 * Returns number of classes reused from shared jar libraries which were already defined when first loaded
+	 * by this class loader.
+	 * 
+	 * @return the number of reused shared classes
+	 */
+	int getNumSharedClasses() {
+		return numSharedClasses.get();
+	}
+	
+	/**
+	 * Returns total class file size in bytes of all classes reused from shared jar libraries. Used as an
+	 * estimate of metaspace saved by sharing jar libraries.
+	 * 
+	 * @return the reused class file bytes
+	 */
+	long getSharedClassBytes() {
+		return sharedClassBytes.get();
+	}
+	
+	/**
+	 * Releases all shared class loaders used by this class loader. Called when the web application is
+	 * unpublished and by tools which create a class loader for a web application directory.
+	 */
+	public void release() {
+		synchronized(this.indexLock) {
+			for(SharedLibrary library : sharedLibraries.values()) {
+				library.loader.release();
+			}
+			
+			sharedLibraries.clear();
+		}
+	}
+	
 	/**
 	 * Finds resource with the specified name.
 	 * 
@@ -156,43 +288,33 @@ public class ApplicationClassLoader extends ClassLoader {
 	}
 	
 	/**
-	 * Find resource with the specified name. Checks all sub class loaders for the resource until
-	 * one of the sub class loaders returns a matching resource. If the owning sub class loader
-	 * detects that the resource has changed since the sub class loader was created this class
-	 * loader is instructed to replace the sub class loader to update the changes. This procedure
+	 * Find resource with the specified name. Checks the classes directory and all jar libraries that
+	 * contain the package of the resource until one of them returns a matching resource. If the owning
+	 * sub class loader detects that the resource has changed since the sub class loader was created this
+	 * class loader is instructed to replace the sub class loader to update the changes. This procedure
 	 * is necessary since class loaders are immutable.
 	 * 
 	 * @param name the resource name
 	 * @return a URL for reading the resource or <code>null</code> if the resource could not be found
 	 */
 	URL getResourceInternal(String name) {
-		Collection<SubApplicationClassLoader> classLoaders = subClassLoaders.values();
+		SubApplicationClassLoader classesLoader = getClassesLoader(name, false);
 		
-		for(SubApplicationClassLoader classLoader : classLoaders) {
-			classLoader = reloadIfModified(classLoader, name, false);
+		if(classesLoader != null) {
+			URL resource = classesLoader.getResourceInternal(name);
 			
-			if(classLoader != null) {
-				URL resource = classLoader.getResourceInternal(name);
-				
-				if(resource != null) {
-					return resource;
-				}
+			if(resource != null) {
+				return resource;
 			}
 		}
 		
-		if(this.webAppDir != null) {
-			classLoaders = checkNewSubClassLoaders(this.webAppDir);
-			
-			for(SubApplicationClassLoader classLoader : classLoaders) {
-				URL resource = classLoader.getResourceInternal(name);
-				
-				if(resource != null) {
-					return resource;
-				}				
-			}
+		URL resource = findJarResource(name);
+		
+		if(resource == null && checkNewSubClassLoaders()) {
+			resource = findJarResource(name);
 		}
 		
-		return super.getResource(name);
+		return resource != null ? resource : super.getResource(name);
 	}
 	
 	/**
@@ -207,9 +329,9 @@ public class ApplicationClassLoader extends ClassLoader {
 	}
 	
 	/**
-	 * Find all resources with the specified name. Checks all sub class loaders for a resource with
-	 * the specified name. If a sub class loader detects that a resource with the specified name
-	 * has changed since the sub vlass loader was created this class loader is instructed to replace
+	 * Find all resources with the specified name. Checks the classes directory and all jar libraries that
+	 * contain the package of the resource. If a sub class loader detects that a resource with the specified
+	 * name has changed since the sub vlass loader was created this class loader is instructed to replace
 	 * the sub class loader to update changes. This procedure is neccesary since class loaders are
 	 * immutable.
 	 * 
@@ -217,36 +339,17 @@ public class ApplicationClassLoader extends ClassLoader {
 	 * @throws IOException if unable to load a resource
 	 */
 	Enumeration<URL> getResourcesInternal(String name) throws IOException {
-		Collection<SubApplicationClassLoader> classLoaders = subClassLoaders.values();
-		
 		HashSet<URL> outResources = new HashSet<URL>();
+		SubApplicationClassLoader classesLoader = getClassesLoader(name, false);
 		
-		for(SubApplicationClassLoader classLoader : classLoaders) {
-			classLoader = reloadIfModified(classLoader, name, false);
-			
-			if(classLoader != null) {
-				Enumeration<URL> resources = classLoader.getResourcesInternal(name);
-				
-				if(resources != null) {
-					while(resources.hasMoreElements()) {
-						outResources.add(resources.nextElement());
-					}
-				}
-			}
+		if(classesLoader != null) {
+			addResources(classesLoader.getResourcesInternal(name), outResources);
 		}
 		
-		if(outResources.size() == 0 && this.webAppDir != null) {
-			classLoaders = checkNewSubClassLoaders(this.webAppDir);
-			
-			for(SubApplicationClassLoader classLoader : classLoaders) {
-				Enumeration<URL> resources = classLoader.getResourcesInternal(name);
-				
-				if(resources != null) {
-					while(resources.hasMoreElements()) {
-						outResources.add(resources.nextElement());
-					}
-				}				
-			}
+		findJarResources(name, outResources);
+		
+		if(outResources.isEmpty() && checkNewSubClassLoaders()) {
+			findJarResources(name, outResources);
 		}
 		
 		if(outResources.isEmpty()) {
@@ -280,9 +383,9 @@ public class ApplicationClassLoader extends ClassLoader {
 	}
 	
 	/**
-	 * Loads the class with the specified binary name. Checks all sub class loaders for the class until
-	 * one of the sub class loaders returns the class. If the owning sub class loader
-	 * detects that the class has changed since the sub class loader was created this class
+	 * Loads the class with the specified binary name. Checks the classes directory and all jar libraries
+	 * that contain the package of the class until one of them returns the class. If the owning sub class
+	 * loader detects that the class has changed since the sub class loader was created this class
 	 * loader is instructed to replace the sub class loader to update the changes. This procedure
 	 * is necessary since class loaders are immutable.
 	 *
@@ -292,29 +395,140 @@ public class ApplicationClassLoader extends ClassLoader {
 	 * @throws ClassNotFoundException if the class could not be found
 	 */
 	protected Class<?> loadClassInternal(String name, boolean resolve) throws ClassNotFoundException {
-		Collection<SubApplicationClassLoader> classLoaders = subClassLoaders.values();
+		String path = name.replace('.', '/') + ".class";
+		SubApplicationClassLoader classesLoader = getClassesLoader(name, true);
+		
+		if(classesLoader != null && (classesLoader.isLoaded(name) || classesLoader.findResource(path) != null)) {
+			try {
+				return classesLoader.loadClassInternal(name, resolve);
+			} catch(ClassNotFoundException e) {}
+		}
+		
+		Class<?> clazz = loadJarClass(name, path, resolve);
+		
+		if(clazz == null && checkNewSubClassLoaders()) {
+			clazz = loadJarClass(name, path, resolve);
+		}
+		
+		return clazz != null ? clazz : super.loadClass(name, resolve);
+	}
+	
+	private SubApplicationClassLoader getClassesLoader(String name, boolean className) {
+		if(this.classesDir == null) {
+			return null;
+		}
 		
-		for(SubApplicationClassLoader classLoader : classLoaders) {
-			classLoader = reloadIfModified(classLoader, name, true);
+		SubApplicationClassLoader classLoader = subClassLoaders.get(this.classesDir);
+		return classLoader != null ? reloadIfModified(classLoader, name, className) : null;
+	}
+	
+	private Class<?> loadJarClass(String name, String path, boolean resolve) {
+		for(File jarFile : jarsFor(path)) {
+			SharedLibrary library = getSharedLibrary(jarFile);
+			
+			if(library != null) {
+				boolean loaded = library.loader.isLoaded(name);
+				
+				if(!loaded && !library.loader.contains(path)) {
+					continue;
+				}
+				
+				try {
+					Class<?> clazz = library.loader.loadClass(name);
+					
+					if(resolve) {
+						resolveClass(clazz);
+					}
+					
+					if(sharedClassNames.add(name) && loaded) {
+						numSharedClasses.incrementAndGet();
+						sharedClassBytes.addAndGet(library.loader.getClassSize(name));
+					}
+					
+					return clazz;
+				} catch(ClassNotFoundException e) {}
+				
+				continue;
+			}
+			
+			SubApplicationClassLoader classLoader = subClassLoaders.get(jarFile);
 			
 			if(classLoader != null) {
+				classLoader = reloadIfModified(classLoader, name, true);
+			}
+			
+			if(classLoader != null && (classLoader.isLoaded(name) || classLoader.findResource(path) != null)) {
 				try {
 					return classLoader.loadClassInternal(name, resolve);
 				} catch(ClassNotFoundException e) {}
 			}
 		}
 		
-		if(this.webAppDir != null) {
-			classLoaders = checkNewSubClassLoaders(this.webAppDir);
+		return null;
+	}
+	
+	private URL findJarResource(String name) {
+		for(File jarFile : jarsFor(name)) {
+			SharedLibrary library = getSharedLibrary(jarFile);
+			URL resource = null;
 			
-			for(SubApplicationClassLoader classLoader : classLoaders) {
-				try {
-					return classLoader.loadClassInternal(name, resolve);
-				} catch(ClassNotFoundException e) {}
+			if(library != null) {
+				resource = library.loader.findResource(name);
+			} else {
+				SubApplicationClassLoader classLoader = subClassLoaders.get(jarFile);
+				
+				if(classLoader != null) {
+					classLoader = reloadIfModified(classLoader, name, false);
+				}
+				
+				if(classLoader != null) {
+					resource = classLoader.getResourceInternal(name);
+				}
+			}
+			
+			if(resource != null) {
+				return resource;
 			}
 		}
 		
-		return super.loadClass(name, resolve);
+		return null;
+	}
+	
+	private void findJarResources(String name, HashSet<URL> outResources) throws IOException {
+		for(File jarFile : jarsFor(name)) {
+			SharedLibrary library = getSharedLibrary(jarFile);
+			
+			if(library != null) {
+				addResources(library.loader.findResources(name), outResources);
+			} else {
+				SubApplicationClassLoader classLoader = subClassLoaders.get(jarFile);
+				
+				if(classLoader != null) {
+					classLoader = reloadIfModified(classLoader, name, false);
+				}
+				
+				if(classLoader != null) {
+					addResources(classLoader.getResourcesInternal(name), outResources);
+				}
+			}
+		}
+	}
+	
+	private void addResources(Enumeration<URL> resources, HashSet<URL> outResources) {
+		if(resources != null) {
+			while(resources.hasMoreElements()) {
+				outResources.add(resources.nextElement());
+			}
+		}
+	}
+	
+	/**
+	 * Returns jar libraries that contain the package of the resource or class file with the specified path.
+	 */
+	private File[] jarsFor(String path) {
+		int index = path.lastIndexOf('/');
+		File[] jarFiles = packages.get(index > 0 ? path.substring(0, index) : "");
+		return jarFiles != null ? jarFiles : NO_JARS;
 	}
 	
 	/**
@@ -333,8 +547,13 @@ public class ApplicationClassLoader extends ClassLoader {
 			if(jarOrClassDir.exists()) {
 				classLoader = new SubApplicationClassLoader(this, jarOrClassDir, this.parent);
 				subClassLoaders.put(jarOrClassDir, classLoader);
+				
+				if(jarOrClassDir.isFile()) {
+					index(jarOrClassDir);
+				}
 			} else {
 				subClassLoaders.remove(jarOrClassDir);
+				unindex(jarOrClassDir);
 				classLoader = null;
 			}
 		}
@@ -342,31 +561,164 @@ public class ApplicationClassLoader extends ClassLoader {
 		return classLoader;
 	}
 	
+	/**
+	 * Returns the shared library for the specified jar library. If the jar library has changed since it was
+	 * shared the shared library is released and the jar library added again.
+	 * 
+	 * @return the shared library or <code>null</code> if the jar library is not shared
+	 */
+	private SharedLibrary getSharedLibrary(File jarFile) {
+		SharedLibrary library = sharedLibraries.get(jarFile);
+		
+		if(library != null && library.isModified()) {
+			reloadSharedLibrary(jarFile, library);
+			library = sharedLibraries.get(jarFile);
+		}
+		
+		return library;
+	}
+	
+	private void reloadSharedLibrary(File jarFile, SharedLibrary library) {
+		synchronized(this.indexLock) {
+			if(!sharedLibraries.remove(jarFile, library)) {
+				return;
+			}
+			
+			library.loader.release();
+			unindex(jarFile);
+			
+			if(jarFile.isFile()) {
+				addJar(jarFile);
+			}
+		}
+	}
+	
 	/**
 	 * Checks web applications WEB-INF/lib directory for new jar libraries that need to be added
 	 * as a sub class loader for this class loader. If new jar libraries are found a sub class
-	 * loader is created for each jar library.
+	 * loader is created or a shared class loader acquired for each jar library. The directory is
+	 * only listed if its modification time has changed since it was last listed.
 	 * 
-	 * @param webAppDir the web application directory to check
-	 * @return all newly created sub class loaders
+	 * @return <code>true</code> if any jar library was added, <code>false</code> otherwise
 	 */
-	private Collection<SubApplicationClassLoader> checkNewSubClassLoaders(File webAppDir) {
-		File webInfDir = new File(webAppDir, "WEB-INF");
-		File libDir = new File(webInfDir, "lib");
-		File[] possibleLibs = libDir.listFiles();
-		ArrayList<SubApplicationClassLoader> newClassLoaders = new ArrayList<SubApplicationClassLoader>();
-		
-		if(possibleLibs != null) {
-			for(File possibleLib : possibleLibs) {
-				if(!subClassLoaders.containsKey(possibleLib)) {
-					SubApplicationClassLoader classLoader = new SubApplicationClassLoader(this, possibleLib, this.parent);
-					subClassLoaders.put(possibleLib, classLoader);
-					newClassLoaders.add(classLoader);
+	private boolean checkNewSubClassLoaders() {
+		if(this.webAppDir == null) {
+			return false;
+		}
+		
+		File libDir = new File(this.webAppDir, "WEB-INF/lib");
+		
+		synchronized(this.indexLock) {
+			long modified = libDir.lastModified();
+			
+			// Directories modified shortly before listing may hide changes on file systems with coarse timestamps
+			if(modified == this.libModified && this.libListed - this.libModified >= RACY_INTERVAL) {
+				return false;
+			}
+			
+			this.libModified = modified;
+			this.libListed = System.currentTimeMillis();
+			File[] possibleLibs = libDir.listFiles();
+			boolean added = false;
+			
+			if(possibleLibs != null) {
+				for(File possibleLib : possibleLibs) {
+					if(possibleLib.isFile() && possibleLib.getName().endsWith(".jar") && 
+							!subClassLoaders.containsKey(possibleLib) && !sharedLibraries.containsKey(possibleLib)) {
+						addJar(possibleLib);
+						added = true;
+					}
 				}
 			}
+			
+			return added;
+		}
+	}
+	
+	/**
+	 * Adds the specified jar library using a shared class loader if the jar library can be shared or a new
+	 * sub class loader otherwise.
+	 */
+	private void addJar(File jarFile) {
+		SharedLibraryClassLoader sharedLoader = registry.acquire(jarFile, this.parent);
+		
+		if(sharedLoader != null) {
+			sharedLibraries.put(jarFile, new SharedLibrary(jarFile, sharedLoader));
+		} else {
+			subClassLoaders.put(jarFile, new SubApplicationClassLoader(this, jarFile, this.parent));
+		}
+		
+		index(jarFile);
+	}
+	
+	/**
+	 * Adds packages of all classes and resources in the specified jar library to the package index.
+	 */
+	private void index(File jarFile) {
+		HashSet<String> jarPackages = new HashSet<String>();
+		JarFile jar = null;
+		
+		try {
+			jar = new JarFile(jarFile);
+			Enumeration<JarEntry> entries = jar.entries();
+			
+			while(entries.hasMoreElements()) {
+				String name = entries.nextElement().getName();
+				int index = name.lastIndexOf('/');
+				jarPackages.add(index > 0 ? name.substring(0, index) : "");
+			}
+		} catch(IOException e) {
+			LogMF.warn(logger, "Unable to index jar library {0}", jarFile.getAbsolutePath());
+		} finally {
+			if(jar != null) {
+				try { jar.close(); } catch(IOException e) {}
+			}
 		}
 		
-		return newClassLoaders;
+		synchronized(this.indexLock) {
+			HashMap<String, File[]> packages = unindex(this.packages, jarFile);
+			
+			for(String jarPackage : jarPackages) {
+				File[] jarFiles = packages.get(jarPackage);
+				jarFiles = jarFiles != null ? Arrays.copyOf(jarFiles, jarFiles.length + 1) : new File[1];
+				jarFiles[jarFiles.length - 1] = jarFile;
+				Arrays.sort(jarFiles);
+				packages.put(jarPackage, jarFiles);
+			}
+			
+			this.packages = packages;
+		}
+	}
+	
+	private void unindex(File jarFile) {
+		synchronized(this.indexLock) {
+			this.packages = unindex(this.packages, jarFile);
+		}
+	}
+	
+	/**
+	 * Returns a copy of the specified package index without the specified jar library.
+	 */
+	private static HashMap<String, File[]> unindex(HashMap<String, File[]> packages, File jarFile) {
+		HashMap<String, File[]> outPackages = new HashMap<String, File[]>(packages.size() * 2);
+		
+		for(String jarPackage : packages.keySet()) {
+			File[] jarFiles = packages.get(jarPackage);
+			File[] outJarFiles = new File[jarFiles.length];
+			int count = 0;
+			
+			for(File file : jarFiles) {
+				if(!file.equals(jarFile)) {
+					outJarFiles[count++] = file;
+				}
+			}
+			
+			if(count > 0) {
+				outPackages.put(jarPackage, count == jarFiles.length ? jarFiles : Arrays.copyOf(outJarFiles, count));
+			}
+		}
+		
+		return outPackages;
 	}
 	
 	/**
@@ -383,27 +735,41 @@ public class ApplicationClassLoader extends ClassLoader {
 	 * @param webAppDir the web application directory
 	 * @param initial whether or not the call to this method is the initial setup of this class loader
 	 */
-    private void setupSubClassLoaders(File webAppDir, boolean initial) {
+	private void setupSubClassLoaders(File webAppDir, boolean initial) {
 		File webInfDir = new File(webAppDir, "WEB-INF");
 		
 		if(initial) {
-			File classesDir = new File(webInfDir, "classes");
+			this.classesDir = new File(webInfDir, "classes");
 			SubApplicationClassLoader classLoader = new SubApplicationClassLoader(this, classesDir, this.parent);
 			subClassLoaders.put(classesDir, classLoader);
 		}
-
-		File libDir = new File(webInfDir, "lib");
-		File[] possibleLibs = libDir.listFiles();
-
-		if(possibleLibs != null) {
-			for(File possibleLib : possibleLibs) {
-				String name = possibleLib.getName();
-				
-				if(possibleLib.isFile() && name.endsWith(".jar") && !subClassLoaders.containsKey(possibleLib)) {
-					SubApplicationClassLoader classLoader = new SubApplicationClassLoader(this, possibleLib, this.parent);
-					subClassLoaders.put(possibleLib, classLoader);
-				}
-			}
-		}    	
-    }
+		
+		checkNewSubClassLoaders();
+	}
+	
+	/**
+	 * A jar library in this web application loaded by a shared class loader.
+	 * 
+	 * @author Bojan Pisler, NetDigital Sweden AB
+	 *
+	 */
+	private static class SharedLibrary {
+		
+		private File jarFile;
+		
+		private long lastModified;
+		
+		private SharedLibraryClassLoader loader;
+		
+		private SharedLibrary(File jarFile, SharedLibraryClassLoader loader) {
+			super();
+			this.jarFile = jarFile;
+			this.lastModified = jarFile.lastModified();
+			this.loader = loader;
+		}
+		
+		private boolean isModified() {
+			return jarFile.lastModified() != this.lastModified;
+		}
+	}
 }
@@ -21,9 +21,13 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Enumeration;
-import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 
@@ -41,6 +45,12 @@ class ApplicationConfigurator {
 	
 	private String name;
 	
+	private boolean production;
+	
+	private File servicesDir;
+	
+	private Set<ClassInfo> classes;
+	
 	ApplicationConfigurator(File warFileOrAppDir) {
 		this.warFileOrAppDir = warFileOrAppDir;
 		this.name = extractApplicationName(warFileOrAppDir);
@@ -61,18 +71,67 @@ class ApplicationConfigurator {
 		return localName;
 	}
 	
+	/**
+	 * Sets whether or not configured applications are deployed in production mode.
+	 * 
+	 * @param production <code>true</code> for production mode, <code>false</code> otherwise
+	 * @see ApplicationImpl#isProduction()
+	 */
+	void setProduction(boolean production) {
+		this.production = production;
+	}
+	
+	/**
+	 * Sets the server owned directory where generated controller service classes of configured applications
+	 * are cached in production mode.
+	 * 
+	 * @param servicesDir the controller services cache directory or <code>null</code> to not cache
+	 * @see ApplicationImpl#setServicesDir(File)
+	 */
+	void setServicesDir(File servicesDir) {
+		this.servicesDir = servicesDir;
+	}
+	
 	boolean isWarApp() {
 		return warFileOrAppDir.isFile();
 	}
 	
+	/**
+	 * Deploys, loads and publishes the application from the war archive or directory of this configurator.
+	 * 
+	 * @return the published application
+	 * @throws ApplicationException if unable to deploy or load application
+	 */
 	ApplicationImpl configure() throws ApplicationException {
-		return configure(this.warFileOrAppDir);
+		ApplicationImpl application = deploy();
+		boolean done = false;
+		
+		try {
+			load(application);
+			application.publish();
+			done = true;
+			return application;
+		} finally {
+			if(!done) {
+				application.unpublish();
+			}
+		}
 	}
 	
-	private ApplicationImpl configure(File warFileOrAppDir) throws ApplicationException {
+	/**
+	 * Creates an application deployed from the war archive or directory of this configurator. War archives
+	 * are extracted in parallel. Classes found in the classes directory and jar libraries are kept for
+	 * {@link #load(ApplicationImpl)}.
+	 * 
+	 * @return the deployed application
+	 * @throws ApplicationException if unable to deploy application
+	 */
+	ApplicationImpl deploy() throws ApplicationException {
+		long startNanos = System.nanoTime();
 		ApplicationImpl application = new ApplicationImpl(this.name);
-		
-		HashSet<ClassInfo> classes = new HashSet<ClassInfo>();
+		application.setProduction(this.production);
+		application.setServicesDir(this.servicesDir);
+		this.classes = Collections.newSetFromMap(new ConcurrentHashMap<ClassInfo, Boolean>());
 		
 		if(warFileOrAppDir.isFile()) {
 			deployFromWar(application, warFileOrAppDir, classes);
@@ -80,27 +139,34 @@ class ApplicationConfigurator {
 			deployFromDir(application, warFileOrAppDir, classes);
 		}
 		
-		boolean done = false;
+		application.addStartupPhase("deploy", startNanos);
+		return application;
+	}
+	
+	/**
+	 * Loads classes found when the specified application was deployed and adds all controllers and services
+	 * to the application. The caller unpublishes the application if loading fails.
+	 * 
+	 * @param application the deployed application
+	 * @throws ApplicationException if unable to load application classes
+	 */
+	void load(ApplicationImpl application) throws ApplicationException {
+		long startNanos = System.nanoTime();
 		ClassLoader previousClassLoader = Thread.currentThread().getContextClassLoader();
 		
 		try {
 			ClassLoader classLoader = application.getClassLoader(); 
 			Thread.currentThread().setContextClassLoader(classLoader);
 			findServiceClasses(application, classLoader, classes);
-			done = true;
-			return application;
+			application.addStartupPhase("load", startNanos);
 		} catch(IOException e) {
 			throw new ApplicationException("Unable to publish application '" + this.name + "'", e);
 		} finally {
 			Thread.currentThread().setContextClassLoader(previousClassLoader);
-			
-			if(!done) {
-				application.unpublish();
-			}
 		}
 	}
 	
-	private void deployFromWar(ApplicationImpl application, File warFile, HashSet<ClassInfo> classes) throws ApplicationException {
+	private void deployFromWar(ApplicationImpl application, File warFile, Set<ClassInfo> classes) throws ApplicationException {
 		File tmpDir = createTempDir();
 		boolean done = false;
 		JarFile jar = null;
@@ -108,24 +174,14 @@ class ApplicationConfigurator {
 		try {
 			jar = new JarFile(warFile);
 			Enumeration<JarEntry> entries = jar.entries();
+			List<JarEntry> files = new ArrayList<JarEntry>();
 			
 			while(entries.hasMoreElements()) {
 				JarEntry entry = entries.nextElement();
 				String name = entry.getName();
 
 				if(!entry.isDirectory()) {
-					writeEntry(jar, entry, tmpDir);
-					
-					if(name.startsWith("WEB-INF/lib/") && name.endsWith(".jar")) {
-						findJarClasses(tmpDir, name, classes);
-					}
-				} else if(name.equals("WEB-INF/classes/")) {
-					File classPathDir = new File(tmpDir, name);
-					String classPathDirName = classPathDir.getAbsolutePath();
-					
-					if(!classPathDirName.endsWith("/")) {
-						classPathDirName = classPathDirName + "/";
-					}
+					files.add(entry);
 				}
 				
 				if(name.startsWith("WEB-INF/classes/") && name.endsWith(".class")) {
@@ -135,6 +191,13 @@ class ApplicationConfigurator {
 				}
 			}
 			
+			AtomicReference<IOException> failure = new AtomicReference<IOException>();
+			ParallelTasks.invoke(new ExtractEntries(jar, files, tmpDir, 0, files.size(), failure));
+			
+			if(failure.get() != null) {
+				throw failure.get();
+			}
+			
 			application.setBaseDir(tmpDir);
 			application.setWar(true);			
 			done = true;
@@ -151,7 +214,7 @@ class ApplicationConfigurator {
 		}
 	}
 	
-	private void deployFromDir(ApplicationImpl application, File appDir, HashSet<ClassInfo> classes) throws ApplicationException {
+	private void deployFromDir(ApplicationImpl application, File appDir, Set<ClassInfo> classes) throws ApplicationException {
 		application.setBaseDir(appDir);
 		application.setDirectory(true);
 		ArrayList<String> files = new ArrayList<String>();
@@ -196,7 +259,7 @@ class ApplicationConfigurator {
 		}
 	}
 	
-	private void findJarClasses(File appDir, String jarName, HashSet<ClassInfo> classes) throws IOException {
+	private void findJarClasses(File appDir, String jarName, Set<ClassInfo> classes) throws IOException {
 		File jarFile = new File(appDir, jarName);
 		JarFile jar = new JarFile(jarFile);
 		
@@ -220,7 +283,7 @@ class ApplicationConfigurator {
 		}
 	}
 	
-	private void findServiceClasses(ApplicationImpl application, ClassLoader classLoader, HashSet<ClassInfo> classes) throws ApplicationException, IOException {
+	private void findServiceClasses(ApplicationImpl application, ClassLoader classLoader, Set<ClassInfo> classes) throws ApplicationException, IOException {
 		try {
 			for(ClassInfo classFile : classes) {
 				String className = classFile.getClassName();
@@ -311,6 +374,67 @@ class ApplicationConfigurator {
 		return appDir;
 	}
 	
+	/**
+	 * Extracts a range of entries in a war archive and finds classes in extracted jar libraries. Ranges
+	 * larger than {@link #MAX_ENTRIES} entries are split in two and extracted in parallel. The first
+	 * failure is kept and stops extraction of remaining entries.
+	 * 
+	 * @author Bojan Pisler, NetDigital Sweden AB
+	 *
+	 */
+	private class ExtractEntries extends RecursiveAction {
+		
+		private static final long serialVersionUID = 1L;
+		
+		private static final int MAX_ENTRIES = 8;
+		
+		private JarFile jar;
+		
+		private List<JarEntry> entries;
+		
+		private File appDir;
+		
+		private int start;
+		
+		private int end;
+		
+		private AtomicReference<IOException> failure;
+		
+		private ExtractEntries(JarFile jar, List<JarEntry> entries, File appDir, int start, int end, AtomicReference<IOException> failure) {
+			super();
+			this.jar = jar;
+			this.entries = entries;
+			this.appDir = appDir;
+			this.start = start;
+			this.end = end;
+			this.failure = failure;
+		}
+		
+		protected void compute() {
+			if(this.end - this.start > MAX_ENTRIES) {
+				int middle = (this.start + this.end) >>> 1;
+				invokeAll(new ExtractEntries(this.jar, this.entries, this.appDir, this.start, middle, this.failure), 
+						new ExtractEntries(this.jar, this.entries, this.appDir, middle, this.end, this.failure));
+				return;
+			}
+			
+			for(int i = this.start; i < this.end && failure.get() == null; i++) {
+				JarEntry entry = entries.get(i);
+				String name = entry.getName();
+				
+				try {
+					writeEntry(this.jar, entry, this.appDir);
+					
+					if(name.startsWith("WEB-INF/lib/") && name.endsWith(".jar")) {
+						findJarClasses(this.appDir, name, classes);
+					}
+				} catch(IOException e) {
+					failure.compareAndSet(null, e);
+				}
+			}
+		}
+	}
+	
 	private class ClassInfo {
 		
 		private String className;
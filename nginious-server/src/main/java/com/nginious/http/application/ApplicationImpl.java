@@ -20,6 +20,7 @@ import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -27,6 +28,7 @@ import java.util.List;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import com.nginious.http.HttpException;
 import com.nginious.http.HttpMethod;
@@ -35,7 +37,8 @@ import com.nginious.http.HttpResponse;
 import com.nginious.http.HttpStatus;
 import com.nginious.http.annotation.Controller;
 import com.nginious.http.annotation.Service;
-import com.nginious.http.server.Header;
+import com.nginious.http.common.PathParameters;
+import com.nginious.http.server.HttpDate;
 import com.nginious.http.xsp.CompilableXspService;
 import com.nginious.http.xsp.XspCompiler;
 import com.nginious.http.xsp.XspException;
@@ -69,12 +72,20 @@ class ApplicationImpl implements Application {
 	
 	private boolean memory;
 	
+	private boolean production;
+	
 	private File baseDir;
 	
+	private File servicesDir;
+	
 	private ControllerServiceFactory controllerFactory;
 	
 	private ConcurrentHashMap<String, HttpService> executableControllers;
 	
+	private Set<String> inlineControllers;
+	
+	private Set<String> uncompressedControllers;
+	
 	private ConcurrentHashMap<String, ServiceRunner> services;
 	
 	private HashSet<Object> addedControllers;
@@ -85,6 +96,20 @@ class ApplicationImpl implements Application {
 	
 	private ApplicationClassLoader classLoader;
 	
+	private StaticContentCache staticContentCache;
+	
+	private volatile HttpRouter router;
+	
+	private volatile boolean published;
+	
+	private volatile ControllerIndex controllerIndex;
+	
+	private volatile long controllerIndexVersion;
+	
+	private volatile ApplicationChangeTracker changeTracker;
+	
+	private List<ApplicationStartupPhase> startupPhases;
+	
 	/*
 	 * Constructs a new application with the specified name.
 	 */
@@ -96,10 +121,14 @@ class ApplicationImpl implements Application {
 		controllerFactory.setApplication(this);
 		
 		this.executableControllers = new ConcurrentHashMap<String, HttpService>();
+		this.inlineControllers = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+		this.uncompressedControllers = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
 		this.services = new ConcurrentHashMap<String, ServiceRunner>();
 		this.addedControllers = new HashSet<Object>();
 		this.allowedControllerMethods = new HashMap<String, String>();
 		this.filterControllers = new TreeSet<HttpControllerFilter>();
+		this.router = new HttpRouter.Builder().build();
+		this.startupPhases = new CopyOnWriteArrayList<ApplicationStartupPhase>();
 	}
 	
 	public String getName() {
@@ -117,6 +146,15 @@ class ApplicationImpl implements Application {
 	public void setBaseDir(File baseDir) {
 		this.baseDir = baseDir;
 		classLoader.setWebAppDir(baseDir);
+		updateControllerServiceCache();
+	}
+	
+	void setStaticContentCache(StaticContentCache staticContentCache) {
+		this.staticContentCache = staticContentCache;
+	}
+	
+	StaticContentCache getStaticContentCache() {
+		return this.staticContentCache;
 	}
 	
 	void setClassLoader(ApplicationClassLoader classLoader) {
@@ -151,6 +189,45 @@ class ApplicationImpl implements Application {
 		this.memory = memory;
 	}
 	
+	/**
+	 * Returns whether or not this application is deployed in production mode where classes are not expected
+	 * to change after deployment and no reload checks are made.
+	 * 
+	 * @return <code>true</code> if deployed in production mode, <code>false</code> otherwise
+	 */
+	boolean isProduction() {
+		return this.production;
+	}
+	
+	void setProduction(boolean production) {
+		this.production = production;
+		updateControllerServiceCache();
+	}
+	
+	/**
+	 * Sets the server owned directory where generated controller service classes are cached.
+	 * 
+	 * @param servicesDir the controller services cache directory or <code>null</code> to not cache
+	 */
+	void setServicesDir(File servicesDir) {
+		this.servicesDir = servicesDir;
+		updateControllerServiceCache();
+	}
+	
+	/**
+	 * Caches generated controller service classes on disk when deployed in production mode, where classes
+	 * don't change after deployment. Precompiled controller services in the web application are used before
+	 * the server owned cache directory.
+	 */
+	private void updateControllerServiceCache() {
+		if(this.production && this.baseDir != null) {
+			File precompiledDir = new File(this.baseDir, ControllerServiceCache.SERVICES_DIR);
+			controllerFactory.setCache(new ControllerServiceCache(this.servicesDir, precompiledDir));
+		} else {
+			controllerFactory.setCache(null);
+		}
+	}
+	
 	boolean isUnpacked() {
 		return !this.war && !this.memory;
 	}
@@ -159,6 +236,21 @@ class ApplicationImpl implements Application {
 		return this.publishTime;
 	}
 	
+	/**
+	 * Adds a startup phase with the specified name that started at the specified time and ended now. Phases
+	 * may run in parallel and are added in the order they end.
+	 * 
+	 * @param name the phase name
+	 * @param startNanos the phase start time from {@link System#nanoTime()}
+	 */
+	void addStartupPhase(String name, long startNanos) {
+		startupPhases.add(new ApplicationStartupPhase(name, (System.nanoTime() - startNanos) / 1000000L));
+	}
+	
+	List<ApplicationStartupPhase> getStartupPhases() {
+		return this.startupPhases;
+	}
+	
 	public void addController(Object controller) throws ApplicationException {
 		addController(controller, null, false);
 	}
@@ -170,9 +262,10 @@ class ApplicationImpl implements Application {
 			String pattern = mapping.pattern();
 			ControllerService invokerService = controllerFactory.createControllerService(controller);
 			
-			if(reloadable) {
+			if(reloadable && !this.production) {
 				String className = controller.getClass().getName();
-				HttpService reloadableService = new ReloadableControllerService(controllerFactory, invokerService, this.classLoader, className, classFile);
+				HttpService reloadableService = new ReloadableControllerService(controllerFactory, invokerService, this.classLoader, className, 
+						classFile, getChangeTracker());
 				addHttpService(path, reloadableService, invokerService.getHttpMethods(), pattern, mapping);
 			} else {
 				addHttpService(path, invokerService, invokerService.getHttpMethods(), pattern, mapping);
@@ -184,18 +277,85 @@ class ApplicationImpl implements Application {
 		}		
 	}
 		
-	private void addHttpService(String path, HttpService service, String methods, String pattern, Controller mapping) throws ApplicationException {
-		if(executableControllers.containsKey(path)) {
+	private synchronized void addHttpService(String path, HttpService service, String methods, String pattern, Controller mapping) throws ApplicationException {
+		if(executableControllers.containsKey(path) || isBound(path)) {
 			throw new ApplicationException("Another HTTP service is already bound to path '" + path + "'");
 		}
 		
 		if(path != null && !path.equals("")) {
 			executableControllers.put(path, service);
 			allowedControllerMethods.put(path, methods);
+			
+			if(mapping.inline()) {
+				inlineControllers.add(path);
+			}
+			
+			if(!mapping.compress()) {
+				uncompressedControllers.add(path);
+			}
 		} else if(pattern != null && !pattern.equals("")) {
 			validateFilterMethods(service.getClass().getName(), methods);
 			filterControllers.add(new HttpControllerFilter(service, mapping));
 		}
+		
+		if(this.published) {
+			rebuildRouter();
+		}
+	}
+	
+	/**
+	 * Returns whether or not a HTTP service is bound to a path which matches the same requests as the specified
+	 * path with parameter segments.
+	 */
+	private boolean isBound(String path) {
+		if(path == null || !HttpRouter.isTemplate(path)) {
+			return false;
+		}
+		
+		String normalized = HttpRouter.normalize(path);
+		
+		for(String boundPath : executableControllers.keySet()) {
+			if(HttpRouter.normalize(boundPath).equals(normalized)) {
+				return true;
+			}
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * Builds a new router from the bound HTTP services, filters and static content of this application and
+	 * replaces the current router with it. Requests being routed while the router is rebuilt use the previous
+	 * router. HTTP services added before this application is published are routed once the application is
+	 * published.
+	 */
+	private synchronized void rebuildRouter() {
+		HttpRouter.Builder builder = new HttpRouter.Builder();
+		
+		for(HttpControllerFilter filter : this.filterControllers) {
+			builder.addFilter(filter.getMapping().pattern(), filter.getService());
+		}
+		
+		for(String path : executableControllers.keySet()) {
+			HttpService service = executableControllers.get(path);
+			
+			if(service != null) {
+				builder.addRoute(path, service, allowedControllerMethods.get(path), 
+						inlineControllers.contains(path), !uncompressedControllers.contains(path));
+			}
+		}
+		
+		if(isWar() && this.baseDir != null) {
+			File[] files = baseDir.listFiles();
+			
+			if(files != null) {
+				for(File file : files) {
+					builder.addStatic("/" + file.getName(), file.isDirectory());
+				}
+			}
+		}
+		
+		this.router = builder.build();
 	}
 
 	public Object removeController(Object controller) {
@@ -216,27 +376,23 @@ class ApplicationImpl implements Application {
 		return null;
 	}
 	
-	public Object removeController(String path) {
+	public synchronized Object removeController(String path) {
 		HttpService service = executableControllers.remove(path);
+		inlineControllers.remove(path);
+		uncompressedControllers.remove(path);
 		
 		if(service != null) {
-			if(service instanceof ControllerChain) {
-				HttpService[] chainedServices = ((ControllerChain)service).getServices();
-				
-				for(int i = chainedServices.length - 1; i > 0; i--) {
-					if(chainedServices[i] instanceof ControllerService) {
-						ControllerService controllerService = (ControllerService)chainedServices[i];
-						Object controller = controllerService.getController();
-						addedControllers.remove(controller);						
-					}
-				}
-			} else {
+			if(service instanceof ControllerService) {
 				ControllerService controllerService = (ControllerService)service;
 				Object controller = controllerService.getController();
 				addedControllers.remove(controller);
 			}
 			
 			allowedControllerMethods.remove(path);
+			
+			if(this.published) {
+				rebuildRouter();
+			}
 		}
 		
 		return service;
@@ -300,36 +456,19 @@ class ApplicationImpl implements Application {
 	}
 	
 	void publish() {
-		applyFilters();
-	}
-	
-	private void applyFilters() {
-		for(HttpControllerFilter filter : this.filterControllers) {
-			Set<String> paths = executableControllers.keySet();
-			
-			for(String path : paths) {
-				applyFilter(filter, path);
-			}
-		}		
-	}
-	
-	private void applyFilter(HttpControllerFilter filter, String path) {
-		if(path.matches(filter.getMapping().pattern())) {
-			HttpService service = executableControllers.get(path);
-			
-			if(service instanceof ControllerChain) {
-				ControllerChain chain = (ControllerChain)service;
-				chain.addServiceFirst(filter.getService());
-			} else {
-				ControllerChain chain = new ControllerChain();
-				chain.addServiceLast(filter.getService());
-				chain.addServiceLast(service);
-				executableControllers.put(path, chain);
-			}
-		}		
+		if(isUnpacked() && this.baseDir != null && !this.production) {
+			getControllerIndex();
+		}
+		
+		this.published = true;
+		rebuildRouter();
 	}
 	
 	void unpublish() {
+		if(this.changeTracker != null) {
+			changeTracker.stop();
+		}
+		
 		if(isWar()) {
 			cleanup(this.baseDir);
 		}
@@ -337,6 +476,12 @@ class ApplicationImpl implements Application {
 		for(ServiceRunner runner : services.values()) {
 			runner.stop();
 		}
+		
+		if(this.staticContentCache != null) {
+			staticContentCache.clear();
+		}
+		
+		classLoader.release();
 	}
 	
 	private void cleanup(File dir) {
@@ -353,25 +498,82 @@ class ApplicationImpl implements Application {
 		dir.delete();
 	}
 	
+	/**
+	 * Routes the specified local path with the current router of this application.
+	 * 
+	 * @param localPath the path within this application
+	 * @return the matching route or <code>null</code> if no HTTP service is bound to the path
+	 */
+	HttpRouter.Route route(String localPath) {
+		return router.route(localPath);
+	}
+	
+	/**
+	 * Returns whether or not requests for the specified route are bound to a controller which executes
+	 * requests on the thread that parsed the request.
+	 * 
+	 * @param route the route for the request or <code>null</code> if not bound to a HTTP service
+	 * @return <code>true</code> if requests are executed inline, <code>false</code> otherwise
+	 */
+	boolean isInline(HttpRouter.Route route) {
+		return route != null && route.isInline();
+	}
+	
+	/**
+	 * Returns whether or not responses for the specified route and local path may be compressed. Responses from
+	 * controllers and XSP pages are compressed unless the controller has the compress attribute unset. Static
+	 * content is never compressed while serving requests.
+	 * 
+	 * @param route the route for the local path or <code>null</code> if not bound to a HTTP service
+	 * @param localPath the path within this application
+	 * @return <code>true</code> if responses may be compressed, <code>false</code> otherwise
+	 */
+	boolean isCompressed(HttpRouter.Route route, String localPath) {
+		if(route != null) {
+			return route.isCompressed();
+		}
+		
+		return localPath.endsWith(".xsp");
+	}
+	
 	HttpServiceResult execute(String localPath, HttpRequest request, HttpResponse response) throws HttpException, IOException {
+		return execute(localPath, route(localPath), request, response);
+	}
+	
+	/**
+	 * Executes the specified request for the specified local path which has already been routed to the specified
+	 * route.
+	 * 
+	 * @param localPath the path within this application
+	 * @param route the route for the local path or <code>null</code> if not bound to a HTTP service
+	 * @param request the HTTP request
+	 * @param response the HTTP response
+	 * @return a result indicating if execution is done, should continue or is asynchronous
+	 * @throws HttpException if a HTTP error occurs while executing
+	 * @throws IOException if an I/O error occurs
+	 */
+	HttpServiceResult execute(String localPath, HttpRouter.Route route, HttpRequest request, HttpResponse response) throws HttpException, IOException {
 		ClassLoader previousClassLoader = Thread.currentThread().getContextClassLoader();
 		
 		try {
 			Thread.currentThread().setContextClassLoader(this.classLoader);
-			HttpService httpService = executableControllers.get(localPath);
 			HttpMethod method = request.getMethod();
 			
-			if(httpService != null && !method.equals(HttpMethod.OPTIONS)) {
+			if(route != null && !method.equals(HttpMethod.OPTIONS)) {
+				if(route.hasParameters()) {
+					request.setAttribute(PathParameters.ATTRIBUTE, route.getParameters(localPath));
+				}
+				
 				try {
-					return httpService.invoke(request, response);
+					return route.getService().invoke(request, response);
 				} catch(HttpControllerRemovedException e) {
-					executableControllers.remove(localPath);
+					removeRoute(route.getPath());
 					throw new HttpException(e.getStatus(), e.getMessage(), e.getCause());
 				}
 			}
 			
-			if(httpService != null && method.equals(HttpMethod.OPTIONS)) {
-				String allowed = allowedControllerMethods.get(localPath);
+			if(route != null && method.equals(HttpMethod.OPTIONS)) {
+				String allowed = route.getAllowedMethods();
 				response.setStatus(HttpStatus.OK);
 				response.setContentLength(0);
 				response.addHeader("Allow", allowed);
@@ -383,13 +585,16 @@ class ApplicationImpl implements Application {
 			}
 			
 			if(isUnpacked() && !staticContentExists(localPath)) {
-				if(findController(localPath)) {
+				if(!this.production && findController(localPath)) {
 					execute(localPath, request, response);
 				} else if(localPath.equals("/favicon.ico")) {
 					sendEmptyFavicon(response);
 				} else {
 					throw new HttpException(HttpStatus.NOT_FOUND, "/" + this.name + localPath);	
 				}
+			} else if(isWar() && localPath.length() > 1 && !this.router.isStatic(localPath)) {
+				// Content of war applications doesn't change, no need to check the file system
+				throw new HttpException(HttpStatus.NOT_FOUND, "/" + this.name + localPath);
 			} else {
 				executeStaticContent(request, response, localPath);
 			}
@@ -400,65 +605,103 @@ class ApplicationImpl implements Application {
 		}
 	}
 	
+	/**
+	 * Removes the HTTP service bound to the specified path after its controller has been removed.
+	 */
+	private synchronized void removeRoute(String path) {
+		executableControllers.remove(path);
+		inlineControllers.remove(path);
+		uncompressedControllers.remove(path);
+		rebuildRouter();
+	}
+	
 	static void sendEmptyFavicon(HttpResponse response) throws IOException {
 		response.setStatus(HttpStatus.OK);
 		response.setContentType("image/vnd.microsoft.icon");
 		response.setContentLength(2);
 		long oneHourFromNow = System.currentTimeMillis() + 3600000L; 
-		response.addHeader("Expires", Header.formatDate(new Date(oneHourFromNow)));
+		response.addHeader("Expires", HttpDate.format(oneHourFromNow));
 		OutputStream out = response.getOutputStream();
 		out.write(FAVICON_EMPTY);
 	}
 	
+	/**
+	 * Finds a controller bound to the specified path which has been added to the classes directory after this
+	 * application was published. Controllers are looked up in the controller index, which is refreshed before
+	 * giving up if the change tracker has seen any changes since the last refresh. Only a found controller class
+	 * is loaded.
+	 */
 	private boolean findController(String localPath) {
-		List<String> files = new ArrayList<String>();
-		File classesBaseDir = new File(this.baseDir, "WEB-INF/classes");
-		createFileList(classesBaseDir, classesBaseDir, files);
+		ControllerIndex index = getControllerIndex();
+		ControllerIndex.Entry entry = index.lookup(localPath);
+		long version = getChangeTracker().getVersion();
 		
-		for(String file : files) {
+		if(entry == null && version != this.controllerIndexVersion) {
+			this.controllerIndexVersion = version;
 			
-			if(file.endsWith(".class")) {
-				String className = file.substring(1, file.length() - 6).replace('/', '.');
-				
-				try {
-					Class<?> clazz = classLoader.loadClass(className);
-					Controller mapping = clazz.getAnnotation(Controller.class);
-					
-					if(mapping != null) {
-						String path = mapping.path();
-						
-						if(localPath.equals(path)) {
-							Object controller = clazz.newInstance();
-							File classFile = new File(classesBaseDir, file);
-							addController(controller, classFile, true);
-							return true;
-						}
-						
-					}
-				} catch(ClassNotFoundException e) {
-				} catch(Exception e) {}
+			if(index.refresh()) {
+				entry = index.lookup(localPath);
 			}
 		}
 		
+		if(entry == null) {
+			return false;
+		}
+		
+		try {
+			Class<?> clazz = classLoader.loadClass(entry.getClassName());
+			Controller mapping = clazz.getAnnotation(Controller.class);
+			
+			if(mapping == null || !mapping.path().equals(entry.getPath())) {
+				// Class file rewritten in place since it was indexed
+				index.update(entry.getClassFile());
+				return false;
+			}
+			
+			Object controller = clazz.newInstance();
+			addController(controller, entry.getClassFile(), true);
+			return true;
+		} catch(ClassNotFoundException e) {
+		} catch(Exception e) {}
+		
 		return false;
 	}
 	
-	private void createFileList(File baseDir, File dir, List<String> files) {
-		if(!dir.exists()) {
-			return;
+	private ControllerIndex getControllerIndex() {
+		ControllerIndex index = this.controllerIndex;
+		
+		if(index == null) {
+			synchronized(this) {
+				index = this.controllerIndex;
+				
+				if(index == null) {
+					index = new ControllerIndex(new File(this.baseDir, "WEB-INF/classes"));
+					this.controllerIndexVersion = getChangeTracker().getVersion();
+					index.refresh();
+					this.controllerIndex = index;
+				}
+			}
 		}
 		
-		File[] subFiles = dir.listFiles();
+		return index;
+	}
+	
+	private ApplicationChangeTracker getChangeTracker() {
+		ApplicationChangeTracker tracker = this.changeTracker;
 		
-		for(File subFile : subFiles) {
-			String subFileName = subFile.getAbsolutePath();
-			String baseDirName = baseDir.getAbsolutePath();
-			files.add(subFileName.substring(baseDirName.length()));
-			
-			if(subFile.isDirectory()) {
-				createFileList(baseDir, subFile, files);
+		if(tracker == null) {
+			synchronized(this) {
+				tracker = this.changeTracker;
+				
+				if(tracker == null) {
+					tracker = new ApplicationChangeTracker(this.name, this.baseDir);
+					tracker.start();
+					this.changeTracker = tracker;
+				}
 			}
 		}
+		
+		return tracker;
 	}
 	
 	private HttpServiceResult compileAndExecuteHttpService(String localPath, HttpRequest request, HttpResponse response) throws IOException, HttpException {
@@ -483,14 +726,24 @@ class ApplicationImpl implements Application {
 				throw new HttpException(HttpStatus.NOT_FOUND, localPath);
 			}
 			
-			HttpService compilableService = new CompilableXspService(this.classLoader, service, webInfDir, xspFile, classesDir);
-			executableControllers.put(localPath, compilableService);
+			if(this.production) {
+				addXspService(localPath, service);
+			} else {
+				HttpService compilableService = new CompilableXspService(this.classLoader, service, webInfDir, xspFile, classesDir);
+				addXspService(localPath, compilableService);
+			}
+			
 			return service.invoke(request, response);
 		} catch(XspException e) {
 			throw new HttpException(HttpStatus.INTERNAL_SERVER_ERROR, "Compilation failed", e);
 		}
 	}
 	
+	private synchronized void addXspService(String localPath, HttpService service) {
+		executableControllers.put(localPath, service);
+		rebuildRouter();
+	}
+	
 	private void executeStaticContent(HttpRequest request, HttpResponse response, String localPath) throws IOException, HttpException {
 		File contentFile = new File(this.baseDir, localPath);
 		
@@ -509,6 +762,11 @@ class ApplicationImpl implements Application {
 			return;
 		}
 		
+		if(this.staticContentCache != null) {
+			staticContentCache.execute(this.baseDir, localPath, request, response);
+			return;
+		}
+		
 		StaticContent content = new StaticContent(this.baseDir, localPath);
 		content.execute(request, response);
 	}
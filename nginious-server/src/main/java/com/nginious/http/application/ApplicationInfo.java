@@ -37,12 +37,21 @@ public class ApplicationInfo {
 	
 	private Collection<ApplicationVersion> versions;
 	
+	private int sharedLibraries;
+	
+	private int sharedClasses;
+	
+	private long sharedBytes;
+	
+	private Collection<ApplicationStartupPhase> startupPhases;
+	
 	/**
 	 * Constructs a new application info.
 	 */
 	public ApplicationInfo() {
 		super();
 		this.versions = new ArrayList<ApplicationVersion>();
+		this.startupPhases = new ArrayList<ApplicationStartupPhase>();
 	}
 	
 	/**
@@ -96,4 +105,79 @@ public class ApplicationInfo {
 	public Collection<ApplicationVersion> getVersions() {
 		return this.versions;
 	}
+	
+	/**
+	 * Sets number of jar libraries in the application loaded by class loaders shared with other applications.
+	 * 
+	 * @param sharedLibraries the number of shared jar libraries
+	 */
+	public void setSharedLibraries(int sharedLibraries) {
+		this.sharedLibraries = sharedLibraries;
+	}
+	
+	/**
+	 * Returns number of jar libraries in the application loaded by class loaders shared with other applications.
+	 * 
+	 * @return the number of shared jar libraries
+	 */
+	public int getSharedLibraries() {
+		return this.sharedLibraries;
+	}
+	
+	/**
+	 * Sets number of classes the application has reused from shared jar libraries instead of defining them again.
+	 * 
+	 * @param sharedClasses the number of reused classes
+	 */
+	public void setSharedClasses(int sharedClasses) {
+		this.sharedClasses = sharedClasses;
+	}
+	
+	/**
+	 * Returns number of classes the application has reused from shared jar libraries instead of defining them again.
+	 * 
+	 * @return the number of reused classes
+	 */
+	public int getSharedClasses() {
+		return this.sharedClasses;
+	}
+	
+	/**
+	 * Sets total class file size in bytes of classes reused from shared jar libraries, an estimate of the
+	 * metaspace saved for the application.
+	 * 
+	 * @param sharedBytes the reused class file bytes
+	 */
+	public void setSharedBytes(long sharedBytes) {
+		this.sharedBytes = sharedBytes;
+	}
+	
+	/**
+	 * Returns total class file size in bytes of classes reused from shared jar libraries, an estimate of the
+	 * metaspace saved for the application.
+	 * 
+	 * @return the reused class file bytes
+	 */
+	public long getSharedBytes() {
+		return this.sharedBytes;
+	}
+	
+	/**
+	 * Sets startup phases for this application info to the specified collection of phases.
+	 * 
+	 * @param startupPhases collection of startup phases
+	 */
+	public void setStartupPhases(Collection<ApplicationStartupPhase> startupPhases) {
+		this.startupPhases = startupPhases;
+	}
+	
+	/**
+	 * Returns time spent in each phase when the application that this application info represents was
+	 * published.
+	 * 
+	 * @return collection of startup phases
+	 */
+	public Collection<ApplicationStartupPhase> getStartupPhases() {
+		return this.startupPhases;
+	}
 }
@@ -21,9 +21,12 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import org.apache.log4j.LogMF;
 import org.apache.log4j.Logger;
@@ -35,6 +38,7 @@ import com.nginious.http.HttpStatus;
 import com.nginious.http.common.PathParameters;
 import com.nginious.http.server.HttpServerConfiguration;
 import com.nginious.http.stats.HttpRequestStatistics;
+import com.nginious.http.stats.ServerStatistics;
 import com.nginious.http.stats.WebSocketSessionStatistics;
 
 public class ApplicationManagerImpl implements ApplicationManager {
@@ -43,6 +47,8 @@ public class ApplicationManagerImpl implements ApplicationManager {
 	
 	private static final String DEFAULT_BACKUP_DIR_NAME = "backup";
 	
+	private static final String DEFAULT_SERVICES_DIR_NAME = "services";
+	
 	private static final String DEPLOY_APP_NAME = "admin";
 	
 	private static final String ROOT_APP = "root";
@@ -59,6 +65,8 @@ public class ApplicationManagerImpl implements ApplicationManager {
 	
 	private String backupDirName;
 	
+	private File servicesDir;
+	
 	private ConcurrentHashMap<String, ApplicationImpl> applications;
 	
 	private ApplicationClassLoader classLoader;
@@ -73,10 +81,22 @@ public class ApplicationManagerImpl implements ApplicationManager {
 	
 	private HttpService wsStatsService;
 	
+	private HttpService serverStatsService;
+	
 	private HttpRequestStatistics httpStatistics;
 	
 	private WebSocketSessionStatistics wsStatistics;
 	
+	private ServerStatistics serverStatistics;
+	
+	private long staticCacheSize;
+	
+	private String compressTypes;
+	
+	private int compressMinSize;
+	
+	private boolean production;
+	
 	public ApplicationManagerImpl(HttpServerConfiguration configuration) {
 		super();
 		this.applicationsDirName = configuration.getWebappsDir();
@@ -87,6 +107,10 @@ public class ApplicationManagerImpl implements ApplicationManager {
 		}
 		
 		this.password = configuration.getAdminPwd();
+		this.staticCacheSize = configuration.getStaticCacheSize();
+		this.compressTypes = configuration.getCompressTypes();
+		this.compressMinSize = configuration.getCompressMinSize();
+		this.production = "production".equals(configuration.getDeploymentMode());
 		this.tmpDirName = System.getProperty("java.io.tmpdir");
 		
 		if(this.applicationsDirName != null) {
@@ -99,6 +123,8 @@ public class ApplicationManagerImpl implements ApplicationManager {
 					this.backupDirName = null;
 				}
 			}
+			
+			this.servicesDir = createServicesDir(this.applicationsDirName);
 		} else {
 			this.applicationsDirName = this.tmpDirName;
 		}
@@ -117,6 +143,14 @@ public class ApplicationManagerImpl implements ApplicationManager {
 		this.wsStatistics = wsStatistics;
 	}
 	
+	public void setServerStatistics(ServerStatistics serverStatistics) {
+		this.serverStatistics = serverStatistics;
+	}
+	
+	/**
+	 * Starts this application manager by creating the admin services. Applications are started separately with
+	 * {@link #startApplications()} once the server is ready to route requests to them.
+	 */
 	public void start() {
 		logger.info("Start");
 		
@@ -124,59 +158,63 @@ public class ApplicationManagerImpl implements ApplicationManager {
 		this.applicationsService = createApplicationsService(this.password);
 		this.httpStatsService = createHttpStatsService(this.password);
 		this.wsStatsService = createWebSocketSessionStatsService(this.password);
+		this.serverStatsService = createServerStatsService(this.password);
+	}
+	
+	/**
+	 * Publishes the root application or all applications found in the applications directory. Applications
+	 * are started in parallel, each one is routable as soon as it is published. War archives of an application
+	 * are extracted in parallel and its static content is compressed while its classes are loaded. Applications
+	 * with the same name, an application directory and a war archive, are published one after another in listing
+	 * order. Returns when all applications have been published.
+	 */
+	public void startApplications() {
+		long startNanos = System.nanoTime();
+		LinkedHashMap<String, List<File>> appFiles = new LinkedHashMap<String, List<File>>();
 		
 		if(this.rootApplicationFileName != null) {
-			try {
-				publish("root", new File(this.rootApplicationFileName));
-			} catch(ApplicationException e) {
-				logger.warn("Unable to publish root web application", e);
+			addApplicationFile(appFiles, ROOT_APP, new File(this.rootApplicationFileName));
+		} else if(this.applicationsDirName != null && !applicationsDirName.equals(this.tmpDirName)) {
+			File[] files = new File(this.applicationsDirName).listFiles();
+			
+			if(files != null) {
+				for(File appFile : files) {
+					if(appFile.isDirectory()) {
+						addApplicationFile(appFiles, appFile.getName(), appFile);
+					} else if(appFile.isFile() && appFile.getName().endsWith(".war")) {
+						String appName = appFile.getName();
+						addApplicationFile(appFiles, appName.substring(0, appName.length() - 4), appFile);
+					}
+				}
 			}
 		}
 		
-		if(this.applicationsDirName == null || applicationsDirName.equals(this.tmpDirName)) {
+		if(appFiles.isEmpty()) {
 			return;
 		}
 		
-		File applicationsDir = new File(this.applicationsDirName);
-		
 		synchronized(deployLock) {
-			if(!applicationsDir.exists()) {
-				return;
-			}
+			ForkJoinPool pool = ParallelTasks.createPool();
 			
-			if(!applicationsDir.isDirectory()) {
-				return;
-			}
-			
-			File[] appFiles = applicationsDir.listFiles();
-			
-			for(File appFile : appFiles) {
-				if(appFile.isDirectory()) {
-					try {
-						publish(appFile.getName(), appFile);
-					} catch(ApplicationException e) {
-						Object[] params = { appFile.getName() };
-						LogMF.warn(logger, e, "Unable to publish {0}", params);
-					} catch(Throwable t) {
-						Object[] params = { appFile.getName() };
-						LogMF.warn(logger, t, "Unable to publish {0}", params);
-					}
-				} else if(appFile.isFile() && appFile.getName().endsWith(".war")) {
-					String appName = appFile.getName();
-					appName = appName.substring(0, appName.length() - 4);
-					
-					try {
-						publish(appName, appFile);
-					} catch(ApplicationException e) {
-						Object[] params = { appFile.getName() };
-						LogMF.warn(logger, e, "Unable to publish {0}", params);
-					} catch(Throwable t) {
-						Object[] params = { appFile.getName() };
-						LogMF.warn(logger, t, "Unable to publish {0}", params);
-					}
-				}
+			try {
+				pool.invoke(new StartApplications(appFiles));
+			} finally {
+				pool.shutdown();
 			}
 		}
+		
+		LogMF.info(logger, "Started {0} applications in {1}ms", applications.size(), (System.nanoTime() - startNanos) / 1000000L);
+	}
+	
+	private void addApplicationFile(LinkedHashMap<String, List<File>> appFiles, String name, File appFile) {
+		List<File> files = appFiles.get(name);
+		
+		if(files == null) {
+			files = new ArrayList<File>();
+			appFiles.put(name, files);
+		}
+		
+		files.add(appFile);
 	}
 	
 	public void stop() {
@@ -194,21 +232,79 @@ public class ApplicationManagerImpl implements ApplicationManager {
 	}
 	
 	public HttpServiceResult execute(HttpRequest request, HttpResponse response) throws HttpException, IOException {
-		PathParameters params = new PathParameters(request);
-		String possibleAppName = params.get(0);
-		String localPath = request.getPath();
-		localPath = localPath.substring(possibleAppName.length() + 1);
+		return execute(route(request.getPath()), request, response);
+	}
+	
+	/**
+	 * Executes the specified request which has already been routed to the specified application route.
+	 * 
+	 * @param route the application route for the request path
+	 * @param request the HTTP request
+	 * @param response the HTTP response
+	 * @return a result indicating if execution is done, should continue or is asynchronous
+	 * @throws HttpException if a HTTP error occurs while executing
+	 * @throws IOException if an I/O error occurs
+	 * @see #route(String)
+	 */
+	public HttpServiceResult execute(ApplicationRoute route, HttpRequest request, HttpResponse response) throws HttpException, IOException {
+		String localPath = route.getLocalPath();
 		
-		if(possibleAppName.equals(DEPLOY_APP_NAME)) {
+		if(route.isAdmin()) {
 			return executeAdmin(localPath, request, response);
-		} else {
-			return execute(localPath, request, response);
 		}
+		
+		ApplicationImpl application = route.getApplication();
+		
+		if(application == null) {
+			if(localPath.equals("/favicon.ico")) {
+				// Server empty favicon if none exists
+				ApplicationImpl.sendEmptyFavicon(response);
+				return HttpServiceResult.DONE;
+			}
+			
+			throw new HttpException(HttpStatus.NOT_FOUND, localPath);
+		}
+		
+		HttpServiceResult result = application.execute(localPath, route.getRoute(), request, response);
+		return result == HttpServiceResult.CONTINUE ? HttpServiceResult.DONE : result;
+	}
+	
+	/**
+	 * Routes the specified URI path to an application and to a route within the application. The returned
+	 * application route is used to decide if the request is executed inline, if its response may be compressed
+	 * and to execute the request without routing the path again.
+	 * 
+	 * @param path the URI path
+	 * @return the application route
+	 */
+	public ApplicationRoute route(String path) {
+		String possibleAppName = firstSegment(path);
+		String localPath = path.substring(possibleAppName.length() + 1);
+		
+		if(possibleAppName.equals(DEPLOY_APP_NAME)) {
+			String serviceName = firstSegment(localPath);
+			boolean inline = serviceName.equals("httpstats") || serviceName.equals("wsstats") || serviceName.equals("serverstats");
+			return new ApplicationRoute(null, localPath, null, true, inline, true);
+		}
+		
+		ApplicationImpl application = applications.get(possibleAppName);
+		
+		if(application == null) {
+			localPath = path;
+			application = applications.get(ROOT_APP);
+		}
+		
+		if(application == null) {
+			return new ApplicationRoute(null, localPath, null, false, false, false);
+		}
+		
+		HttpRouter.Route route = application.route(localPath);
+		return new ApplicationRoute(application, localPath, route, false, application.isInline(route), 
+				application.isCompressed(route, localPath));
 	}
 	
 	public HttpServiceResult execute(String localPath, HttpRequest request, HttpResponse response) throws HttpException, IOException {
-		PathParameters params = new PathParameters(request);
-		String possibleAppName = params.get(0);
+		String possibleAppName = firstSegment(request.getPath());
 		HttpServiceResult result = HttpServiceResult.DONE;
 		
 		ApplicationImpl application = applications.get(possibleAppName);
@@ -234,9 +330,41 @@ public class ApplicationManagerImpl implements ApplicationManager {
 		return result;
 	}
 	
+	/**
+	 * Returns whether or not requests for the specified URI path are executed on the thread that parsed the
+	 * request. Requests are executed inline when bound to a controller with the inline attribute set or to
+	 * one of the statistics admin services.
+	 * 
+	 * @param path the URI path
+	 * @return <code>true</code> if requests are executed inline, <code>false</code> otherwise
+	 */
+	public boolean isInline(String path) {
+		return route(path).isInline();
+	}
+	
+	/**
+	 * Returns whether or not responses for the specified URI path may be compressed. Responses from controllers,
+	 * XSP pages and admin services may be compressed unless the controller has the compress attribute unset.
+	 * 
+	 * @param path the URI path
+	 * @return <code>true</code> if responses may be compressed, <code>false</code> otherwise
+	 */
+	public boolean isCompressed(String path) {
+		return route(path).isCompressed();
+	}
+	
+	/**
+	 * Returns the first segment of the specified path without leading slash, the same segment as the first
+	 * parameter of {@link PathParameters}.
+	 */
+	private static String firstSegment(String path) {
+		int start = path.startsWith("/") ? 1 : 0;
+		int end = path.indexOf('/', start);
+		return end >= 0 ? path.substring(start, end) : path.substring(start);
+	}
+	
 	private HttpServiceResult executeAdmin(String localPath, HttpRequest request, HttpResponse response) throws HttpException, IOException {
-		PathParameters params = new PathParameters(request);
-		String serviceName = params.get(1);
+		String serviceName = localPath.length() > 1 ? firstSegment(localPath) : null;
 		
 		if(serviceName != null) {
 			if(serviceName.equals("application")) {
@@ -251,6 +379,9 @@ public class ApplicationManagerImpl implements ApplicationManager {
 			} else if(serviceName.equals("wsstats")) {
 				wsStatsService.invoke(request, response);
 				return HttpServiceResult.DONE;
+			} else if(serviceName.equals("serverstats")) {
+				serverStatsService.invoke(request, response);
+				return HttpServiceResult.DONE;
 			}
 		}
 		
@@ -274,6 +405,8 @@ public class ApplicationManagerImpl implements ApplicationManager {
 	public Application createApplication(String name, File baseDir) throws ApplicationException {
 		ApplicationClassLoader classLoader = new ApplicationClassLoader(Thread.currentThread().getContextClassLoader(), baseDir);
 		ApplicationImpl application = new ApplicationImpl(name);
+		application.setProduction(this.production);
+		application.setServicesDir(this.servicesDir);
 		application.setBaseDir(baseDir);
 		application.setClassLoader(classLoader);
 		return application;
@@ -287,14 +420,30 @@ public class ApplicationManagerImpl implements ApplicationManager {
 	
 	public Application publish(Application application) throws ApplicationException {
 		LogMF.info(logger, "Publish name={0}", application.getName());
-		if(applications.containsKey(application.getName())) {
+		ApplicationImpl applicationImpl = (ApplicationImpl)application;
+		
+		if(applications.get(application.getName()) == applicationImpl) {
 			throw new ApplicationException("Application with name '" + application.getName() + "' already exists");
 		}
 		
-		ApplicationImpl applicationImpl = (ApplicationImpl)application;
-		applicationImpl.publish();
-		applications.put(applicationImpl.getName(), applicationImpl);
-		return applicationImpl;
+		boolean done = false;
+		
+		try {
+			if(applications.containsKey(application.getName())) {
+				throw new ApplicationException("Application with name '" + application.getName() + "' already exists");
+			}
+			
+			applicationImpl.publish();
+			initStaticContent(applicationImpl);
+			applications.put(applicationImpl.getName(), applicationImpl);
+			done = true;
+			return applicationImpl;
+		} finally {
+			if(!done) {
+				// Releases shared libraries acquired when the application was created
+				applicationImpl.unpublish();
+			}
+		}
 	}
 	
 	public Application publish(String name, File warFileOrAppDir) throws ApplicationException {
@@ -340,8 +489,11 @@ public class ApplicationManagerImpl implements ApplicationManager {
 			File appFile = new File(this.applicationsDirName, name + ".war");
 			
 			ApplicationConfigurator configurator = new ApplicationConfigurator(backupFile);
+			configurator.setProduction(this.production);
+			configurator.setServicesDir(this.servicesDir);
 			ApplicationImpl newApplication = configurator.configure();
 			newApplication.setName(name);
+			initStaticContent(newApplication);
 			applications.put(name, newApplication);
 			
 			prevApplication.unpublish();
@@ -418,6 +570,10 @@ public class ApplicationManagerImpl implements ApplicationManager {
 		return this.wsStatistics;
 	}
 	
+	ServerStatistics getServerStatistics() {
+		return this.serverStatistics;
+	}
+	
 	ApplicationImpl getApplicationImpl(String name) {
 		return applications.get(name);
 	}
@@ -431,6 +587,21 @@ public class ApplicationManagerImpl implements ApplicationManager {
 	}
 	
 	ApplicationInfo createApplicationInfo(ApplicationImpl application) {
+		ApplicationInfo info = createVersionsInfo(application);
+		ClassLoader classLoader = application.getClassLoader();
+		
+		if(classLoader instanceof ApplicationClassLoader) {
+			ApplicationClassLoader appClassLoader = (ApplicationClassLoader)classLoader;
+			info.setSharedLibraries(appClassLoader.getNumSharedLibraries());
+			info.setSharedClasses(appClassLoader.getNumSharedClasses());
+			info.setSharedBytes(appClassLoader.getSharedClassBytes());
+		}
+		
+		info.setStartupPhases(application.getStartupPhases());
+		return info;
+	}
+	
+	private ApplicationInfo createVersionsInfo(ApplicationImpl application) {
 		if(application.isMemory()) {
 			ApplicationInfo info = new ApplicationInfo();
 			info.setName(application.getName());
@@ -471,45 +642,235 @@ public class ApplicationManagerImpl implements ApplicationManager {
 	}
 	
 	private ApplicationImpl create(String name, File warFileOrAppDir) throws ApplicationException {
+		synchronized(deployLock) {
+			return doCreate(name, warFileOrAppDir);
+		}
+	}
+	
+	private ApplicationImpl doCreate(String name, File warFileOrAppDir) throws ApplicationException {
 		LogMF.info(logger, "Create name={0},  file={1}", name, warFileOrAppDir.getAbsolutePath());
+		File destFile = new File(this.applicationsDirName, name + ".war");
 		
-		synchronized(deployLock) {
-			File destFile = new File(this.applicationsDirName, name + ".war");
-			
-			if(warFileOrAppDir.isFile() && !destFile.equals(warFileOrAppDir)) {
-				moveToAppsDir(name, warFileOrAppDir);
-				warFileOrAppDir = destFile;
-			}
-			
-			ApplicationConfigurator configurator = new ApplicationConfigurator(name, warFileOrAppDir);
-			ApplicationImpl application = configurator.configure();
-			application.publish();
-			applications.put(application.getName(), application);
-			return application;
-			
+		if(warFileOrAppDir.isFile() && !destFile.equals(warFileOrAppDir)) {
+			moveToAppsDir(name, warFileOrAppDir);
+			warFileOrAppDir = destFile;
 		}
+		
+		ApplicationConfigurator configurator = new ApplicationConfigurator(name, warFileOrAppDir);
+		configurator.setProduction(this.production);
+		configurator.setServicesDir(this.servicesDir);
+		ApplicationImpl application = startApplication(configurator);
+		applications.put(application.getName(), application);
+		return application;
 	}
 	
 	private ApplicationImpl upgrade(String name, File warFile) throws ApplicationException {
+		synchronized(deployLock) {
+			return doUpgrade(name, warFile);
+		}
+	}
+	
+	private ApplicationImpl doUpgrade(String name, File warFile) throws ApplicationException {
 		LogMF.info(logger, "Upgrade name={0}, warFile={1}", name, warFile.getAbsolutePath());
+		ApplicationConfigurator configurator = new ApplicationConfigurator(name, warFile);
+		configurator.setProduction(this.production);
+		configurator.setServicesDir(this.servicesDir);
+		ApplicationImpl application = configurator.configure();
+		initStaticContent(application);
+		ApplicationImpl prevApplication = applications.put(name, application);
 		
-		synchronized(deployLock) {
-			ApplicationConfigurator configurator = new ApplicationConfigurator(name, warFile);
-			ApplicationImpl application = configurator.configure();
-			ApplicationImpl prevApplication = applications.put(name, application);
+		if(prevApplication != null && this.backupDirName != null) {
+			moveUpBackupNumbers(name);
+			moveToBackupDir(name);
+		}
+		
+		moveToAppsDir(name, warFile);
+		
+		if(prevApplication != null && this.backupDirName != null) {
+			prevApplication.unpublish();
+		}
+		
+		return application;
+	}
+	
+	/**
+	 * Deploys, loads and publishes an application with the specified configurator. Once the application is
+	 * deployed its classes are loaded and published in parallel with compression of its static content. Time
+	 * spent in each phase is logged and kept by the application for the admin API.
+	 * 
+	 * @param configurator the application configurator
+	 * @return the published application
+	 * @throws ApplicationException if unable to deploy, load or publish the application
+	 */
+	private ApplicationImpl startApplication(ApplicationConfigurator configurator) throws ApplicationException {
+		long startNanos = System.nanoTime();
+		ApplicationImpl application = configurator.deploy();
+		LoadApplication load = new LoadApplication(configurator, application);
+		InitStaticContent init = new InitStaticContent(application);
+		boolean done = false;
+		
+		try {
+			ParallelTasks.invokeAll(load, init);
 			
-			if(prevApplication != null && this.backupDirName != null) {
-				moveUpBackupNumbers(name);
-				moveToBackupDir(name);
+			if(load.exception != null) {
+				throw load.exception;
 			}
 			
-			moveToAppsDir(name, warFile);
+			done = true;
+		} finally {
+			if(!done) {
+				application.unpublish();
+			}
+		}
+		
+		application.addStartupPhase("total", startNanos);
+		LogMF.info(logger, "Published name={0}, phases={1}", application.getName(), application.getStartupPhases());
+		return application;
+	}
+	
+	/**
+	 * Creates compressed variants of static content and sets a new static content cache for the specified
+	 * application before the application is made available for requests.
+	 * 
+	 * @param application the application
+	 * @see StaticContentCompressor
+	 */
+	private void initStaticContent(ApplicationImpl application) {
+		StaticContentCache cache = new StaticContentCache(this.staticCacheSize, this.serverStatistics);
+		
+		if(application.getBaseDir() != null) {
+			StaticContentCompressor compressor = new StaticContentCompressor(application.getBaseDir(), this.compressTypes, this.compressMinSize);
+			cache.setGzipPaths(compressor.compress());
+		}
+		
+		application.setStaticContentCache(cache);
+	}
+	
+	/**
+	 * Publishes applications in parallel, one task for each application name.
+	 * 
+	 * @author Bojan Pisler, NetDigital Sweden AB
+	 *
+	 */
+	private class StartApplications extends RecursiveAction {
+		
+		private static final long serialVersionUID = 1L;
+		
+		private LinkedHashMap<String, List<File>> appFiles;
+		
+		private StartApplications(LinkedHashMap<String, List<File>> appFiles) {
+			super();
+			this.appFiles = appFiles;
+		}
+		
+		protected void compute() {
+			List<StartApplication> tasks = new ArrayList<StartApplication>(appFiles.size());
 			
-			if(prevApplication != null && this.backupDirName != null) {
-				prevApplication.unpublish();
+			for(String name : appFiles.keySet()) {
+				tasks.add(new StartApplication(name, appFiles.get(name)));
 			}
 			
-			return application;
+			invokeAll(tasks);
+		}
+	}
+	
+	/**
+	 * Publishes the war archives and directories of one application name in order. The first one is created
+	 * and any following upgrade the application.
+	 * 
+	 * @author Bojan Pisler, NetDigital Sweden AB
+	 *
+	 */
+	private class StartApplication extends RecursiveAction {
+		
+		private static final long serialVersionUID = 1L;
+		
+		private String name;
+		
+		private List<File> appFiles;
+		
+		private StartApplication(String name, List<File> appFiles) {
+			super();
+			this.name = name;
+			this.appFiles = appFiles;
+		}
+		
+		protected void compute() {
+			for(File appFile : this.appFiles) {
+				try {
+					if(applications.containsKey(this.name)) {
+						doUpgrade(this.name, appFile);
+					} else {
+						doCreate(this.name, appFile);
+					}
+				} catch(ApplicationException e) {
+					Object[] params = { appFile.getName() };
+					LogMF.warn(logger, e, "Unable to publish {0}", params);
+				} catch(Throwable t) {
+					Object[] params = { appFile.getName() };
+					LogMF.warn(logger, t, "Unable to publish {0}", params);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Loads classes of a deployed application and publishes it. Any failure is kept for the publishing thread.
+	 * 
+	 * @author Bojan Pisler, NetDigital Sweden AB
+	 *
+	 */
+	private class LoadApplication extends RecursiveAction {
+		
+		private static final long serialVersionUID = 1L;
+		
+		private ApplicationConfigurator configurator;
+		
+		private ApplicationImpl application;
+		
+		private ApplicationException exception;
+		
+		private LoadApplication(ApplicationConfigurator configurator, ApplicationImpl application) {
+			super();
+			this.configurator = configurator;
+			this.application = application;
+		}
+		
+		protected void compute() {
+			try {
+				configurator.load(this.application);
+				long startNanos = System.nanoTime();
+				application.publish();
+				application.addStartupPhase("publish", startNanos);
+			} catch(ApplicationException e) {
+				this.exception = e;
+			} catch(RuntimeException e) {
+				this.exception = new ApplicationException("Unable to publish application '" + application.getName() + "'", e);
+			}
+		}
+	}
+	
+	/**
+	 * Compresses static content and sets the static content cache of a deployed application.
+	 * 
+	 * @author Bojan Pisler, NetDigital Sweden AB
+	 *
+	 */
+	private class InitStaticContent extends RecursiveAction {
+		
+		private static final long serialVersionUID = 1L;
+		
+		private ApplicationImpl application;
+		
+		private InitStaticContent(ApplicationImpl application) {
+			super();
+			this.application = application;
+		}
+		
+		protected void compute() {
+			long startNanos = System.nanoTime();
+			initStaticContent(this.application);
+			application.addStartupPhase("static", startNanos);
 		}
 	}
 	
@@ -590,6 +951,30 @@ public class ApplicationManagerImpl implements ApplicationManager {
 		}
 	}
 	
+	/**
+	 * Creates the server owned directory next to the applications directory where generated controller
+	 * service classes are cached in production mode. The directory is readable and writable by the server
+	 * user only.
+	 * 
+	 * @param appsDirName the applications directory name
+	 * @return the created directory or <code>null</code> if not in production mode or unable to create directory
+	 */
+	private File createServicesDir(String appsDirName) {
+		if(!this.production) {
+			return null;
+		}
+		
+		File servicesDir = new File(new File(appsDirName).getAbsoluteFile().getParentFile(), DEFAULT_SERVICES_DIR_NAME);
+		
+		try {
+			ControllerServiceCache.createDir(servicesDir);
+			return servicesDir;
+		} catch(IOException e) {
+			LogMF.warn(logger, "Can't create controller services dir {0}", servicesDir.getAbsolutePath());
+			return null;
+		}
+	}
+	
 	private String createBackupDirName(String appsDirName) {
 		int startIndex = appsDirName.endsWith(File.separator) ? appsDirName.length() - 2 : appsDirName.length() - 1; 
 		int idx = appsDirName.lastIndexOf(File.separator, startIndex);
@@ -657,4 +1042,18 @@ public class ApplicationManagerImpl implements ApplicationManager {
 			throw new RuntimeException("Unable to creat web socket session statistics controller service", e);
 		}
 	}
+	
+	private HttpService createServerStatsService(String password) {
+		try {
+			ControllerChain chain = new ControllerChain();
+			ApplicationAuthenticationFilter authService = new ApplicationAuthenticationFilter(password);
+			chain.addServiceLast(authService);
+			ServerStatisticsService service = new ServerStatisticsService(this);
+			HttpService invokerService = controllerFactory.createControllerService(service);
+			chain.addServiceLast(invokerService);
+			return chain;
+		} catch(ControllerServiceFactoryException e) {
+			throw new RuntimeException("Unable to create server statistics controller service", e);
+		}
+	}
 }
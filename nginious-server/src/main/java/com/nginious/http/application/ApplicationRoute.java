@@ -0,0 +1,114 @@
+/**
+ * Copyright 2012 NetDigital Sweden AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.nginious.http.application;
+
+/**
+ * The result of routing a request URI path to an application. Holds the application, the path within the
+ * application and the matching route so that the path is routed once per request. Used by the HTTP context
+ * to decide if a request is executed inline, if its response may be compressed and to execute it.
+ * 
+ * @author Bojan Pisler, NetDigital Sweden AB
+ *
+ */
+public class ApplicationRoute {
+	
+	private ApplicationImpl application;
+	
+	private String localPath;
+	
+	private HttpRouter.Route route;
+	
+	private boolean admin;
+	
+	private boolean inline;
+	
+	private boolean compressed;
+	
+	/**
+	 * Constructs a new application route.
+	 * 
+	 * @param application the application or <code>null</code> if no application matches the path
+	 * @param localPath the path within the application
+	 * @param route the matching route or <code>null</code> if no HTTP service is bound to the path
+	 * @param admin whether or not the path is for the admin services
+	 * @param inline whether or not requests are executed inline
+	 * @param compressed whether or not responses may be compressed
+	 */
+	ApplicationRoute(ApplicationImpl application, String localPath, HttpRouter.Route route, boolean admin, boolean inline, boolean compressed) {
+		super();
+		this.application = application;
+		this.localPath = localPath;
+		this.route = route;
+		this.admin = admin;
+		this.inline = inline;
+		this.compressed = compressed;
+	}
+	
+	/**
+	 * Returns the application for this route.
+	 * 
+	 * @return the application or <code>null</code> if no application matches the path
+	 */
+	ApplicationImpl getApplication() {
+		return this.application;
+	}
+	
+	/**
+	 * Returns the path within the application for this route.
+	 * 
+	 * @return the local path
+	 */
+	String getLocalPath() {
+		return this.localPath;
+	}
+	
+	/**
+	 * Returns the matching route within the application.
+	 * 
+	 * @return the route or <code>null</code> if no HTTP service is bound to the path
+	 */
+	HttpRouter.Route getRoute() {
+		return this.route;
+	}
+	
+	/**
+	 * Returns whether or not this route is for the admin services.
+	 * 
+	 * @return <code>true</code> if for the admin services, <code>false</code> otherwise
+	 */
+	boolean isAdmin() {
+		return this.admin;
+	}
+	
+	/**
+	 * Returns whether or not requests for this route are executed on the thread that parsed the request.
+	 * 
+	 * @return <code>true</code> if requests are executed inline, <code>false</code> otherwise
+	 */
+	public boolean isInline() {
+		return this.inline;
+	}
+	
+	/**
+	 * Returns whether or not responses for this route may be compressed.
+	 * 
+	 * @return <code>true</code> if responses may be compressed, <code>false</code> otherwise
+	 */
+	public boolean isCompressed() {
+		return this.compressed;
+	}
+}
@@ -0,0 +1,105 @@
+/**
+ * Copyright 2012 NetDigital Sweden AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.nginious.http.application;
+
+import com.nginious.http.annotation.Serializable;
+
+/**
+ * A serializable bean that contains the time spent in one phase of publishing an application. Used by
+ * REST service {@link ApplicationController} to return information about how long startup of published
+ * applications took.
+ * 
+ * <p>
+ * Phases are <code>deploy</code> for extracting war archives and scanning for classes, <code>load</code>
+ * for loading classes and creating controller services, <code>publish</code> for indexing and routing,
+ * <code>static</code> for compressing static content and <code>total</code> for the whole startup.
+ * </p>
+ * 
+ * @author Bojan Pisler, NetDigital Sweden AB
+ *
+ */
+@Serializable
+public class ApplicationStartupPhase {
+	
+	private String name;
+	
+	private long duration;
+	
+	/**
+	 * Constructs a new application startup phase.
+	 */
+	public ApplicationStartupPhase() {
+		super();
+	}
+	
+	/**
+	 * Constructs a new application startup phase with the specified name and duration.
+	 * 
+	 * @param name the phase name
+	 * @param duration the phase duration in milliseconds
+	 */
+	ApplicationStartupPhase(String name, long duration) {
+		super();
+		this.name = name;
+		this.duration = duration;
+	}
+	
+	/**
+	 * Returns name of this startup phase.
+	 * 
+	 * @return the phase name
+	 */
+	public String getName() {
+		return this.name;
+	}
+	
+	/**
+	 * Sets name of this startup phase to the specified name.
+	 * 
+	 * @param name the phase name
+	 */
+	public void setName(String name) {
+		this.name = name;
+	}
+	
+	/**
+	 * Returns time spent in this startup phase in milliseconds.
+	 * 
+	 * @return the duration in milliseconds
+	 */
+	public long getDuration() {
+		return this.duration;
+	}
+	
+	/**
+	 * Sets time spent in this startup phase to the specified number of milliseconds.
+	 * 
+	 * @param duration the duration in milliseconds
+	 */
+	public void setDuration(long duration) {
+		this.duration = duration;
+	}
+	
+	/**
+	 * Returns this startup phase formatted for logging.
+	 * 
+	 * @return the formatted phase
+	 */
+	public String toString() {
+		return this.name + "=" + this.duration + "ms";
+	}
+}
@@ -0,0 +1,203 @@
+/**
+ * Copyright 2012 NetDigital Sweden AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+
+package com.nginious.http.application;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashSet;
+
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * Reads information from class files without loading the classes. Used by {@link ControllerIndex} to find
+ * controller paths and by {@link SharedLibraryClassLoader} to find classes referenced by jar libraries.
+ * 
+ * @author Bojan Pisler, NetDigital Sweden AB
+ * @see ControllerIndex
+ * @see SharedLibraryClassLoader
+ *
+ */
+class ClassFileReader extends ClassReader {
+	
+	private static final int CONSTANT_CLASS = 7;
+	
+	private static final int CONSTANT_NAME_AND_TYPE = 12;
+	
+	private static final int CONSTANT_METHOD_TYPE = 16;
+	
+	private static final int API = Opcodes.ASM9;
+	
+	private static final int FLAGS = ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES;
+	
+	/**
+	 * Constructs a new class file reader for the specified class file data.
+	 * 
+	 * @param data the class file data
+	 */
+	ClassFileReader(byte[] data) {
+		super(data);
+	}
+	
+	/**
+	 * Constructs a new class file reader for class file data read from the specified input stream.
+	 * 
+	 * @param in the input stream to read class file data from
+	 * @throws IOException if unable to read class file data
+	 */
+	ClassFileReader(InputStream in) throws IOException {
+		super(in);
+	}
+	
+	/**
+	 * Returns the value of the element with the specified name in the runtime visible class annotation with
+	 * the specified descriptor. Method code is not read.
+	 * 
+	 * @param desc the annotation descriptor
+	 * @param name the element name
+	 * @return the element value or <code>null</code> if the class is not annotated or has no such element
+	 */
+	Object readAnnotationValue(String desc, String name) {
+		AnnotationValueVisitor visitor = new AnnotationValueVisitor(desc, name);
+		accept(visitor, FLAGS);
+		return visitor.value;
+	}
+	
+	/**
+	 * Adds the internal names of all classes referenced by the class file to the specified set. Referenced
+	 * classes are found in class, name and type and method type constants and in field and method descriptors.
+	 * 
+	 * @param referenced set to add internal names of referenced classes to
+	 */
+	void readReferences(HashSet<String> referenced) {
+		char[] buf = new char[getMaxStringLength()];
+		int count = getItemCount();
+		
+		for(int i = 1; i < count; i++) {
+			int offset = getItem(i);
+			
+			if(offset == 0) {
+				continue;
+			}
+			
+			switch(readByte(offset - 1)) {
+			case CONSTANT_CLASS:
+				addType(readUTF8(offset, buf), referenced);
+				break;
+			
+			case CONSTANT_NAME_AND_TYPE:
+				addDescriptor(readUTF8(offset + 2, buf), referenced);
+				break;
+			
+			case CONSTANT_METHOD_TYPE:
+				addDescriptor(readUTF8(offset, buf), referenced);
+				break;
+			}
+		}
+		
+		accept(new ReferencesVisitor(referenced), FLAGS);
+	}
+	
+	private static void addType(String name, HashSet<String> referenced) {
+		if(name.startsWith("[")) {
+			addDescriptor(name, referenced);
+		} else {
+			referenced.add(name);
+		}
+	}
+	
+	private static void addDescriptor(String descriptor, HashSet<String> referenced) {
+		int start = descriptor.indexOf('L');
+		
+		while(start >= 0) {
+			int end = descriptor.indexOf(';', start);
+			
+			if(end < 0) {
+				return;
+			}
+			
+			referenced.add(descriptor.substring(start + 1, end));
+			start = descriptor.indexOf('L', end);
+		}
+	}
+	
+	/**
+	 * Visitor which finds the value of an element in a runtime visible class annotation.
+	 * 
+	 * @author Bojan Pisler, NetDigital Sweden AB
+	 *
+	 */
+	private static class AnnotationValueVisitor extends ClassVisitor {
+		
+		private String desc;
+		
+		private String name;
+		
+		private Object value;
+		
+		private AnnotationValueVisitor(String desc, String name) {
+			super(API);
+			this.desc = desc;
+			this.name = name;
+		}
+		
+		public AnnotationVisitor visitAnnotation(String desc, boolean visible) {
+			if(!visible || !desc.equals(this.desc)) {
+				return null;
+			}
+			
+			return new AnnotationVisitor(API) {
+				public void visit(String name, Object value) {
+					if(name.equals(AnnotationValueVisitor.this.name)) {
+						AnnotationValueVisitor.this.value = value;
+					}
+				}
+			};
+		}
+	}
+	
+	/**
+	 * Visitor which adds classes referenced by field and method descriptors.
+	 * 
+	 * @author Bojan Pisler, NetDigital Sweden AB
+	 *
+	 */
+	private static class ReferencesVisitor extends ClassVisitor {
+		
+		private HashSet<String> referenced;
+		
+		private ReferencesVisitor(HashSet<String> referenced) {
+			super(API);
+			this.referenced = referenced;
+		}
+		
+		public FieldVisitor visitField(int access, String name, String desc, String signature, Object value) {
+			addDescriptor(desc, referenced);
+			return null;
+		}
+		
+		public MethodVisitor visitMethod(int access, String name, String desc, String signature, String[] exceptions) {
+			addDescriptor(desc, referenced);
+			return null;
+		}
+	}
+}
@@ -0,0 +1,359 @@
+/**
+ * Copyright 2012 NetDigital Sweden AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.nginious.http.application;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import org.apache.log4j.LogMF;
+import org.apache.log4j.Logger;
+
+import com.nginious.http.annotation.Controller;
+
+/**
+ * Index of controller classes in the <code>WEB-INF/classes</code> directory of an unpacked web application.
+ * Class files are read with ASM to find the path of their {@link Controller} annotation without loading
+ * the classes. The index is used by {@link ApplicationImpl} to find controllers added after the application
+ * was published.
+ * 
+ * <p>
+ * Controller paths are compiled into a {@link HttpRouter} which answers lookups without touching the file
+ * system. The index is updated incrementally by {@link #refresh()}, only directories with a changed modification
+ * time are listed again and only new or changed class files are read again.
+ * </p>
+ * 
+ * @author Bojan Pisler, NetDigital Sweden AB
+ * @see ApplicationImpl
+ *
+ */
+class ControllerIndex {
+	
+	private static Logger logger = Logger.getLogger(ControllerIndex.class);
+	
+	private static final String CONTROLLER_DESC = "L" + Controller.class.getName().replace('.', '/') + ";";
+	
+	private static final long RACY_INTERVAL = 2000L;
+	
+	private File classesDir;
+	
+	private HashMap<File, long[]> directories;
+	
+	private HashMap<File, Entry> classFiles;
+	
+	private volatile Snapshot snapshot;
+	
+	/**
+	 * Constructs a new empty controller index for class files in the specified classes directory.
+	 * 
+	 * @param classesDir the classes directory
+	 */
+	ControllerIndex(File classesDir) {
+		super();
+		this.classesDir = classesDir;
+		this.directories = new HashMap<File, long[]>();
+		this.classFiles = new HashMap<File, Entry>();
+		this.snapshot = new Snapshot(new HttpRouter.Builder().build(), new HashMap<String, Entry>());
+	}
+	
+	/**
+	 * Returns number of indexed controllers.
+	 * 
+	 * @return the number of indexed controllers
+	 */
+	int size() {
+		return snapshot.entries.size();
+	}
+	
+	/**
+	 * Looks up the controller bound to the specified path. Paths are matched against controller paths
+	 * with the same rules as routes in a {@link HttpRouter}.
+	 * 
+	 * @param path the path
+	 * @return the indexed controller or <code>null</code> if no controller is bound to path
+	 */
+	Entry lookup(String path) {
+		Snapshot snapshot = this.snapshot;
+		HttpRouter.Route route = snapshot.router.route(path);
+		return route != null ? snapshot.entries.get(route.getPath()) : null;
+	}
+	
+	/**
+	 * Updates this index with changes in the classes directory since the last refresh. Directories with an
+	 * unchanged modification time are not listed again. Class files with an unchanged modification time and
+	 * length are not read again.
+	 * 
+	 * @return <code>true</code> if any indexed controller was added, changed or removed, <code>false</code> otherwise
+	 */
+	synchronized boolean refresh() {
+		boolean changed = false;
+		
+		for(File dir : directories.keySet().toArray(new File[directories.size()])) {
+			if(!directories.containsKey(dir)) {
+				continue;
+			} else if(!dir.isDirectory()) {
+				changed |= removeDirectory(dir);
+			} else if(isModified(dir)) {
+				changed |= list(dir);
+			}
+		}
+		
+		if(!directories.containsKey(classesDir) && classesDir.isDirectory()) {
+			changed |= list(classesDir);
+		}
+		
+		if(changed) {
+			publish();
+		}
+		
+		return changed;
+	}
+	
+	/**
+	 * Reads the specified class file again and updates this index with its current controller path. Used
+	 * when a class file has been rewritten without a change to its directory.
+	 * 
+	 * @param classFile the class file
+	 */
+	synchronized void update(File classFile) {
+		Entry prev = classFiles.remove(classFile);
+		Entry entry = classFile.isFile() ? read(classFile) : null;
+		
+		if(entry != null) {
+			classFiles.put(classFile, entry);
+		}
+		
+		if(prev != null && prev.path != null || entry != null && entry.path != null) {
+			publish();
+		}
+	}
+	
+	/**
+	 * Returns whether or not the specified directory may have changed since it was last listed. Directories
+	 * modified within {@link #RACY_INTERVAL} before they were listed are always listed again as file systems
+	 * with coarse modification times may hide changes made during the same interval.
+	 */
+	private boolean isModified(File dir) {
+		long[] times = directories.get(dir);
+		return dir.lastModified() != times[0] || times[1] - times[0] < RACY_INTERVAL;
+	}
+	
+	private boolean list(File dir) {
+		directories.put(dir, new long[] { dir.lastModified(), System.currentTimeMillis() });
+		File[] files = dir.listFiles();
+		
+		if(files == null) {
+			return false;
+		}
+		
+		boolean changed = false;
+		HashSet<File> current = new HashSet<File>();
+		
+		for(File file : files) {
+			current.add(file);
+			
+			if(file.isDirectory()) {
+				if(!directories.containsKey(file)) {
+					changed |= list(file);
+				}
+			} else if(file.getName().endsWith(".class")) {
+				Entry prev = classFiles.get(file);
+				
+				if(prev == null || prev.lastModified != file.lastModified() || prev.length != file.length()) {
+					Entry entry = read(file);
+					
+					if(entry != null) {
+						classFiles.put(file, entry);
+					} else {
+						classFiles.remove(file);
+					}
+					
+					changed |= prev != null && prev.path != null || entry != null && entry.path != null;
+				}
+			}
+		}
+		
+		for(File file : classFiles.keySet().toArray(new File[classFiles.size()])) {
+			if(dir.equals(file.getParentFile()) && !current.contains(file)) {
+				changed |= classFiles.remove(file).path != null;
+			}
+		}
+		
+		for(File subDir : directories.keySet().toArray(new File[directories.size()])) {
+			if(dir.equals(subDir.getParentFile()) && !current.contains(subDir)) {
+				changed |= removeDirectory(subDir);
+			}
+		}
+		
+		return changed;
+	}
+	
+	private boolean removeDirectory(File dir) {
+		boolean changed = false;
+		String prefix = dir.getPath() + File.separator;
+		directories.remove(dir);
+		
+		for(File subDir : directories.keySet().toArray(new File[directories.size()])) {
+			if(subDir.getPath().startsWith(prefix)) {
+				directories.remove(subDir);
+			}
+		}
+		
+		for(File file : classFiles.keySet().toArray(new File[classFiles.size()])) {
+			if(file.getPath().startsWith(prefix)) {
+				changed |= classFiles.remove(file).path != null;
+			}
+		}
+		
+		return changed;
+	}
+	
+	private void publish() {
+		HttpRouter.Builder builder = new HttpRouter.Builder();
+		HashMap<String, Entry> entries = new HashMap<String, Entry>();
+		
+		for(Entry entry : classFiles.values()) {
+			if(entry.path != null && !entries.containsKey(entry.path)) {
+				builder.addRoute(entry.path, null, null, false, false);
+				entries.put(entry.path, entry);
+			}
+		}
+		
+		this.snapshot = new Snapshot(builder.build(), entries);
+	}
+	
+	private Entry read(File classFile) {
+		long lastModified = classFile.lastModified();
+		long length = classFile.length();
+		
+		try {
+			byte[] data = readFile(classFile);
+			ClassFileReader reader = new ClassFileReader(data);
+			String className = reader.getClassName().replace('/', '.');
+			String path = (String)reader.readAnnotationValue(CONTROLLER_DESC, "path");
+			
+			if(path != null && path.equals("")) {
+				path = null;
+			}
+			
+			return new Entry(className, classFile, path, lastModified, length);
+		} catch(Exception e) {
+			LogMF.warn(logger, "Unable to read class file {0}", classFile.getAbsolutePath());
+			return null;
+		}
+	}
+	
+	private byte[] readFile(File file) throws IOException {
+		InputStream in = null;
+		
+		try {
+			in = new FileInputStream(file);
+			ByteArrayOutputStream out = new ByteArrayOutputStream((int)file.length());
+			byte[] buf = new byte[4096];
+			int len = 0;
+			
+			while((len = in.read(buf)) > 0) {
+				out.write(buf, 0, len);
+			}
+			
+			return out.toByteArray();
+		} finally {
+			if(in != null) {
+				try { in.close(); } catch(IOException e) {}
+			}
+		}
+	}
+	
+	/**
+	 * An indexed class file.
+	 * 
+	 * @author Bojan Pisler, NetDigital Sweden AB
+	 *
+	 */
+	static class Entry {
+		
+		private String className;
+		
+		private File classFile;
+		
+		private String path;
+		
+		private long lastModified;
+		
+		private long length;
+		
+		private Entry(String className, File classFile, String path, long lastModified, long length) {
+			super();
+			this.className = className;
+			this.classFile = classFile;
+			this.path = path;
+			this.lastModified = lastModified;
+			this.length = length;
+		}
+		
+		/**
+		 * Returns binary name of the indexed class.
+		 * 
+		 * @return the class name
+		 */
+		String getClassName() {
+			return this.className;
+		}
+		
+		/**
+		 * Returns the indexed class file.
+		 * 
+		 * @return the class file
+		 */
+		File getClassFile() {
+			return this.classFile;
+		}
+		
+		/**
+		 * Returns controller path of the indexed class.
+		 * 
+		 * @return the controller path
+		 */
+		String getPath() {
+			return this.path;
+		}
+	}
+	
+	/**
+	 * Immutable router and controller entries published for lookups.
+	 * 
+	 * @author Bojan Pisler, NetDigital Sweden AB
+	 *
+	 */
+	private static class Snapshot {
+		
+		private HttpRouter router;
+		
+		private Map<String, Entry> entries;
+		
+		private Snapshot(HttpRouter router, Map<String, Entry> entries) {
+			super();
+			this.router = router;
+			this.entries = entries;
+		}
+	}
+}
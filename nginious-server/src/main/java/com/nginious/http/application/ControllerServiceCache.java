@@ -0,0 +1,464 @@
+/**
+ * Copyright 2012 NetDigital Sweden AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.nginious.http.application;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.apache.log4j.LogMF;
+import org.apache.log4j.Logger;
+
+/**
+ * An on-disk cache of controller service classes generated by {@link ControllerServiceFactory}. Each entry
+ * holds the generated class bytes together with the HTTP methods and the classes the controller service
+ * depends on. Entries are stored in files named by a SHA-256 key computed from the server version, the
+ * class file of the controller service factory, the class files of the controller class and its super classes
+ * and the class files of all parameter and return types of the controllers public methods, which includes
+ * all serialized types. Any change to a controller or its serialized types results in a new key.
+ * 
+ * <p>
+ * Entries are looked up in directories with precompiled entries first and then in the cache directory where
+ * new entries are written. Entries precompiled when the web application was built are found in the
+ * <code>WEB-INF/services</code> directory of the web application.
+ * </p>
+ * 
+ * <p>
+ * Entries are defined as classes in the web application, a directory or entry which could have been written
+ * by another user is never read. On file systems with POSIX permissions directories and entries must be owned
+ * by the server user or root and must not be writable by group or others. The cache directory and its entries
+ * are created readable and writable by the server user only.
+ * </p>
+ * 
+ * @author Bojan Pisler, NetDigital Sweden AB
+ *
+ */
+class ControllerServiceCache {
+	
+	private static Logger logger = Logger.getLogger(ControllerServiceCache.class);
+	
+	/**
+	 * Directory in a web application with precompiled controller service entries.
+	 */
+	static final String SERVICES_DIR = "WEB-INF/services";
+	
+	private static final int MAGIC = 0x4e435343;
+	
+	private static final String SUFFIX = ".svc";
+	
+	private static HashMap<String, Class<?>> primitiveTypes = new HashMap<String, Class<?>>();
+	
+	static {
+		Class<?>[] types = { boolean.class, byte.class, char.class, short.class, int.class, long.class, float.class, double.class, void.class };
+		
+		for(Class<?> type : types) {
+			primitiveTypes.put(type.getName(), type);
+		}
+	}
+	
+	private static volatile String generatorKey;
+	
+	private File dir;
+	
+	private File[] precompiledDirs;
+	
+	/**
+	 * Constructs a new controller service cache which stores entries in the specified cache directory and looks
+	 * up entries in the specified precompiled directories before the cache directory.
+	 * 
+	 * @param dir the cache directory or <code>null</code> if new entries are not stored
+	 * @param precompiledDirs directories with precompiled entries
+	 */
+	ControllerServiceCache(File dir, File... precompiledDirs) {
+		super();
+		this.dir = dir;
+		this.precompiledDirs = precompiledDirs;
+	}
+	
+	/**
+	 * Returns the cached entry with the specified key.
+	 * 
+	 * @param key the entry key
+	 * @return the cached entry or <code>null</code> if not cached
+	 */
+	Entry get(String key) {
+		for(File file : getFiles(key)) {
+			if(!file.isFile()) {
+				continue;
+			}
+			
+			if(!isSecure(file.getParentFile()) || !isSecure(file)) {
+				LogMF.warn(logger, "Ignoring controller service {0}, not owned by server user or writable by others", file.getAbsolutePath());
+				continue;
+			}
+			
+			try {
+				return read(file);
+			} catch(IOException e) {
+				LogMF.warn(logger, "Unable to read controller service {0}, {1}", file.getAbsolutePath(), e.getMessage());
+			}
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Returns whether or not an entry with the specified key is cached.
+	 * 
+	 * @param key the entry key
+	 * @return <code>true</code> if cached, <code>false</code> otherwise
+	 */
+	boolean contains(String key) {
+		for(File file : getFiles(key)) {
+			if(file.isFile()) {
+				return true;
+			}
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * Stores the specified entry with the specified key in the cache directory. The entry is written to a
+	 * temporary file which is then renamed. Failures are logged and otherwise ignored since an entry can always
+	 * be generated again.
+	 * 
+	 * @param key the entry key
+	 * @param entry the entry to store
+	 */
+	void put(String key, Entry entry) {
+		if(this.dir == null) {
+			return;
+		}
+		
+		File file = new File(dir, key + SUFFIX);
+		File tmpFile = new File(dir, key + SUFFIX + "-" + System.nanoTime() + Thread.currentThread().getId());
+		DataOutputStream out = null;
+		
+		try {
+			createDir(this.dir);
+			
+			if(!isSecure(this.dir)) {
+				LogMF.warn(logger, "Not storing controller service {0}, cache directory not owned by server user or writable by others", file.getAbsolutePath());
+				return;
+			}
+			
+			out = new DataOutputStream(createFile(tmpFile));
+			out.writeInt(MAGIC);
+			out.writeUTF(entry.className);
+			out.writeUTF(entry.httpMethods);
+			out.writeInt(entry.classNames.size());
+			
+			for(String className : entry.classNames) {
+				out.writeUTF(className);
+			}
+			
+			out.writeInt(entry.classBytes.length);
+			out.write(entry.classBytes);
+			out.close();
+			out = null;
+			
+			if(!tmpFile.renameTo(file)) {
+				tmpFile.delete();
+			}
+		} catch(IOException e) {
+			LogMF.warn(logger, "Unable to store controller service {0}, {1}", file.getAbsolutePath(), e.getMessage());
+			tmpFile.delete();
+		} finally {
+			if(out != null) {
+				try { out.close(); } catch(IOException e) {}
+				tmpFile.delete();
+			}
+		}
+	}
+	
+	private List<File> getFiles(String key) {
+		List<File> files = new ArrayList<File>(this.precompiledDirs.length + 1);
+		
+		for(File precompiledDir : this.precompiledDirs) {
+			files.add(new File(precompiledDir, key + SUFFIX));
+		}
+		
+		if(this.dir != null) {
+			files.add(new File(this.dir, key + SUFFIX));
+		}
+		
+		return files;
+	}
+	
+	/**
+	 * Creates the specified directory and any missing parent directories readable and writable by the server
+	 * user only.
+	 * 
+	 * @param dir the directory to create
+	 * @throws IOException if unable to create directory
+	 */
+	static void createDir(File dir) throws IOException {
+		if(dir.isDirectory()) {
+			return;
+		}
+		
+		try {
+			Files.createDirectories(dir.toPath(), PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+		} catch(UnsupportedOperationException e) {
+			if(!dir.mkdirs() && !dir.isDirectory()) {
+				throw new IOException("Unable to create directory " + dir.getAbsolutePath());
+			}
+		}
+	}
+	
+	private static OutputStream createFile(File file) throws IOException {
+		Path path = file.toPath();
+		
+		try {
+			Files.createFile(path, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+		} catch(UnsupportedOperationException e) {
+			Files.createFile(path);
+		}
+		
+		return Files.newOutputStream(path);
+	}
+	
+	/**
+	 * Returns whether or not the specified file or directory can only have been written by the server user. On
+	 * file systems with POSIX permissions the file must be owned by the server user or root and must not be
+	 * writable by group or others. Symbolic links are not followed.
+	 * 
+	 * @param file the file or directory
+	 * @return <code>true</code> if secure, <code>false</code> otherwise
+	 */
+	static boolean isSecure(File file) {
+		try {
+			PosixFileAttributes attrs = Files.readAttributes(file.toPath(), PosixFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+			String owner = attrs.owner().getName();
+			
+			if(!owner.equals(System.getProperty("user.name")) && !owner.equals("root")) {
+				return false;
+			}
+			
+			Set<PosixFilePermission> permissions = attrs.permissions();
+			return !permissions.contains(PosixFilePermission.GROUP_WRITE) && !permissions.contains(PosixFilePermission.OTHERS_WRITE);
+		} catch(UnsupportedOperationException e) {
+			// No POSIX permissions, access is controlled by ACLs
+			return true;
+		} catch(IOException e) {
+			return false;
+		}
+	}
+	
+	private Entry read(File file) throws IOException {
+		DataInputStream in = null;
+		
+		try {
+			in = new DataInputStream(new FileInputStream(file));
+			
+			if(in.readInt() != MAGIC) {
+				throw new IOException("Not a controller service");
+			}
+			
+			String className = in.readUTF();
+			String httpMethods = in.readUTF();
+			int numClassNames = in.readInt();
+			List<String> classNames = new ArrayList<String>(numClassNames);
+			
+			for(int i = 0; i < numClassNames; i++) {
+				classNames.add(in.readUTF());
+			}
+			
+			byte[] classBytes = new byte[in.readInt()];
+			in.readFully(classBytes);
+			return new Entry(className, classBytes, httpMethods, classNames);
+		} finally {
+			if(in != null) {
+				try { in.close(); } catch(IOException e) {}
+			}
+		}
+	}
+	
+	/**
+	 * Creates the cache key for a controller service for the specified controller class.
+	 * 
+	 * @param controllerClazz the controller class
+	 * @return the cache key
+	 * @throws IOException if unable to read a class file
+	 */
+	static String createKey(Class<?> controllerClazz) throws IOException {
+		MessageDigest digest = createDigest();
+		digest.update(getGeneratorKey().getBytes("utf-8"));
+		
+		for(Class<?> clazz = controllerClazz; clazz != null && clazz.getClassLoader() != null; clazz = clazz.getSuperclass()) {
+			update(digest, clazz);
+		}
+		
+		TreeMap<String, Class<?>> types = new TreeMap<String, Class<?>>();
+		
+		for(Method method : controllerClazz.getMethods()) {
+			addType(types, method.getReturnType());
+			
+			for(Class<?> parameterType : method.getParameterTypes()) {
+				addType(types, parameterType);
+			}
+		}
+		
+		for(Class<?> type : types.values()) {
+			update(digest, type);
+		}
+		
+		return toHex(digest.digest());
+	}
+	
+	/**
+	 * Resolves the class with the specified name as returned by {@link Class#getName()} using the specified
+	 * class loader.
+	 * 
+	 * @param name the class name
+	 * @param loader the class loader
+	 * @return the resolved class
+	 * @throws ClassNotFoundException if the class can't be found
+	 */
+	static Class<?> resolveClass(String name, ClassLoader loader) throws ClassNotFoundException {
+		Class<?> clazz = primitiveTypes.get(name);
+		return clazz != null ? clazz : Class.forName(name, false, loader);
+	}
+	
+	private static void addType(TreeMap<String, Class<?>> types, Class<?> type) {
+		while(type.isArray()) {
+			type = type.getComponentType();
+		}
+		
+		if(type.getClassLoader() != null) {
+			types.put(type.getName(), type);
+		}
+	}
+	
+	/**
+	 * Returns a key for the server version and the class file of the controller service factory which changes
+	 * whenever controller services may be generated differently.
+	 */
+	private static String getGeneratorKey() throws IOException {
+		if(generatorKey == null) {
+			MessageDigest digest = createDigest();
+			String version = ControllerServiceFactory.class.getPackage() != null ? 
+					ControllerServiceFactory.class.getPackage().getImplementationVersion() : null;
+			digest.update(String.valueOf(version).getBytes("utf-8"));
+			update(digest, ControllerServiceFactory.class);
+			generatorKey = toHex(digest.digest());
+		}
+		
+		return generatorKey;
+	}
+	
+	private static void update(MessageDigest digest, Class<?> clazz) throws IOException {
+		digest.update(clazz.getName().getBytes("utf-8"));
+		String resource = clazz.getName().replace('.', '/') + ".class";
+		InputStream in = clazz.getClassLoader() != null ? clazz.getClassLoader().getResourceAsStream(resource) : null;
+		
+		if(in == null) {
+			throw new IOException("Class file " + resource + " not found");
+		}
+		
+		try {
+			byte[] buff = new byte[4096];
+			int len = 0;
+			
+			while((len = in.read(buff)) > 0) {
+				digest.update(buff, 0, len);
+			}
+		} finally {
+			in.close();
+		}
+	}
+	
+	private static MessageDigest createDigest() throws IOException {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch(NoSuchAlgorithmException e) {
+			throw new IOException("SHA-256 not supported", e);
+		}
+	}
+	
+	private static String toHex(byte[] bytes) {
+		StringBuffer hex = new StringBuffer(bytes.length * 2);
+		
+		for(byte b : bytes) {
+			hex.append(Character.forDigit((b >> 4) & 0x0f, 16));
+			hex.append(Character.forDigit(b & 0x0f, 16));
+		}
+		
+		return hex.toString();
+	}
+	
+	/**
+	 * A generated controller service class and the information needed to set up a controller service
+	 * instance of it.
+	 * 
+	 * @author Bojan Pisler, NetDigital Sweden AB
+	 *
+	 */
+	static class Entry {
+		
+		private String className;
+		
+		private byte[] classBytes;
+		
+		private String httpMethods;
+		
+		private List<String> classNames;
+		
+		Entry(String className, byte[] classBytes, String httpMethods, List<String> classNames) {
+			super();
+			this.className = className;
+			this.classBytes = classBytes;
+			this.httpMethods = httpMethods;
+			this.classNames = classNames;
+		}
+		
+		String getClassName() {
+			return this.className;
+		}
+		
+		byte[] getClassBytes() {
+			return this.classBytes;
+		}
+		
+		String getHttpMethods() {
+			return this.httpMethods;
+		}
+		
+		List<String> getClassNames() {
+			return this.classNames;
+		}
+	}
+}
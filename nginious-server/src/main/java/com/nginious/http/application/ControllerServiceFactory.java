@@ -1,13 +1,18 @@
 package com.nginious.http.application;
 
+import java.io.File;
+import java.io.IOException;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 
+import org.apache.log4j.LogMF;
 import org.apache.log4j.Logger;
 import org.objectweb.asm.ClassWriter;
 import org.objectweb.asm.Label;
@@ -39,6 +44,12 @@ import com.nginious.http.websocket.WebSocketTextMessage;
  * annotations of a controller class are inspected to determine which methods should be from the
  * generated controller service class.
  * 
+ * <p>
+ * Generated classes can be kept in a {@link ControllerServiceCache} which is looked up before generating
+ * a controller service class. Controller service classes can also be precompiled into a cache directory
+ * ahead of deployment with {@link #precompileControllerService(Class, File)}.
+ * </p>
+ * 
  * @author Bojan Pisler, NetDigital Sweden AB
  *
  */
@@ -56,6 +67,8 @@ public class ControllerServiceFactory {
 	
 	private DeserializerFactoryImpl deserializerFactory;
 	
+	private volatile ControllerServiceCache cache;
+	
 	/**
 	 * Constructs a new controller service factory which uses the specified application class loader
 	 * to load constructed controller service classes.
@@ -78,6 +91,16 @@ public class ControllerServiceFactory {
 		this.application = application;
 	}
 	
+	/**
+	 * Sets the cache of generated controller service classes for this controller service factory to the
+	 * specified cache.
+	 * 
+	 * @param cache the cache or <code>null</code> to always generate controller service classes
+	 */
+	void setCache(ControllerServiceCache cache) {
+		this.cache = cache;
+	}
+	
 	/**
 	 * Removes the constructed controller service for the specified controller class from this factory.
 	 * 
@@ -104,37 +127,7 @@ public class ControllerServiceFactory {
 		}
 		
 		try {
-			String intClazzName = createInternalClassName(controllerClazz);
-			String intInvokerClazzName = new StringBuffer(intClazzName).append("Service").toString();		
-			
-			// Create class
-			ClassWriter writer = new ClassWriter(0);
-			String signature = "com/nginious/http/application/ControllerService";
-			writer.visit(Opcodes.V1_6, Opcodes.ACC_PUBLIC, intInvokerClazzName, signature, signature, null);
-			
-			// Create constructor
-			MethodVisitor visitor = writer.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
-			visitor.visitCode();
-	        visitor.visitVarInsn(Opcodes.ALOAD, 0);
-	        visitor.visitMethodInsn(Opcodes.INVOKESPECIAL, "com/nginious/http/application/ControllerService", "<init>", "()V");
-	        visitor.visitInsn(Opcodes.RETURN);
-	        visitor.visitMaxs(2, 2);
-	        visitor.visitEnd();
-	        
-			// Override methods
-	        HashSet<Class<?>> clazzes = new HashSet<Class<?>>();
-	        StringBuffer httpMethods = new StringBuffer();
-	        overrideHttpMethod(writer, controllerClazz, "executeGet", HttpMethod.GET, httpMethods, clazzes);
-	        overrideHttpMethod(writer, controllerClazz, "executePost", HttpMethod.POST, httpMethods, clazzes);
-	        overrideHttpMethod(writer, controllerClazz, "executePut", HttpMethod.PUT, httpMethods, clazzes);
-	        overrideHttpMethod(writer, controllerClazz, "executeDelete", HttpMethod.DELETE, httpMethods, clazzes);
-	        overrideWebSocketMethod(writer, controllerClazz, WebSocketOperation.OPEN, null);
-	        overrideWebSocketMethod(writer, controllerClazz, WebSocketOperation.CLOSE, null);
-	        overrideWebSocketMethod(writer, controllerClazz, WebSocketOperation.TEXT, clazzes);
-	        overrideWebSocketMethod(writer, controllerClazz, WebSocketOperation.BINARY, null);
-			
-			writer.visitEnd();
-			byte[] clazzBytes = writer.toByteArray();
+			ControllerServiceCache.Entry entry = getEntry(controllerClazz);
 			ClassLoader controllerLoader = null;
 			
 			if(classLoader.hasLoaded(controller.getClass())) {
@@ -143,7 +136,13 @@ public class ControllerServiceFactory {
 				controllerLoader = this.classLoader;
 			}
 			
-			Class<?> clazz = loadClass(controllerLoader, intInvokerClazzName.replace('/', '.'), clazzBytes);
+			Class<?> clazz = loadClass(controllerLoader, entry.getClassName(), entry.getClassBytes());
+			HashSet<Class<?>> clazzes = new HashSet<Class<?>>();
+			
+			for(String className : entry.getClassNames()) {
+				clazzes.add(ControllerServiceCache.resolveClass(className, controllerClazz.getClassLoader()));
+			}
+			
 			clazzes.add(controllerClazz);
 			invokerService = (ControllerService)clazz.newInstance();
 			invokerService.setController(controller);
@@ -152,9 +151,11 @@ public class ControllerServiceFactory {
 			invokerService.setClasses(clazzes);
 			invokerService.setSerializerFactory(this.serializerFactory);
 			invokerService.setDeserializerFactory(this.deserializerFactory);
-			invokerService.setHttpMethods(httpMethods.toString());
+			invokerService.setHttpMethods(entry.getHttpMethods());
 			controllerServices.put(controllerClazz, invokerService);
 			return invokerService;
+		} catch(ClassNotFoundException e) {
+			throw new ControllerServiceFactoryException(e);
 		} catch(IllegalAccessException e) {
 			throw new ControllerServiceFactoryException(e);
 		} catch(InstantiationException e) {
@@ -162,6 +163,106 @@ public class ControllerServiceFactory {
 		}
 	}
 	
+	/**
+	 * Generates the controller service class for the specified controller class and stores it in the specified
+	 * cache directory unless an entry for the controller class already exists. Used to precompile controller
+	 * services when building web applications, precompiled entries are found in the <code>WEB-INF/services</code>
+	 * directory of a web application.
+	 * 
+	 * @param controllerClazz the controller class
+	 * @param cacheDir the cache directory
+	 * @return <code>true</code> if the controller service class was generated, <code>false</code> if already cached
+	 * @throws ControllerServiceFactoryException if unable to generate controller service class
+	 */
+	public boolean precompileControllerService(Class<?> controllerClazz, File cacheDir) throws ControllerServiceFactoryException {
+		try {
+			ControllerServiceCache cache = new ControllerServiceCache(cacheDir);
+			String key = ControllerServiceCache.createKey(controllerClazz);
+			
+			if(cache.contains(key)) {
+				return false;
+			}
+			
+			cache.put(key, generate(controllerClazz));
+			return true;
+		} catch(IOException e) {
+			throw new ControllerServiceFactoryException(e);
+		}
+	}
+	
+	/**
+	 * Returns the cached controller service class for the specified controller class. The controller
+	 * service class is generated and cached if not found in the cache.
+	 */
+	private ControllerServiceCache.Entry getEntry(Class<?> controllerClazz) throws ControllerServiceFactoryException {
+		ControllerServiceCache cache = this.cache;
+		String key = null;
+		
+		if(cache != null) {
+			try {
+				key = ControllerServiceCache.createKey(controllerClazz);
+				ControllerServiceCache.Entry entry = cache.get(key);
+				
+				if(entry != null) {
+					return entry;
+				}
+			} catch(IOException e) {
+				LogMF.debug(logger, "Unable to create cache key for {0}, {1}", controllerClazz.getName(), e.getMessage());
+			}
+		}
+		
+		ControllerServiceCache.Entry entry = generate(controllerClazz);
+		
+		if(key != null) {
+			cache.put(key, entry);
+		}
+		
+		return entry;
+	}
+	
+	/**
+	 * Generates a controller service class for the specified controller class.
+	 */
+	private ControllerServiceCache.Entry generate(Class<?> controllerClazz) throws ControllerServiceFactoryException {
+		String intClazzName = createInternalClassName(controllerClazz);
+		String intInvokerClazzName = new StringBuffer(intClazzName).append("Service").toString();		
+		
+		// Create class
+		ClassWriter writer = new ClassWriter(0);
+		String signature = "com/nginious/http/application/ControllerService";
+		writer.visit(Opcodes.V1_6, Opcodes.ACC_PUBLIC, intInvokerClazzName, signature, signature, null);
+		
+		// Create constructor
+		MethodVisitor visitor = writer.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+		visitor.visitCode();
+        visitor.visitVarInsn(Opcodes.ALOAD, 0);
+        visitor.visitMethodInsn(Opcodes.INVOKESPECIAL, "com/nginious/http/application/ControllerService", "<init>", "()V");
+        visitor.visitInsn(Opcodes.RETURN);
+        visitor.visitMaxs(2, 2);
+        visitor.visitEnd();
+        
+		// Override methods
+        HashSet<Class<?>> clazzes = new HashSet<Class<?>>();
+        StringBuffer httpMethods = new StringBuffer();
+        overrideHttpMethod(writer, controllerClazz, "executeGet", HttpMethod.GET, httpMethods, clazzes);
+        overrideHttpMethod(writer, controllerClazz, "executePost", HttpMethod.POST, httpMethods, clazzes);
+        overrideHttpMethod(writer, controllerClazz, "executePut", HttpMethod.PUT, httpMethods, clazzes);
+        overrideHttpMethod(writer, controllerClazz, "executeDelete", HttpMethod.DELETE, httpMethods, clazzes);
+        overrideWebSocketMethod(writer, controllerClazz, WebSocketOperation.OPEN, null);
+        overrideWebSocketMethod(writer, controllerClazz, WebSocketOperation.CLOSE, null);
+        overrideWebSocketMethod(writer, controllerClazz, WebSocketOperation.TEXT, clazzes);
+        overrideWebSocketMethod(writer, controllerClazz, WebSocketOperation.BINARY, null);
+		
+		writer.visitEnd();
+		List<String> classNames = new ArrayList<String>(clazzes.size());
+		
+		for(Class<?> clazz : clazzes) {
+			classNames.add(clazz.getName());
+		}
+		
+		return new ControllerServiceCache.Entry(intInvokerClazzName.replace('/', '.'), writer.toByteArray(), httpMethods.toString(), classNames);
+	}
+	
 	void overrideHttpMethod(ClassWriter writer, 
 			Class<?> controllerClazz, 
 			String controllerMethodName, 
@@ -0,0 +1,563 @@
+/**
+ * Copyright 2012 NetDigital Sweden AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.nginious.http.application;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A compiled request router for the controllers, XSP services, filters and static content of one application.
+ * Paths are stored in a radix tree where each node holds a common prefix of the paths below it. Looking up a
+ * path walks the tree once without splitting the path or creating any objects.
+ * 
+ * <p>
+ * A controller path may contain parameter segments on the form <code>{name}</code>, for example
+ * <code>/users/{id}/orders</code>. A parameter segment matches any non empty path segment. Literal segments
+ * take precedence over parameter segments when both match. Captured parameter values are returned by
+ * {@link Route#getParameters(String)}.
+ * </p>
+ * 
+ * <p>
+ * Filters are matched against the path of each route when the router is built. The filter chain for each route
+ * is thereby computed once instead of when serving requests. Static content prefixes, the top level files and
+ * directories of an application, can be added to let the application tell missing content apart without
+ * probing the file system.
+ * </p>
+ * 
+ * <p>
+ * A router is immutable once built. Applications build a new router when routes change and replace the previous
+ * router in one step, see {@link Builder}.
+ * </p>
+ * 
+ * @author Bojan Pisler, NetDigital Sweden AB
+ *
+ */
+class HttpRouter {
+	
+	private Node root;
+	
+	private int size;
+	
+	private HttpRouter(Node root, int size) {
+		super();
+		this.root = root;
+		this.size = size;
+	}
+	
+	/**
+	 * Returns number of routes in this router.
+	 * 
+	 * @return the number of routes
+	 */
+	int size() {
+		return this.size;
+	}
+	
+	/**
+	 * Finds the route for the specified path.
+	 * 
+	 * @param path the path within the application
+	 * @return the found route or <code>null</code> if no route matches the path
+	 */
+	Route route(String path) {
+		return match(this.root, path, 0);
+	}
+	
+	/**
+	 * Returns whether or not the specified path is within one of the static content prefixes of this router.
+	 * 
+	 * @param path the path within the application
+	 * @return <code>true</code> if path is static content, <code>false</code> otherwise
+	 */
+	boolean isStatic(String path) {
+		Node node = this.root;
+		int pos = 0;
+		
+		while(node != null && path.startsWith(node.prefix, pos)) {
+			pos += node.prefix.length();
+			
+			if(node.staticPrefix || (node.staticFile && pos == path.length())) {
+				return true;
+			}
+			
+			node = pos < path.length() ? node.child(path.charAt(pos)) : null;
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * Returns whether or not the specified path contains parameter segments.
+	 * 
+	 * @param path the path
+	 * @return <code>true</code> if path contains parameter segments, <code>false</code> otherwise
+	 */
+	static boolean isTemplate(String path) {
+		return path.indexOf('{') >= 0;
+	}
+	
+	/**
+	 * Returns the specified path with all parameter names removed. Two paths which match the same requests have
+	 * the same normalized path.
+	 * 
+	 * @param path the path
+	 * @return the normalized path
+	 */
+	static String normalize(String path) {
+		if(!isTemplate(path)) {
+			return path;
+		}
+		
+		StringBuilder normalized = new StringBuilder(path.length());
+		
+		for(Object token : tokenize(path)) {
+			normalized.append(token instanceof String ? (String)token : "{}");
+		}
+		
+		return normalized.toString();
+	}
+	
+	private static Route match(Node node, String path, int pos) {
+		if(!path.startsWith(node.prefix, pos)) {
+			return null;
+		}
+		
+		pos += node.prefix.length();
+		
+		if(pos == path.length()) {
+			return node.route;
+		}
+		
+		Node child = node.child(path.charAt(pos));
+		
+		if(child != null) {
+			Route route = match(child, path, pos);
+			
+			if(route != null) {
+				return route;
+			}
+		}
+		
+		if(node.parameter != null) {
+			int end = path.indexOf('/', pos);
+			
+			if(end < 0) {
+				end = path.length();
+			}
+			
+			if(end > pos) {
+				return match(node.parameter, path, end);
+			}
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Splits the specified path into literal strings and parameter names. Parameter names are returned as
+	 * {@link Parameter} instances.
+	 */
+	private static List<Object> tokenize(String path) {
+		ArrayList<Object> tokens = new ArrayList<Object>();
+		int pos = 0;
+		
+		while(pos < path.length()) {
+			int start = path.indexOf('{', pos);
+			int end = start >= 0 ? path.indexOf('}', start) : -1;
+			
+			if(start < 0 || end < 0) {
+				tokens.add(path.substring(pos));
+				break;
+			}
+			
+			if(start > pos) {
+				tokens.add(path.substring(pos, start));
+			}
+			
+			tokens.add(new Parameter(path.substring(start + 1, end)));
+			pos = end + 1;
+		}
+		
+		return tokens;
+	}
+	
+	/**
+	 * A route to a HTTP service with its filter chain applied.
+	 * 
+	 * @author Bojan Pisler, NetDigital Sweden AB
+	 *
+	 */
+	static class Route {
+		
+		private String path;
+		
+		private HttpService service;
+		
+		private String allowedMethods;
+		
+		private boolean inline;
+		
+		private boolean compress;
+		
+		private List<Object> tokens;
+		
+		private Route(String path, HttpService service, String allowedMethods, boolean inline, boolean compress) {
+			super();
+			this.path = path;
+			this.service = service;
+			this.allowedMethods = allowedMethods;
+			this.inline = inline;
+			this.compress = compress;
+			this.tokens = isTemplate(path) ? tokenize(path) : null;
+		}
+		
+		/**
+		 * Returns the path this route is bound to.
+		 * 
+		 * @return the path
+		 */
+		String getPath() {
+			return this.path;
+		}
+		
+		/**
+		 * Returns the HTTP service for this route including any filters.
+		 * 
+		 * @return the HTTP service
+		 */
+		HttpService getService() {
+			return this.service;
+		}
+		
+		/**
+		 * Returns comma separated list of HTTP methods allowed for this route.
+		 * 
+		 * @return the allowed HTTP methods
+		 */
+		String getAllowedMethods() {
+			return this.allowedMethods;
+		}
+		
+		/**
+		 * Returns whether or not requests for this route are executed on the thread that parsed the request.
+		 * 
+		 * @return <code>true</code> if requests are executed inline, <code>false</code> otherwise
+		 */
+		boolean isInline() {
+			return this.inline;
+		}
+		
+		/**
+		 * Returns whether or not responses for this route may be compressed.
+		 * 
+		 * @return <code>true</code> if responses may be compressed, <code>false</code> otherwise
+		 */
+		boolean isCompressed() {
+			return this.compress;
+		}
+		
+		/**
+		 * Returns whether or not the path for this route contains parameter segments.
+		 * 
+		 * @return <code>true</code> if path contains parameter segments, <code>false</code> otherwise
+		 */
+		boolean hasParameters() {
+			return this.tokens != null;
+		}
+		
+		/**
+		 * Captures values of the parameter segments of this route from the specified path which must have been
+		 * matched to this route. Names and values are returned in pairs, the name of the first parameter followed
+		 * by its value and so on.
+		 * 
+		 * @param path the matched path
+		 * @return the parameter names and values or <code>null</code> if this route has no parameter segments
+		 */
+		String[] getParameters(String path) {
+			if(this.tokens == null) {
+				return null;
+			}
+			
+			ArrayList<String> parameters = new ArrayList<String>();
+			int pos = 0;
+			
+			for(Object token : tokens) {
+				if(token instanceof String) {
+					pos += ((String)token).length();
+				} else {
+					int end = path.indexOf('/', pos);
+					
+					if(end < 0) {
+						end = path.length();
+					}
+					
+					parameters.add(((Parameter)token).name);
+					parameters.add(path.substring(pos, end));
+					pos = end;
+				}
+			}
+			
+			return parameters.toArray(new String[parameters.size()]);
+		}
+	}
+	
+	/**
+	 * Builds a router from routes, filters and static content prefixes.
+	 * 
+	 * @author Bojan Pisler, NetDigital Sweden AB
+	 *
+	 */
+	static class Builder {
+		
+		private Node root;
+		
+		private int size;
+		
+		private List<Filter> filters;
+		
+		private List<Route> routes;
+		
+		/**
+		 * Constructs a new empty router builder.
+		 */
+		Builder() {
+			super();
+			this.root = new Node("");
+			this.filters = new ArrayList<Filter>();
+			this.routes = new ArrayList<Route>();
+		}
+		
+		/**
+		 * Adds a filter with the specified regular expression pattern and HTTP service. Filters are placed in
+		 * front of the HTTP services of all routes with a path matching the pattern. Filters added later are
+		 * placed before filters added earlier.
+		 * 
+		 * @param pattern the filter pattern
+		 * @param service the filter HTTP service
+		 */
+		void addFilter(String pattern, HttpService service) {
+			filters.add(new Filter(pattern, service));
+		}
+		
+		/**
+		 * Adds a route for the specified path to the specified HTTP service. A route added for a path that matches
+		 * the same requests as a previously added route replaces the previous route.
+		 * 
+		 * @param path the path
+		 * @param service the HTTP service
+		 * @param allowedMethods comma separated list of HTTP methods allowed for route
+		 * @param inline whether or not requests are executed on the thread that parsed the request
+		 * @param compress whether or not responses may be compressed
+		 */
+		void addRoute(String path, HttpService service, String allowedMethods, boolean inline, boolean compress) {
+			routes.add(new Route(path, service, allowedMethods, inline, compress));
+		}
+		
+		/**
+		 * Adds a static content file or directory with the specified path.
+		 * 
+		 * @param path the path of the file or directory
+		 * @param directory <code>true</code> if path is a directory, <code>false</code> otherwise
+		 */
+		void addStatic(String path, boolean directory) {
+			if(directory) {
+				insert(this.root, path.endsWith("/") ? path : path + "/").staticPrefix = true;
+			} else {
+				insert(this.root, path).staticFile = true;
+			}
+		}
+		
+		/**
+		 * Builds a router from the added routes, filters and static content prefixes. The builder must not be
+		 * used after the router has been built.
+		 * 
+		 * @return the built router
+		 */
+		HttpRouter build() {
+			for(Route route : this.routes) {
+				route.service = applyFilters(route);
+				Node node = this.root;
+				
+				for(Object token : tokenize(route.path)) {
+					if(token instanceof String) {
+						node = insert(node, (String)token);
+					} else {
+						if(node.parameter == null) {
+							node.parameter = new Node("");
+						}
+						
+						node = node.parameter;
+					}
+				}
+				
+				if(node.route == null) {
+					this.size++;
+				}
+				
+				node.route = route;
+			}
+			
+			return new HttpRouter(this.root, this.size);
+		}
+		
+		private HttpService applyFilters(Route route) {
+			ControllerChain chain = null;
+			
+			for(Filter filter : this.filters) {
+				if(route.path.matches(filter.pattern)) {
+					if(chain == null) {
+						chain = new ControllerChain();
+						chain.addServiceLast(route.service);
+					}
+					
+					chain.addServiceFirst(filter.service);
+				}
+			}
+			
+			return chain != null ? chain : route.service;
+		}
+		
+		/**
+		 * Inserts the specified literal below the specified node, splitting nodes that share part of their prefix
+		 * with the literal.
+		 * 
+		 * @return the node ending with the literal
+		 */
+		private Node insert(Node parent, String literal) {
+			while(literal.length() > 0) {
+				Node child = parent.child(literal.charAt(0));
+				
+				if(child == null) {
+					child = new Node(literal);
+					parent.addChild(child);
+					return child;
+				}
+				
+				int common = 0;
+				int max = Math.min(child.prefix.length(), literal.length());
+				
+				while(common < max && child.prefix.charAt(common) == literal.charAt(common)) {
+					common++;
+				}
+				
+				if(common < child.prefix.length()) {
+					Node split = new Node(child.prefix.substring(0, common));
+					child.prefix = child.prefix.substring(common);
+					parent.replaceChild(split);
+					split.addChild(child);
+					child = split;
+				}
+				
+				literal = literal.substring(common);
+				parent = child;
+			}
+			
+			return parent;
+		}
+	}
+	
+	/**
+	 * A node in the radix tree.
+	 * 
+	 * @author Bojan Pisler, NetDigital Sweden AB
+	 *
+	 */
+	private static class Node {
+		
+		private String prefix;
+		
+		private char[] indices;
+		
+		private Node[] children;
+		
+		private Node parameter;
+		
+		private Route route;
+		
+		private boolean staticPrefix;
+		
+		private boolean staticFile;
+		
+		private Node(String prefix) {
+			super();
+			this.prefix = prefix;
+			this.indices = new char[0];
+			this.children = new Node[0];
+		}
+		
+		private Node child(char ch) {
+			for(int i = 0; i < indices.length; i++) {
+				if(indices[i] == ch) {
+					return children[i];
+				}
+			}
+			
+			return null;
+		}
+		
+		private void addChild(Node child) {
+			this.indices = Arrays.copyOf(this.indices, indices.length + 1);
+			this.children = Arrays.copyOf(this.children, children.length + 1);
+			indices[indices.length - 1] = child.prefix.charAt(0);
+			children[children.length - 1] = child;
+		}
+		
+		private void replaceChild(Node child) {
+			for(int i = 0; i < indices.length; i++) {
+				if(indices[i] == child.prefix.charAt(0)) {
+					children[i] = child;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * A parameter segment in a path.
+	 * 
+	 * @author Bojan Pisler, NetDigital Sweden AB
+	 *
+	 */
+	private static class Parameter {
+		
+		private String name;
+		
+		private Parameter(String name) {
+			super();
+			this.name = name;
+		}
+	}
+	
+	/**
+	 * A filter with its pattern.
+	 * 
+	 * @author Bojan Pisler, NetDigital Sweden AB
+	 *
+	 */
+	private static class Filter {
+		
+		private String pattern;
+		
+		private HttpService service;
+		
+		private Filter(String pattern, HttpService service) {
+			super();
+			this.pattern = pattern;
+			this.service = service;
+		}
+	}
+}
@@ -0,0 +1,125 @@
+/**
+ * Copyright 2012 NetDigital Sweden AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.nginious.http.application;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Runs fork/join tasks that publish web applications. A task invoked from a thread in a fork/join pool
+ * is run in that pool, which lets application startup, war extraction and static content compression
+ * share one pool. Tasks invoked from any other thread are run in a temporary pool with one thread per
+ * available processor.
+ * 
+ * <p>
+ * Worker threads in temporary pools use the context class loader of the invoking thread since
+ * applications use it as parent class loader.
+ * </p>
+ * 
+ * @author Bojan Pisler, NetDigital Sweden AB
+ *
+ */
+class ParallelTasks {
+	
+	private ParallelTasks() {
+		super();
+	}
+	
+	/**
+	 * Invokes the specified task and waits for it to complete.
+	 * 
+	 * @param task the task to invoke
+	 */
+	static void invoke(ForkJoinTask<?> task) {
+		if(ForkJoinTask.inForkJoinPool()) {
+			task.invoke();
+			return;
+		}
+		
+		ForkJoinPool pool = createPool();
+		
+		try {
+			pool.invoke(task);
+		} finally {
+			pool.shutdown();
+		}
+	}
+	
+	/**
+	 * Invokes the specified tasks in parallel and waits for all of them to complete.
+	 * 
+	 * @param tasks the tasks to invoke
+	 */
+	static void invokeAll(final ForkJoinTask<?>... tasks) {
+		invoke(new RecursiveAction() {
+			
+			private static final long serialVersionUID = 1L;
+			
+			protected void compute() {
+				invokeAll(tasks);
+			}
+		});
+	}
+	
+	/**
+	 * Creates a new fork/join pool with one thread per available processor whose worker threads use the
+	 * context class loader of the calling thread.
+	 * 
+	 * @return the created pool
+	 */
+	static ForkJoinPool createPool() {
+		WorkerThreadFactory factory = new WorkerThreadFactory(Thread.currentThread().getContextClassLoader());
+		return new ForkJoinPool(Runtime.getRuntime().availableProcessors(), factory, null, false);
+	}
+	
+	/**
+	 * Creates worker threads with a fixed context class loader.
+	 * 
+	 * @author Bojan Pisler, NetDigital Sweden AB
+	 *
+	 */
+	private static class WorkerThreadFactory implements ForkJoinPool.ForkJoinWorkerThreadFactory {
+		
+		private ClassLoader contextClassLoader;
+		
+		private WorkerThreadFactory(ClassLoader contextClassLoader) {
+			super();
+			this.contextClassLoader = contextClassLoader;
+		}
+		
+		public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+			ForkJoinWorkerThread thread = new WorkerThread(pool);
+			thread.setContextClassLoader(this.contextClassLoader);
+			return thread;
+		}
+	}
+	
+	/**
+	 * Fork/join worker thread with a public constructor.
+	 * 
+	 * @author Bojan Pisler, NetDigital Sweden AB
+	 *
+	 */
+	private static class WorkerThread extends ForkJoinWorkerThread {
+		
+		private WorkerThread(ForkJoinPool pool) {
+			super(pool);
+		}
+	}
+}
@@ -32,6 +32,11 @@ import com.nginious.http.annotation.Controller;
  * controllers controller service. If the class file is modified the controller service is removed and a new
  * controller service is created. 
  * 
+ * <p>
+ * Class files are only checked when the version of the applications {@link ApplicationChangeTracker} has changed
+ * since the last check. Invocations while no files have changed only read the tracker version.
+ * </p>
+ * 
  * @author Bojan Pisler, NetDigital Sweden AB
  *
  */
@@ -51,25 +56,32 @@ class ReloadableControllerService extends HttpService {
 	
 	private File classFile;
 	
+	private ApplicationChangeTracker tracker;
+	
+	private volatile long checkedVersion;
+	
 	private HttpException exception;
 	
 	/**
-	 * Constructs a new reloadable controller service using the specified controller service factory, service, class loader, class name and
-	 * class file.
+	 * Constructs a new reloadable controller service using the specified controller service factory, service, class loader, class name,
+	 * class file and change tracker.
 	 * 
 	 * @param factory the controller service factory to use for creating controller services for reloaded controllers
 	 * @param service the controller service to use for invoking the controller
 	 * @param classLoader the class loader to use for loading recreated controller service classes
 	 * @param className the controller class name
 	 * @param classFile the controller class file to check for modifications
+	 * @param tracker the change tracker for the controllers application
 	 */
-	ReloadableControllerService(ControllerServiceFactory factory, ControllerService service, ApplicationClassLoader classLoader, String className, File classFile) {
+	ReloadableControllerService(ControllerServiceFactory factory, ControllerService service, ApplicationClassLoader classLoader, String className, File classFile, ApplicationChangeTracker tracker) {
 		this.factory = factory;
 		this.service = service;
 		this.controller = service.getController();
 		this.classLoader = classLoader;
 		this.className = className;
 		this.classFile = classFile;
+		this.tracker = tracker;
+		this.checkedVersion = tracker.getVersion();
 	}
 	
 	/**
@@ -82,7 +94,7 @@ class ReloadableControllerService extends HttpService {
 	}
 	
 	/**
-	 * Inspects the controllers class file for modifications and invokes the controller service with the specified HTTP request and 
+	 * Inspects the controllers class file for modifications if any files in the application have changed and invokes the controller service with the specified HTTP request and 
 	 * response. If the controller class file is modified the corresponding controller service is regenerated to reflect changes
 	 * in the modified controller. 
 	 * 
@@ -97,13 +109,19 @@ class ReloadableControllerService extends HttpService {
 	}
 	
 	private HttpServiceResult invokeRetry(HttpRequest request, HttpResponse response, boolean retry) throws HttpException, IOException {
-		if(!classFile.exists()) {
-			this.controller = null;
-			throw new HttpControllerRemovedException(HttpStatus.NOT_FOUND, request.getPath());
-		}
+		long version = tracker.getVersion();
 		
-		if(service.anyClassChanged()) {
-			loadControllerClass();
+		if(!retry || version != this.checkedVersion) {
+			if(!classFile.exists()) {
+				this.controller = null;
+				throw new HttpControllerRemovedException(HttpStatus.NOT_FOUND, request.getPath());
+			}
+			
+			if(service.anyClassChanged()) {
+				loadControllerClass();
+			}
+			
+			this.checkedVersion = version;
 		}
 		
 		if(retry) {
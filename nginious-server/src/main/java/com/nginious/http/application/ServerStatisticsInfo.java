@@ -0,0 +1,311 @@
+/**
+ * Copyright 2012 NetDigital Sweden AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.nginious.http.application;
+
+import com.nginious.http.annotation.Serializable;
+import com.nginious.http.stats.ServerStatistics;
+
+/**
+ * A REST serializable server statistics info which contains a snapshot of the server internal
+ * counters accumulated since server start.
+ * 
+ * @author Bojan Pisler, NetDigital Sweden AB
+ * @see ServerStatistics
+ */
+@Serializable
+public class ServerStatisticsInfo {
+	
+	private long numRequests;
+	
+	private long numInlineRequests;
+	
+	private long numSelectorWakeups;
+	
+	private double selectorWakeupsPerRequest;
+	
+	private long numBufferAcquires;
+	
+	private double bufferHitRate;
+	
+	private long numBuffersInUse;
+	
+	private long numBuffersPooled;
+	
+	private long numHeaderReadTimeouts;
+	
+	private long numBodyReadTimeouts;
+	
+	private long numKeepAliveTimeouts;
+	
+	private long numWriteTimeouts;
+	
+	private long numWorkerThreads;
+	
+	private long numActiveWorkerThreads;
+	
+	private long numQueuedTasks;
+	
+	private long numExecutedTasks;
+	
+	private double averageQueueWaitMillis;
+	
+	private long maxQueueWaitMillis;
+	
+	private long numStaticContentLookups;
+	
+	private double staticContentHitRate;
+	
+	private long staticContentCacheBytes;
+	
+	private long numCompressedResponses;
+	
+	private long compressBytesSaved;
+	
+	private long compressMillis;
+	
+	/**
+	 * Constructs a new server statistics info.
+	 */
+	public ServerStatisticsInfo() {
+		super();
+	}
+	
+	/**
+	 * Constructs a new server statistics info with values from the specified server statistics.
+	 * 
+	 * @param stats the server statistics
+	 */
+	ServerStatisticsInfo(ServerStatistics stats) {
+		this();
+		this.numRequests = stats.getNumRequests();
+		this.numInlineRequests = stats.getNumInlineRequests();
+		this.numSelectorWakeups = stats.getNumSelectorWakeups();
+		this.selectorWakeupsPerRequest = stats.getSelectorWakeupsPerRequest();
+		this.numBufferAcquires = stats.getNumBufferAcquires();
+		this.bufferHitRate = stats.getBufferHitRate();
+		this.numBuffersInUse = stats.getNumBuffersInUse();
+		this.numBuffersPooled = stats.getNumBuffersPooled();
+		this.numHeaderReadTimeouts = stats.getNumHeaderReadTimeouts();
+		this.numBodyReadTimeouts = stats.getNumBodyReadTimeouts();
+		this.numKeepAliveTimeouts = stats.getNumKeepAliveTimeouts();
+		this.numWriteTimeouts = stats.getNumWriteTimeouts();
+		this.numWorkerThreads = stats.getNumWorkerThreads();
+		this.numActiveWorkerThreads = stats.getNumActiveWorkerThreads();
+		this.numQueuedTasks = stats.getNumQueuedTasks();
+		this.numExecutedTasks = stats.getNumExecutedTasks();
+		this.averageQueueWaitMillis = stats.getAverageQueueWaitMillis();
+		this.maxQueueWaitMillis = stats.getMaxQueueWaitMillis();
+		this.numStaticContentLookups = stats.getNumStaticContentLookups();
+		this.staticContentHitRate = stats.getStaticContentHitRate();
+		this.staticContentCacheBytes = stats.getStaticContentCacheBytes();
+		this.numCompressedResponses = stats.getNumCompressedResponses();
+		this.compressBytesSaved = stats.getCompressBytesSaved();
+		this.compressMillis = stats.getCompressMillis();
+	}
+	
+	public long getNumRequests() {
+		return this.numRequests;
+	}
+	
+	public void setNumRequests(long numRequests) {
+		this.numRequests = numRequests;
+	}
+	
+	public long getNumInlineRequests() {
+		return this.numInlineRequests;
+	}
+	
+	public void setNumInlineRequests(long numInlineRequests) {
+		this.numInlineRequests = numInlineRequests;
+	}
+	
+	public long getNumSelectorWakeups() {
+		return this.numSelectorWakeups;
+	}
+	
+	public void setNumSelectorWakeups(long numSelectorWakeups) {
+		this.numSelectorWakeups = numSelectorWakeups;
+	}
+	
+	public double getSelectorWakeupsPerRequest() {
+		return this.selectorWakeupsPerRequest;
+	}
+	
+	public void setSelectorWakeupsPerRequest(double selectorWakeupsPerRequest) {
+		this.selectorWakeupsPerRequest = selectorWakeupsPerRequest;
+	}
+	
+	public long getNumBufferAcquires() {
+		return this.numBufferAcquires;
+	}
+	
+	public void setNumBufferAcquires(long numBufferAcquires) {
+		this.numBufferAcquires = numBufferAcquires;
+	}
+	
+	public double getBufferHitRate() {
+		return this.bufferHitRate;
+	}
+	
+	public void setBufferHitRate(double bufferHitRate) {
+		this.bufferHitRate = bufferHitRate;
+	}
+	
+	public long getNumBuffersInUse() {
+		return this.numBuffersInUse;
+	}
+	
+	public void setNumBuffersInUse(long numBuffersInUse) {
+		this.numBuffersInUse = numBuffersInUse;
+	}
+	
+	public long getNumBuffersPooled() {
+		return this.numBuffersPooled;
+	}
+	
+	public void setNumBuffersPooled(long numBuffersPooled) {
+		this.numBuffersPooled = numBuffersPooled;
+	}
+	
+	public long getNumHeaderReadTimeouts() {
+		return this.numHeaderReadTimeouts;
+	}
+	
+	public void setNumHeaderReadTimeouts(long numHeaderReadTimeouts) {
+		this.numHeaderReadTimeouts = numHeaderReadTimeouts;
+	}
+	
+	public long getNumBodyReadTimeouts() {
+		return this.numBodyReadTimeouts;
+	}
+	
+	public void setNumBodyReadTimeouts(long numBodyReadTimeouts) {
+		this.numBodyReadTimeouts = numBodyReadTimeouts;
+	}
+	
+	public long getNumKeepAliveTimeouts() {
+		return this.numKeepAliveTimeouts;
+	}
+	
+	public void setNumKeepAliveTimeouts(long numKeepAliveTimeouts) {
+		this.numKeepAliveTimeouts = numKeepAliveTimeouts;
+	}
+	
+	public long getNumWriteTimeouts() {
+		return this.numWriteTimeouts;
+	}
+	
+	public void setNumWriteTimeouts(long numWriteTimeouts) {
+		this.numWriteTimeouts = numWriteTimeouts;
+	}
+	
+	public long getNumWorkerThreads() {
+		return this.numWorkerThreads;
+	}
+	
+	public void setNumWorkerThreads(long numWorkerThreads) {
+		this.numWorkerThreads = numWorkerThreads;
+	}
+	
+	public long getNumActiveWorkerThreads() {
+		return this.numActiveWorkerThreads;
+	}
+	
+	public void setNumActiveWorkerThreads(long numActiveWorkerThreads) {
+		this.numActiveWorkerThreads = numActiveWorkerThreads;
+	}
+	
+	public long getNumQueuedTasks() {
+		return this.numQueuedTasks;
+	}
+	
+	public void setNumQueuedTasks(long numQueuedTasks) {
+		this.numQueuedTasks = numQueuedTasks;
+	}
+	
+	public long getNumExecutedTasks() {
+		return this.numExecutedTasks;
+	}
+	
+	public void setNumExecutedTasks(long numExecutedTasks) {
+		this.numExecutedTasks = numExecutedTasks;
+	}
+	
+	public double getAverageQueueWaitMillis() {
+		return this.averageQueueWaitMillis;
+	}
+	
+	public void setAverageQueueWaitMillis(double averageQueueWaitMillis) {
+		this.averageQueueWaitMillis = averageQueueWaitMillis;
+	}
+	
+	public long getMaxQueueWaitMillis() {
+		return this.maxQueueWaitMillis;
+	}
+	
+	public void setMaxQueueWaitMillis(long maxQueueWaitMillis) {
+		this.maxQueueWaitMillis = maxQueueWaitMillis;
+	}
+	
+	public long getNumStaticContentLookups() {
+		return this.numStaticContentLookups;
+	}
+	
+	public void setNumStaticContentLookups(long numStaticContentLookups) {
+		this.numStaticContentLookups = numStaticContentLookups;
+	}
+	
+	public double getStaticContentHitRate() {
+		return this.staticContentHitRate;
+	}
+	
+	public void setStaticContentHitRate(double staticContentHitRate) {
+		this.staticContentHitRate = staticContentHitRate;
+	}
+	
+	public long getStaticContentCacheBytes() {
+		return this.staticContentCacheBytes;
+	}
+	
+	public void setStaticContentCacheBytes(long staticContentCacheBytes) {
+		this.staticContentCacheBytes = staticContentCacheBytes;
+	}
+	
+	public long getNumCompressedResponses() {
+		return this.numCompressedResponses;
+	}
+	
+	public void setNumCompressedResponses(long numCompressedResponses) {
+		this.numCompressedResponses = numCompressedResponses;
+	}
+	
+	public long getCompressBytesSaved() {
+		return this.compressBytesSaved;
+	}
+	
+	public void setCompressBytesSaved(long compressBytesSaved) {
+		this.compressBytesSaved = compressBytesSaved;
+	}
+	
+	public long getCompressMillis() {
+		return this.compressMillis;
+	}
+	
+	public void setCompressMillis(long compressMillis) {
+		this.compressMillis = compressMillis;
+	}
+}
@@ -0,0 +1,61 @@
+/**
+ * Copyright 2012 NetDigital Sweden AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.nginious.http.application;
+
+import java.io.IOException;
+
+import com.nginious.http.HttpException;
+import com.nginious.http.HttpMethod;
+import com.nginious.http.annotation.Controller;
+import com.nginious.http.annotation.Request;
+import com.nginious.http.stats.ServerStatistics;
+
+/*
+ * A REST controller which returns server internal counters in the HTTP response. The counters
+ * are accumulated from server start.
+ * 
+ * <p>
+ * Example request
+ * 
+ * <code>
+ * http://127.0.0.1/admin/serverstats
+ * </code>
+ * </p>
+ *
+ */
+@Controller(path = "/serverstats")
+public class ServerStatisticsService {
+	
+	private ApplicationManagerImpl manager;
+	
+	/*
+	 * Constructs a new server statistics service reading statistics from the specified
+	 * application manager.
+	 */
+	ServerStatisticsService(ApplicationManagerImpl manager) {
+		this.manager = manager;
+	}
+	
+	/*
+	 * Returns server statistics in the response.
+	 */
+	@Request(methods = { HttpMethod.GET })
+	public ServerStatisticsInfo executeGet() throws HttpException, IOException {
+		ServerStatistics stats = manager.getServerStatistics();
+		return new ServerStatisticsInfo(stats);
+	}
+}
@@ -0,0 +1,293 @@
+/**
+ * Copyright 2012 NetDigital Sweden AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.nginious.http.application;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+import org.apache.log4j.LogMF;
+import org.apache.log4j.Logger;
+
+/**
+ * A class loader for a jar library which is identical by content in several web applications. Each such jar
+ * library is loaded once and its classes are shared by all web applications that contain it, which saves
+ * metaspace and class loading time for each additional web application.
+ * 
+ * <p>
+ * Only self contained jar libraries are shared. A jar library is self contained if all classes referenced by
+ * its classes are found in the jar library itself or in the parent class loader. Jar libraries that reference
+ * classes in other jar libraries or in the classes directory of a web application are loaded by a
+ * {@link SubApplicationClassLoader} for each web application. Note that static state in shared classes is
+ * shared by all web applications.
+ * </p>
+ * 
+ * <p>
+ * Shared class loaders are reference counted. A web application acquires a shared class loader from a
+ * {@link SharedLibraryRegistry} and releases it with {@link #release()} when unpublished. Classes are loaded
+ * from a private copy of the jar library which is removed when the last web application releases the class
+ * loader.
+ * </p>
+ * 
+ * @author Bojan Pisler, NetDigital Sweden AB
+ * @see ApplicationClassLoader
+ * @see SharedLibraryRegistry
+ *
+ */
+class SharedLibraryClassLoader extends URLClassLoader {
+	
+	private static Logger logger = Logger.getLogger(SharedLibraryClassLoader.class);
+	
+	static {
+		ClassLoader.registerAsParallelCapable();
+	}
+	
+	private SharedLibraryRegistry registry;
+	
+	private String hash;
+	
+	private File jarFile;
+	
+	private JarFile jar;
+	
+	private int references;
+	
+	/**
+	 * Constructs a new shared class loader with one reference for the specified copy of a jar library with the
+	 * specified hash.
+	 * 
+	 * @param registry the registry this class loader is kept in
+	 * @param hash the SHA-256 hash of the jar library
+	 * @param jarFile the copy of the jar library
+	 * @param parent the parent class loader
+	 * @throws IOException if unable to open the jar library
+	 */
+	SharedLibraryClassLoader(SharedLibraryRegistry registry, String hash, File jarFile, ClassLoader parent) throws IOException {
+		super(new URL[] { jarFile.toURI().toURL() }, parent);
+		this.registry = registry;
+		this.hash = hash;
+		this.jarFile = jarFile;
+		this.jar = new JarFile(jarFile);
+		this.references = 1;
+	}
+	
+	/**
+	 * Releases this shared class loader. The class loader is closed and its copy of the jar library removed
+	 * when released by all web applications that acquired it.
+	 */
+	void release() {
+		registry.release(this);
+	}
+	
+	/**
+	 * Returns the SHA-256 hash of the jar library for this shared class loader.
+	 * 
+	 * @return the hash
+	 */
+	String getHash() {
+		return this.hash;
+	}
+	
+	/**
+	 * Returns number of web applications that have acquired this shared class loader.
+	 * 
+	 * @return the number of references
+	 */
+	int getReferences() {
+		synchronized(this.registry) {
+			return this.references;
+		}
+	}
+	
+	/**
+	 * Adds a reference to this shared class loader. Called by the registry with its lock held.
+	 */
+	void reference() {
+		this.references++;
+	}
+	
+	/**
+	 * Removes a reference to this shared class loader. Called by the registry with its lock held.
+	 * 
+	 * @return the number of remaining references
+	 */
+	int unreference() {
+		return --this.references;
+	}
+	
+	/**
+	 * Closes this shared class loader and removes its copy of the jar library. Called by the registry when the
+	 * last reference is released.
+	 */
+	void dispose() {
+		try { jar.close(); } catch(IOException e) {}
+		try { close(); } catch(IOException e) {}
+		jarFile.delete();
+	}
+	
+	/**
+	 * Returns whether or not the class with the specified binary name has been loaded by this class loader.
+	 * 
+	 * @param name binary name of the class
+	 * @return <code>true</code> if loaded, <code>false</code> otherwise
+	 */
+	boolean isLoaded(String name) {
+		return findLoadedClass(name) != null;
+	}
+	
+	/**
+	 * Returns whether or not this shared jar library contains an entry with the specified path.
+	 * 
+	 * @param path the entry path
+	 * @return <code>true</code> if contained, <code>false</code> otherwise
+	 */
+	boolean contains(String path) {
+		return jar.getJarEntry(path) != null;
+	}
+	
+	/**
+	 * Returns size in bytes of the class file for the class with the specified binary name.
+	 * 
+	 * @param name binary name of the class
+	 * @return the class file size or 0 if not found
+	 */
+	long getClassSize(String name) {
+		JarEntry entry = jar.getJarEntry(name.replace('.', '/') + ".class");
+		return entry != null && entry.getSize() > 0 ? entry.getSize() : 0L;
+	}
+	
+	/**
+	 * Loads the class with the specified binary name from this shared jar library before the parent class
+	 * loader, in the same order as a {@link SubApplicationClassLoader}.
+	 * 
+	 * @param name binary name of the class
+	 * @param resolve whether or not to resolve the class
+	 * @return the loaded class
+	 * @throws ClassNotFoundException if the class could not be found
+	 */
+	protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+		synchronized(getClassLoadingLock(name)) {
+			Class<?> clazz = findLoadedClass(name);
+			
+			if(clazz == null && jar.getJarEntry(name.replace('.', '/') + ".class") != null) {
+				clazz = findClass(name);
+			}
+			
+			if(clazz == null) {
+				return super.loadClass(name, resolve);
+			}
+			
+			if(resolve) {
+				resolveClass(clazz);
+			}
+			
+			return clazz;
+		}
+	}
+	
+	/**
+	 * Returns whether or not all classes referenced by classes in the specified jar library are found in the jar
+	 * library or in the specified parent class loader. Class references are read from the constant pool and member
+	 * descriptors of each class file.
+	 */
+	static boolean isSelfContained(File jarFile, ClassLoader parent) throws IOException {
+		JarFile jar = new JarFile(jarFile);
+		
+		try {
+			HashSet<String> referenced = new HashSet<String>();
+			HashSet<String> contained = new HashSet<String>();
+			Enumeration<JarEntry> entries = jar.entries();
+			
+			while(entries.hasMoreElements()) {
+				JarEntry entry = entries.nextElement();
+				String name = entry.getName();
+				
+				if(!name.endsWith(".class") || name.startsWith("META-INF/")) {
+					continue;
+				}
+				
+				contained.add(name.substring(0, name.length() - 6));
+				InputStream in = jar.getInputStream(entry);
+				
+				try {
+					new ClassFileReader(in).readReferences(referenced);
+				} catch(RuntimeException e) {
+					return false;
+				} finally {
+					in.close();
+				}
+			}
+			
+			for(String name : referenced) {
+				if(!contained.contains(name) && (parent == null || parent.getResource(name + ".class") == null)) {
+					LogMF.debug(logger, "Library {0} not shared, references {1}", jarFile.getName(), name);
+					return false;
+				}
+			}
+			
+			return true;
+		} finally {
+			jar.close();
+		}
+	}
+	
+	/**
+	 * Returns a SHA-256 hash of the content of the specified file as a hex string.
+	 * 
+	 * @param file the file
+	 * @return the hash
+	 * @throws IOException if unable to read file
+	 */
+	static String hash(File file) throws IOException {
+		InputStream in = null;
+		
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			in = new FileInputStream(file);
+			byte[] buf = new byte[65536];
+			int len = 0;
+			
+			while((len = in.read(buf)) > 0) {
+				digest.update(buf, 0, len);
+			}
+			
+			StringBuilder hash = new StringBuilder();
+			
+			for(byte b : digest.digest()) {
+				hash.append(Character.forDigit((b >> 4) & 0x0f, 16));
+				hash.append(Character.forDigit(b & 0x0f, 16));
+			}
+			
+			return hash.toString();
+		} catch(NoSuchAlgorithmException e) {
+			throw new IOException("SHA-256 not available", e);
+		} finally {
+			if(in != null) {
+				try { in.close(); } catch(IOException e) {}
+			}
+		}
+	}
+}
@@ -0,0 +1,225 @@
+/**
+ * Copyright 2012 NetDigital Sweden AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.nginious.http.application;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.HashSet;
+
+import org.apache.log4j.LogMF;
+import org.apache.log4j.Logger;
+
+/**
+ * A registry of {@link SharedLibraryClassLoader}s keyed by a SHA-256 hash of the content of each shared jar
+ * library. Application class loaders acquire shared class loaders from a registry and release them when the
+ * application is unpublished. The server uses one default registry, tests use their own registry to not depend
+ * on libraries shared by other tests.
+ * 
+ * <p>
+ * Each shared jar library is copied to a new file in a directory created for the registry. The directory and
+ * the copies are only accessible to the user running the server. The directory is checked with
+ * {@link ControllerServiceCache#isSecure(File)} before each copy and the hash of each copy is verified before
+ * classes are loaded from it.
+ * </p>
+ * 
+ * @author Bojan Pisler, NetDigital Sweden AB
+ * @see SharedLibraryClassLoader
+ *
+ */
+class SharedLibraryRegistry {
+	
+	private static Logger logger = Logger.getLogger(SharedLibraryRegistry.class);
+	
+	private static SharedLibraryRegistry defaultRegistry = new SharedLibraryRegistry();
+	
+	private HashMap<String, SharedLibraryClassLoader> libraries;
+	
+	private HashSet<String> unshareable;
+	
+	private File dir;
+	
+	/**
+	 * Constructs a new empty registry.
+	 */
+	SharedLibraryRegistry() {
+		super();
+		this.libraries = new HashMap<String, SharedLibraryClassLoader>();
+		this.unshareable = new HashSet<String>();
+	}
+	
+	/**
+	 * Returns the registry used by application class loaders by default.
+	 * 
+	 * @return the default registry
+	 */
+	static SharedLibraryRegistry getDefault() {
+		return defaultRegistry;
+	}
+	
+	/**
+	 * Acquires a shared class loader for the specified jar library using the specified parent class loader.
+	 * 
+	 * @param jarFile the jar library
+	 * @param parent the parent class loader
+	 * @return the shared class loader or <code>null</code> if the jar library can't be shared
+	 */
+	SharedLibraryClassLoader acquire(File jarFile, ClassLoader parent) {
+		try {
+			String hash = SharedLibraryClassLoader.hash(jarFile);
+			SharedLibraryClassLoader loader = reference(hash, jarFile, parent);
+			
+			if(loader != null || isUnshareable(hash)) {
+				return loader;
+			}
+			
+			// Scanned outside lock, concurrent scans of the same library are rare and harmless
+			boolean selfContained = SharedLibraryClassLoader.isSelfContained(jarFile, parent);
+			
+			synchronized(this) {
+				loader = reference(hash, jarFile, parent);
+				
+				if(loader != null || isUnshareable(hash)) {
+					return loader;
+				}
+				
+				if(!selfContained) {
+					unshareable.add(hash);
+					return null;
+				}
+				
+				File sharedFile = copy(jarFile, hash);
+				loader = new SharedLibraryClassLoader(this, hash, sharedFile, parent);
+				libraries.put(hash, loader);
+				return loader;
+			}
+		} catch(IOException e) {
+			LogMF.warn(logger, e, "Unable to share library {0}", jarFile.getAbsolutePath());
+			return null;
+		}
+	}
+	
+	/**
+	 * Adds a reference to the shared class loader for the jar library with the specified hash if it exists
+	 * and uses the specified parent class loader.
+	 */
+	private synchronized SharedLibraryClassLoader reference(String hash, File jarFile, ClassLoader parent) {
+		SharedLibraryClassLoader loader = libraries.get(hash);
+		
+		if(loader == null || loader.getParent() != parent) {
+			return null;
+		}
+		
+		loader.reference();
+		LogMF.info(logger, "Sharing library {0}, references={1}", jarFile.getName(), loader.getReferences());
+		return loader;
+	}
+	
+	private synchronized boolean isUnshareable(String hash) {
+		return unshareable.contains(hash) || libraries.containsKey(hash);
+	}
+	
+	/**
+	 * Releases a reference to the specified shared class loader. The class loader is removed from this registry
+	 * and closed when its last reference is released.
+	 * 
+	 * @param loader the shared class loader
+	 */
+	void release(SharedLibraryClassLoader loader) {
+		synchronized(this) {
+			if(loader.unreference() > 0) {
+				return;
+			}
+			
+			libraries.remove(loader.getHash());
+		}
+		
+		loader.dispose();
+	}
+	
+	/**
+	 * Returns number of shared class loaders in this registry.
+	 * 
+	 * @return the number of shared class loaders
+	 */
+	synchronized int size() {
+		return libraries.size();
+	}
+	
+	/**
+	 * Copies the specified jar library to a new file in the directory of this registry and verifies that the
+	 * copy has the specified hash.
+	 */
+	private File copy(File jarFile, String hash) throws IOException {
+		File dir = getDir();
+		Path path = Files.createTempFile(dir.toPath(), hash + "-", ".jar");
+		boolean done = false;
+		
+		try {
+			InputStream in = Files.newInputStream(jarFile.toPath());
+			
+			try {
+				OutputStream out = Files.newOutputStream(path);
+				
+				try {
+					byte[] buf = new byte[65536];
+					int len = 0;
+					
+					while((len = in.read(buf)) > 0) {
+						out.write(buf, 0, len);
+					}
+				} finally {
+					out.close();
+				}
+			} finally {
+				in.close();
+			}
+			
+			if(!SharedLibraryClassLoader.hash(path.toFile()).equals(hash)) {
+				throw new IOException("Library " + jarFile.getAbsolutePath() + " changed while copying");
+			}
+			
+			done = true;
+			return path.toFile();
+		} finally {
+			if(!done) {
+				Files.deleteIfExists(path);
+			}
+		}
+	}
+	
+	/**
+	 * Returns the directory for copies of shared jar libraries. The directory is created with a unique name and
+	 * only accessible to the user running the server the first time it is needed.
+	 */
+	private File getDir() throws IOException {
+		if(this.dir == null) {
+			this.dir = Files.createTempDirectory("nginious-shared-").toFile();
+			dir.deleteOnExit();
+		}
+		
+		if(!ControllerServiceCache.isSecure(this.dir)) {
+			throw new IOException("Shared library directory " + dir.getAbsolutePath() + " is accessible to other users");
+		}
+		
+		return this.dir;
+	}
+}
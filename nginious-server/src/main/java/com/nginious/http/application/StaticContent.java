@@ -16,18 +16,16 @@
 
 package com.nginious.http.application;
 
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
-import java.util.Date;
-import java.util.HashSet;
-import java.util.zip.GZIPOutputStream;
+import java.util.Set;
 
 import com.nginious.http.HttpException;
 import com.nginious.http.HttpRequest;
@@ -35,10 +33,12 @@ import com.nginious.http.HttpResponse;
 import com.nginious.http.HttpStatus;
 import com.nginious.http.common.StringUtils;
 import com.nginious.http.server.ByteRange;
+import com.nginious.http.server.FileRegionOutput;
 import com.nginious.http.server.Header;
 import com.nginious.http.server.HeaderException;
 import com.nginious.http.server.HeaderParameter;
 import com.nginious.http.server.HeaderParameters;
+import com.nginious.http.server.HttpDate;
 import com.nginious.http.server.MimeTypes;
 
 /**
@@ -55,21 +55,28 @@ import com.nginious.http.server.MimeTypes;
  * <li><code>Range</code> support as specified in section 14.35. Multiple ranges are not supported.</li>
  * </ul>
  * 
+ * <p>
+ * Instances are shared between concurrent requests by {@link StaticContentCache}. Entity tag and content are
+ * read once and kept for the lifetime of the instance.
+ * </p>
+ * 
+ * <p>
+ * Content is never compressed while serving requests. GZIP compressed content is served from a variant file
+ * with the addition of ".gz" created by {@link StaticContentCompressor} when the web application is published.
+ * Content without an up to date variant is served uncompressed.
+ * </p>
+ * 
  * @author Bojan Pisler, NetDigital Sweden AB
  *
  */
 class StaticContent {
 	
-	private static final String DEFAULT_FILE = "index.html";
-	
-	private static HashSet<String> compressedContentTypes = new HashSet<String>();
+	/**
+	 * Maximum length in bytes of content kept in memory. Larger content is always sent from file.
+	 */
+	static final long MAX_CACHED_LENGTH = 2097152L;
 	
-	static {
-		compressedContentTypes.add("application/gzip");
-		compressedContentTypes.add("application/zip");
-		compressedContentTypes.add("application/x-gtar");
-		compressedContentTypes.add("application/compress");
-	}
+	private static final String DEFAULT_FILE = "index.html";
 	
 	private File baseDir;
 	
@@ -77,7 +84,7 @@ class StaticContent {
 	
 	private String contentType;
 	
-	private String entityTag;
+	private volatile String entityTag;
 	
 	private long length;
 	
@@ -87,31 +94,86 @@ class StaticContent {
 	
 	private File contentFile;
 	
-	private byte[] content;
+	private volatile byte[] content;
 	
-	private long gzipLength;
+	private volatile long gzipLength;
 	
-	private File gzipContentFile;
+	private volatile File gzipContentFile;
 	
-	private byte[] gzipContent;
+	private volatile byte[] gzipContent;
+	
+	private Set<String> gzipPaths;
 	
 	/**
 	 * Constructs a new static content for the file located at the specified
-	 * base directory and relative path.
+	 * base directory and relative path. A path to a directory refers to the default
+	 * file in the directory.
 	 * 
 	 * @param baseDir the web application base directory
 	 * @param path file path relative to the web application base directory
 	 */
 	StaticContent(File baseDir, String path) {
+		this(baseDir, path, null);
+	}
+	
+	/**
+	 * Constructs a new static content for the file located at the specified base directory and relative path
+	 * with the specified manifest of paths with GZIP compressed variants. A path to a directory refers to the
+	 * default file in the directory.
+	 * 
+	 * @param baseDir the web application base directory
+	 * @param path file path relative to the web application base directory
+	 * @param gzipPaths paths with compressed variants or <code>null</code> to look for a variant of any path
+	 * @see StaticContentCompressor
+	 */
+	StaticContent(File baseDir, String path, Set<String> gzipPaths) {
 		this.baseDir = baseDir;
+		this.gzipPaths = gzipPaths;
 		initContentFile(path);
+		
+		if(contentFile.isDirectory()) {
+			initContentFile(this.path + DEFAULT_FILE);
+		}
+	}
+	
+	/**
+	 * Returns whether or not the file for this static content has been modified, removed or created
+	 * since this static content was constructed. Modifications are detected by last modified time
+	 * and file length.
+	 * 
+	 * @return <code>true</code> if modified, <code>false</code> otherwise
+	 */
+	boolean isModified() {
+		return contentFile.lastModified() != this.lastModified || contentFile.length() != this.length;
+	}
+	
+	/**
+	 * Returns the number of bytes of raw and GZIP compressed content for this static content currently
+	 * kept in memory.
+	 * 
+	 * @return the number of bytes in memory
+	 */
+	long getCachedBytes() {
+		byte[] content = this.content;
+		byte[] gzipContent = this.gzipContent;
+		long numBytes = 0L;
+		
+		if(content != null) {
+			numBytes += content.length;
+		}
+		
+		if(gzipContent != null) {
+			numBytes += gzipContent.length;
+		}
+		
+		return numBytes;
 	}
 	
 	private void initContentFile(String path) {
 		this.path = path;
 		this.contentFile = new File(this.baseDir, path);
 		this.lastModified = contentFile.lastModified();
-		this.lastModifiedFormatted = Header.formatDate(new Date(this.lastModified));
+		this.lastModifiedFormatted = HttpDate.format(this.lastModified);
 		this.length = contentFile.length();
 		this.contentType = MimeTypes.getMimeTypeByExtenstion(path);
 		
@@ -130,12 +192,8 @@ class StaticContent {
 	 * @throws HttpException if a HTTP error occurs
 	 */
 	void execute(HttpRequest request, HttpResponse response) throws IOException, HttpException {
-		if(contentFile.isDirectory()) {
-			initContentFile(this.path + DEFAULT_FILE);
-			
-			if(!contentFile.exists()) {
-				throw new HttpException(HttpStatus.NOT_FOUND, this.path);
-			}
+		if(!contentFile.isFile()) {
+			throw new HttpException(HttpStatus.NOT_FOUND, this.path);
 		}
 		
 		checkAcceptable(request, this.path, this.contentType);
@@ -163,19 +221,22 @@ class StaticContent {
 		
 		response.setStatus(HttpStatus.OK);
 		
-		if(httpVersion11) {
-			String date = Header.formatDate(new Date());
-			response.addHeader("Date", date);
-		}
-		
-		response.addHeader("Last-Modified", this.lastModifiedFormatted);
 		response.addHeader("Content-Type", this.contentType);
 		
 		if(httpVersion11) {
 			response.addHeader("ETag", getOrReadEntityTag());
+			response.addHeader("Date", HttpDate.currentDate());
 		}
 		
-		if(checkGzip(request, this.contentType)) {
+		boolean gzip = checkGzip(request);
+		
+		if(gzip) {
+			response.addHeader("Content-Encoding", "gzip");
+		}
+		
+		response.addHeader("Last-Modified", this.lastModifiedFormatted);
+		
+		if(gzip) {
 			writeGzipContent(response);
 		} else {
 			if(httpVersion11) {
@@ -189,17 +250,42 @@ class StaticContent {
 	/**
 	 * Checks whether or not the client that sent the specified HTTP request accepts response with gzip compressed
 	 * content. A client accepts gzip compressed response if the HTTP request contains a <code>Accept-Encoding</code>
-	 * header with value <code>gzip</code> included in the list. The content type of the file must also not be
-	 * compressed.
+	 * header with value <code>gzip</code> included in the list. An up to date compressed variant of the file must
+	 * also exist, which {@link StaticContentCompressor} only creates for compressible content types.
 	 * 
 	 * @param request the HTTP request to check for <code>Accept-Encoding</code> header
-	 * @param contentType the file content type
 	 * @return <code>true</code> if the file content can be gzip compressed prior to sending response, <code>false</code>
 	 * 	otherwise
 	 */
-	private boolean checkGzip(HttpRequest request, String contentType) {
+	private boolean checkGzip(HttpRequest request) {
 		String acceptEncoding = request.getHeader("Accept-Encoding");
-		return acceptEncoding != null && acceptEncoding.indexOf("gzip") > -1 && !compressedContentTypes.contains(contentType);
+		return acceptEncoding != null && acceptEncoding.indexOf("gzip") > -1 && findGzipContentFile() != null;
+	}
+	
+	/**
+	 * Finds the GZIP compressed variant of this static content. A variant is only used if listed in the manifest
+	 * of this static content and not older than the content file.
+	 * 
+	 * @return the compressed variant or <code>null</code> if no up to date variant exists
+	 */
+	private File findGzipContentFile() {
+		if(this.gzipContentFile != null) {
+			return this.gzipContentFile;
+		}
+		
+		if(this.gzipPaths != null && !gzipPaths.contains(this.path)) {
+			return null;
+		}
+		
+		File gzipContentFile = new File(this.baseDir, this.path + ".gz");
+		
+		if(!gzipContentFile.isFile() || gzipContentFile.lastModified() < this.lastModified) {
+			return null;
+		}
+		
+		this.gzipLength = gzipContentFile.length();
+		this.gzipContentFile = gzipContentFile;
+		return gzipContentFile;
 	}
 	
 	/**
@@ -252,10 +338,10 @@ class StaticContent {
 			return false;
 		}
 		
-		Date ifModifiedSince = Header.parseDate(ifRange);
+		long ifModifiedSince = HttpDate.parse(ifRange);
 		
-		if(ifModifiedSince != null) {
-			return ifModifiedSince.getTime() < this.lastModified;
+		if(ifModifiedSince != -1L) {
+			return ifModifiedSince < this.lastModified;
 		} else {
 			String entityTag = getOrReadEntityTag();
 			
@@ -284,9 +370,9 @@ class StaticContent {
 		String ifModifiedValue = request.getHeader("If-Modified-Since");
 		
 		if(ifModifiedValue != null && !ifModifiedValue.equals("")) {			
-			Date ifModifiedSince = Header.parseDate(ifModifiedValue);
+			long ifModifiedSince = HttpDate.parse(ifModifiedValue);
 			
-			if(ifModifiedSince != null && ifModifiedSince.getTime() >= contentFile.lastModified()) {
+			if(ifModifiedSince != -1L && ifModifiedSince >= contentFile.lastModified()) {
 				response.setStatus(HttpStatus.NOT_MODIFIED);
 				return true;
 			}
@@ -356,10 +442,10 @@ class StaticContent {
 		String ifUnmodifiedValue = request.getHeader("If-Unmodified-Since");
 		
 		if(ifUnmodifiedValue != null && !ifUnmodifiedValue.equals("")) {			
-			Date ifUnmodifiedSince = Header.parseDate(ifUnmodifiedValue);
+			long ifUnmodifiedSince = HttpDate.parse(ifUnmodifiedValue);
 			
 			// If resource has been modified return a 412 Precondition Failed, RFC 2616 - 14.28
-			if(ifUnmodifiedSince != null && ifUnmodifiedSince.getTime() < this.lastModified) {
+			if(ifUnmodifiedSince != -1L && ifUnmodifiedSince < this.lastModified) {
 				throw new HttpException(HttpStatus.PRECONDITION_FAILED, "resource modified " + path);
 			}
 		}		
@@ -444,11 +530,10 @@ class StaticContent {
 			}
 			
 			response.setStatus(HttpStatus.PARTIAL_CONTENT);
-			String date = Header.formatDate(new Date());
 			response.addHeader("Content-Type", this.contentType);
 			response.addHeader("ETag", getOrReadEntityTag());
 			
-			response.addHeader("Date", date);
+			response.addHeader("Date", HttpDate.currentDate());
 			response.addHeader("Last-Modified", this.lastModifiedFormatted);
 			response.addHeader("Accept-Ranges", "bytes");
 			response.addHeader("Content-Range", byteRanges[0].toString());
@@ -462,18 +547,17 @@ class StaticContent {
 	}
 	
 	/**
-	 * Writes this static content GZIP compresses to the specified HTTP response. Data is read from file or from
-	 * local cache. The first request always reads from file. Subsequent requests for this static content are read
-	 * from cache. If content is more than 2097152 bytes uncompressed it is never cached and always read from file.
+	 * Writes the GZIP compressed variant of this static content to the specified HTTP response. Data is read from
+	 * the variant file or from local cache. The first request always reads from file. Subsequent requests for this
+	 * static content are read from cache. If content is more than {@link #MAX_CACHED_LENGTH} bytes uncompressed it
+	 * is never cached and always read from file.
 	 * 
 	 * @param response the HTTP response
 	 * @throws IOException if unable to write content
 	 * @throws HttpException if a HTTP error occurs while writing
 	 */
 	private void writeGzipContent(HttpResponse response) throws IOException, HttpException {
-		response.addHeader("Content-Encoding", "gzip");
-		
-		if(this.length > 2097152) {
+		if(this.length > MAX_CACHED_LENGTH) {
 			writeFileGzipContent(response);
 		} else {
 			writeCachedGzipContent(response);
@@ -484,7 +568,7 @@ class StaticContent {
 	 * Writes this static content to the specified HTTP response. Data is written from the specified start position
 	 * inclusive and to the specified end position inclusive. Data is read from file or from local cache. The first
 	 * request is always reads from file. Subsequent requests for this static content are read from cache. If content
-	 * is more than 2097152 bytes it is never cached and always read from file.
+	 * is more than {@link #MAX_CACHED_LENGTH} bytes it is never cached and always read from file.
 	 * 
 	 * @param response the HTTP response
 	 * @param startInclusive the start position inclusive
@@ -495,7 +579,7 @@ class StaticContent {
 	private void writeContent(HttpResponse response, int startInclusive, int endInclusive) throws IOException, HttpException {
 		response.setContentLength((int)endInclusive - startInclusive + 1);
 		
-		if(this.length > 2097152) {
+		if(this.length > MAX_CACHED_LENGTH) {
 			writeFileContent(response, startInclusive, endInclusive);
 		} else {
 			writeCachedContent(response, startInclusive, endInclusive);
@@ -504,7 +588,8 @@ class StaticContent {
 	
 	/**
 	 * Writes this static content from file to the specified HTTP response. Data is written from the specified start position 
-	 * inclusive to the specified end position inclusive.
+	 * inclusive to the specified end position inclusive. Data is sent directly from file to socket when supported by the
+	 * response.
 	 * 
 	 * @param response the HTTP response
 	 * @param startInclusive the start position inclusive in the content file
@@ -515,11 +600,16 @@ class StaticContent {
 		RandomAccessFile in = null;
 		
 		try {
-			in = new RandomAccessFile(this.contentFile, "r");
-			in.seek(startInclusive);
 			int len = endInclusive - startInclusive + 1;
-			
 			OutputStream out = response.getOutputStream();
+			
+			if(out instanceof FileRegionOutput) {
+				((FileRegionOutput)out).writeFileRegion(this.contentFile, startInclusive, len);
+				return;
+			}
+			
+			in = new RandomAccessFile(this.contentFile, "r");
+			in.seek(startInclusive);
 			byte[] b = new byte[4096];
 			
 			while(len > 0) {
@@ -537,9 +627,8 @@ class StaticContent {
 	}
 	
 	/**
-	 * Writes GZIP compressed version of this static content to the specified HTTP response. If GZIP compressed
-	 * content of this static content does not exists it is created and stored in a separate file next to the
-	 * original static content file.
+	 * Writes the GZIP compressed variant of this static content from file to the specified HTTP response. The
+	 * compressed file is sent directly from file to socket when supported by the response.
 	 *  
 	 * @param response the HTTP response
 	 * @throws HttpException if unable to read content file 
@@ -548,13 +637,15 @@ class StaticContent {
 		FileInputStream in = null;
 		
 		try {
-			if(this.gzipContentFile == null) {
-				gzipContentFile();
+			response.setContentLength((int)this.gzipLength);
+			OutputStream out = response.getOutputStream();
+			
+			if(out instanceof FileRegionOutput) {
+				((FileRegionOutput)out).writeFileRegion(this.gzipContentFile, 0, this.gzipLength);
+				return;
 			}
 			
-			response.setContentLength((int)this.gzipLength);
 			in = new FileInputStream(this.gzipContentFile);
-			OutputStream out = response.getOutputStream();
 			byte[] b = new byte[4096];
 			int len = 0;
 			
@@ -595,7 +686,7 @@ class StaticContent {
 	
 	/**
 	 * Writes GZIP compressed static content from internal cache to the specified HTTP response. If compressed
-	 * static content is not cached it is first stored in cache before written to the HTTP response.
+	 * static content is not cached it is first read from the variant file before written to the HTTP response.
 	 * 
 	 * @param response the HTTP response
 	 * @throws IOException if unable to write static content
@@ -640,7 +731,7 @@ class StaticContent {
 	}
 	
 	/**
-	 * Reads GZIP compressed static content.
+	 * Reads GZIP compressed static content from the compressed variant file.
 	 * 
 	 * @return the GZIP compressed static content
 	 * @throws HttpException if unable to read content
@@ -649,20 +740,13 @@ class StaticContent {
 		FileInputStream in = null;
 		
 		try {
-			in = new FileInputStream(this.contentFile);
-			ByteArrayOutputStream bOut = new ByteArrayOutputStream((int)this.length);
-			GZIPOutputStream out = new GZIPOutputStream(bOut);
-			byte[] b = new byte[(int)this.length];
+			in = new FileInputStream(this.gzipContentFile);
+			byte[] b = new byte[(int)this.gzipLength];
 			
-			if(in.read(b) != this.length) {
+			if(in.read(b) != this.gzipLength) {
 				throw new HttpException(HttpStatus.INTERNAL_SERVER_ERROR, "failed reading content " + this.path);
 			}
 			
-			out.write(b);
-			out.finish();
-			out.flush();
-			b = bOut.toByteArray();
-			this.gzipLength = b.length;
 			return b;
 		} catch(IOException e) {
 			throw new HttpException(HttpStatus.INTERNAL_SERVER_ERROR, "failed reading content " + this.path);
@@ -673,70 +757,6 @@ class StaticContent {
 		}		
 	}
 	
-	/**
-	 * Compresses this static content with GZIP and places it in a temporary file.
-	 * 
-	 * @throws HttpException if unable to compress this static content
-	 */
-	private void gzipContentFile() throws HttpException {
-		FileInputStream in = null;
-		FileOutputStream out = null;
-		File tmpGzipContentFile = new File(this.baseDir, createTempGzipFilename());
-		boolean done = false;
-		
-		try {
-			in = new FileInputStream(this.contentFile);
-			out = new FileOutputStream(tmpGzipContentFile);
-			GZIPOutputStream zOut = new GZIPOutputStream(out);
-			byte[] b = new byte[4096];
-			int len = 0;
-			
-			while((len = in.read(b)) > 0) {
-				zOut.write(b, 0, len);
-			}
-			
-			zOut.finish();
-			zOut.flush();
-			out.close();
-			out = null;
-			
-			File gzipContentFile = new File(this.baseDir, this.path + ".gz");
-			tmpGzipContentFile.renameTo(gzipContentFile);
-			done = true;
-			this.gzipContentFile = gzipContentFile;
-			this.gzipLength = this.gzipContentFile.length();
-		} catch(IOException e) {
-			throw new HttpException(HttpStatus.INTERNAL_SERVER_ERROR, "failed compressing content " + this.path);
-		} finally {
-			if(in != null) {
-				try { in.close(); } catch(IOException e) {}
-			}
-			
-			if(out != null) {
-				try { out.close(); } catch(IOException e) {}
-			}
-			
-			if(!done && tmpGzipContentFile.exists()) {
-				tmpGzipContentFile.delete();
-			}
-		}
-	}
-	
-	/**
-	 * Creates temporary file name for compressed content of this static content. The compresses temporary
-	 * file name has the same path and name as the original static content filename with the addition
-	 * of ".gz" and a timestamp.
-	 *  
-	 * @return the temporary filename path
-	 */
-	private String createTempGzipFilename() {
-		StringBuffer name = new StringBuffer(this.path);
-		name.append(".gz-");
-		name.append(System.currentTimeMillis());
-		name.append(Thread.currentThread().getName());
-		return name.toString();
-	}
-	
 	/**
 	 * Gets or creates entity tag as a hex encoded MD5 sum of this static content. If the entity tag
 	 * has note been calculated before it is calculated and stored.
@@ -748,7 +768,7 @@ class StaticContent {
 			return this.entityTag;
 		}
 		
-		if(this.length > 2097152) {
+		if(this.length > MAX_CACHED_LENGTH) {
 			this.entityTag = readFileEntityTag();
 		} else {
 			this.entityTag = readCachedEntityTag();
@@ -780,23 +800,27 @@ class StaticContent {
 	}
 	
 	/**
-	 * Creates an entity tag for this static content by reading the static content file and calculating a MD5 
-	 * sum of the content.
+	 * Creates an entity tag for this static content by memory mapping the static content file and calculating
+	 * a MD5 sum of the content. The file is mapped in regions of at most {@link #MAX_CACHED_LENGTH} bytes.
 	 * 
 	 * @return the entity tag as a hex encoded MD5 sum
 	 */
 	private String readFileEntityTag() {
-		FileInputStream in = null;
+		RandomAccessFile in = null;
 		
 		try {
 			MessageDigest md = MessageDigest.getInstance("MD5");
 			
-			in = new FileInputStream(this.contentFile);
-			byte[] b = new byte[4096];
-			int len = 0;
-			
-			while((len = in.read(b)) > 0) {
-				md.update(b, 0, len);
+			in = new RandomAccessFile(this.contentFile, "r");
+			FileChannel channel = in.getChannel();
+			long size = channel.size();
+			long position = 0L;
+			
+			while(position < size) {
+				long len = Math.min(MAX_CACHED_LENGTH, size - position);
+				MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, len);
+				md.update(buffer);
+				position += len;
 			}
 			
 			return StringUtils.asHexString(md.digest());
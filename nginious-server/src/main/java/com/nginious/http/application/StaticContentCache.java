@@ -0,0 +1,284 @@
+/**
+ * Copyright 2012 NetDigital Sweden AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.nginious.http.application;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Set;
+
+import com.nginious.http.HttpException;
+import com.nginious.http.HttpRequest;
+import com.nginious.http.HttpResponse;
+import com.nginious.http.stats.ServerStatistics;
+
+/**
+ * Caches static content for a web application between requests. Each cached {@link StaticContent} keeps
+ * file metadata, entity tag and, for content up to {@link StaticContent#MAX_CACHED_LENGTH} bytes, raw and
+ * GZIP compressed content in memory. Larger content is sent from file and only metadata and entity tag
+ * are cached.
+ * 
+ * <p>
+ * The file of cached content is checked for modifications at most once every {@link #CHECK_INTERVAL}
+ * milliseconds, cached content is discarded when the last modified time or length of its file has changed.
+ * Content modified within the interval may be served from cache until the next check.
+ * </p>
+ * 
+ * <p>
+ * The cache holds at most the configured number of bytes of content. Cached content is kept in access
+ * order, least recently used content is evicted in constant time when the cache is full. The cache is
+ * locked while looking up, adding or removing content, files are checked for modifications outside the lock.
+ * </p>
+ * 
+ * <p>
+ * Lookups, hits and the number of bytes held by the cache are reported to the server statistics if set.
+ * </p>
+ * 
+ * @author Bojan Pisler, NetDigital Sweden AB
+ * @see ServerStatistics
+ *
+ */
+class StaticContentCache {
+	
+	/**
+	 * Minimum interval in milliseconds between checks for modification of the file of cached content.
+	 */
+	static final long CHECK_INTERVAL = 1000L;
+	
+	private static final int MAX_ENTRIES = 10000;
+	
+	private static final long CHECK_INTERVAL_NANOS = CHECK_INTERVAL * 1000000L;
+	
+	private long maxBytes;
+	
+	private ServerStatistics stats;
+	
+	private LinkedHashMap<String, CacheEntry> entries;
+	
+	private long cachedBytes;
+	
+	private volatile Set<String> gzipPaths;
+	
+	/**
+	 * Constructs a new static content cache holding at most the specified number of bytes.
+	 * 
+	 * @param maxBytes maximum number of bytes of cached content, zero disables caching
+	 * @param stats the server statistics to report to or <code>null</code>
+	 */
+	StaticContentCache(long maxBytes, ServerStatistics stats) {
+		super();
+		this.maxBytes = maxBytes;
+		this.stats = stats;
+		this.entries = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true);
+	}
+	
+	/**
+	 * Sets the manifest of paths with GZIP compressed variants created when the web application was published.
+	 * 
+	 * @param gzipPaths paths with compressed variants
+	 * @see StaticContentCompressor
+	 */
+	void setGzipPaths(Set<String> gzipPaths) {
+		this.gzipPaths = gzipPaths;
+	}
+	
+	/**
+	 * Serves static content located at the specified path relative to the specified base directory using
+	 * cached content if available. Content is cached after serving.
+	 * 
+	 * @param baseDir the web application base directory
+	 * @param path file path relative to the web application base directory
+	 * @param request the HTTP request
+	 * @param response the HTTP response
+	 * @throws IOException if unable to read static content file
+	 * @throws HttpException if a HTTP error occurs
+	 */
+	void execute(File baseDir, String path, HttpRequest request, HttpResponse response) throws IOException, HttpException {
+		StaticContent content = get(baseDir, path);
+		
+		try {
+			content.execute(request, response);
+		} finally {
+			update(path, content);
+		}
+	}
+	
+	/**
+	 * Returns cached static content for the specified path or creates new static content if not cached or
+	 * if the file has been modified since cached.
+	 * 
+	 * @param baseDir the web application base directory
+	 * @param path file path relative to the web application base directory
+	 * @return the static content
+	 */
+	StaticContent get(File baseDir, String path) {
+		CacheEntry entry = lookup(path);
+		long now = System.nanoTime();
+		
+		if(entry != null && now - entry.checkedNanos >= CHECK_INTERVAL_NANOS) {
+			entry.checkedNanos = now;
+			
+			if(entry.content.isModified()) {
+				remove(path, entry);
+				entry = null;
+			}
+		}
+		
+		if(stats != null) {
+			stats.addStaticContentLookup(entry != null);
+		}
+		
+		if(entry != null) {
+			return entry.content;
+		}
+		
+		StaticContent content = new StaticContent(baseDir, path, this.gzipPaths);
+		
+		if(this.maxBytes > 0L) {
+			add(path, new CacheEntry(content, now));
+		}
+		
+		return content;
+	}
+	
+	/**
+	 * Returns the cache entry for the specified path and marks it as most recently used.
+	 * 
+	 * @param path file path relative to the web application base directory
+	 * @return the cache entry or <code>null</code> if no content is cached for the path
+	 */
+	private synchronized CacheEntry lookup(String path) {
+		return entries.get(path);
+	}
+	
+	/**
+	 * Adds the specified cache entry for the specified path unless content is already cached for the path.
+	 * 
+	 * @param path file path relative to the web application base directory
+	 * @param entry the cache entry to add
+	 */
+	private synchronized void add(String path, CacheEntry entry) {
+		if(!entries.containsKey(path)) {
+			entries.put(path, entry);
+			evict();
+		}
+	}
+	
+	/**
+	 * Updates the number of cached bytes for the specified static content after it has been served and
+	 * evicts least recently used content if the cache is full.
+	 * 
+	 * @param path file path relative to the web application base directory
+	 * @param content the served static content
+	 */
+	private synchronized void update(String path, StaticContent content) {
+		CacheEntry entry = entries.get(path);
+		
+		if(entry == null || entry.content != content || entry.numBytes == content.getCachedBytes()) {
+			return;
+		}
+		
+		long numBytes = content.getCachedBytes();
+		addCachedBytes(numBytes - entry.numBytes);
+		entry.numBytes = numBytes;
+		evict();
+	}
+	
+	/**
+	 * Removes least recently used content until the number of cached bytes and entries are within limits.
+	 * Each removal takes constant time. Must be called with the lock of this cache held.
+	 */
+	private void evict() {
+		Iterator<CacheEntry> lruEntries = entries.values().iterator();
+		
+		while(lruEntries.hasNext() && (this.cachedBytes > this.maxBytes || entries.size() > MAX_ENTRIES)) {
+			CacheEntry entry = lruEntries.next();
+			lruEntries.remove();
+			addCachedBytes(-entry.numBytes);
+		}
+	}
+	
+	/**
+	 * Removes the specified cache entry for the specified path if still cached.
+	 * 
+	 * @param path file path relative to the web application base directory
+	 * @param entry the cache entry to remove
+	 */
+	private synchronized void remove(String path, CacheEntry entry) {
+		if(entries.get(path) == entry) {
+			entries.remove(path);
+			addCachedBytes(-entry.numBytes);
+		}
+	}
+	
+	/**
+	 * Removes all cached content.
+	 */
+	synchronized void clear() {
+		entries.clear();
+		addCachedBytes(-this.cachedBytes);
+	}
+	
+	/**
+	 * Returns the number of bytes of content held by this cache.
+	 * 
+	 * @return the number of cached bytes
+	 */
+	synchronized long getCachedBytes() {
+		return this.cachedBytes;
+	}
+	
+	/**
+	 * Returns the number of static contents held by this cache.
+	 * 
+	 * @return the number of cached static contents
+	 */
+	synchronized int size() {
+		return entries.size();
+	}
+	
+	private void addCachedBytes(long numBytes) {
+		this.cachedBytes += numBytes;
+		
+		if(stats != null && numBytes != 0L) {
+			stats.addStaticContentCacheBytes(numBytes);
+		}
+	}
+	
+	/**
+	 * Cached static content for a path with the number of bytes accounted for in the cache and the time of
+	 * the last modification check. The check time is written without locking by concurrent lookups.
+	 * 
+	 * @author Bojan Pisler, NetDigital Sweden AB
+	 *
+	 */
+	private static class CacheEntry {
+		
+		private StaticContent content;
+		
+		private long numBytes;
+		
+		private volatile long checkedNanos;
+		
+		private CacheEntry(StaticContent content, long nanos) {
+			super();
+			this.content = content;
+			this.checkedNanos = nanos;
+		}
+	}
+}
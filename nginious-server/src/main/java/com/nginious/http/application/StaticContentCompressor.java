@@ -0,0 +1,265 @@
+/**
+ * Copyright 2012 NetDigital Sweden AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.nginious.http.application;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RecursiveAction;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.log4j.LogMF;
+import org.apache.log4j.Logger;
+
+import com.nginious.http.server.MimeTypes;
+
+/**
+ * Creates GZIP compressed variants of the static content files of a web application when the
+ * application is published. Each compressible file gets a variant with the same name and the
+ * addition of ".gz" placed next to the file. Directories are walked and files compressed in
+ * parallel using the fork/join pool of the publishing thread or a pool with one thread per
+ * available processor.
+ * 
+ * <p>
+ * Only files with a content type in the list of compressed content types and a length of at least the
+ * minimum compressed size are compressed, typically text, JSON, XML and JavaScript. Images, fonts, archives
+ * and other content that is already compressed gains nothing from GZIP. Files in the <code>WEB-INF</code>
+ * and <code>META-INF</code> directories are skipped. A variant is only written if missing or older than its
+ * file.
+ * Variants are written to a temporary file which is renamed once complete.
+ * </p>
+ * 
+ * <p>
+ * Compression returns a manifest with the paths of all files that have an up to date variant. The
+ * manifest is used by {@link StaticContent} to serve variants without compressing on the request path.
+ * </p>
+ * 
+ * @author Bojan Pisler, NetDigital Sweden AB
+ * @see StaticContent
+ *
+ */
+class StaticContentCompressor {
+	
+	private static Logger logger = Logger.getLogger(StaticContentCompressor.class);
+	
+	private File baseDir;
+	
+	private HashSet<String> contentTypes;
+	
+	private long minSize;
+	
+	private Set<String> manifest;
+	
+	/**
+	 * Constructs a new static content compressor for the specified web application base directory which
+	 * compresses files with a content type in the specified comma separated list of content types and a
+	 * length of at least the specified minimum size.
+	 * 
+	 * @param baseDir the web application base directory
+	 * @param contentTypes comma separated list of compressed content types
+	 * @param minSize minimum file length in bytes to compress
+	 */
+	StaticContentCompressor(File baseDir, String contentTypes, long minSize) {
+		super();
+		this.baseDir = baseDir;
+		this.contentTypes = new HashSet<String>();
+		this.minSize = minSize;
+		
+		if(contentTypes != null) {
+			for(String contentType : contentTypes.split(",")) {
+				contentType = contentType.trim().toLowerCase();
+				
+				if(!contentType.equals("")) {
+					this.contentTypes.add(contentType);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Compresses all compressible static content files in the base directory of this compressor that lack
+	 * an up to date GZIP compressed variant.
+	 * 
+	 * @return manifest with paths relative to the base directory of files with an up to date variant
+	 */
+	Set<String> compress() {
+		this.manifest = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+		
+		if(this.baseDir == null || !baseDir.isDirectory() || contentTypes.isEmpty()) {
+			return this.manifest;
+		}
+		
+		ParallelTasks.invoke(new CompressDirectory(this.baseDir, "/"));
+		LogMF.debug(logger, "Compressed static content in {0}, {1} variants", this.baseDir, manifest.size());
+		return this.manifest;
+	}
+	
+	/**
+	 * Returns whether or not the specified file has a compressed content type and is large enough to
+	 * benefit from GZIP compression.
+	 * 
+	 * @param file the file
+	 * @return <code>true</code> if compressible, <code>false</code> otherwise
+	 */
+	boolean isCompressible(File file) {
+		String contentType = MimeTypes.getMimeTypeByExtenstion(file.getName());
+		return contentType != null && contentTypes.contains(contentType.toLowerCase()) && file.length() >= this.minSize;
+	}
+	
+	/**
+	 * Compresses the specified content file with GZIP into the specified variant file. The compressed
+	 * content is first written to a temporary file next to the variant file which is then renamed.
+	 * 
+	 * @param contentFile the file to compress
+	 * @param gzipFile the variant file to write
+	 * @throws IOException if unable to compress content file
+	 */
+	static void writeGzipFile(File contentFile, File gzipFile) throws IOException {
+		FileInputStream in = null;
+		FileOutputStream out = null;
+		File tmpGzipFile = new File(gzipFile.getPath() + "-" + System.currentTimeMillis() + Thread.currentThread().getId());
+		boolean done = false;
+		
+		try {
+			in = new FileInputStream(contentFile);
+			out = new FileOutputStream(tmpGzipFile);
+			GZIPOutputStream zOut = new GZIPOutputStream(out);
+			byte[] b = new byte[4096];
+			int len = 0;
+			
+			while((len = in.read(b)) > 0) {
+				zOut.write(b, 0, len);
+			}
+			
+			zOut.finish();
+			zOut.flush();
+			out.close();
+			out = null;
+			
+			if(gzipFile.exists()) {
+				gzipFile.delete();
+			}
+			
+			if(!tmpGzipFile.renameTo(gzipFile)) {
+				throw new IOException("Can't rename " + tmpGzipFile + " to " + gzipFile);
+			}
+			
+			done = true;
+		} finally {
+			if(in != null) {
+				try { in.close(); } catch(IOException e) {}
+			}
+			
+			if(out != null) {
+				try { out.close(); } catch(IOException e) {}
+			}
+			
+			if(!done && tmpGzipFile.exists()) {
+				tmpGzipFile.delete();
+			}
+		}
+	}
+	
+	/**
+	 * Walks a directory and forks tasks for its subdirectories and compressible files.
+	 * 
+	 * @author Bojan Pisler, NetDigital Sweden AB
+	 *
+	 */
+	private class CompressDirectory extends RecursiveAction {
+		
+		private static final long serialVersionUID = 1L;
+		
+		private File dir;
+		
+		private String path;
+		
+		private CompressDirectory(File dir, String path) {
+			super();
+			this.dir = dir;
+			this.path = path;
+		}
+		
+		protected void compute() {
+			File[] files = dir.listFiles();
+			
+			if(files == null) {
+				return;
+			}
+			
+			List<RecursiveAction> tasks = new ArrayList<RecursiveAction>();
+			
+			for(File file : files) {
+				String name = file.getName();
+				String filePath = this.path + name;
+				
+				if(file.isDirectory()) {
+					if(!filePath.equals("/WEB-INF") && !filePath.equals("/META-INF")) {
+						tasks.add(new CompressDirectory(file, filePath + "/"));
+					}
+				} else if(!name.endsWith(".gz") && name.indexOf(".gz-") == -1 && isCompressible(file)) {
+					tasks.add(new CompressFile(file, filePath));
+				}
+			}
+			
+			invokeAll(tasks);
+		}
+	}
+	
+	/**
+	 * Compresses a single file unless it has an up to date variant and adds it to the manifest.
+	 * 
+	 * @author Bojan Pisler, NetDigital Sweden AB
+	 *
+	 */
+	private class CompressFile extends RecursiveAction {
+		
+		private static final long serialVersionUID = 1L;
+		
+		private File file;
+		
+		private String path;
+		
+		private CompressFile(File file, String path) {
+			super();
+			this.file = file;
+			this.path = path;
+		}
+		
+		protected void compute() {
+			File gzipFile = new File(file.getPath() + ".gz");
+			
+			try {
+				if(!gzipFile.isFile() || gzipFile.lastModified() < file.lastModified()) {
+					writeGzipFile(this.file, gzipFile);
+				}
+				
+				manifest.add(this.path);
+			} catch(IOException e) {
+				Object[] params = { this.file };
+				LogMF.warn(logger, e, "Can't compress static content {0}", params);
+			}
+		}
+	}
+}
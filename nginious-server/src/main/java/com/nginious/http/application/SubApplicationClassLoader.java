@@ -102,7 +102,7 @@ class SubApplicationClassLoader extends URLClassLoader {
 		File resourceFile = null;
 		
 		if(className) {
-			String subPath = name.replaceAll("\\.", File.separator) + ".class";
+			String subPath = name.replace('.', File.separatorChar) + ".class";
 			resourceFile = new File(this.jarOrClassDir, subPath);
 			
 			if(!resourceFile.exists()) {
@@ -138,11 +138,21 @@ class SubApplicationClassLoader extends URLClassLoader {
 			return jarOrClassDir.lastModified();
 		}
 		
-		String subPath = name.replaceAll("\\.", File.separator) + ".class";
+		String subPath = name.replace('.', File.separatorChar) + ".class";
 		File resourceFile = new File(this.jarOrClassDir, subPath);
 		return resourceFile.lastModified();
 	}
 	
+	/**
+	 * Returns whether or not the class with the specified binary name has been loaded by this sub class loader.
+	 * 
+	 * @param name binary name of the class
+	 * @return <code>true</code> if loaded, <code>false</code> otherwise
+	 */
+	boolean isLoaded(String name) {
+		return findLoadedClass(name) != null;
+	}
+	
 	public URL getResource(String name) {
 		return this.applicationClassLoader.getResourceInternal(name);
 	}
@@ -26,8 +26,16 @@ import com.nginious.http.HttpRequest;
  */
 public class PathParameters {
 	
+	/**
+	 * Name of request attribute holding names and values of parameter segments captured from a controller path
+	 * such as <code>/users/{id}</code>. Names and values are stored in pairs in a string array.
+	 */
+	public static final String ATTRIBUTE = PathParameters.class.getName();
+	
 	private String path;
 	
+	private String[] captured;
+	
 	private String[] parameters;
 	
 	/**
@@ -46,6 +54,8 @@ public class PathParameters {
 		}
 		
 		this.parameters = localPath.split("/");
+		Object captured = req.getAttribute(ATTRIBUTE);
+		this.captured = captured instanceof String[] ? (String[])captured : null;
 	}
 	
 	/**
@@ -75,4 +85,35 @@ public class PathParameters {
 	public String get(int index) {
 		return parameters == null || index >= parameters.length ? null : parameters[index];
 	}
+	
+	/**
+	 * Returns value of parameter segment with the specified name captured from the path of the controller
+	 * handling the request. A controller bound to the path <code>/users/{id}</code> gets the value
+	 * <code>42</code> for the name <code>id</code> when a request for <code>/users/42</code> is handled.
+	 * 
+	 * @param name the parameter segment name
+	 * @return the parameter value or <code>null</code> if no parameter with the specified name was captured
+	 */
+	public String get(String name) {
+		return get(this.captured, name);
+	}
+	
+	/**
+	 * Returns value of parameter with the specified name from the specified names and values stored in pairs.
+	 * 
+	 * @param captured the captured names and values or <code>null</code>
+	 * @param name the parameter name
+	 * @return the parameter value or <code>null</code> if not found
+	 */
+	public static String get(String[] captured, String name) {
+		if(captured != null) {
+			for(int i = 0; i + 1 < captured.length; i += 2) {
+				if(captured[i].equals(name)) {
+					return captured[i + 1];
+				}
+			}
+		}
+		
+		return null;
+	}
 }
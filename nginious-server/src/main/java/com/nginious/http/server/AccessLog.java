@@ -17,11 +17,13 @@
 package com.nginious.http.server;
 
 import java.io.IOException;
-import java.io.UnsupportedEncodingException;
 import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
 
 import org.apache.log4j.Logger;
 
+import com.nginious.http.HttpMethod;
 import com.nginious.http.HttpStatus;
 
 /**
@@ -29,8 +31,10 @@ import com.nginious.http.HttpStatus;
  * A separate thread takes log entries from the queue and writes them to the log file.
  * 
  * <p>
- * The maximum queue size is 1000 entries. When this limit is reached callers block until a slot in the 
- * queue is available.
+ * The maximum queue size is 1024 entries. When this limit is reached the configured overflow policy
+ * decides whether callers block until a slot in the queue is available, entries are dropped or entries
+ * are spilled to an unbounded queue. Queued entries are written to the log file in batches once every
+ * flush interval.
  * </p>
  * 
  * <p>
@@ -38,6 +42,12 @@ import com.nginious.http.HttpStatus;
  * a new file with the name "access.log" is created for writing. A history of 5 log files is kept.
  * </p>
  * 
+ * <p>
+ * Log entries are formatted directly into a byte buffer reused by each calling platform thread. Virtual
+ * threads take a byte buffer from a small shared pool instead. The timestamp is formatted once per second
+ * and shared by all threads.
+ * </p>
+ * 
  * @author Bojan Pisler, NetDigital Sweden AB
  *
  */
@@ -45,19 +55,56 @@ class AccessLog {
 	
 	private static Logger logger = Logger.getLogger(AccessLog.class);
 	
+	private static final int QUEUE_SIZE = 1024;
+	
+	private static final byte[] EMPTY_FIELD = { '"', '-', '"' };
+	
+	private static final int MAX_POOLED_BUFFERS = 64;
+	
+	private static ThreadLocal<LineBuffer> buffers = new ThreadLocal<LineBuffer>() {
+		protected LineBuffer initialValue() {
+			return new LineBuffer();
+		}
+	};
+	
+	private static ArrayBlockingQueue<LineBuffer> pooledBuffers = new ArrayBlockingQueue<LineBuffer>(MAX_POOLED_BUFFERS);
+	
+	private static volatile Timestamp timestamp = new Timestamp(System.currentTimeMillis() / 1000L);
+	
 	private FileLogConsumer consumer;
 	
 	private String accessLogPath;
 	
+	private long flushIntervalMillis;
+	
+	private FileLogConsumer.OverflowPolicy overflowPolicy;
+	
 	/**
-	 * Constructs a new access log which writes its data to the specified access log path.
+	 * Constructs a new access log which writes its data to the specified access log path in batches once every
+	 * specified flush interval. The specified overflow policy, one of "block", "drop" or "spill", is applied
+	 * when the queue is full. Unknown overflow policies fall back to "block".
 	 * 
 	 * @param accessLogPath the access log path
+	 * @param flushIntervalMillis interval in milliseconds between writes to the access log
+	 * @param overflowPolicy the overflow policy
 	 */
-	AccessLog(String accessLogPath) {
+	AccessLog(String accessLogPath, long flushIntervalMillis, String overflowPolicy) {
 		super();
 		this.accessLogPath = accessLogPath;
-		this.consumer = new FileLogConsumer(this.accessLogPath);		
+		this.flushIntervalMillis = flushIntervalMillis;
+		
+		try {
+			this.overflowPolicy = FileLogConsumer.OverflowPolicy.parse(overflowPolicy);
+		} catch(RuntimeException e) {
+			logger.warn("Unknown access log overflow policy " + overflowPolicy + ", using block");
+			this.overflowPolicy = FileLogConsumer.OverflowPolicy.BLOCK;
+		}
+		
+		this.consumer = createConsumer();
+	}
+	
+	private FileLogConsumer createConsumer() {
+		return new FileLogConsumer(this.accessLogPath, QUEUE_SIZE, this.flushIntervalMillis, this.overflowPolicy);
 	}
 	
 	/**
@@ -66,7 +113,7 @@ class AccessLog {
 	 * @throws IOException if unable to open access log
 	 */
 	void open() throws IOException {
-		this.consumer = new FileLogConsumer(this.accessLogPath);
+		this.consumer = createConsumer();
 		consumer.start();
 	}
 	
@@ -78,63 +125,241 @@ class AccessLog {
 	void close() throws IOException {
 		if(consumer != null) {
 			consumer.stop();
+			long numDroppedLines = consumer.getNumDroppedLines();
+			
+			if(numDroppedLines > 0L) {
+				logger.warn("Dropped " + numDroppedLines + " access log entries with full queue");
+			}
 		}
 	}
 	
 	/**
-	 * Queues a combined log entry with the specified remote IP, request time, request URI, status, response bytes, referer and agent
-	 * for writing.
+	 * Returns number of access log entries dropped because the queue was full since the access log was opened.
+	 * 
+	 * @return the number of dropped access log entries
+	 */
+	long getNumDroppedLines() {
+		return consumer.getNumDroppedLines();
+	}
+	
+	/**
+	 * Queues a combined log entry with the specified remote IP, request time, request method, URI and version, 
+	 * status, response bytes, referer and agent for writing.
 	 * 
 	 * @param remoteIp remote IP of the HTTP request
 	 * @param requestTimeMillis request time for the HTTP request
-	 * @param request request URI
+	 * @param method request method
+	 * @param uri request URI
+	 * @param version request HTTP version
 	 * @param status status code for request
 	 * @param responseBytes number of bytes returned in response for request
 	 * @param referer request referer
 	 * @param agent request agent
 	 */
-	void write(String remoteIp, long requestTimeMillis, String request, HttpStatus status, int responseBytes, String referer, String agent) {
-		StringBuffer line = new StringBuffer();
-		line.append(remoteIp); // Remote IP
-		line.append(" - - ["); // RFC 931 username
+	void write(String remoteIp, long requestTimeMillis, HttpMethod method, String uri, String version, 
+			HttpStatus status, int responseBytes, String referer, String agent) {
+		consumer.consume(format(remoteIp, requestTimeMillis, method, uri, version, status, responseBytes, referer, agent));
+	}
+	
+	/**
+	 * Formats a combined log entry with the specified remote IP, request time, request method, URI and version, 
+	 * status, response bytes, referer and agent. Characters outside of ISO-8859-1 are replaced with '?'.
+	 * 
+	 * @param remoteIp remote IP of the HTTP request
+	 * @param requestTimeMillis request time for the HTTP request
+	 * @param method request method
+	 * @param uri request URI
+	 * @param version request HTTP version
+	 * @param status status code for request
+	 * @param responseBytes number of bytes returned in response for request
+	 * @param referer request referer
+	 * @param agent request agent
+	 * @return the formatted log line including the trailing line feed
+	 */
+	static byte[] format(String remoteIp, long requestTimeMillis, HttpMethod method, String uri, String version, 
+			HttpStatus status, int responseBytes, String referer, String agent) {
+		boolean virtual = TaskExecutor.isVirtualThread();
+		LineBuffer line = virtual ? pooledBuffers.poll() : buffers.get();
 		
-		// datetime dd/MMM/yyyy:HH:mm:ss Z
-		SimpleDateFormat format = new SimpleDateFormat("dd/MMM/yyyy:HH:mm:ss Z");
-		line.append(format.format(requestTimeMillis));
-
-		line.append("] \"");
-		line.append(request); // Request
-		line.append("\" ");
+		if(line == null) {
+			line = new LineBuffer();
+		}
+		
+		line.reset();
+		line.append(remoteIp); // Remote IP
+		line.append(' ');
+		line.append('-'); // RFC 931 username
+		line.append(' ');
+		line.append('-'); // Authenticated user
+		line.append(' ');
+		line.append('[');
+		line.append(timestamp(requestTimeMillis)); // datetime dd/MMM/yyyy:HH:mm:ss Z
+		line.append(']');
+		line.append(' ');
+		line.append('"');
+		line.append(method != null ? method.name() : null); // Request
+		line.append(' ');
+		line.append(uri);
+		line.append(' ');
+		line.append(version);
+		line.append('"');
+		line.append(' ');
 		line.append(status.getStatusCode()); // Status
-		line.append(" ");
+		line.append(' ');
 		line.append(responseBytes); // Response bytes
+		line.append(' ');
+		line.appendQuoted(referer); // Referer
+		line.append(' ');
+		line.appendQuoted(agent); // Agent
+		line.append(' ');
+		line.append(EMPTY_FIELD); // Cookie
+		line.append('\n');
+		byte[] bytes = line.toByteArray();
 		
-		if(referer != null) { // Referer
-			line.append(" \"");
-			line.append(referer);
-			line.append("\" ");
-		} else {
-			line.append(" \"-\"");
+		if(virtual) {
+			pooledBuffers.offer(line);
 		}
 		
-		if(agent != null) { // Agent
-			line.append(" \"");
-			line.append(agent);
-			line.append("\"");
-		} else {
-			line.append(" \"-\"");
+		return bytes;
+	}
+	
+	/**
+	 * Returns the formatted timestamp for the second of the specified time. The last formatted timestamp is
+	 * reused while requests are logged within the same second.
+	 */
+	private static byte[] timestamp(long millis) {
+		long second = millis / 1000L;
+		Timestamp current = timestamp;
+		
+		if(current.second != second) {
+			current = new Timestamp(second);
+			timestamp = current;
 		}
 		
-		line.append(" \"-\""); // Cookie
-		line.append("\n");
+		return current.formatted;
+	}
+	
+	/**
+	 * A timestamp formatted for one second.
+	 * 
+	 * @author Bojan Pisler, NetDigital Sweden AB
+	 *
+	 */
+	private static class Timestamp {
 		
+		private long second;
 		
-		try {
-			byte[] outLine = line.toString().getBytes("iso-8859-1");
-			consumer.consume(outLine);
-		} catch(UnsupportedEncodingException e) {
-			logger.warn("Unsupported encoding", e);
+		private byte[] formatted;
+		
+		private Timestamp(long second) {
+			super();
+			this.second = second;
+			SimpleDateFormat format = new SimpleDateFormat("dd/MMM/yyyy:HH:mm:ss Z");
+			String date = format.format(second * 1000L);
+			this.formatted = new byte[date.length()];
+			
+			for(int i = 0; i < formatted.length; i++) {
+				formatted[i] = (byte)date.charAt(i);
+			}
 		}
+	}
 	
-	}	
+	/**
+	 * A growable byte buffer for formatting log lines which is reused by one thread at a time.
+	 * 
+	 * @author Bojan Pisler, NetDigital Sweden AB
+	 *
+	 */
+	private static class LineBuffer {
+		
+		private static final byte[] NULL = { 'n', 'u', 'l', 'l' };
+		
+		private byte[] data;
+		
+		private int length;
+		
+		private LineBuffer() {
+			super();
+			this.data = new byte[256];
+		}
+		
+		private void reset() {
+			this.length = 0;
+		}
+		
+		private void ensureCapacity(int size) {
+			if(this.length + size > data.length) {
+				this.data = Arrays.copyOf(this.data, Math.max(data.length * 2, this.length + size));
+			}
+		}
+		
+		private void append(char ch) {
+			ensureCapacity(1);
+			data[length++] = (byte)ch;
+		}
+		
+		private void append(byte[] bytes) {
+			ensureCapacity(bytes.length);
+			System.arraycopy(bytes, 0, this.data, this.length, bytes.length);
+			this.length += bytes.length;
+		}
+		
+		private void append(String value) {
+			if(value == null) {
+				append(NULL);
+				return;
+			}
+			
+			int len = value.length();
+			ensureCapacity(len);
+			
+			for(int i = 0; i < len; i++) {
+				char ch = value.charAt(i);
+				data[length++] = ch < 256 ? (byte)ch : (byte)'?';
+			}
+		}
+		
+		private void appendQuoted(String value) {
+			if(value == null) {
+				append(EMPTY_FIELD);
+				return;
+			}
+			
+			append('"');
+			append(value);
+			append('"');
+		}
+		
+		private void append(int value) {
+			if(value < 0) {
+				append('-');
+				
+				if(value == Integer.MIN_VALUE) {
+					append("2147483648");
+					return;
+				}
+				
+				value = -value;
+			}
+			
+			int digits = 1;
+			
+			for(int limit = 10; digits < 10 && value >= limit; limit *= 10) {
+				digits++;
+			}
+			
+			ensureCapacity(digits);
+			
+			for(int i = this.length + digits - 1; i >= this.length; i--) {
+				data[i] = (byte)('0' + value % 10);
+				value /= 10;
+			}
+			
+			this.length += digits;
+		}
+		
+		private byte[] toByteArray() {
+			return Arrays.copyOf(this.data, this.length);
+		}
+	}
 }
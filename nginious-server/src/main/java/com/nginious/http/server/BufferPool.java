@@ -0,0 +1,301 @@
+/**
+ * Copyright 2012 NetDigital Sweden AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.nginious.http.server;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.nginious.http.stats.ServerStatistics;
+
+/**
+ * A server wide pool of direct byte buffers used by connections for reading and by HTTP output for
+ * writing. Buffers are handed out in a fixed set of size classes. A request for a buffer is served by
+ * the smallest size class which is large enough.
+ * 
+ * <p>
+ * Each platform thread keeps a small cache of released buffers per size class which is checked first
+ * when a buffer is acquired. Buffers which do not fit in the thread cache are put in a shared pool for
+ * the size class. Virtual threads are created per task and use the shared pool directly since a thread
+ * cache would strand buffers when the thread ends. When both the thread cache and the shared pool are empty a slab of direct memory is
+ * allocated and sliced into buffers of the requested size class. One of the buffers is returned and
+ * the rest are put in the shared pool.
+ * </p>
+ * 
+ * <p>
+ * All buffers acquired from the pool must be either released with {@link #release(ByteBuffer)} or
+ * discarded with {@link #discard(ByteBuffer)}. The number of buffers currently acquired is tracked
+ * in {@link ServerStatistics} and reported as a leak when the server is stopped.
+ * </p>
+ * 
+ * @author Bojan Pisler, NetDigital Sweden AB
+ *
+ */
+public class BufferPool {
+	
+	private static final int[] SIZE_CLASSES = { 1024, 2048, 4096, 8192, 16384 };
+	
+	private static final int SLAB_SIZE = 64 * 1024;
+	
+	private static final int MAX_POOLED_BUFFERS = 512;
+	
+	private static final int MAX_CACHED_BUFFERS = 16;
+	
+	private ServerStatistics statistics;
+	
+	private SizeClass[] sizeClasses;
+	
+	private ThreadLocal<ThreadCache> caches;
+	
+	/**
+	 * Constructs a new empty buffer pool which updates the specified server statistics.
+	 * 
+	 * @param statistics the server statistics to update with buffer pool counters
+	 */
+	public BufferPool(ServerStatistics statistics) {
+		super();
+		this.statistics = statistics;
+		this.sizeClasses = new SizeClass[SIZE_CLASSES.length];
+		
+		for(int i = 0; i < SIZE_CLASSES.length; i++) {
+			sizeClasses[i] = new SizeClass(SIZE_CLASSES[i]);
+		}
+		
+		this.caches = new ThreadLocal<ThreadCache>() {
+			protected ThreadCache initialValue() {
+				return new ThreadCache();
+			}
+		};
+	}
+	
+	/**
+	 * Acquires a direct byte buffer with a capacity of at least the specified size. The returned buffer
+	 * is cleared. Requests for buffers larger than the largest size class are served with a new direct
+	 * buffer which is not pooled.
+	 * 
+	 * @param size the minimum buffer capacity
+	 * @return the acquired buffer
+	 */
+	public ByteBuffer acquire(int size) {
+		int index = sizeClassIndex(size);
+		
+		if(index < 0) {
+			return ByteBuffer.allocateDirect(size);
+		}
+		
+		ByteBuffer buffer = null;
+		
+		if(!TaskExecutor.isVirtualThread()) {
+			buffer = caches.get().poll(index);
+		}
+		
+		if(buffer == null) {
+			buffer = sizeClasses[index].poll();
+		}
+		
+		if(buffer != null) {
+			statistics.addBufferAcquire(true);
+			return buffer;
+		}
+		
+		statistics.addBufferAcquire(false);
+		return sizeClasses[index].allocate();
+	}
+	
+	/**
+	 * Releases the specified buffer back to this pool. The buffer must not be used by the caller after
+	 * it has been released. Buffers not acquired from this pool are ignored.
+	 * 
+	 * @param buffer the buffer to release
+	 */
+	public void release(ByteBuffer buffer) {
+		int index = pooledSizeClassIndex(buffer);
+		
+		if(index < 0) {
+			return;
+		}
+		
+		buffer.clear();
+		boolean retained = false;
+		
+		if(!TaskExecutor.isVirtualThread()) {
+			retained = caches.get().offer(index, buffer);
+		}
+		
+		retained = retained || sizeClasses[index].offer(buffer);
+		statistics.addBufferRelease(retained);
+	}
+	
+	/**
+	 * Discards the specified buffer without returning it to this pool. Used when a buffer may still be
+	 * referenced elsewhere and can not safely be reused.
+	 * 
+	 * @param buffer the buffer to discard
+	 */
+	public void discard(ByteBuffer buffer) {
+		if(pooledSizeClassIndex(buffer) >= 0) {
+			statistics.addBufferRelease(false);
+		}
+	}
+	
+	/**
+	 * Returns the index of the smallest size class which can hold the specified size.
+	 * 
+	 * @param size the size
+	 * @return the size class index or -1 if size is larger than the largest size class
+	 */
+	private int sizeClassIndex(int size) {
+		for(int i = 0; i < SIZE_CLASSES.length; i++) {
+			if(size <= SIZE_CLASSES[i]) {
+				return i;
+			}
+		}
+		
+		return -1;
+	}
+	
+	/**
+	 * Returns the index of the size class the specified buffer belongs to.
+	 * 
+	 * @param buffer the buffer
+	 * @return the size class index or -1 if the buffer does not belong to this pool
+	 */
+	private int pooledSizeClassIndex(ByteBuffer buffer) {
+		if(buffer == null || !buffer.isDirect()) {
+			return -1;
+		}
+		
+		int capacity = buffer.capacity();
+		
+		for(int i = 0; i < SIZE_CLASSES.length; i++) {
+			if(capacity == SIZE_CLASSES[i]) {
+				return i;
+			}
+		}
+		
+		return -1;
+	}
+	
+	/**
+	 * Shared pool of buffers for one size class.
+	 * 
+	 * @author Bojan Pisler, NetDigital Sweden AB
+	 *
+	 */
+	private class SizeClass {
+		
+		private int size;
+		
+		private ConcurrentLinkedQueue<ByteBuffer> buffers;
+		
+		private AtomicInteger numBuffers;
+		
+		private SizeClass(int size) {
+			super();
+			this.size = size;
+			this.buffers = new ConcurrentLinkedQueue<ByteBuffer>();
+			this.numBuffers = new AtomicInteger(0);
+		}
+		
+		private ByteBuffer poll() {
+			ByteBuffer buffer = buffers.poll();
+			
+			if(buffer != null) {
+				numBuffers.decrementAndGet();
+			}
+			
+			return buffer;
+		}
+		
+		private boolean offer(ByteBuffer buffer) {
+			if(numBuffers.incrementAndGet() > MAX_POOLED_BUFFERS) {
+				numBuffers.decrementAndGet();
+				return false;
+			}
+			
+			buffers.add(buffer);
+			return true;
+		}
+		
+		/**
+		 * Allocates a new slab of direct memory and slices it into buffers of this size class. The
+		 * first buffer is returned and the remaining buffers are put in this shared pool.
+		 * 
+		 * @return the first buffer in the allocated slab
+		 */
+		private ByteBuffer allocate() {
+			int numSlices = SLAB_SIZE / this.size;
+			ByteBuffer slab = ByteBuffer.allocateDirect(numSlices * this.size);
+			ByteBuffer first = null;
+			int numPooled = 0;
+			
+			for(int i = 0; i < numSlices; i++) {
+				slab.limit((i + 1) * this.size);
+				slab.position(i * this.size);
+				ByteBuffer slice = slab.slice();
+				
+				if(first == null) {
+					first = slice;
+				} else if(offer(slice)) {
+					numPooled++;
+				}
+			}
+			
+			statistics.addBuffersPooled(numPooled);
+			return first;
+		}
+	}
+	
+	/**
+	 * Per thread cache of released buffers for all size classes.
+	 * 
+	 * @author Bojan Pisler, NetDigital Sweden AB
+	 *
+	 */
+	private static class ThreadCache {
+		
+		private ByteBuffer[][] buffers;
+		
+		private int[] numBuffers;
+		
+		private ThreadCache() {
+			super();
+			this.buffers = new ByteBuffer[SIZE_CLASSES.length][MAX_CACHED_BUFFERS];
+			this.numBuffers = new int[SIZE_CLASSES.length];
+		}
+		
+		private ByteBuffer poll(int index) {
+			if(numBuffers[index] == 0) {
+				return null;
+			}
+			
+			int last = --numBuffers[index];
+			ByteBuffer buffer = buffers[index][last];
+			buffers[index][last] = null;
+			return buffer;
+		}
+		
+		private boolean offer(int index, ByteBuffer buffer) {
+			if(numBuffers[index] == MAX_CACHED_BUFFERS) {
+				return false;
+			}
+			
+			buffers[index][numBuffers[index]++] = buffer;
+			return true;
+		}
+	}
+}
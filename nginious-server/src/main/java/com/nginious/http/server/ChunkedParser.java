@@ -42,6 +42,8 @@ class ChunkedParser {
     
     private HttpContext context;
     
+    private int position;
+    
     ChunkedParser(HttpContext context) {
 		super();
 		this.state = State.CHUNKED_CONTENT;
@@ -49,6 +51,10 @@ class ChunkedParser {
 		this.context = context;
 	}
 	
+	int getPosition() {
+		return this.position;
+	}
+	
 	@SuppressWarnings("incomplete-switch")
 	boolean parse(byte[] dataFragment) throws IOException, HttpException {
 		int pos = 0;
@@ -85,6 +91,7 @@ class ChunkedParser {
 						this.contentLength = content.size();
 						content.compact();
 						context.content((int)this.contentLength, this.content);
+						this.position = pos;
 						return true;
 					} else {
 						this.state = State.CHUNK;
@@ -110,6 +117,7 @@ class ChunkedParser {
                         this.state = State.END;
                         content.compact();
                         context.content((int)this.contentLength, this.content);
+                        this.position = pos;
                         return true;
 					} else {
 						this.state = State.CHUNK;
@@ -19,9 +19,13 @@ package com.nginious.http.server;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.SocketChannel;
+import java.util.Iterator;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Handles reading and writing of data for a server connection. Instances are created by
@@ -31,32 +35,73 @@ import java.util.concurrent.ConcurrentLinkedQueue;
  * This class is typically subclassed to implement protocol specific functionality.
  * </p>
  * 
+ * <p>
+ * A connection has at most one read deadline, set by subclasses for the current protocol phase with
+ * {@link #setReadTimeout(ConnectionTimeout)}, and one write deadline which is set while pending data can
+ * not be written because the socket channel would block. The earliest of the two is tracked by the
+ * owning reactor which closes the connection once the deadline has passed.
+ * </p>
+ * 
  * @author Bojan Pisler, NetDigital Sweden AB
  *
  */
 public abstract class Connection {
 	
+	private static final int DISPOSED = 1 << 30;
+	
+	private static final int MAX_GATHER_BUFFERS = 16;
+	
+	private static final long MAX_WRITE_BYTES = 256 * 1024;
+	
 	private Server server;
 	
+	private Reactor reactor;
+	
 	private SocketChannel channel;
 	
 	private InetSocketAddress remoteAddress;
 	
 	private SelectionKey key;
 	
-	private boolean closed;
+	private volatile boolean closed;
+	
+	private volatile boolean reading;
+	
+	private ConcurrentLinkedQueue<PendingWrite> pendingWrites;
+	
+	private PendingWrite[] gatherWrites;
+	
+	private ByteBuffer[] gatherBuffers;
+	
+	private AtomicBoolean writing;
+	
+	private volatile Connection pendingSwitchConnection;
+	
+	private AtomicInteger pendingOperation;
 	
-	private boolean reading;
+	private AtomicInteger readers;
 	
-	private ConcurrentLinkedQueue<ByteBuffer> pendingWrites;
+	private TimingWheel.Timer timer;
 	
-	private Connection pendingSwitchConnection;
+	private volatile ConnectionTimeout readTimeout;
+	
+	private volatile long readDeadlineMillis;
+	
+	private volatile long writeDeadlineMillis;
+	
+	private volatile long deadlineMillis;
 	
 	/**
 	 * Constructs a new empty connection.
 	 */
 	protected Connection() {
-		this.pendingWrites = new ConcurrentLinkedQueue<ByteBuffer>();
+		this.pendingWrites = new ConcurrentLinkedQueue<PendingWrite>();
+		this.gatherWrites = new PendingWrite[MAX_GATHER_BUFFERS];
+		this.gatherBuffers = new ByteBuffer[MAX_GATHER_BUFFERS];
+		this.writing = new AtomicBoolean(false);
+		this.pendingOperation = new AtomicInteger(0);
+		this.readers = new AtomicInteger(0);
+		this.timer = new TimingWheel.Timer(this);
 		this.closed = false;
 	}
 	
@@ -94,6 +139,166 @@ public abstract class Connection {
 		this.server = server;
 	}
 	
+	/**
+	 * Returns the reactor which owns this connection.
+	 * 
+	 * @return the reactor
+	 */
+	Reactor getReactor() {
+		return this.reactor;
+	}
+	
+	/**
+	 * Sets the reactor which owns this connection to the specified reactor.
+	 * 
+	 * @param reactor the reactor
+	 */
+	void setReactor(Reactor reactor) {
+		this.reactor = reactor;
+	}
+	
+	/**
+	 * Returns the timer used by the owning reactor to track the deadline for this connection.
+	 * 
+	 * @return the timer
+	 */
+	TimingWheel.Timer getTimer() {
+		return this.timer;
+	}
+	
+	/**
+	 * Returns the earliest deadline for this connection.
+	 * 
+	 * @return the deadline in milliseconds or zero if this connection has no deadline
+	 */
+	long getDeadlineMillis() {
+		return this.deadlineMillis;
+	}
+	
+	/**
+	 * Returns the timeout which caused the deadline for this connection to pass at the specified time.
+	 * 
+	 * @param nowMillis the current time in milliseconds
+	 * @return the expired timeout
+	 */
+	ConnectionTimeout getExpiredTimeout(long nowMillis) {
+		long writeDeadlineMillis = this.writeDeadlineMillis;
+		
+		if(writeDeadlineMillis != 0L && writeDeadlineMillis <= nowMillis) {
+			return ConnectionTimeout.WRITE;
+		}
+		
+		return this.readTimeout;
+	}
+	
+	/**
+	 * Returns the timeout for the read phase this connection is currently in.
+	 * 
+	 * @return the read timeout or <code>null</code> if no read deadline is set
+	 */
+	protected ConnectionTimeout getReadTimeout() {
+		return this.readTimeout;
+	}
+	
+	/**
+	 * Sets the read deadline for this connection according to the servers timeout for the specified
+	 * phase, counting from now. Replaces any previously set read deadline.
+	 * 
+	 * @param timeout the read phase
+	 */
+	protected void setReadTimeout(ConnectionTimeout timeout) {
+		long timeoutMillis = server.getTimeoutMillis(timeout);
+		this.readTimeout = timeout;
+		this.readDeadlineMillis = timeoutMillis > 0L ? System.currentTimeMillis() + timeoutMillis : 0L;
+		updateDeadline();
+	}
+	
+	/**
+	 * Clears the read deadline for this connection.
+	 */
+	protected void clearReadTimeout() {
+		this.readTimeout = null;
+		this.readDeadlineMillis = 0L;
+		updateDeadline();
+	}
+	
+	/**
+	 * Sets or clears the write deadline for this connection. The deadline is moved forward each time
+	 * some but not all pending data has been written.
+	 * 
+	 * @param blocked <code>true</code> if pending data remains to be written, <code>false</code> otherwise
+	 */
+	private void setWriteBlocked(boolean blocked) {
+		long timeoutMillis = server.getTimeoutMillis(ConnectionTimeout.WRITE);
+		
+		if(blocked && timeoutMillis > 0L) {
+			this.writeDeadlineMillis = System.currentTimeMillis() + timeoutMillis;
+			updateDeadline();
+		} else if(this.writeDeadlineMillis != 0L) {
+			this.writeDeadlineMillis = 0L;
+			updateDeadline();
+		}
+	}
+	
+	/**
+	 * Recalculates the earliest deadline for this connection. The connection is rescheduled with its reactor
+	 * if the deadline is earlier than the deadline it is currently scheduled for. Later deadlines are picked up
+	 * by the reactor when the scheduled deadline is reached.
+	 */
+	private void updateDeadline() {
+		long readDeadlineMillis = this.readDeadlineMillis;
+		long writeDeadlineMillis = this.writeDeadlineMillis;
+		long deadlineMillis = readDeadlineMillis;
+		
+		if(deadlineMillis == 0L || (writeDeadlineMillis != 0L && writeDeadlineMillis < deadlineMillis)) {
+			deadlineMillis = writeDeadlineMillis;
+		}
+		
+		this.deadlineMillis = deadlineMillis;
+		Reactor reactor = this.reactor;
+		
+		if(deadlineMillis == 0L || reactor == null) {
+			return;
+		}
+		
+		long scheduledMillis = timer.getScheduledMillis();
+		
+		if(scheduledMillis == 0L || deadlineMillis < scheduledMillis) {
+			reactor.scheduleTimeout(this);
+		}
+	}
+	
+	/**
+	 * Sets the pending operation for this connection to the specified operation unless a close
+	 * operation is already pending.
+	 * 
+	 * @param operation the operation
+	 * @return <code>true</code> if no operation was pending and the connection must be scheduled with its reactor, 
+	 * 	<code>false</code> otherwise
+	 */
+	boolean setPendingOperation(int operation) {
+		while(true) {
+			int current = pendingOperation.get();
+			
+			if(current == Reactor.OPERATION_CLOSE) {
+				return false;
+			}
+			
+			if(pendingOperation.compareAndSet(current, operation)) {
+				return current == 0;
+			}
+		}
+	}
+	
+	/**
+	 * Returns and clears the pending operation for this connection.
+	 * 
+	 * @return the pending operation or 0 if no operation is pending
+	 */
+	int takePendingOperation() {
+		return pendingOperation.getAndSet(0);
+	}
+	
 	/**
 	 * Returns the underlying socket channel for this connection.
 	 * 
@@ -134,7 +339,7 @@ public abstract class Connection {
 	
 	/**
 	 * Handles handover of underlying connection properties from this connection to the
-	 * specified connection. Properties include server, socket channel and selection key.
+	 * specified connection. Properties include server, reactor, socket channel and selection key.
 	 * This method is typically used when handing over from a connection implementing one
 	 * protocol to another connection implementing another protocol
 	 * 
@@ -148,6 +353,7 @@ public abstract class Connection {
 	 */
 	public void switchConnection(Connection conn) throws IOException {
 		conn.setServer(getServer());
+		conn.setReactor(getReactor());
 		conn.setChannel(getChannel());
 		conn.setSelectionKey(getSelectionKey());
 		this.pendingSwitchConnection = conn;
@@ -185,57 +391,214 @@ public abstract class Connection {
 	 * method is called as a result of a previous call to {@link Server#queueWrite(Connection)}.
 	 * 
 	 * <p>
-	 * This method writes data to the socket channel for as long as there is data to write. Once
-	 * there is no more data to write the method either calls {@link Server#queueClose(Connection)}
-	 * if the close flag is raised or {@link Server#queueRead(Connection)} to inform server to
-	 * read data for this connection.
+	 * This method writes pending data to the socket channel with gathering writes until all data is
+	 * written, the socket channel would block or the write budget for one call is used up. Once
+	 * there is no more data to write the underlying socket channel is closed if the close flag is
+	 * raised or {@link Server#queueRead(Connection)} is called to inform server to read data for
+	 * this connection.
 	 * </p>
 	 * 
 	 * @throws IOException if an I/O error occurs.
 	 */
 	protected void write() throws IOException {
-		boolean write = true;
+		if(!writing.compareAndSet(false, true)) {
+			// Written directly by thread queuing write, which queues a new write if needed
+			return;
+		}
+		
+		boolean done = false;
 		
-		while(write && !pendingWrites.isEmpty()) {
-			ByteBuffer buff = pendingWrites.peek();
-			channel.write(buff);
+		try {
+			done = flush();
+		} finally {
+			writing.set(false);
+		}
+		
+		setWriteBlocked(!done);
+		
+		if(!done) {
+			return;
+		}
+		
+		if(this.closed) {
+			key.interestOps(0);
+			key.cancel();
+			channel.close();
+			dispose();
+		} else {
+			key.interestOps(0);
+			written();
+		}
+	}
+	
+	/**
+	 * Writes pending data to the socket channel using gathering writes of up to {@link #MAX_GATHER_BUFFERS}
+	 * buffers at a time. Pending file regions are sent with {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)}
+	 * without copying file content to buffers. Writing stops once all pending data has been written, the socket
+	 * channel would block or more than {@link #MAX_WRITE_BYTES} bytes have been written. Must only be called by
+	 * the thread which has raised the writing flag.
+	 * 
+	 * @return <code>true</code> if all pending data has been written, <code>false</code> otherwise
+	 * @throws IOException if an I/O error occurs
+	 */
+	private boolean flush() throws IOException {
+		long budget = MAX_WRITE_BYTES;
+		
+		while(budget > 0) {
+			int numBuffers = 0;
+			Iterator<PendingWrite> it = pendingWrites.iterator();
+			
+			while(numBuffers < MAX_GATHER_BUFFERS && it.hasNext()) {
+				PendingWrite pending = it.next();
+				
+				if(pending.file != null) {
+					break;
+				}
+				
+				gatherWrites[numBuffers] = pending;
+				gatherBuffers[numBuffers++] = pending.buffer;
+			}
 			
-			if(buff.remaining() == 0) {
+			if(numBuffers == 0) {
+				PendingWrite pending = pendingWrites.peek();
+				
+				if(pending == null) {
+					return true;
+				}
+				
+				long len = pending.transfer(channel, budget);
+				budget -= len;
+				
+				if(pending.remaining > 0) {
+					if(len == 0) {
+						return false;
+					}
+					
+					continue;
+				}
+				
 				pendingWrites.poll();
-				break;
-			} else {
-				write = false;
+				pending.release(server.getBufferPool());
+				continue;
 			}
-		}
-		
-		if(pendingWrites.isEmpty()) {
-			if(this.closed) {
-				key.interestOps(0);
-				key.cancel();
-				channel.close();
-			} else {
-				if(this.pendingSwitchConnection != null) {
-					key.attach(this.pendingSwitchConnection);
-					server.queueRead(this.pendingSwitchConnection);
-					this.pendingSwitchConnection = null;
-				} else if(this.reading) {
-					server.queueRead(this);
+			
+			try {
+				budget -= channel.write(gatherBuffers, 0, numBuffers);
+				
+				for(int i = 0; i < numBuffers; i++) {
+					if(gatherBuffers[i].hasRemaining()) {
+						return false;
+					}
+					
+					pendingWrites.poll();
+					gatherWrites[i].release(server.getBufferPool());
+				}
+			} finally {
+				for(int i = 0; i < numBuffers; i++) {
+					gatherWrites[i] = null;
+					gatherBuffers[i] = null;
 				}
 			}
 		}
+		
+		return pendingWrites.isEmpty();
+	}
+	
+	/**
+	 * Called when all pending data has been written. Hands over the socket channel to the connection
+	 * this connection has been switched to, if any, or queues a read if this connection has been switched
+	 * back to reading mode.
+	 */
+	private void written() {
+		if(this.pendingSwitchConnection != null) {
+			key.attach(this.pendingSwitchConnection);
+			server.queueRead(this.pendingSwitchConnection);
+			this.pendingSwitchConnection = null;
+			dispose();
+		} else if(this.reading) {
+			server.queueRead(this);
+		}
 	}
 	
 	/**
-	 * Adds the specified buffer to this connections pending writes and calls
-	 * server to queue write operation.
+	 * Adds the specified buffer to this connections pending writes and writes it to the socket channel
+	 * directly from the calling thread. A write operation is only queued with the server if the socket
+	 * channel would block or another thread is already writing.
 	 * 
 	 * @param buffer the data to write
 	 * @throws IOException if unable to queue write
 	 */
 	public void queueWrite(ByteBuffer buffer) throws IOException {
+		queueWrite(buffer, false);
+	}
+	
+	/**
+	 * Adds the specified buffer to this connections pending writes and writes it to the socket channel
+	 * directly from the calling thread. A write operation is only queued with the server if the socket
+	 * channel would block or another thread is already writing. A pooled buffer is released to the
+	 * servers buffer pool once it has been written.
+	 * 
+	 * @param buffer the data to write
+	 * @param pooled whether or not the buffer was acquired from the servers buffer pool
+	 * @throws IOException if unable to queue write
+	 */
+	void queueWrite(ByteBuffer buffer, boolean pooled) throws IOException {
+		queueWrite(new PendingWrite(buffer, pooled));
+	}
+	
+	/**
+	 * Adds the specified region of the specified file to this connections pending writes and writes it to
+	 * the socket channel directly from the calling thread. The file region is sent with
+	 * {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)} which lets the
+	 * operating system copy file content to the socket without passing it through heap or direct buffers.
+	 * The file channel is closed once the region has been written or this connection is closed.
+	 * 
+	 * @param file the file channel to write from
+	 * @param position position of first byte to write in file
+	 * @param count number of bytes to write
+	 * @throws IOException if unable to queue write
+	 */
+	void queueWrite(FileChannel file, long position, long count) throws IOException {
+		queueWrite(new PendingWrite(file, position, count));
+	}
+	
+	/**
+	 * Adds the specified pending write to this connections pending writes and writes pending data directly
+	 * from the calling thread unless another thread is already writing.
+	 * 
+	 * @param pending the pending write
+	 * @throws IOException if unable to queue write
+	 */
+	private void queueWrite(PendingWrite pending) throws IOException {
 		this.reading = false;
-		pendingWrites.add(buffer);
-		server.queueWrite(this);
+		pendingWrites.add(pending);
+		
+		// Write through unless another thread is already writing
+		if(!writing.compareAndSet(false, true)) {
+			server.queueWrite(this);
+			return;
+		}
+		
+		boolean done = false;
+		
+		try {
+			done = flush();
+		} catch(IOException e) {
+			close(true);
+			return;
+		} finally {
+			writing.set(false);
+		}
+		
+		setWriteBlocked(!done);
+		
+		if(!done) {
+			server.queueWrite(this);
+		} else if(this.closed) {
+			server.queueClose(this);
+		} else {
+			written();
+		}
 	}
 	
 	/**
@@ -244,35 +607,113 @@ public abstract class Connection {
 	 * @throws IOException if an I/O error occurs while reading data.
 	 */
 	void read() throws IOException {
-		read(this.channel);
+		if(!enterRead()) {
+			return;
+		}
+		
+		try {
+			read(this.channel);
+		} finally {
+			exitRead();
+		}
 	}
 	
 	/**
-	 * Reads data from the specified socket channel.
+	 * Registers a read in progress unless this connection has been disposed. Resources used for reading
+	 * are not released until {@link #exitRead()} is called.
 	 * 
-	 * @param channel the socket channel to read data from
-	 * @throws IOException if an I/O error occurs while reading data from the channel
+	 * @return <code>true</code> if read may proceed, <code>false</code> if this connection has been disposed
 	 */
-	protected abstract void read(SocketChannel channel) throws IOException;
+	boolean enterRead() {
+		while(true) {
+			int current = readers.get();
+			
+			if((current & DISPOSED) != 0) {
+				return false;
+			}
+			
+			if(readers.compareAndSet(current, current + 1)) {
+				return true;
+			}
+		}
+	}
 	
 	/**
-	 * Returns whether or not this connection has timed out. This method must be implemented
-	 * by connection subclasses implementing protocol specific functionality.
+	 * Unregisters a read in progress. Resources are released if this connection was disposed
+	 * during the read.
+	 */
+	void exitRead() {
+		if(readers.decrementAndGet() == DISPOSED) {
+			release();
+		}
+	}
+	
+	/**
+	 * Disposes this connection once its socket channel has been closed or it has been switched to
+	 * another connection. Pooled buffers waiting to be written are released immediately. Resources held
+	 * by subclasses are released with {@link #release()} as soon as no read is in progress.
+	 */
+	void dispose() {
+		while(true) {
+			int current = readers.get();
+			
+			if((current & DISPOSED) != 0) {
+				return;
+			}
+			
+			if(readers.compareAndSet(current, current | DISPOSED)) {
+				this.readTimeout = null;
+				this.readDeadlineMillis = 0L;
+				this.writeDeadlineMillis = 0L;
+				this.deadlineMillis = 0L;
+				PendingWrite pending = null;
+				
+				while((pending = pendingWrites.poll()) != null) {
+					pending.release(server.getBufferPool());
+				}
+				
+				if(current == 0) {
+					release();
+				}
+				
+				return;
+			}
+		}
+	}
+	
+	/**
+	 * Releases resources held by this connection, for example pooled buffers. Called once after
+	 * this connection has been disposed and no read is in progress. Subclasses holding pooled
+	 * resources must override this method.
+	 */
+	protected void release() {
+		return;
+	}
+	
+	/**
+	 * Reads data from the specified socket channel.
 	 * 
-	 * @return whether or not this connection has timed out
+	 * @param channel the socket channel to read data from
+	 * @throws IOException if an I/O error occurs while reading data from the channel
 	 */
-	protected abstract boolean isTimedOut();
+	protected abstract void read(SocketChannel channel) throws IOException;
 	
 	/**
-	 * Performs necessary cleanup on a timed out connection.
+	 * Performs necessary cleanup on a timed out connection. Called by the owning reactor before
+	 * the connection is closed.
 	 */
 	protected abstract void timedOut();
 	
 	/**
-	 * Switches this connection back to reading mode after one or more write operations.
+	 * Switches this connection back to reading mode after one or more write operations. A read is
+	 * queued immediately if all pending data has already been written.
 	 */
 	public void switchToRead() {
 		this.reading = true;
+		
+		if(pendingWrites.isEmpty() && (readers.get() & DISPOSED) == 0) {
+			server.queueRead(this);
+		}
 	}
 	
 	/**
@@ -296,11 +737,93 @@ public abstract class Connection {
 		this.closed = true;
 		
 		if(flushPendingWrites) {
-			pendingWrites.clear();
+			PendingWrite pending = null;
+			
+			while((pending = pendingWrites.poll()) != null) {
+				pending.discard(server.getBufferPool());
+			}
 		}
 		
 		if(pendingWrites.isEmpty()) {
 			server.queueClose(this);
 		}
 	}
+	
+	/**
+	 * A buffer or file region waiting to be written to the socket channel.
+	 * 
+	 * @author Bojan Pisler, NetDigital Sweden AB
+	 *
+	 */
+	private static class PendingWrite {
+		
+		private ByteBuffer buffer;
+		
+		private boolean pooled;
+		
+		private FileChannel file;
+		
+		private long position;
+		
+		private long remaining;
+		
+		private PendingWrite(ByteBuffer buffer, boolean pooled) {
+			this.buffer = buffer;
+			this.pooled = pooled;
+		}
+		
+		private PendingWrite(FileChannel file, long position, long count) {
+			this.file = file;
+			this.position = position;
+			this.remaining = count;
+		}
+		
+		/**
+		 * Transfers at most the specified number of bytes from the file region to the specified socket
+		 * channel.
+		 * 
+		 * @param channel the socket channel
+		 * @param maxLen the maximum number of bytes to transfer
+		 * @return number of bytes transferred, zero if the socket channel would block
+		 * @throws IOException if an I/O error occurs or the file has been truncated
+		 */
+		private long transfer(SocketChannel channel, long maxLen) throws IOException {
+			long len = file.transferTo(this.position, Math.min(this.remaining, maxLen), channel);
+			
+			if(len == 0 && this.position >= file.size()) {
+				throw new IOException("file truncated at " + this.position + " with " + this.remaining + " bytes remaining");
+			}
+			
+			this.position += len;
+			this.remaining -= len;
+			return len;
+		}
+		
+		/**
+		 * Releases buffer to the specified pool if it was acquired from the pool. A file channel is closed.
+		 * 
+		 * @param pool the buffer pool
+		 */
+		private void release(BufferPool pool) {
+			if(this.file != null) {
+				try { file.close(); } catch(IOException e) {}
+			} else if(this.pooled) {
+				pool.release(this.buffer);
+			}
+		}
+		
+		/**
+		 * Discards buffer if it was acquired from the specified pool. The buffer may still be referenced
+		 * by an ongoing write and is not reused. A file channel is closed.
+		 * 
+		 * @param pool the buffer pool
+		 */
+		private void discard(BufferPool pool) {
+			if(this.file != null) {
+				try { file.close(); } catch(IOException e) {}
+			} else if(this.pooled) {
+				pool.discard(this.buffer);
+			}
+		}
+	}
 }
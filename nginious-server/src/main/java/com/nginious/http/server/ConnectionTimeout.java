@@ -0,0 +1,45 @@
+/**
+ * Copyright 2012 NetDigital Sweden AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.nginious.http.server;
+
+/**
+ * Phases of a connections life for which a server enforces separate deadlines.
+ * 
+ * <ul>
+ * <li>HEADER_READ - waiting for a complete request line and headers. The deadline is set when
+ * the connection is accepted or when the first data for a new request arrives.</li>
+ * <li>BODY_READ - waiting for more request body data. The deadline is extended each time
+ * data is read.</li>
+ * <li>KEEP_ALIVE - waiting for a new request on a kept alive connection.</li>
+ * <li>WRITE - waiting for the client to accept more response data when the socket channel
+ * would block. The deadline is extended each time data is written.</li>
+ * </ul>
+ * 
+ * @author Bojan Pisler, NetDigital Sweden AB
+ * @see Server#setTimeoutMillis(ConnectionTimeout, long)
+ *
+ */
+public enum ConnectionTimeout {
+	
+	HEADER_READ,
+	
+	BODY_READ,
+	
+	KEEP_ALIVE,
+	
+	WRITE;
+}
@@ -0,0 +1,44 @@
+/**
+ * Copyright 2012 NetDigital Sweden AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.nginious.http.server;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * An output stream which can send regions of files to the client without reading file content into
+ * memory. The output stream returned by {@link com.nginious.http.HttpResponse#getOutputStream()} for
+ * responses handled by the server implements this interface. File regions are sent by the operating
+ * system directly from file to socket, see {@link java.nio.channels.FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)}.
+ * 
+ * @author Bojan Pisler, NetDigital Sweden AB
+ *
+ */
+public interface FileRegionOutput {
+	
+	/**
+	 * Writes the specified number of bytes from the specified file starting at the specified position
+	 * to the response body. The response content length must be set before calling this method. Response
+	 * line and headers are written first if not written before.
+	 * 
+	 * @param file the file to write from
+	 * @param position position of first byte to write in file
+	 * @param count number of bytes to write
+	 * @throws IOException if unable to open file or an I/O error occurs while writing
+	 */
+	public void writeFileRegion(File file, long position, long count) throws IOException;
+}
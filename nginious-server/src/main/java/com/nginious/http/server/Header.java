@@ -16,11 +16,7 @@
 
 package com.nginious.http.server;
 
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.Date;
-import java.util.Locale;
-import java.util.TimeZone;
 
 /**
  * Represents a HTTP header value and its parameters and sub parameters. Parameters are delimited by ','
@@ -37,33 +33,6 @@ public class Header {
 		STATE_START, STATE_PARAMETER_NAME, STATE_PARAMETER_VALUE, STATE_SUB_PARAMETER_NAME, STATE_SUB_PARAMETER_VALUE
 	}
 	
-	private static final ThreadLocal<SimpleDateFormat> rfc1123FormatLocal =
-			new ThreadLocal<SimpleDateFormat>() {
-		protected SimpleDateFormat initialValue() {
-			SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
-			format.setTimeZone(TimeZone.getTimeZone("GMT"));
-			return format;
-		}
-	};
-	
-	private static final ThreadLocal<SimpleDateFormat> rfc850FormatLocal =
-			new ThreadLocal<SimpleDateFormat>() {
-		protected SimpleDateFormat initialValue() {
-			SimpleDateFormat format = new SimpleDateFormat("EEEE, dd-MMM-yy HH:mm:ss zzz", Locale.US);
-			format.setTimeZone(TimeZone.getTimeZone("GMT"));
-			return format;
-		}
-	};
-	
-	private static final ThreadLocal<SimpleDateFormat> ansiCFormatLocal =
-			new ThreadLocal<SimpleDateFormat>() {
-		protected SimpleDateFormat initialValue() {
-			SimpleDateFormat format = new SimpleDateFormat("EEE MMM d hh:mm:ss yyyy", Locale.US);
-			format.setTimeZone(TimeZone.getTimeZone("GMT"));
-			return format;
-		}
-	};
-	
 	private String name;
 	
 	private String value;
@@ -393,32 +362,21 @@ public class Header {
     }
     
     /**
-     * Parses the specified value into a date. The following date formats are tried in specified
-     * order.
+     * Parses the specified value into a date. The following date formats are accepted.
      * 
      * <ul>
      * <li>RFC 1123 format 'EEE, dd MMM yyyy HH:mm:ss zzz' using the US locale.</li>
      * <li>RFC 850 format 'EEEE, dd-MMM-yy HH:mm:ss zzz' using the US locale.</li>
-     * <li>ANSI C format 'EEE MMM d hh:mm:ss yyyy' using the US locale.</li>
+     * <li>ANSI C format 'EEE MMM d HH:mm:ss yyyy' using the US locale.</li>
      * </ul>
      * 
      * @param value the value
-     * @return the parsed date
+     * @return the parsed date or <code>null</code> if value is not a valid date
+     * @see HttpDate#parse(String)
      */
 	public static Date parseDate(String value) {
-		try {
-			return rfc1123FormatLocal.get().parse(value);
-		} catch(ParseException e) {}
-		
-		try {
-			return rfc850FormatLocal.get().parse(value);
-		} catch(ParseException e) {}
-		
-		try {
-			return ansiCFormatLocal.get().parse(value);
-		} catch(ParseException e) {}
-		
-		return null;
+		long millis = HttpDate.parse(value);
+		return millis == -1L ? null : new Date(millis);
 	}
 	
 	/**
@@ -429,7 +387,7 @@ public class Header {
 	 * @return the date string
 	 */
 	public static String formatDate(Date date) {
-		return rfc1123FormatLocal.get().format(date);		
+		return HttpDate.format(date.getTime());
 	}
 	
 	/**
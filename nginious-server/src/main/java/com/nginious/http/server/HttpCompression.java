@@ -0,0 +1,247 @@
+/**
+ * Copyright 2012 NetDigital Sweden AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.nginious.http.server;
+
+import java.util.HashSet;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+
+import com.nginious.http.stats.ServerStatistics;
+
+/**
+ * Settings and a pool of deflaters for compression of dynamic responses written through {@link HttpOutput}.
+ * A response is compressed when its content type is in the set of compressed content types and its content
+ * length is unknown or at least the minimum compressed size.
+ * 
+ * <p>
+ * Deflaters hold native memory and are expensive to create. Released deflaters are reset and kept in a
+ * shared pool, one for raw deflate streams used by gzip encoding and one for zlib streams used by deflate
+ * encoding. At most {@link #MAX_POOLED_DEFLATERS} deflaters are kept in each pool, any others are ended.
+ * </p>
+ * 
+ * @author Bojan Pisler, NetDigital Sweden AB
+ * @see HttpOutput
+ *
+ */
+class HttpCompression {
+	
+	static final String GZIP = "gzip";
+	
+	static final String DEFLATE = "deflate";
+	
+	private static final int MAX_POOLED_DEFLATERS = 64;
+	
+	private HashSet<String> contentTypes;
+	
+	private int minSize;
+	
+	private ServerStatistics statistics;
+	
+	private Pool gzipDeflaters;
+	
+	private Pool zlibDeflaters;
+	
+	/**
+	 * Constructs a new HTTP compression for the specified comma separated list of content types and minimum
+	 * content length which updates the specified server statistics.
+	 * 
+	 * @param contentTypes comma separated list of compressed content types
+	 * @param minSize minimum content length in bytes to compress
+	 * @param statistics the server statistics to update with compression counters
+	 */
+	HttpCompression(String contentTypes, int minSize, ServerStatistics statistics) {
+		super();
+		this.contentTypes = new HashSet<String>();
+		this.minSize = minSize;
+		this.statistics = statistics;
+		this.gzipDeflaters = new Pool(true);
+		this.zlibDeflaters = new Pool(false);
+		
+		if(contentTypes != null) {
+			for(String contentType : contentTypes.split(",")) {
+				contentType = contentType.trim().toLowerCase();
+				
+				if(!contentType.equals("")) {
+					this.contentTypes.add(contentType);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Returns whether or not any content types are compressed.
+	 * 
+	 * @return <code>true</code> if compression is enabled, <code>false</code> otherwise
+	 */
+	boolean isEnabled() {
+		return !contentTypes.isEmpty();
+	}
+	
+	/**
+	 * Returns whether or not content of the specified content type is compressed. Any parameters in the content
+	 * type, such as charset, are ignored.
+	 * 
+	 * @param contentType the content type
+	 * @return <code>true</code> if compressed, <code>false</code> otherwise
+	 */
+	boolean isCompressedType(String contentType) {
+		if(contentType == null) {
+			return false;
+		}
+		
+		int index = contentType.indexOf(';');
+		
+		if(index > -1) {
+			contentType = contentType.substring(0, index);
+		}
+		
+		return contentTypes.contains(contentType.trim().toLowerCase());
+	}
+	
+	/**
+	 * Returns whether or not content with the specified length is compressed.
+	 * 
+	 * @param contentLength the content length
+	 * @return <code>true</code> if compressed, <code>false</code> otherwise
+	 */
+	boolean isCompressedLength(int contentLength) {
+		return contentLength > 0 && contentLength >= this.minSize;
+	}
+	
+	/**
+	 * Selects content encoding from the specified <code>Accept-Encoding</code> request header value. Gzip is
+	 * preferred over deflate. Encodings with a quality value of zero are not accepted.
+	 * 
+	 * @param acceptEncoding the accept encoding header value or <code>null</code>
+	 * @return {@link #GZIP}, {@link #DEFLATE} or <code>null</code> if no supported encoding is accepted
+	 */
+	static String selectEncoding(String acceptEncoding) {
+		if(acceptEncoding == null) {
+			return null;
+		}
+		
+		boolean deflate = false;
+		
+		for(String encoding : acceptEncoding.split(",")) {
+			String[] params = encoding.split(";");
+			String name = params[0].trim().toLowerCase();
+			boolean accepted = true;
+			
+			for(int i = 1; i < params.length; i++) {
+				String param = params[i].trim();
+				
+				if(param.startsWith("q=")) {
+					try {
+						accepted = Float.parseFloat(param.substring(2)) > 0.0f;
+					} catch(NumberFormatException e) {
+						accepted = false;
+					}
+				}
+			}
+			
+			if(accepted && name.equals(GZIP)) {
+				return GZIP;
+			} else if(accepted && name.equals(DEFLATE)) {
+				deflate = true;
+			}
+		}
+		
+		return deflate ? DEFLATE : null;
+	}
+	
+	/**
+	 * Acquires a deflater for the specified content encoding. Deflaters for gzip encoding produce raw deflate
+	 * data without zlib header and trailer.
+	 * 
+	 * @param encoding the content encoding, {@link #GZIP} or {@link #DEFLATE}
+	 * @return the acquired deflater
+	 */
+	Deflater acquire(String encoding) {
+		return encoding.equals(GZIP) ? gzipDeflaters.acquire() : zlibDeflaters.acquire();
+	}
+	
+	/**
+	 * Resets and releases the specified deflater acquired for the specified content encoding back to this pool.
+	 * The deflater must not be used by the caller after it has been released.
+	 * 
+	 * @param encoding the content encoding the deflater was acquired for
+	 * @param deflater the deflater to release
+	 */
+	void release(String encoding, Deflater deflater) {
+		if(encoding.equals(GZIP)) {
+			gzipDeflaters.release(deflater);
+		} else {
+			zlibDeflaters.release(deflater);
+		}
+	}
+	
+	/**
+	 * Updates server statistics with a compressed response.
+	 * 
+	 * @param bytesIn number of uncompressed content bytes
+	 * @param bytesOut number of compressed content bytes
+	 * @param nanos time in nanoseconds spent compressing
+	 */
+	void addCompressedResponse(long bytesIn, long bytesOut, long nanos) {
+		statistics.addCompressedResponse(bytesIn, bytesOut, nanos);
+	}
+	
+	/**
+	 * Shared pool of deflaters producing one kind of stream.
+	 * 
+	 * @author Bojan Pisler, NetDigital Sweden AB
+	 *
+	 */
+	private static class Pool {
+		
+		private boolean nowrap;
+		
+		private ConcurrentLinkedQueue<Deflater> deflaters;
+		
+		private AtomicInteger numDeflaters;
+		
+		private Pool(boolean nowrap) {
+			super();
+			this.nowrap = nowrap;
+			this.deflaters = new ConcurrentLinkedQueue<Deflater>();
+			this.numDeflaters = new AtomicInteger(0);
+		}
+		
+		private Deflater acquire() {
+			Deflater deflater = deflaters.poll();
+			
+			if(deflater == null) {
+				return new Deflater(Deflater.DEFAULT_COMPRESSION, this.nowrap);
+			}
+			
+			numDeflaters.decrementAndGet();
+			return deflater;
+		}
+		
+		private void release(Deflater deflater) {
+			if(numDeflaters.incrementAndGet() > MAX_POOLED_DEFLATERS) {
+				numDeflaters.decrementAndGet();
+				deflater.end();
+				return;
+			}
+			
+			deflater.reset();
+			deflaters.add(deflater);
+		}
+	}
+}
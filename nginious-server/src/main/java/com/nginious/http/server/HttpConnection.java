@@ -21,13 +21,16 @@ import java.nio.ByteBuffer;
 import java.nio.channels.ClosedChannelException;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
 import java.util.HashSet;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import com.nginious.http.HttpCookie;
 import com.nginious.http.HttpException;
 import com.nginious.http.HttpStatus;
 import com.nginious.http.session.HttpSessionManager;
 import com.nginious.http.stats.HttpRequestStatistics;
+import com.nginious.http.stats.ServerStatistics;
 import com.nginious.http.stats.WebSocketSessionStatistics;
 import com.nginious.http.upload.UploadTracker;
 
@@ -36,6 +39,18 @@ import com.nginious.http.upload.UploadTracker;
  * to handle the request / response. If the connection is kept alive over several request / responses new
  * parsers and contexts are used.
  * 
+ * <p>
+ * Pipelined requests are supported. All complete requests received in one read are parsed, up to the
+ * servers maximum pipeline depth, and executed one at a time in the order they were received which
+ * keeps responses in request order. Data following a complete request is carried over to the parser
+ * for the next request. No more data is read from the client until all parsed requests have completed.
+ * </p>
+ * 
+ * <p>
+ * Header containers of completed requests and responses are kept by the connection and reused for
+ * the following requests on the same kept alive connection.
+ * </p>
+ * 
  * @author Bojan Pisler, NetDigital Sweden AB
  * @see HttpParser
  * @see HttpContext
@@ -45,6 +60,8 @@ class HttpConnection extends Connection {
 	
 	private int BUFFER_SIZE = 8192;
 	
+	private static final int MAX_FREE_HEADERS = 4;
+	
 	private HttpServerImpl server;
 	
 	private HttpContextManager contextManager;
@@ -53,14 +70,18 @@ class HttpConnection extends Connection {
 	
 	private HttpParser parser;
 	
-	private HashSet<String> hostnames;
+	private ArrayDeque<HttpContext> pipeline;
+	
+	private boolean parsePending;
 	
-	private long lastAccessTimeMillis;
+	private HttpException parseException;
 	
-	private boolean pendingRead;
+	private HashSet<String> hostnames;
 	
 	private boolean trackerSet;
 	
+	private AtomicReferenceArray<HttpHeaders> freeHeaders;
+	
 	/**
 	 * Constructs a new HTTP connection with the specified HTTP server, socket channel, key and set of hostnames.
 	 * 
@@ -75,10 +96,11 @@ class HttpConnection extends Connection {
 		this.server = server;
 		this.hostnames = hostnames;
 		this.contextManager = server.getContextManager();
-		this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+		this.buffer = server.getBufferPool().acquire(BUFFER_SIZE);
+		this.freeHeaders = new AtomicReferenceArray<HttpHeaders>(MAX_FREE_HEADERS);
 		this.parser = new HttpParser(server.getApplicationManagerImpl(), this, hostnames);
-		this.lastAccessTimeMillis = System.currentTimeMillis();
-		this.pendingRead = true;
+		this.pipeline = new ArrayDeque<HttpContext>();
+		setReadTimeout(ConnectionTimeout.HEADER_READ);
 	}
 	
 	/**
@@ -126,6 +148,15 @@ class HttpConnection extends Connection {
 		return server.getHttpRequestStatistics();
 	}
 	
+	/**
+	 * Returns server statistics for this HTTP connections server.
+	 * 
+	 * @return the server statistics
+	 */
+	ServerStatistics getServerStatistics() {
+		return server.getServerStatistics();
+	}
+	
 	/**
 	 * Returns web socket session statistics.
 	 * 
@@ -136,24 +167,101 @@ class HttpConnection extends Connection {
 	}
 	
 	/**
-	 * Resets HTTP parser for this HTTP connection. A parser handles one request. If the connection
-	 * is kept alive over several request / responses the parser must be reset to handle the next
-	 * request.
+	 * Returns an empty header container for a request or response on this HTTP connection. A container
+	 * released by a completed request is reused if available.
+	 * 
+	 * @return the header container
 	 */
-	void resetParser() {
-		clearUploadTracker();
-		this.parser = new HttpParser(server.getApplicationManagerImpl(), this, this.hostnames);
-		this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
-		this.lastAccessTimeMillis = System.currentTimeMillis();
-		this.pendingRead = true;
+	HttpHeaders acquireHeaders() {
+		for(int i = 0; i < MAX_FREE_HEADERS; i++) {
+			HttpHeaders headers = freeHeaders.getAndSet(i, null);
+			
+			if(headers != null) {
+				return headers;
+			}
+		}
+		
+		return new HttpHeaders();
+	}
+	
+	/**
+	 * Clears and releases the specified header container for reuse by following requests on this HTTP
+	 * connection. The container must not be used by the caller after it has been released.
+	 * 
+	 * @param headers the header container to release
+	 */
+	void releaseHeaders(HttpHeaders headers) {
+		headers.clear();
+		
+		for(int i = 0; i < MAX_FREE_HEADERS; i++) {
+			if(freeHeaders.compareAndSet(i, null, headers)) {
+				return;
+			}
+		}
+	}
+	
+	/**
+	 * Continues with the next request on this kept alive HTTP connection once the current request has
+	 * completed. The next pipelined request is executed if already parsed. Otherwise any data remaining
+	 * in the read buffer is parsed or more data is read from the client. The connection is idle if no
+	 * data for the next request has been received.
+	 */
+	void nextRequest() {
+		if(this.parser == null || !enterRead()) {
+			return;
+		}
+		
+		try {
+			continueRequest();
+		} finally {
+			exitRead();
+		}
+	}
+	
+	/**
+	 * Continues with the next request once the current request has completed. Must only be called
+	 * while a read is registered.
+	 */
+	private void continueRequest() {
+		if(!pipeline.isEmpty()) {
+			executeNext();
+		} else if(this.parseException != null) {
+			HttpException exception = this.parseException;
+			this.parseException = null;
+			handleParseException(exception);
+		} else if(this.parsePending) {
+			this.parsePending = false;
+			parse();
+		} else if(parser.isStarted() || buffer.position() > 0) {
+			updateReadTimeout();
+			
+			if(!parser.sendExpect100Continue()) {
+				switchToRead();
+				return;
+			}
+			
+			try {
+				parser.getContext().sendExpect100Continue();
+			} catch(IOException e) {
+				close();
+			}
+		} else {
+			setReadTimeout(ConnectionTimeout.KEEP_ALIVE);
+			switchToRead();
+		}
 	}
 	
 	/**
-	 * Clears HTTP parser.
+	 * Clears HTTP parser and any pipelined requests.
 	 */
 	void clearParser() {
-		clearUploadTracker();
+		if(this.parser != null) {
+			clearUploadTracker(parser.getContext());
+		}
+		
 		this.parser = null;
+		pipeline.clear();
+		this.parseException = null;
 	}
 	
 	/*
@@ -170,16 +278,10 @@ class HttpConnection extends Connection {
 	}
 	
 	/*
-	 * Removes any upload trackers associated with HTTP context for this HTTP connection.
+	 * Removes any upload trackers associated with the specified HTTP context for this HTTP connection.
 	 */
-	void clearUploadTracker() {
-		if(!this.trackerSet) {
-			return;
-		}
-		
-		HttpContext context = parser.getContext();
-		
-		if(context == null) {
+	void clearUploadTracker(HttpContext context) {
+		if(!this.trackerSet || context == null) {
 			return;
 		}
 		
@@ -202,35 +304,13 @@ class HttpConnection extends Connection {
 			int size = channel.read(this.buffer);
 			
 			if(size > 0) {
-				this.pendingRead = false;
-				
-				if(parser.parse(buffer)) {
-					// Should we block other requests while this one is processing?
-					this.pendingRead = false;
-			 		HttpContext context = parser.getContext();
-					contextManager.manage(context);
-				} else if(parser.sendExpect100Continue()) {
-			 		HttpContext context = parser.getContext();
-			 		context.sendExpect100Continue();
-				} else if(parser.sendExpectationFailed()) {
-			 		HttpContext context = parser.getContext();
-                	String value = context.getHeader("Expect");
-        			throw new HttpException(HttpStatus.EXPECTATION_FAILED, "unknown expect value " + value);					
-				} else {
-					server.queueRead(this);
-				}
+				parse();
 			} else if(size == -1) {
 				close();
 			}
-		} catch(HttpException e) {
-			e.printStackTrace();
-	 		HttpContext context = parser.getContext();
-			context.handleException(e);
-			close();
-			context.updateMonitorEntry();
 		} catch(ClosedChannelException e) {
 			close();
-		} catch(Exception e) {
+		} catch(IOException e) {
 			e.printStackTrace();
 	 		HttpContext context = parser.getContext();
 			context.handleError(HttpStatus.INTERNAL_SERVER_ERROR, "Internal server error");
@@ -238,14 +318,109 @@ class HttpConnection extends Connection {
 	}
 	
 	/**
-	 * Returns whether or not this HTTP connection has timed out. A connection has timed out while waiting
-	 * for the first data to read and the timeout has passed.
+	 * Parses requests from the data in the read buffer. Complete requests are queued for execution until
+	 * the data is used up or the maximum pipeline depth is reached. Execution of the first request is
+	 * started once parsing is done. Must only be called while no request on this connection is executing.
+	 */
+	private void parse() {
+		try {
+			while(parser.parse(buffer)) {
+				getServerStatistics().addRequest();
+				pipeline.add(parser.getContext());
+				carryOver();
+				
+				if(buffer.position() == 0) {
+					break;
+				}
+				
+				if(pipeline.size() >= server.getPipelineDepth()) {
+					this.parsePending = true;
+					break;
+				}
+			}
+			
+			if(!pipeline.isEmpty()) {
+				clearReadTimeout();
+				executeNext();
+			} else if(parser.sendExpect100Continue()) {
+				updateReadTimeout();
+		 		HttpContext context = parser.getContext();
+		 		context.sendExpect100Continue();
+			} else if(parser.sendExpectationFailed()) {
+		 		HttpContext context = parser.getContext();
+            	String value = context.getHeader("Expect");
+    			throw new HttpException(HttpStatus.EXPECTATION_FAILED, "unknown expect value " + value);					
+			} else {
+				updateReadTimeout();
+				server.queueRead(this);
+			}
+		} catch(HttpException e) {
+			if(pipeline.isEmpty()) {
+				handleParseException(e);
+			} else {
+				// Respond with error once all earlier pipelined requests have completed
+				this.parseException = e;
+				clearReadTimeout();
+				executeNext();
+			}
+		} catch(Exception e) {
+			e.printStackTrace();
+			
+			if(pipeline.isEmpty()) {
+		 		HttpContext context = parser.getContext();
+				context.handleError(HttpStatus.INTERNAL_SERVER_ERROR, "Internal server error");
+			} else {
+				this.parseException = new HttpException(HttpStatus.INTERNAL_SERVER_ERROR, "Internal server error");
+				clearReadTimeout();
+				executeNext();
+			}
+		}
+	}
+	
+	/**
+	 * Moves any data following the request just parsed to the start of the read buffer and creates a new
+	 * parser for the next request.
+	 */
+	private void carryOver() {
+		int position = buffer.position();
+		buffer.limit(position);
+		buffer.position(parser.getPosition());
+		buffer.compact();
+		this.parser = new HttpParser(server.getApplicationManagerImpl(), this, this.hostnames);
+	}
+	
+	/**
+	 * Starts execution of the next parsed request on this HTTP connection.
+	 */
+	private void executeNext() {
+		HttpContext context = pipeline.poll();
+		contextManager.manage(context);
+	}
+	
+	/**
+	 * Responds to the client with the error in the specified exception and closes this HTTP connection.
 	 * 
-	 * @return <code>true</code> if this connection has timed out, <code>false</code> otherwise
+	 * @param e the exception thrown when parsing the current request
+	 */
+	private void handleParseException(HttpException e) {
+		e.printStackTrace();
+ 		HttpContext context = parser.getContext();
+		context.handleException(e);
+		close();
+		context.updateMonitorEntry();
+	}
+	
+	/**
+	 * Updates the read deadline after data has been read for a request which is not yet complete. The
+	 * header read deadline is set when the first data for a request arrives on a kept alive connection and
+	 * is not extended by further header data. The body read deadline is extended each time body data is read.
 	 */
-	protected boolean isTimedOut() {
-		long connectionTimeoutMillis = server.getConnectionTimeoutMillis();
-		return this.pendingRead && System.currentTimeMillis() - this.lastAccessTimeMillis > connectionTimeoutMillis;
+	private void updateReadTimeout() {
+		if(parser.isHeadersParsed()) {
+			setReadTimeout(ConnectionTimeout.BODY_READ);
+		} else if(getReadTimeout() != ConnectionTimeout.HEADER_READ) {
+			setReadTimeout(ConnectionTimeout.HEADER_READ);
+		}
 	}
 	
 	/**
@@ -254,4 +429,12 @@ class HttpConnection extends Connection {
 	protected void timedOut() {
 		clearParser();
 	}
+	
+	/**
+	 * Releases the read buffer for this HTTP connection to the servers buffer pool.
+	 */
+	protected void release() {
+		server.getBufferPool().release(this.buffer);
+		this.buffer = null;
+	}
 }
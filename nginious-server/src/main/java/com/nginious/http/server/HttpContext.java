@@ -17,6 +17,7 @@
 package com.nginious.http.server;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -24,6 +25,7 @@ import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
@@ -44,6 +46,7 @@ import com.nginious.http.HttpResponse;
 import com.nginious.http.HttpSession;
 import com.nginious.http.HttpStatus;
 import com.nginious.http.application.ApplicationManagerImpl;
+import com.nginious.http.application.ApplicationRoute;
 import com.nginious.http.application.HttpServiceResult;
 import com.nginious.http.common.Base64Utils;
 import com.nginious.http.common.Buffer;
@@ -89,6 +92,8 @@ class HttpContext {
 	
 	private URI uri;
 	
+	private ApplicationRoute route;
+	
 	private String version;
 	
 	private int contentLength;
@@ -105,9 +110,9 @@ class HttpContext {
 	
 	private Buffer trace;
 	
-	private HashMap<CaseInsensitiveKey, List<String>> headers;
+	private HttpHeaders headers;
 	
-	private HashMap<String, List<String>> params;
+	private HttpParameters params;
 	
 	private HashMap<String, FilePart> files;
 	
@@ -141,7 +146,7 @@ class HttpContext {
 		this.hostnames = hostnames;
 		this.conn = conn;
 		this.sessionManager = conn.getSessionManager();
-		this.headers = new HashMap<CaseInsensitiveKey, List<String>>();
+		this.headers = conn.acquireHeaders();
 		this.entry = conn.getHttpRequestStatistics().add();
 		this.webSocketStats = conn.getWebSocketSessionStatistics();
 		this.files = new HashMap<String, FilePart>();
@@ -194,7 +199,7 @@ class HttpContext {
 	
 	HttpCookie[] getCookies() {
 		if(this.cookies == null) {
-			List<String> cookieHeaders = HttpContext.this.getHeaders("Cookie");
+			String[] cookieHeaders = HttpContext.this.getHeaders("Cookie");
 			
 			if(cookieHeaders == null) {
 				return null;
@@ -224,6 +229,7 @@ class HttpContext {
 	 */
 	void setUri(String uri) throws HttpException {
 		this.uriSpec = uri;
+		this.route = null;
 		
 		try {
 			this.uri = new URI(this.uriSpec);
@@ -264,15 +270,22 @@ class HttpContext {
 	 * @param value the HTTP header value
 	 */
 	void header(String name, String value) {
-		CaseInsensitiveKey key = new CaseInsensitiveKey(name);
-		List<String> values = headers.get(key);
-		
-		if(values == null) {
-			values = new ArrayList<String>();
-			headers.put(key, values);
-		}
-		
-		values.add(value);
+		headers.add(name, value);
+	}
+	
+	/**
+	 * Adds HTTP request header with the specified name and a value found in the specified request data
+	 * starting at the specified position with the specified length. The value bytes are copied and only
+	 * decoded into a string once the header value is requested.
+	 * 
+	 * @param name the HTTP header name
+	 * @param hash case insensitive hash of the header name
+	 * @param data the request data
+	 * @param start start position of value in request data
+	 * @param length length of value in request data
+	 */
+	void header(String name, int hash, ByteBuffer data, int start, int length) {
+		headers.add(name, hash, data, start, length);
 	}
 	
 	/**
@@ -322,6 +335,40 @@ class HttpContext {
 		this.trace = trace;
 	}
 	
+	/**
+	 * Returns whether or not this HTTP context is executed on the thread that parsed the request.
+	 * 
+	 * @return <code>true</code> if executed inline, <code>false</code> if handed over to request threads
+	 */
+	boolean isInline() {
+		ApplicationRoute route = route();
+		return route != null && route.isInline();
+	}
+	
+	/**
+	 * Returns whether or not the response for this HTTP context may be compressed.
+	 * 
+	 * @return <code>true</code> if the response may be compressed, <code>false</code> otherwise
+	 */
+	boolean isCompressed() {
+		ApplicationRoute route = route();
+		return route != null && route.isCompressed();
+	}
+	
+	/**
+	 * Returns the application route for the request URI path of this HTTP context. The path is routed once
+	 * and the route is reused when deciding how to execute the request and when executing it.
+	 * 
+	 * @return the application route or <code>null</code> if the request has no URI path
+	 */
+	private ApplicationRoute route() {
+		if(this.route == null && this.uri != null && uri.getPath() != null) {
+			this.route = manager.route(uri.getPath());
+		}
+		
+		return this.route;
+	}
+	
 	/**
 	 * Executes the HTTP request / response for this HTTP context.
 	 *
@@ -396,10 +443,10 @@ class HttpContext {
 	 * 
 	 * <ul>
 	 * <li>Flushes response buffer.</li>
-	 * <li>Close underlying HTTP connection if connection is not keep-alive.</li>
-	 * <li>Resets connections HTTP parser for next request if connection is keep-alive.</li>
 	 * <li>Logs request / response to HTTP access log.</li>
 	 * <li>Removed multipart file resources if necessary.</li>
+	 * <li>Close underlying HTTP connection if connection is not keep-alive.</li>
+	 * <li>Continues with the next pipelined request or reads the next request if connection is keep-alive.</li>
 	 * </ul>
 	 */
 	void completed() {
@@ -408,18 +455,21 @@ class HttpContext {
 		} catch(IOException e) {}
 		
 		HttpOutput output = response.getHttpOutput();
+		logAccess(output, response.getStatus());
+		destroy();
+		updateMonitorEntry();
+		conn.clearUploadTracker(this);
 		
+		// Done before continuing with the next request to keep pipelined requests in order
 		if(!output.isKeepAlive()) {
 			conn.close();
 			conn.clearParser();
 		} else {
-			conn.resetParser();
-			conn.switchToRead();
+			// Request and response must not be used once completed, headers are reused by following requests
+			conn.releaseHeaders(response.getHttpHeaders());
+			conn.releaseHeaders(this.headers);
+			conn.nextRequest();
 		}
-		
-		logAccess(output, response.getStatus());
-		destroy();
-		updateMonitorEntry();
 	}
 	
 	void updateMonitorEntry() {
@@ -435,8 +485,7 @@ class HttpContext {
 	 */
 	private void logAccess(HttpOutput output, HttpStatus status) {
 		AccessLog log = conn.getAccessLog();
-		String request = this.method + " " + this.uriSpec + " " + this.version;
-		log.write(conn.getRemoteAddress(), this.requestTimeMillis, request, status, 
+		log.write(conn.getRemoteAddress(), this.requestTimeMillis, this.method, this.uriSpec, this.version, status, 
 				output.getBytesWritten(), getHeader("Referer"), getHeader("User-Agent"));
 	}
 	
@@ -487,7 +536,7 @@ class HttpContext {
 	 */
 	private HttpServiceResult handleRequest(HttpRequestHandler request, HttpResponseHandler response, HttpOutput output) throws IOException, HttpException {
 		checkEncoding(request);
-		HttpServiceResult result = manager.execute(request, response);
+		HttpServiceResult result = manager.execute(route(), request, response);
 		
 		if(result == HttpServiceResult.DONE) {
 			sendOutput(request, response, output);
@@ -598,12 +647,14 @@ class HttpContext {
 		
 		// Not what attributes are meant for but works for now
 		request.setAttribute("se.netdigital.http.websocket.WebSocketSession", session);
-		HttpServiceResult result = manager.execute(request, response);
+		HttpServiceResult result = manager.execute(route(), request, response);
 		
 		if(result == HttpServiceResult.DONE) {
 			if(session != null && response.getStatus() == HttpStatus.SWITCHING_PROTOCOLS) {
 				session.switchFromConnection(this.conn);
 				
+				response.addHeader("Upgrade", "websocket");
+				
 				try {
 					String accept = keyBase64 + "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
 					MessageDigest md = MessageDigest.getInstance("SHA-1"); 
@@ -614,7 +665,6 @@ class HttpContext {
 					throw new HttpException(HttpStatus.INTERNAL_SERVER_ERROR, "Internal server error");
 				}
 				
-				response.addHeader("Upgrade", "websocket");
 				response.addHeader("Connection", "Upgrade");
 				
 			}
@@ -754,10 +804,8 @@ class HttpContext {
 	 * @param name request header name
 	 * @return list of request header values or <code>null</code> if not found
 	 */
-	List<String> getHeaders(String name) {
-		CaseInsensitiveKey key = new CaseInsensitiveKey(name);
-		List<String> values = HttpContext.this.headers.get(key);
-		return values;
+	String[] getHeaders(String name) {
+		return headers.getValues(name);
 	}
 	
 	/**
@@ -767,9 +815,7 @@ class HttpContext {
 	 * @return the request header value or <code>null</code> if not found
 	 */
 	String getHeader(String name) {
-		CaseInsensitiveKey key = new CaseInsensitiveKey(name);
-		List<String> values = HttpContext.this.headers.get(key);
-		return values != null && values.size() > 0 ? values.get(0) : null;
+		return headers.get(name);
 	}
 	
 	/**
@@ -779,8 +825,7 @@ class HttpContext {
 	 * @return <code>true</code> if this context contains at least one header, <code>false</code> otherwise
 	 */
 	boolean hasHeader(String name) {
-		CaseInsensitiveKey key = new CaseInsensitiveKey(name);
-		return headers.containsKey(key);
+		return headers.contains(name);
 	}
 	
 	/**
@@ -861,13 +906,15 @@ class HttpContext {
 	
 	/**
 	 * Decodes request parameters from request URI or request body depending on if the request is a HTTP GET or
-	 * a HTTP POST.
+	 * a HTTP POST. Parameters are decoded once on first access, requests which never read any parameters
+	 * never decode them.
 	 */
 	void decodeParameters() {
 		if(this.params != null) {
 			return;
 		}
 		
+		this.params = new HttpParameters();
 		HttpMethod method = getMethod();
 		
 		if(method.equals(HttpMethod.GET)) {
@@ -883,8 +930,6 @@ class HttpContext {
 	 * Decodes request parameter from request URI found in HTTP request.
 	 */
 	private void decodeGetMethodParameters() {
-		this.params = new HashMap<String, List<String>>();
-		
 		try {
 			String encoding = getCharacterEncoding();
 			uri.decodeQuery(this.params, encoding);
@@ -895,25 +940,20 @@ class HttpContext {
 	
 	/**
 	 * Decodes request parameter from request body if content type is <code>application/x-www-form-urlencoded</code>.
+	 * Parameters are decoded directly from the request body bytes.
 	 */
 	private void decodePostMethodParameters() {
-		this.params = new HashMap<String, List<String>>();
 		String contentType = getHeader("Content-Type");
 		
-		if(contentType != null && contentType.startsWith("application/x-www-form-urlencoded")) {
+		if(contentType != null && contentType.startsWith("application/x-www-form-urlencoded") && content != null) {
 			try {
 				String encoding = getCharacterEncoding();
-				String params = new String(content.toByteArray(), "iso-8859-1");
-				URI uri = new URI("?" + params);
-				uri.parse();
-				uri.decodeQuery(this.params, encoding);
+				byte[] data = content.toByteArray();
+				URI.decodeQuery(data, 0, data.length, this.params, encoding);
 			} catch(UnsupportedEncodingException e) {
 				logger.error("Unsupported encoding", e);
-			} catch(URIException e) {
-				logger.error("Bad URI", e);
 			}
 		}
-		
 	}
 	
 	/**
@@ -1016,15 +1056,7 @@ class HttpContext {
 		}
 
 		public String[] getHeaderNames() {
-			Set<CaseInsensitiveKey> keys = HttpContext.this.headers.keySet();
-			String[] names = new String[keys.size()];
-			int idx = 0;
-			
-			for(CaseInsensitiveKey key : keys) {
-				names[idx++] = key.getKey();
-			}
-			
-			return names;
+			return HttpContext.this.headers.getNames();
 		}
 
 		public HttpCookie getCookie(String name) {
@@ -1138,13 +1170,7 @@ class HttpContext {
 				HttpContext.this.decodeParameters();
 			}
 			
-			List<String> paramList = HttpContext.this.params.get(name);
-			
-			if(paramList != null && paramList.size() > 0) {
-				return paramList.get(0);
-			}
-			
-			return null;
+			return HttpContext.this.params.get(name);
 		}
 
 		public String[] getParameterValues(String name) {
@@ -1152,8 +1178,7 @@ class HttpContext {
 				HttpContext.this.decodeParameters();
 			}
 			
-			List<String> paramList = HttpContext.this.params.get(name);
-			return paramList == null ? null : paramList.toArray(new String[paramList.size()]);
+			return HttpContext.this.params.getValues(name);
 		}
 
 		public String[] getParameterNames() {
@@ -1161,8 +1186,12 @@ class HttpContext {
 				HttpContext.this.decodeParameters();
 			}
 			
-			Set<String> paramNames = HttpContext.this.params.keySet();
-			return paramNames.toArray(new String[paramNames.size()]);
+			return HttpContext.this.params.getNames();
+		}
+		
+		public String getPathParameter(String name) {
+			Object captured = attributes.get(PathParameters.ATTRIBUTE);
+			return captured instanceof String[] ? PathParameters.get((String[])captured, name) : null;
 		}
 		
 		public void setAttribute(String name, Object value) {
@@ -1252,7 +1281,7 @@ class HttpContext {
 		
 		private String statusMsg;
 		
-		private HashMap<String, List<String>> headers;
+		private HttpHeaders headers;
 		
 		private List<HttpCookie> cookies;
 		
@@ -1266,7 +1295,7 @@ class HttpContext {
 			request.setResponse(this);
 			this.output = new HttpOutput(HttpContext.this, this, request);
 			this.status = HttpStatus.OK;
-			this.headers = new HashMap<String, List<String>>();
+			this.headers = conn.acquireHeaders();
 			this.cookies = new ArrayList<HttpCookie>();
 		}
 		
@@ -1277,7 +1306,7 @@ class HttpContext {
 			
 			this.output = new HttpOutput(HttpContext.this, this, this.request);
 			this.status = HttpStatus.OK;
-			this.headers = new HashMap<String, List<String>>();
+			headers.clear();
 			this.cookies = new ArrayList<HttpCookie>();
 			this.writer = null;
 			this.outputStream = null;
@@ -1408,43 +1437,33 @@ class HttpContext {
 		}
 
 		public void addHeader(String name, String value) {
-			if(name.equals("Content-Type")) {
+			if(name.equalsIgnoreCase("Content-Type")) {
 				setContentType(value);
 				return;
 			}
 			
-			List<String> headerList = headers.get(name);
-			
-			if(headerList == null) {
-				headerList = new ArrayList<String>();
-				headers.put(name, headerList);
-			}
-			
-			headerList.add(value);
+			headers.add(name, value);
 		}
 
 		public String getHeader(String name) {
-			List<String> headerList = headers.get(name);
-			
-			if(headerList != null && headerList.size() > 0) {
-				return headerList.get(0);
-			}
-			
-			return null;
+			return headers.get(name);
 		}
 
 		public String[] getHeaderNames() {
-			return headers.keySet().toArray(new String[headers.keySet().size()]);
+			return headers.getNames();
 		}
 
 		public String[] getHeaders(String name) {
-			List<String> headerList = headers.get(name);
-			
-			if(headerList != null) {
-				return headerList.toArray(new String[headerList.size()]);
-			}
-			
-			return null;
+			return headers.getValues(name);
+		}
+		
+		/**
+		 * Returns the header container for this response.
+		 * 
+		 * @return the header container
+		 */
+		HttpHeaders getHttpHeaders() {
+			return this.headers;
 		}
 		
 		public HttpStatus getStatus() {
@@ -1492,7 +1511,7 @@ class HttpContext {
 		}
 	}
 	
-	private class HttpHandlerOutputStream extends OutputStream {
+	private class HttpHandlerOutputStream extends OutputStream implements FileRegionOutput {
 		
 		private HttpOutput output;
 		
@@ -1506,7 +1525,7 @@ class HttpContext {
 		}
 
 		public void flush() throws IOException {
-			output.flushContent();
+			output.flush();
 		}
 
 		public void write(byte[] buff, int start, int len) throws IOException {
@@ -1520,6 +1539,10 @@ class HttpContext {
 		public void write(int b) throws IOException {
 			output.writeContent((byte)(0xff&b));
 		}
+		
+		public void writeFileRegion(File file, long position, long count) throws IOException {
+			output.writeContent(file, position, count);
+		}
 	}
 	
 	private class HttpHandlerInputStream extends InputStream {
@@ -16,56 +16,105 @@
 
 package com.nginious.http.server;
 
+import java.util.ArrayDeque;
 import java.util.Collections;
 import java.util.Set;
-import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.RejectedExecutionHandler;
-import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicInteger;
 
 import com.nginious.http.HttpStatus;
+import com.nginious.http.stats.ServerStatistics;
 
 /**
  * Handles execution and lifecycle of HTTP contexts once request has been received and parsed. HTTP contexts
- * are queued for execution. The queue can contain a maximum of 5000 contexts. Any exceeding contexts are
- * rejected and a HTTP 503 Service Unavailable is sent as a response immediately.
+ * are executed by a task executor using the servers executor strategy. Contexts that are rejected by the
+ * executor get a HTTP 503 Service Unavailable sent as a response immediately.
  * 
  * <p>
- * A minimum of 5 threads and a maximum of 500 threads ar used for handling the queued contexts. The thread
- * pool is increased / decreased as needed depending on the queue size.
+ * With the default platform strategy contexts are executed by a worker pool which starts new threads,
+ * up to the configured maximum, before queueing contexts. Worker pool threads, queue depth and queue wait
+ * are reported to the server statistics. With the virtual strategy each context is executed in its own
+ * virtual thread. The bounded strategy also uses virtual threads but rejects contexts once the configured
+ * maximum number of contexts are executing.
+ * </p>
+ * 
+ * <p>
+ * Contexts for requests bound to inline controllers are executed directly on the thread that parsed the
+ * request. Inline contexts managed while another inline context is executing on the same thread, such as the
+ * next pipelined request, are executed once the executing context returns to avoid deep recursion.
  * </p>
  * 
  * @author Bojan Pisler, NetDigital Sweden AB
+ * @see TaskExecutor
  *
  */
 class HttpContextManager implements RejectedExecutionHandler {
 	
-	private ThreadPoolExecutor executor;
+	private TaskExecutor executor;
 
 	private Set<HttpContext> pendingContexts;
 	
+	private ServerStatistics stats;
+	
+	private ThreadLocal<ArrayDeque<Processor>> inlineProcessors;
+	
 	/**
-	 * Constructs a new HTTP context manager.
+	 * Constructs a new HTTP context manager which executes contexts using the executor strategy of
+	 * the specified server.
+	 * 
+	 * @param server the server
 	 */
-	HttpContextManager() {
+	HttpContextManager(Server server) {
 		super();
-		this.executor = new ThreadPoolExecutor(5, 500, 10, 
-				TimeUnit.SECONDS, 
-				new ArrayBlockingQueue<Runnable>(5000),
-				new HttpContextThreadFactory());
+		this.executor = server.createTaskExecutor("http", this, server.getServerStatistics());
 		this.pendingContexts = Collections.newSetFromMap(new ConcurrentHashMap<HttpContext,Boolean>());
+		this.stats = server.getServerStatistics();
+		this.inlineProcessors = new ThreadLocal<ArrayDeque<Processor>>();
 	}
 	
 	/**
-	 * Adds the specified HTTP context to the queue for execution.
+	 * Returns the strategy used for executing HTTP contexts. The strategy differs from the configured
+	 * strategy if virtual threads are not supported by the runtime.
+	 * 
+	 * @return the executor strategy
+	 */
+	String getExecutorStrategy() {
+		return executor.getStrategy();
+	}
+	
+	/**
+	 * Adds the specified HTTP context to the queue for execution. Inline contexts are executed by the
+	 * calling thread.
 	 * 
 	 * @param context the HTTP context
 	 */
 	void manage(HttpContext context) {
-		executor.execute(new Processor(context));
+		Processor processor = new Processor(context);
+		
+		if(!context.isInline()) {
+			executor.execute(processor);
+			return;
+		}
+		
+		stats.addInlineRequest();
+		ArrayDeque<Processor> processors = inlineProcessors.get();
+		
+		if(processors != null) {
+			processors.add(processor);
+			return;
+		}
+		
+		processors = new ArrayDeque<Processor>();
+		inlineProcessors.set(processors);
+		
+		try {
+			do {
+				processor.run();
+			} while((processor = processors.poll()) != null);
+		} finally {
+			inlineProcessors.remove();
+		}
 	}
 	
 	/**
@@ -84,10 +133,11 @@ class HttpContextManager implements RejectedExecutionHandler {
 	}
 	
 	/**
-	 * Called when HTTP context queue is full. Sends a HTTP 503 Service Unavailable as a response.
+	 * Called when HTTP context queue is full or the maximum number of contexts are executing. Sends a HTTP
+	 * 503 Service Unavailable as a response.
 	 * 
 	 * @param runnable the HTTP context that should have been queued
-	 * @param executor the queue
+	 * @param executor the queue or <code>null</code> for the bounded executor strategy
 	 */
 	public void rejectedExecution(Runnable runnable, ThreadPoolExecutor executor) {
 		Processor processor = (Processor)runnable;
@@ -122,21 +172,4 @@ class HttpContextManager implements RejectedExecutionHandler {
 			}
 		}
 	}
-	
-	private class HttpContextThreadFactory implements ThreadFactory {
-		
-		private AtomicInteger threadIdCreator;
-		
-		private HttpContextThreadFactory() {
-			super();
-			this.threadIdCreator = new AtomicInteger(1);
-		}
-		
-		public Thread newThread(Runnable r) {
-			Thread thread = new Thread(r);
-			int threadId = threadIdCreator.getAndIncrement();
-			thread.setName("http-" + threadId);
-			return thread;
-		}
-	}	
 }
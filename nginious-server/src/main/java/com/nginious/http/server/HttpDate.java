@@ -0,0 +1,415 @@
+/**
+ * Copyright 2012 NetDigital Sweden AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.nginious.http.server;
+
+/**
+ * Formatting and parsing of HTTP dates and a clock for the current HTTP date. See section 3.3.1 Full Date in
+ * <a href="http://www.ietf.org/rfc/rfc2616.txt">HTTP/1.1 RFC 2616</a>.
+ * 
+ * <p>
+ * Dates are formatted in the RFC 1123 format 'EEE, dd MMM yyyy HH:mm:ss GMT'. Dates are parsed from the
+ * RFC 1123, RFC 850 and ANSI C asctime formats. Formatting and parsing is done by hand without any
+ * calendar or date format objects which makes both thread safe.
+ * </p>
+ * 
+ * <p>
+ * The current date is formatted at most once per second and shared by all threads, both as a string
+ * and as a pre-encoded <code>Date</code> header line used by {@link HttpOutput}.
+ * </p>
+ * 
+ * @author Bojan Pisler, NetDigital Sweden AB
+ *
+ */
+public class HttpDate {
+	
+	private static final String[] DAYS = { "Sun", "Mon", "Tue", "Wed", "Thu", "Fri", "Sat" };
+	
+	private static final String[] MONTHS = { "Jan", "Feb", "Mar", "Apr", "May", "Jun", "Jul", "Aug", "Sep", 
+		"Oct", "Nov", "Dec" };
+	
+	private static final long MILLIS_PER_DAY = 86400000L;
+	
+	private static volatile CurrentDate current = new CurrentDate(System.currentTimeMillis() / 1000L);
+	
+	private HttpDate() {
+		super();
+	}
+	
+	/**
+	 * Returns the current date formatted in the RFC 1123 format.
+	 * 
+	 * @return the current date
+	 */
+	public static String currentDate() {
+		return current().date;
+	}
+	
+	/**
+	 * Returns a complete <code>Date</code> header line including the trailing carriage return and line feed
+	 * for the current date. The returned bytes must not be modified.
+	 * 
+	 * @return the date header line bytes
+	 */
+	static byte[] currentDateHeader() {
+		return current().header;
+	}
+	
+	private static CurrentDate current() {
+		long second = System.currentTimeMillis() / 1000L;
+		CurrentDate date = current;
+		
+		if(date.second != second) {
+			date = new CurrentDate(second);
+			current = date;
+		}
+		
+		return date;
+	}
+	
+	/**
+	 * Formats the specified time in milliseconds since the epoch into a date string with the RFC 1123
+	 * format 'EEE, dd MMM yyyy HH:mm:ss GMT'.
+	 * 
+	 * @param millis the time in milliseconds since the epoch
+	 * @return the date string
+	 */
+	public static String format(long millis) {
+		long days = floorDiv(millis, MILLIS_PER_DAY);
+		int seconds = (int)((millis - days * MILLIS_PER_DAY) / 1000L);
+		
+		// Civil from days, see http://howardhinnant.github.io/date_algorithms.html
+		long z = days + 719468;
+		long era = floorDiv(z, 146097);
+		int dayOfEra = (int)(z - era * 146097);
+		int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+		int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+		int mp = (5 * dayOfYear + 2) / 153;
+		int day = dayOfYear - (153 * mp + 2) / 5 + 1;
+		int month = mp < 10 ? mp + 3 : mp - 9;
+		long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+		
+		char[] out = new char[29];
+		String dayName = DAYS[(int)(days + 4 - floorDiv(days + 4, 7) * 7)];
+		String monthName = MONTHS[month - 1];
+		out[0] = dayName.charAt(0);
+		out[1] = dayName.charAt(1);
+		out[2] = dayName.charAt(2);
+		out[3] = ',';
+		out[4] = ' ';
+		putDigits(out, 5, day, 2);
+		out[7] = ' ';
+		out[8] = monthName.charAt(0);
+		out[9] = monthName.charAt(1);
+		out[10] = monthName.charAt(2);
+		out[11] = ' ';
+		putDigits(out, 12, (int)year, 4);
+		out[16] = ' ';
+		putDigits(out, 17, seconds / 3600, 2);
+		out[19] = ':';
+		putDigits(out, 20, seconds / 60 % 60, 2);
+		out[22] = ':';
+		putDigits(out, 23, seconds % 60, 2);
+		out[25] = ' ';
+		out[26] = 'G';
+		out[27] = 'M';
+		out[28] = 'T';
+		return new String(out);
+	}
+	
+	/**
+	 * Parses the specified value into a time in milliseconds since the epoch. The following date formats
+	 * are accepted.
+	 * 
+	 * <ul>
+	 * <li>RFC 1123 format 'EEE, dd MMM yyyy HH:mm:ss zzz'.</li>
+	 * <li>RFC 850 format 'EEEE, dd-MMM-yy HH:mm:ss zzz'.</li>
+	 * <li>ANSI C format 'EEE MMM d HH:mm:ss yyyy'.</li>
+	 * </ul>
+	 * 
+	 * <p>
+	 * The time zone must be GMT, UT, UTC or a numeric offset. Two digit years more than 50 years in the
+	 * future are interpreted as being in the past century.
+	 * </p>
+	 * 
+	 * @param value the value
+	 * @return the parsed time in milliseconds or <code>-1</code> if value is not a valid date
+	 */
+	public static long parse(String value) {
+		if(value == null) {
+			return -1L;
+		}
+		
+		Parser parser = new Parser(value);
+		return parser.parse();
+	}
+	
+	private static long floorDiv(long x, long y) {
+		long result = x / y;
+		
+		if((x % y != 0) && ((x < 0) != (y < 0))) {
+			result--;
+		}
+		
+		return result;
+	}
+	
+	private static void putDigits(char[] out, int pos, int value, int digits) {
+		for(int i = pos + digits - 1; i >= pos; i--) {
+			out[i] = (char)('0' + value % 10);
+			value /= 10;
+		}
+	}
+	
+	/**
+	 * Returns number of days since the epoch for the specified date.
+	 */
+	private static long toDays(long year, int month, int day) {
+		// Days from civil, see http://howardhinnant.github.io/date_algorithms.html
+		year -= month <= 2 ? 1 : 0;
+		long era = floorDiv(year, 400);
+		int yearOfEra = (int)(year - era * 400);
+		int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+		int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+		return era * 146097 + dayOfEra - 719468;
+	}
+	
+	/**
+	 * The current date formatted for one second.
+	 * 
+	 * @author Bojan Pisler, NetDigital Sweden AB
+	 *
+	 */
+	private static class CurrentDate {
+		
+		private long second;
+		
+		private String date;
+		
+		private byte[] header;
+		
+		private CurrentDate(long second) {
+			this.second = second;
+			this.date = format(second * 1000L);
+			
+			String line = "Date: " + this.date + "\015\012";
+			this.header = new byte[line.length()];
+			
+			for(int i = 0; i < line.length(); i++) {
+				header[i] = (byte)line.charAt(i);
+			}
+		}
+	}
+	
+	/**
+	 * Hand written parser for the date formats accepted by {@link HttpDate#parse(String)}.
+	 * 
+	 * @author Bojan Pisler, NetDigital Sweden AB
+	 *
+	 */
+	private static class Parser {
+		
+		private String value;
+		
+		private int pos;
+		
+		private Parser(String value) {
+			this.value = value;
+			this.pos = 0;
+		}
+		
+		private long parse() {
+			skipSpaces();
+			int comma = value.indexOf(',', pos);
+			int day = 0;
+			int month = 0;
+			int year = 0;
+			int hour = 0;
+			int minute = 0;
+			int second = 0;
+			int offset = 0;
+			
+			if(comma >= 0) {
+				// RFC 1123 or RFC 850, day name is not validated
+				this.pos = comma + 1;
+				skipSpaces();
+				day = digits(1, 2);
+				
+				if(pos < value.length() && value.charAt(pos) == '-') {
+					pos++;
+					month = month();
+					
+					if(!expect('-')) {
+						return -1L;
+					}
+					
+					int start = this.pos;
+					year = digits(2, 4);
+					
+					if(year >= 0 && this.pos - start == 2) {
+						year = fullYear(year);
+					}
+				} else {
+					skipSpaces();
+					month = month();
+					skipSpaces();
+					year = digits(4, 4);
+				}
+				
+				skipSpaces();
+				hour = digits(2, 2);
+				minute = expect(':') ? digits(2, 2) : -1;
+				second = expect(':') ? digits(2, 2) : -1;
+				skipSpaces();
+				offset = zone();
+			} else {
+				// ANSI C asctime format
+				while(pos < value.length() && Character.isLetter(value.charAt(pos))) {
+					pos++;
+				}
+				
+				skipSpaces();
+				month = month();
+				skipSpaces();
+				day = digits(1, 2);
+				skipSpaces();
+				hour = digits(2, 2);
+				minute = expect(':') ? digits(2, 2) : -1;
+				second = expect(':') ? digits(2, 2) : -1;
+				skipSpaces();
+				year = digits(4, 4);
+				skipSpaces();
+				
+				if(this.pos != value.length()) {
+					return -1L;
+				}
+			}
+			
+			if(day < 1 || day > 31 || month < 1 || year < 0 || hour < 0 || hour > 23 || minute < 0 || 
+					minute > 59 || second < 0 || second > 60 || offset == Integer.MIN_VALUE) {
+				return -1L;
+			}
+			
+			long seconds = toDays(year, month, day) * 86400L + hour * 3600L + minute * 60L + second - offset;
+			return seconds * 1000L;
+		}
+		
+		private int fullYear(int year) {
+			int currentYear = (int)(System.currentTimeMillis() / MILLIS_PER_DAY / 365.2425) + 1970;
+			year += currentYear / 100 * 100;
+			
+			if(year > currentYear + 50) {
+				year -= 100;
+			} else if(year < currentYear - 50) {
+				year += 100;
+			}
+			
+			return year;
+		}
+		
+		private int zone() {
+			if(pos >= value.length()) {
+				return Integer.MIN_VALUE;
+			}
+			
+			char ch = value.charAt(pos);
+			
+			if(ch == '+' || ch == '-') {
+				pos++;
+				int hhmm = digits(4, 4);
+				
+				if(hhmm < 0 || !atEnd()) {
+					return Integer.MIN_VALUE;
+				}
+				
+				int offset = (hhmm / 100) * 3600 + (hhmm % 100) * 60;
+				return ch == '-' ? -offset : offset;
+			}
+			
+			int start = this.pos;
+			
+			while(pos < value.length() && Character.isLetter(value.charAt(pos))) {
+				pos++;
+			}
+			
+			String zone = value.substring(start, pos);
+			
+			if(!atEnd()) {
+				return Integer.MIN_VALUE;
+			}
+			
+			if(zone.equalsIgnoreCase("GMT") || zone.equalsIgnoreCase("UTC") || zone.equalsIgnoreCase("UT") || 
+					zone.equalsIgnoreCase("Z")) {
+				return 0;
+			}
+			
+			return Integer.MIN_VALUE;
+		}
+		
+		private int month() {
+			if(pos + 3 > value.length()) {
+				return -1;
+			}
+			
+			for(int i = 0; i < MONTHS.length; i++) {
+				if(value.regionMatches(true, pos, MONTHS[i], 0, 3)) {
+					pos += 3;
+					return i + 1;
+				}
+			}
+			
+			return -1;
+		}
+		
+		private int digits(int minDigits, int maxDigits) {
+			int start = this.pos;
+			int result = 0;
+			
+			while(pos < value.length() && pos - start < maxDigits) {
+				char ch = value.charAt(pos);
+				
+				if(ch < '0' || ch > '9') {
+					break;
+				}
+				
+				result = result * 10 + (ch - '0');
+				pos++;
+			}
+			
+			return pos - start < minDigits ? -1 : result;
+		}
+		
+		private boolean expect(char ch) {
+			if(pos < value.length() && value.charAt(pos) == ch) {
+				pos++;
+				return true;
+			}
+			
+			return false;
+		}
+		
+		private void skipSpaces() {
+			while(pos < value.length() && value.charAt(pos) == ' ') {
+				pos++;
+			}
+		}
+		
+		private boolean atEnd() {
+			skipSpaces();
+			return this.pos == value.length();
+		}
+	}
+}
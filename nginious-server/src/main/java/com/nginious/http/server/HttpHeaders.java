@@ -0,0 +1,302 @@
+/**
+ * Copyright 2012 NetDigital Sweden AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.nginious.http.server;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A flat container of HTTP headers for a request or response. Headers are kept in parallel arrays in the
+ * order they were added with one entry per header value. Header names are matched without case using
+ * precomputed hashes which avoids creating any key objects for lookups.
+ * 
+ * <p>
+ * Header values can be added as strings or as bytes from request data. Bytes are copied into a block
+ * owned by the container and only decoded into a string when the value is requested. Looking up the first
+ * value of a header, which covers the single valued headers used by nearly all requests, does not
+ * allocate any objects once the value has been decoded.
+ * </p>
+ * 
+ * <p>
+ * A container is cleared and reused for a new request or response on the same connection, see
+ * {@link HttpConnection#acquireHeaders()}.
+ * </p>
+ * 
+ * @author Bojan Pisler, NetDigital Sweden AB
+ *
+ */
+class HttpHeaders {
+	
+	private static final int INITIAL_SIZE = 16;
+	
+	private static final int INITIAL_DATA_SIZE = 512;
+	
+	private String[] names;
+	
+	private int[] hashes;
+	
+	private String[] values;
+	
+	private int[] offsets;
+	
+	private int[] lengths;
+	
+	private int size;
+	
+	private byte[] data;
+	
+	private int dataLength;
+	
+	/**
+	 * Constructs a new empty HTTP headers container.
+	 */
+	HttpHeaders() {
+		super();
+		this.names = new String[INITIAL_SIZE];
+		this.hashes = new int[INITIAL_SIZE];
+		this.values = new String[INITIAL_SIZE];
+		this.offsets = new int[INITIAL_SIZE];
+		this.lengths = new int[INITIAL_SIZE];
+		this.size = 0;
+		this.dataLength = 0;
+	}
+	
+	/**
+	 * Returns case insensitive hash code for the specified header name. Only ASCII letters are folded
+	 * as header names are tokens.
+	 * 
+	 * @param name the header name
+	 * @return the hash code
+	 */
+	static int hash(String name) {
+		int hash = 0;
+		int length = name.length();
+		
+		for(int i = 0; i < length; i++) {
+			char ch = name.charAt(i);
+			
+			if(ch >= 'A' && ch <= 'Z') {
+				ch += 'a' - 'A';
+			}
+			
+			hash = 31 * hash + ch;
+		}
+		
+		return hash;
+	}
+	
+	/**
+	 * Returns number of header values in this container.
+	 * 
+	 * @return the number of header values
+	 */
+	int size() {
+		return this.size;
+	}
+	
+	/**
+	 * Returns header name at the specified index.
+	 * 
+	 * @param index the index
+	 * @return the header name
+	 */
+	String getName(int index) {
+		return names[index];
+	}
+	
+	/**
+	 * Returns header value at the specified index. Values added from request data are decoded the first
+	 * time they are requested.
+	 * 
+	 * @param index the index
+	 * @return the header value
+	 */
+	String getValue(int index) {
+		String value = values[index];
+		
+		if(value == null && offsets[index] >= 0) {
+			value = new String(this.data, offsets[index], lengths[index]);
+			values[index] = value;
+		}
+		
+		return value;
+	}
+	
+	/**
+	 * Adds the specified header name and value.
+	 * 
+	 * @param name the header name
+	 * @param value the header value
+	 */
+	void add(String name, String value) {
+		add(name, hash(name), value);
+	}
+	
+	/**
+	 * Adds the specified header name with the specified precomputed hash and value.
+	 * 
+	 * @param name the header name
+	 * @param hash case insensitive hash of header name as returned by {@link #hash(String)}
+	 * @param value the header value
+	 */
+	void add(String name, int hash, String value) {
+		int index = next();
+		names[index] = name;
+		hashes[index] = hash;
+		values[index] = value;
+		offsets[index] = -1;
+		lengths[index] = 0;
+	}
+	
+	/**
+	 * Adds the specified header name with the specified precomputed hash and a value found in the specified
+	 * data starting at the specified position with the specified length.
+	 * 
+	 * @param name the header name
+	 * @param hash case insensitive hash of header name as returned by {@link #hash(String)}
+	 * @param data the request data
+	 * @param start start position of value in data
+	 * @param length length of value in data
+	 */
+	void add(String name, int hash, ByteBuffer data, int start, int length) {
+		if(this.data == null) {
+			this.data = new byte[length > INITIAL_DATA_SIZE ? length : INITIAL_DATA_SIZE];
+		} else if(this.data.length - this.dataLength < length) {
+			int dataSize = this.data.length * 2;
+			
+			if(dataSize - this.dataLength < length) {
+				dataSize = this.dataLength + length;
+			}
+			
+			this.data = Arrays.copyOf(this.data, dataSize);
+		}
+		
+		data.position(start);
+		data.get(this.data, this.dataLength, length);
+		
+		int index = next();
+		names[index] = name;
+		hashes[index] = hash;
+		values[index] = null;
+		offsets[index] = this.dataLength;
+		lengths[index] = length;
+		this.dataLength += length;
+	}
+	
+	/**
+	 * Returns first value of header with the specified name.
+	 * 
+	 * @param name the header name
+	 * @return the header value or <code>null</code> if not found
+	 */
+	String get(String name) {
+		int index = indexOf(name, hash(name), 0);
+		return index >= 0 ? getValue(index) : null;
+	}
+	
+	/**
+	 * Returns all values of header with the specified name.
+	 * 
+	 * @param name the header name
+	 * @return the header values or <code>null</code> if not found
+	 */
+	String[] getValues(String name) {
+		int hash = hash(name);
+		int index = indexOf(name, hash, 0);
+		
+		if(index < 0) {
+			return null;
+		}
+		
+		int count = 0;
+		
+		for(int i = index; i >= 0; i = indexOf(name, hash, i + 1)) {
+			count++;
+		}
+		
+		String[] headerValues = new String[count];
+		count = 0;
+		
+		for(int i = index; i >= 0; i = indexOf(name, hash, i + 1)) {
+			headerValues[count++] = getValue(i);
+		}
+		
+		return headerValues;
+	}
+	
+	/**
+	 * Returns whether or not this container has at least one value for header with the specified name.
+	 * 
+	 * @param name the header name
+	 * @return <code>true</code> if header exists, <code>false</code> otherwise
+	 */
+	boolean contains(String name) {
+		return indexOf(name, hash(name), 0) >= 0;
+	}
+	
+	/**
+	 * Returns names of all headers in this container. Each name is only returned once with the case
+	 * it was first added with.
+	 * 
+	 * @return the header names
+	 */
+	String[] getNames() {
+		String[] headerNames = new String[this.size];
+		int count = 0;
+		
+		for(int i = 0; i < this.size; i++) {
+			if(indexOf(names[i], hashes[i], 0) == i) {
+				headerNames[count++] = names[i];
+			}
+		}
+		
+		return count == this.size ? headerNames : Arrays.copyOf(headerNames, count);
+	}
+	
+	/**
+	 * Removes all headers from this container. Allocated arrays are kept for reuse.
+	 */
+	void clear() {
+		Arrays.fill(this.names, 0, this.size, null);
+		Arrays.fill(this.values, 0, this.size, null);
+		this.size = 0;
+		this.dataLength = 0;
+	}
+	
+	private int indexOf(String name, int hash, int start) {
+		for(int i = start; i < this.size; i++) {
+			if(hashes[i] == hash && names[i].equalsIgnoreCase(name)) {
+				return i;
+			}
+		}
+		
+		return -1;
+	}
+	
+	private int next() {
+		if(this.size == names.length) {
+			int newSize = this.size * 2;
+			this.names = Arrays.copyOf(this.names, newSize);
+			this.hashes = Arrays.copyOf(this.hashes, newSize);
+			this.values = Arrays.copyOf(this.values, newSize);
+			this.offsets = Arrays.copyOf(this.offsets, newSize);
+			this.lengths = Arrays.copyOf(this.lengths, newSize);
+		}
+		
+		return this.size++;
+	}
+}
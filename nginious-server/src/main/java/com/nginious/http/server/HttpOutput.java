@@ -16,20 +16,35 @@
 
 package com.nginious.http.server;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
-import java.util.Date;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
 
 import com.nginious.http.HttpCookie;
 import com.nginious.http.HttpMethod;
 import com.nginious.http.HttpSession;
-import com.nginious.http.common.FixedBuffer;
 import com.nginious.http.server.HttpContext.HttpRequestHandler;
 import com.nginious.http.server.HttpContext.HttpResponseHandler;
 import com.nginious.http.session.HttpSessionManager;
 
 /**
- * Handles writing of HTTP response to a client including headers and body.
+ * Handles writing of HTTP response to a client including headers and body. Response data is written
+ * to direct byte buffers acquired from the servers {@link BufferPool}. Each buffer is handed over to
+ * the connection once full and returned to the pool once written to the client. File regions are handed
+ * over to the connection as is and sent without copying file content to buffers.
+ * 
+ * <p>
+ * Responses from controllers are compressed with gzip or deflate content encoding when accepted by the client,
+ * the content type is configured for compression and the content length is unknown or large enough, see
+ * {@link HttpCompression}. Compressed data is collected in a separate buffer and written as chunks when the
+ * response uses chunked transfer encoding. Chunked transfer encoding is used for compressed HTTP/1.1 responses
+ * since the compressed length is not known until all content has been written. Compressed HTTP/1.0 responses
+ * close the connection once written.
+ * </p>
  * 
  * @author Bojan Pisler, NetDigital Sweden AB
  *
@@ -38,6 +53,8 @@ class HttpOutput {
 	
 	private static final int BUF_LEN = 4 * 1024;
 	
+	private static final byte[] GZIP_HEADER = { 0x1f, (byte)0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0 };
+	
 	private HttpContext handler;
 	
 	private HttpRequestHandler request;
@@ -46,7 +63,9 @@ class HttpOutput {
 	
     private HttpConnection conn;
     
-    private FixedBuffer buffer;
+    private BufferPool pool;
+    
+    private ByteBuffer buffer;
     
     private int bytesWritten;
     
@@ -66,6 +85,20 @@ class HttpOutput {
     
     private boolean head;
     
+    private HttpCompression compression;
+    
+    private String encoding;
+    
+    private Deflater deflater;
+    
+    private CRC32 crc;
+    
+    private byte[] deflateBuffer;
+    
+    private int deflateLen;
+    
+    private long compressNanos;
+    
     /**
      * Constructs a new HTTP output for the specified HTTP context, HTTP response and HTTP request.
      * 
@@ -80,7 +113,8 @@ class HttpOutput {
 		this.conn = handler.getConnection();
 		this.response = response;
 		this.request = request;
-		this.buffer = new FixedBuffer(BUF_LEN);
+		this.pool = conn.getHttpServer().getBufferPool();
+		this.compression = conn.getHttpServer().getCompression();
 		HttpMethod method = handler.getMethod();
 		this.head = method != null && method.equals(HttpMethod.HEAD);
 	}
@@ -119,9 +153,9 @@ class HttpOutput {
 			this.close = true;
 		}
 		
-		buffer.put(HttpSnippet.VERSION.bytes);
-		buffer.put(response.getStatus().getResponse().getBytes());
-		buffer.put(HttpSnippet.CRLF.bytes);
+		writeBuffer(HttpSnippet.VERSION);
+		writeBuffer(response.getStatus().getResponse());
+		writeBuffer(HttpSnippet.CRLF);
 		
 		String value = request.getHeader("Connection");
 		
@@ -131,55 +165,76 @@ class HttpOutput {
 			this.close = false;
 		}
 		
-		String[] headerNames = response.getHeaderNames();
+		HttpHeaders headers = response.getHttpHeaders();
+		boolean compressible = isCompressible(version);
+		
+		if(compressible) {
+			this.encoding = HttpCompression.selectEncoding(request.getHeader("Accept-Encoding"));
+		}
 		
 		if(response.getContentType() != null) {
-			buffer.put("Content-Type".getBytes());
-			buffer.put(HttpSnippet.HDEL.bytes);
-			buffer.put(response.getContentType().getBytes());
-			buffer.put(HttpSnippet.CRLF.bytes);
+			writeBuffer("Content-Type");
+			writeBuffer(HttpSnippet.HDEL);
+			writeBuffer(response.getContentType());
+			writeBuffer(HttpSnippet.CRLF);
 		}
 		
 		if(version != null && version.equals("HTTP/1.1")) {
 			String date = response.getHeader("Date");
 			
 			if(date == null) {
-				buffer.put("Date".getBytes());
-				buffer.put(HttpSnippet.HDEL.bytes);
-				buffer.put(Header.formatDate(new Date()).getBytes());
-				buffer.put(HttpSnippet.CRLF.bytes);
+				byte[] dateHeader = HttpDate.currentDateHeader();
+				writeBuffer(dateHeader, 0, dateHeader.length);
 			}
 		}
 		
-		for(String headerName : headerNames) {
-			boolean transferEncoding = headerName.toLowerCase().equals("transfer-encoding");
-			boolean connection = headerName.toLowerCase().equals("connection");
-			String[] headerValues = response.getHeaders(headerName);
+		for(int i = 0; i < headers.size(); i++) {
+			String headerName = headers.getName(i);
+			String headerValue = headers.getValue(i);
 			
-			for(String headerValue : headerValues) {
-				if(transferEncoding && headerValue.indexOf("chunked") > -1) {
-					this.chunked = true;
-				}
-				
-				if(connection) {
-					if(headerValue.toLowerCase().equals("upgrade")) {
-						this.upgrade = true;
-					} else if(headerValue.equals("close")) {
-						this.close = true;
-					} else if(headerValue.equals("keep-alive")) {
-						this.close = false;
-					}
-				} else {
-					writeBuffer(headerName);
-					writeBuffer(HttpSnippet.HDEL);
-					writeBuffer(headerValue);
-					writeBuffer(HttpSnippet.CRLF);
+			if(headerName.equalsIgnoreCase("transfer-encoding") && headerValue.indexOf("chunked") > -1) {
+				this.chunked = true;
+			}
+			
+			if(headerName.equalsIgnoreCase("connection")) {
+				if(headerValue.equalsIgnoreCase("upgrade")) {
+					this.upgrade = true;
+				} else if(headerValue.equals("close")) {
+					this.close = true;
+				} else if(headerValue.equals("keep-alive")) {
+					this.close = false;
 				}
+			} else {
+				writeBuffer(headerName);
+				writeBuffer(HttpSnippet.HDEL);
+				writeBuffer(headerValue);
+				writeBuffer(HttpSnippet.CRLF);
+			}
+		}
+		
+		if(compressible && response.getHeader("Vary") == null) {
+			writeBuffer("Vary: Accept-Encoding");
+			writeBuffer(HttpSnippet.CRLF);
+		}
+		
+		if(this.encoding != null) {
+			writeBuffer("Content-Encoding");
+			writeBuffer(HttpSnippet.HDEL);
+			writeBuffer(this.encoding);
+			writeBuffer(HttpSnippet.CRLF);
+			
+			// Compressed length is unknown, chunk or close connection when done
+			if(!this.chunked && version.equals("HTTP/1.1")) {
+				writeBuffer("Transfer-Encoding: chunked");
+				writeBuffer(HttpSnippet.CRLF);
+				this.chunked = true;
+			} else if(!this.chunked) {
+				this.close = true;
 			}
 		}
 		
 		// Up to application to set content length correctly. Remove if chunking
-		if(!this.chunked && response.getContentLengthSet()) {
+		if(!this.chunked && this.encoding == null && response.getContentLengthSet()) {
 			int contentLength = response.getContentLength();
 			writeBuffer("Content-Length: ");
 			writeBuffer(Integer.toString(contentLength));
@@ -226,11 +281,54 @@ class HttpOutput {
 		this.headersWritten = true;
 		
 		if(this.chunked) {
-			ByteBuffer out = buffer.toByteBuffer(0);
-			conn.queueWrite(out);
-			this.buffer = new FixedBuffer(BUF_LEN);
-			this.bufferWritten = true;
-		}		
+			queueBuffer();
+		}
+		
+		if(this.encoding != null) {
+			startCompression();
+		}
+	}
+	
+	/**
+	 * Checks whether or not the response may be compressed. A response may be compressed if
+	 * 
+	 * <ul>
+	 * <li>Compression is enabled and the response is not for a HEAD request.</li>
+	 * <li>The response status has a body and is not a partial content response.</li>
+	 * <li>Content encoding, content range and content length headers are not set by the application.</li>
+	 * <li>The content type is configured for compression.</li>
+	 * <li>The content length is unknown or large enough.</li>
+	 * <li>The response is not from static content or a controller with the compress attribute unset.</li>
+	 * </ul>
+	 * 
+	 * @param version the request HTTP version
+	 * @return <code>true</code> if the response may be compressed, <code>false</code> otherwise
+	 */
+	private boolean isCompressible(String version) {
+		if(this.compression == null || !compression.isEnabled() || this.head || version == null) {
+			return false;
+		}
+		
+		int statusCode = response.getStatus().getStatusCode();
+		
+		if(statusCode < 200 || statusCode == 204 || statusCode == 206 || statusCode == 304) {
+			return false;
+		}
+		
+		if(response.getHeader("Content-Encoding") != null || response.getHeader("Content-Range") != null || 
+				response.getHeader("Content-Length") != null) {
+			return false;
+		}
+		
+		if(!compression.isCompressedType(response.getContentType())) {
+			return false;
+		}
+		
+		if(response.getContentLengthSet() && !compression.isCompressedLength(response.getContentLength())) {
+			return false;
+		}
+		
+		return handler.isCompressed();
 	}
 	
 	/**
@@ -265,22 +363,222 @@ class HttpOutput {
 			return;
 		}
 		
+		if(this.deflater != null) {
+			compressContent(buff, start, len);
+		} else {
+			writeBody(buff, start, len);
+		}
+		
+		this.anythingWritten = true;
+	}
+	
+	/**
+	 * Writes the specified bytes starting at the specified start position with the specified length as is to
+	 * the response body. Bytes are written as one chunk if the response uses chunked transfer encoding.
+	 * 
+	 * @param buff the bytes to write
+	 * @param start start position in bytes
+	 * @param len number of bytes to write
+	 * @throws IOException if an I/O exception occurs while writing response body.
+	 */
+	private void writeBody(byte[] buff, int start, int len) throws IOException {
 		if(this.chunked) {
 			if(len > 0) {
-				String chunkPrefixStr = Integer.toHexString(len);
-				byte[] chunkPrefix = chunkPrefixStr.getBytes();
-				this.buffer = new FixedBuffer(len + chunkPrefix.length + HttpSnippet.CRLF.bytes.length + HttpSnippet.CRLF.bytes.length);
-				buffer.put(chunkPrefix);
-				buffer.put(HttpSnippet.CRLF.bytes);
-				buffer.put(buff, start, len);
-				buffer.put(HttpSnippet.CRLF.bytes);
+				writeBuffer(Integer.toHexString(len));
+				writeBuffer(HttpSnippet.CRLF);
+				writeBuffer(buff, start, len);
+				writeBuffer(HttpSnippet.CRLF);
 				writeBuffer();
 			}
 		} else {
 			writeBuffer(buff, start, len);
 		}
+	}
+	
+	/**
+	 * Acquires a deflater for the selected content encoding and writes the gzip header if the response is gzip
+	 * encoded.
+	 * 
+	 * @throws IOException if an I/O exception occurs while writing response body
+	 */
+	private void startCompression() throws IOException {
+		this.deflater = compression.acquire(this.encoding);
+		this.deflateBuffer = new byte[BUF_LEN];
+		this.deflateLen = 0;
 		
-		this.anythingWritten = true;
+		if(this.encoding.equals(HttpCompression.GZIP)) {
+			this.crc = new CRC32();
+			putCompressed(GZIP_HEADER);
+		}
+	}
+	
+	/**
+	 * Compresses the specified bytes starting at the specified start position with the specified length. Compressed
+	 * data is written to the response body each time the compressed data buffer fills up.
+	 * 
+	 * @param buff the bytes to compress
+	 * @param start start position in bytes
+	 * @param len number of bytes to compress
+	 * @throws IOException if an I/O exception occurs while writing response body
+	 */
+	private void compressContent(byte[] buff, int start, int len) throws IOException {
+		if(len <= 0) {
+			return;
+		}
+		
+		if(this.crc != null) {
+			crc.update(buff, start, len);
+		}
+		
+		deflater.setInput(buff, start, len);
+		
+		while(!deflater.needsInput()) {
+			deflate();
+		}
+	}
+	
+	/**
+	 * Finishes compression by writing all remaining compressed data and the gzip trailer if the response is gzip
+	 * encoded. The deflater is released and server statistics updated.
+	 * 
+	 * @throws IOException if an I/O exception occurs while writing response body
+	 */
+	private void finishCompression() throws IOException {
+		deflater.finish();
+		
+		while(!deflater.finished()) {
+			deflate();
+		}
+		
+		if(this.crc != null) {
+			byte[] trailer = new byte[8];
+			putInt(trailer, 0, crc.getValue());
+			putInt(trailer, 4, deflater.getBytesRead());
+			putCompressed(trailer);
+		}
+		
+		long bytesIn = deflater.getBytesRead();
+		long bytesOut = deflater.getBytesWritten() + (this.crc != null ? GZIP_HEADER.length + 8 : 0);
+		
+		if(this.deflateLen > 0) {
+			writeBody(this.deflateBuffer, 0, this.deflateLen);
+			this.deflateLen = 0;
+		}
+		
+		compression.release(this.encoding, this.deflater);
+		compression.addCompressedResponse(bytesIn, bytesOut, this.compressNanos);
+		this.deflater = null;
+	}
+	
+	/**
+	 * Compresses pending input into the compressed data buffer. The buffer is written to the response body
+	 * when full.
+	 * 
+	 * @throws IOException if an I/O exception occurs while writing response body
+	 */
+	private void deflate() throws IOException {
+		long startNanos = System.nanoTime();
+		int len = deflater.deflate(this.deflateBuffer, this.deflateLen, deflateBuffer.length - this.deflateLen);
+		this.compressNanos += System.nanoTime() - startNanos;
+		this.deflateLen += len;
+		
+		if(this.deflateLen == deflateBuffer.length) {
+			writeBody(this.deflateBuffer, 0, this.deflateLen);
+			this.deflateLen = 0;
+		}
+	}
+	
+	/**
+	 * Puts the specified bytes in the compressed data buffer as is.
+	 * 
+	 * @param bytes the bytes to put
+	 * @throws IOException if an I/O exception occurs while writing response body
+	 */
+	private void putCompressed(byte[] bytes) throws IOException {
+		if(this.deflateLen + bytes.length > deflateBuffer.length) {
+			writeBody(this.deflateBuffer, 0, this.deflateLen);
+			this.deflateLen = 0;
+		}
+		
+		System.arraycopy(bytes, 0, this.deflateBuffer, this.deflateLen, bytes.length);
+		this.deflateLen += bytes.length;
+	}
+	
+	/**
+	 * Puts the lower 32 bits of the specified value in little endian byte order in the specified bytes
+	 * at the specified position.
+	 * 
+	 * @param bytes the bytes to put value in
+	 * @param pos the position
+	 * @param value the value to put
+	 */
+	private static void putInt(byte[] bytes, int pos, long value) {
+		for(int i = 0; i < 4; i++) {
+			bytes[pos + i] = (byte)(value >> (i * 8));
+		}
+	}
+	
+	/**
+	 * Writes the specified number of bytes from the specified file starting at the specified position to the
+	 * response body. The file region is handed over to the connection after any buffered response data and
+	 * sent without copying file content through buffers. Chunked and compressed responses are written through
+	 * the internal output buffer.
+	 * 
+	 * @param file the file to write from
+	 * @param position position of first byte to write in file
+	 * @param count number of bytes to write
+	 * @throws IOException if unable to open file or an I/O error occurs while writing response body
+	 */
+	void writeContent(File file, long position, long count) throws IOException {
+		if(this.head) {
+			if(!this.headersWritten) {
+				writeHeaders();
+			}
+			
+			this.anythingWritten = true;
+			return;
+		}
+		
+		RandomAccessFile in = new RandomAccessFile(file, "r");
+		
+		try {
+			if(!this.headersWritten) {
+				writeHeaders();
+			}
+			
+			if(this.chunked || this.deflater != null) {
+				in.seek(position);
+				byte[] b = new byte[BUF_LEN];
+				
+				while(count > 0) {
+					int len = in.read(b, 0, count > b.length ? b.length : (int)count);
+					
+					if(len < 0) {
+						throw new IOException("end of file " + file + " at " + in.getFilePointer());
+					}
+					
+					writeContent(b, 0, len);
+					count -= len;
+				}
+				
+				return;
+			}
+			
+			if(this.buffer != null && buffer.position() > 0) {
+				writeBuffer();
+			}
+			
+			FileChannel channel = in.getChannel();
+			in = null;
+			conn.queueWrite(channel, position, count);
+			this.bytesWritten += count;
+			this.bufferWritten = true;
+			this.anythingWritten = true;
+		} finally {
+			if(in != null) {
+				in.close();
+			}
+		}
 	}
 	
 	/**
@@ -314,7 +612,12 @@ class HttpOutput {
 	 */
 	private void writeBuffer(byte[] buff, int start, int len) throws IOException {
 		while(len > 0) {
-			int outLen = buffer.put(buff, start, len);
+			if(this.buffer == null) {
+				this.buffer = pool.acquire(BUF_LEN);
+			}
+			
+			int outLen = len > buffer.remaining() ? buffer.remaining() : len;
+			buffer.put(buff, start, outLen);
 			
 			if(outLen < len) {
 				writeBuffer();
@@ -331,12 +634,28 @@ class HttpOutput {
 	 * @throws IOException if an I/O error occurs.
 	 */
 	private void writeBuffer() throws IOException {
-		ByteBuffer out = buffer.toByteBuffer(0);
+		this.bytesWritten += queueBuffer();
+	}
+	
+	/**
+	 * Hands over the internal output buffer to the connection for writing to the client. A new buffer
+	 * is acquired from the buffer pool on next write.
+	 * 
+	 * @return number of bytes queued for writing
+	 * @throws IOException if an I/O error occurs
+	 */
+	private int queueBuffer() throws IOException {
+		if(this.buffer == null) {
+			this.buffer = pool.acquire(BUF_LEN);
+		}
 		
-		this.bytesWritten += out.remaining();
-		conn.queueWrite(out);
-		this.buffer = new FixedBuffer(BUF_LEN);
+		ByteBuffer out = this.buffer;
+		this.buffer = null;
+		out.flip();
+		int len = out.remaining();
+		conn.queueWrite(out, true);
 		this.bufferWritten = true;
+		return len;
 	}
 	
 	/**
@@ -358,6 +677,22 @@ class HttpOutput {
 		return this.bufferWritten;
 	}
 	
+	/**
+	 * Flushes the response output stream. Writes any remaining response data in the internal buffers to the
+	 * client unless the response is compressed. A compressed response is written once completed.
+	 * 
+	 * @throws IOException if an I/O error occurs
+	 */
+	void flush() throws IOException {
+		if(!this.headersWritten) {
+			writeHeaders();
+		}
+		
+		if(this.deflater == null) {
+			flushContent();
+		}
+	}
+	
 	/**
 	 * Writes any remaining response data in the internal buffers to the client.
 	 * 
@@ -367,8 +702,12 @@ class HttpOutput {
 		if(!this.headersWritten) {
 			writeHeaders();
 		}
+		
+		if(this.deflater != null) {
+			finishCompression();
+		}
 
-		if(buffer.remaining() != buffer.size() && !this.chunked) {
+		if(this.buffer != null && buffer.position() > 0 && !this.chunked) {
 			writeBuffer();
 		}
 		
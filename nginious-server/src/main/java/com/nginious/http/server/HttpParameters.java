@@ -0,0 +1,155 @@
+/**
+ * Copyright 2012 NetDigital Sweden AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.nginious.http.server;
+
+import java.util.Arrays;
+
+/**
+ * A flat container of request parameters decoded from a query string or form encoded request body.
+ * Parameters are kept in parallel arrays in the order they were decoded with one entry per parameter
+ * value. Parameter names are matched with case using precomputed hashes.
+ * 
+ * <p>
+ * Nearly all parameters have a single value. Looking up the first value of a parameter does not allocate
+ * any objects, only {@link #getValues(String)} creates an array for the values.
+ * </p>
+ * 
+ * @author Bojan Pisler, NetDigital Sweden AB
+ * @see URI#decodeQuery(HttpParameters, String)
+ *
+ */
+class HttpParameters {
+	
+	private static final int INITIAL_SIZE = 8;
+	
+	private String[] names;
+	
+	private int[] hashes;
+	
+	private String[] values;
+	
+	private int size;
+	
+	/**
+	 * Constructs a new empty parameters container.
+	 */
+	HttpParameters() {
+		super();
+		this.names = new String[INITIAL_SIZE];
+		this.hashes = new int[INITIAL_SIZE];
+		this.values = new String[INITIAL_SIZE];
+		this.size = 0;
+	}
+	
+	/**
+	 * Returns number of parameter values in this container.
+	 * 
+	 * @return the number of parameter values
+	 */
+	int size() {
+		return this.size;
+	}
+	
+	/**
+	 * Adds a parameter with the specified name and value.
+	 * 
+	 * @param name the parameter name
+	 * @param value the parameter value, may be <code>null</code> for parameters without value
+	 */
+	void add(String name, String value) {
+		if(this.size == names.length) {
+			int newSize = this.size * 2;
+			this.names = Arrays.copyOf(this.names, newSize);
+			this.hashes = Arrays.copyOf(this.hashes, newSize);
+			this.values = Arrays.copyOf(this.values, newSize);
+		}
+		
+		names[size] = name;
+		hashes[size] = name.hashCode();
+		values[size] = value;
+		this.size++;
+	}
+	
+	/**
+	 * Returns first value of parameter with the specified name.
+	 * 
+	 * @param name the parameter name
+	 * @return the parameter value or <code>null</code> if not found
+	 */
+	String get(String name) {
+		int index = indexOf(name, name.hashCode(), 0);
+		return index >= 0 ? values[index] : null;
+	}
+	
+	/**
+	 * Returns all values of parameter with the specified name.
+	 * 
+	 * @param name the parameter name
+	 * @return the parameter values or <code>null</code> if not found
+	 */
+	String[] getValues(String name) {
+		int hash = name.hashCode();
+		int index = indexOf(name, hash, 0);
+		
+		if(index < 0) {
+			return null;
+		}
+		
+		int count = 0;
+		
+		for(int i = index; i >= 0; i = indexOf(name, hash, i + 1)) {
+			count++;
+		}
+		
+		String[] paramValues = new String[count];
+		count = 0;
+		
+		for(int i = index; i >= 0; i = indexOf(name, hash, i + 1)) {
+			paramValues[count++] = values[i];
+		}
+		
+		return paramValues;
+	}
+	
+	/**
+	 * Returns names of all parameters in this container. Each name is only returned once.
+	 * 
+	 * @return the parameter names
+	 */
+	String[] getNames() {
+		String[] paramNames = new String[this.size];
+		int count = 0;
+		
+		for(int i = 0; i < this.size; i++) {
+			if(indexOf(names[i], hashes[i], 0) == i) {
+				paramNames[count++] = names[i];
+			}
+		}
+		
+		return count == this.size ? paramNames : Arrays.copyOf(paramNames, count);
+	}
+	
+	private int indexOf(String name, int hash, int start) {
+		for(int i = start; i < this.size; i++) {
+			if(hashes[i] == hash && names[i].equals(name)) {
+				return i;
+			}
+		}
+		
+		return -1;
+	}
+}
@@ -57,6 +57,12 @@ import com.nginious.http.upload.MultipartParser;
  * <li>Standard - reading of body content.</li>
  * </ul>
  * 
+ * <p>
+ * Methods, versions and well known header names are matched against the request data with
+ * {@link HttpTokenTable}s and shared string instances are used for them. Header values are copied into
+ * the {@link HttpContext} and only decoded into strings when requested.
+ * </p>
+ * 
  * @author Bojan Pisler, NetDigital Sweden AB
  *
  */
@@ -110,6 +116,32 @@ class HttpParser {
     
 	private static final int NO_TRANSFER_ENCODING = 0;
 	
+	private static final HttpMethod[] METHODS = HttpMethod.values();
+	
+	private static final HttpTokenTable METHOD_TOKENS = createMethodTokens();
+	
+	private static final HttpTokenTable VERSION_TOKENS = new HttpTokenTable(new String[] { 
+			"HTTP/1.1", "HTTP/1.0", "HTTP/0.9" }, false);
+	
+	private static final HttpTokenTable HEADER_TOKENS = new HttpTokenTable(new String[] { 
+			"Accept", "Accept-Charset", "Accept-Encoding", "Accept-Language", "Authorization", "Cache-Control", 
+			"Connection", "Content-Length", "Content-Type", "Cookie", "DNT", "Expect", "Host", "If-Match", 
+			"If-Modified-Since", "If-None-Match", "If-Range", "If-Unmodified-Since", "Keep-Alive", "Origin", 
+			"Pragma", "Range", "Referer", "Sec-WebSocket-Extensions", "Sec-WebSocket-Key", "Sec-WebSocket-Protocol", 
+			"Sec-WebSocket-Version", "TE", "Transfer-Encoding", "Upgrade", "User-Agent", "Via", "X-Forwarded-For", 
+			"X-Forwarded-Proto", "X-Requested-With" }, true);
+	
+	private static final int[] HEADER_HASHES = new int[HEADER_TOKENS.size()];
+	
+	private static final HttpParserHeader[] PARSER_HEADERS = new HttpParserHeader[HEADER_TOKENS.size()];
+	
+	static {
+		for(int i = 0; i < HEADER_TOKENS.size(); i++) {
+			HEADER_HASHES[i] = HttpHeaders.hash(HEADER_TOKENS.get(i));
+			PARSER_HEADERS[i] = HttpParserHeader.getHttpParserHeader(HEADER_TOKENS.get(i));
+		}
+	}
+	
 	private ApplicationManagerImpl manager;
 	
 	private HttpConnection connection;
@@ -136,7 +168,11 @@ class HttpParser {
     
     private String headerName;
     
-    private String headerValue;
+    private int headerHash;
+    
+    private HttpParserHeader parserHeader;
+    
+    private byte[] scratch;
     
     private HashSet<String> hostnames;
     
@@ -178,7 +214,7 @@ class HttpParser {
 		this.markIndex = -1;
 		this.content = null;
 		this.headerName = null;
-		this.headerValue = null;
+		this.parserHeader = null;
 		this.pos = 0;
 	}
 	
@@ -192,12 +228,15 @@ class HttpParser {
 	}
 	
 	/**
-	 * Returns whether or not a expect 100 continue should be sent to the client.
+	 * Returns whether or not a expect 100 continue should be sent to the client. Returns <code>true</code>
+	 * at most once for each request.
 	 * 
 	 * @return <code>true</code> if expect 100 continue should be sent, <code>false</code> otherwise
 	 */
 	boolean sendExpect100Continue() {
-		return this.sendExpect100Continue;
+		boolean send = this.sendExpect100Continue;
+		this.sendExpect100Continue = false;
+		return send;
 	}
 	
 	/**
@@ -209,6 +248,35 @@ class HttpParser {
 		return this.sendExpectationFailed;
 	}
 	
+	/**
+	 * Returns the position in the request data where this parser stopped parsing. Once a complete
+	 * request has been parsed any data between this position and the data position belongs to the
+	 * next pipelined request.
+	 * 
+	 * @return the position where parsing stopped
+	 */
+	int getPosition() {
+		return this.pos;
+	}
+	
+	/**
+	 * Returns whether or not this parser has started parsing a request.
+	 * 
+	 * @return <code>true</code> if parsing of a request has started, <code>false</code> otherwise
+	 */
+	boolean isStarted() {
+		return this.state != State.START;
+	}
+	
+	/**
+	 * Returns whether or not this parser has parsed the request line and all headers.
+	 * 
+	 * @return <code>true</code> if all headers have been parsed, <code>false</code> otherwise
+	 */
+	boolean isHeadersParsed() {
+		return this.state.value >= State.END_HEADERS.value;
+	}
+	
 	/**
 	 * Parser part of a HTTP request contained in the specified data.
 	 * 
@@ -283,23 +351,24 @@ class HttpParser {
 				
 			case METHOD:
 				if(ch == HttpToken.SPACE) {
-					byte[] b = new byte[pos - 1 - this.markIndex];
-					data.position(this.markIndex);
-					data.get(b);
-					String method = new String(b);
-					this.trace = method.equals("TRACE");
+					int len = pos - 1 - this.markIndex;
+					int index = METHOD_TOKENS.lookup(data, this.markIndex, len);
+					HttpMethod httpMethod = null;
+					String method = null;
 					
-					if(this.trace) {
-						this.traceBuffer = new ExpandableBuffer(2097152);
-						context.trace(this.traceBuffer);
+					if(index >= 0) {
+						httpMethod = METHODS[index];
+						method = METHOD_TOKENS.get(index);
+					} else {
+						// Continue if HTTP method is unknown, problem will be handled later
+						method = decode(data, this.markIndex, len);
 					}
 					
-					HttpMethod httpMethod = null;
+					this.trace = httpMethod == HttpMethod.TRACE;
 					
-					try {
-						httpMethod = HttpMethod.valueOf(method);
-					} catch(IllegalArgumentException e) {
-						// Continue if HTTP method is unknown, problem will be handled later
+					if(this.trace) {
+						this.traceBuffer = new ExpandableBuffer(2097152);
+						context.trace(this.traceBuffer);
 					}
 					
 					context.setMethod(httpMethod, method);
@@ -335,10 +404,7 @@ class HttpParser {
 				}
 				
 				if(extractUri) {
-					byte[] b = new byte[pos - 1 - this.markIndex];
-					data.position(this.markIndex);
-					data.get(b);
-					String uri = new String(b);
+					String uri = decode(data, this.markIndex, pos - 1 - this.markIndex);
 					context.setUri(uri);
 					lastElementPos = pos - 1;					
 				}
@@ -356,10 +422,9 @@ class HttpParser {
 				
 			case VERSION:
 				if(ch == HttpToken.CARRIAGE_RETURN || ch == HttpToken.LINE_FEED) {
-					byte[] b = new byte[pos - 1 - this.markIndex];
-					data.position(this.markIndex);
-					data.get(b);
-					String version = new String(b);
+					int len = pos - 1 - this.markIndex;
+					int index = VERSION_TOKENS.lookup(data, this.markIndex, len);
+					String version = index >= 0 ? VERSION_TOKENS.get(index) : decode(data, this.markIndex, len);
 					lastElementPos = pos - 1;
 					context.setVersion(version);
 					
@@ -410,28 +475,6 @@ class HttpParser {
 					break;
 				
 				default:
-					HttpParserHeader parserHeader = HttpParserHeader.getHttpParserHeader(this.headerName);
-					
-					if(parserHeader != null) {
-						switch(parserHeader) {
-						case CONTENT_TYPE:
-							handleContentTypeHeader(headerValue);
-							break;
-							
-						case CONTENT_LENGTH:
-							handleContentLengthHeader(headerValue);
-							break;
-							
-						case TRANSFER_ENCODING:
-							handleTransferEncodingHeader(headerValue);
-							break;
-						
-						case EXPECT:
-							handleExpectHeader(headerValue);
-							break;
-						}
-					}
-					
                 	if(ch == HttpToken.CARRIAGE_RETURN || ch == HttpToken.LINE_FEED) {
 						// End of header
 						
@@ -488,10 +531,7 @@ class HttpParser {
 				case HttpToken.CARRIAGE_RETURN:
 				case HttpToken.LINE_FEED:
 					if(this.savedHeaderLength > 0) {
-						byte[] b = new byte[pos - 1 - this.markIndex];
-						data.position(this.markIndex);
-						data.get(b);
-						this.headerName = new String(b);
+						handleHeaderName(data, this.markIndex, pos - 1 - this.markIndex);
 						lastElementPos = pos - 1;
 					}
 					
@@ -501,10 +541,7 @@ class HttpParser {
 					
 				case HttpToken.COLON:
 					if(this.savedHeaderLength > 0) {
-						byte[] b = new byte[pos - 1 - this.markIndex];
-						data.position(this.markIndex);
-						data.get(b);
-						this.headerName = new String(b);
+						handleHeaderName(data, this.markIndex, pos - 1 - this.markIndex);
 						lastElementPos = pos - 1;
 					}
 					
@@ -532,12 +569,8 @@ class HttpParser {
 				case HttpToken.CARRIAGE_RETURN:
 				case HttpToken.LINE_FEED:
 					if(this.savedHeaderLength > -1) {
-						byte[] b = new byte[pos - 1 - this.markIndex];
-						data.position(this.markIndex);
-						data.get(b);
-						this.headerValue = new String(b);
+						handleHeaderValue(data, this.markIndex, pos - 1 - this.markIndex);
 						lastElementPos = pos - 1;
-						context.header(this.headerName, this.headerValue);
 					}
 					
 					this.previousCh = ch;
@@ -619,6 +652,7 @@ class HttpParser {
 				}
 				
 				pos += outData.length;
+				this.pos = pos;
 				return pos;
 				
 			case CHUNKED_CONTENT:
@@ -630,10 +664,13 @@ class HttpParser {
 				outData = new byte[length];
 				data.get(outData);
 				boolean done = chunkedParser.parse(outData);
-				pos += length;
 				
 				if(done) {
+					// Leave data following the last chunk for the next pipelined request
+					pos += chunkedParser.getPosition();
 					this.state = State.END;
+				} else {
+					pos += length;
 				}
 				break;
 			}
@@ -671,10 +708,82 @@ class HttpParser {
 		return content;
 	}
 	
+	private static HttpTokenTable createMethodTokens() {
+		String[] methods = new String[METHODS.length];
+		
+		for(int i = 0; i < METHODS.length; i++) {
+			methods[i] = METHODS[i].name();
+		}
+		
+		return new HttpTokenTable(methods, false);
+	}
+	
+	/**
+	 * Decodes the specified number of bytes in the specified data starting at the specified position
+	 * into a string. Bytes are copied into a scratch array reused for all requests parsed by this parser.
+	 * 
+	 * @param data the request data
+	 * @param start start position in request data
+	 * @param length number of bytes to decode
+	 * @return the decoded string
+	 */
+	private String decode(ByteBuffer data, int start, int length) {
+		if(this.scratch == null || scratch.length < length) {
+			this.scratch = new byte[length > 256 ? length : 256];
+		}
+		
+		data.position(start);
+		data.get(this.scratch, 0, length);
+		return new String(this.scratch, 0, length);
+	}
+	
+	private void handleHeaderName(ByteBuffer data, int start, int length) {
+		int index = HEADER_TOKENS.lookup(data, start, length);
+		
+		if(index >= 0) {
+			this.headerName = HEADER_TOKENS.get(index);
+			this.headerHash = HEADER_HASHES[index];
+			this.parserHeader = PARSER_HEADERS[index];
+		} else {
+			this.headerName = decode(data, start, length);
+			this.headerHash = HttpHeaders.hash(this.headerName);
+			this.parserHeader = null;
+		}
+	}
+	
+	@SuppressWarnings("incomplete-switch")
+	private void handleHeaderValue(ByteBuffer data, int start, int length) throws HttpException {
+		if(this.headerName == null) {
+			throw new HttpException(HttpStatus.BAD_REQUEST, "missing header name");
+		}
+		
+		context.header(this.headerName, this.headerHash, data, start, length);
+		
+		if(this.parserHeader != null) {
+			switch(this.parserHeader) {
+			case CONTENT_TYPE:
+				handleContentTypeHeader(decode(data, start, length));
+				break;
+				
+			case CONTENT_LENGTH:
+				handleContentLengthHeader(data, start, length);
+				break;
+				
+			case TRANSFER_ENCODING:
+				handleTransferEncodingHeader(decode(data, start, length));
+				break;
+			
+			case EXPECT:
+				handleExpectHeader(decode(data, start, length));
+				break;
+			}
+		}
+	}
+	
 	private void handleContentTypeHeader(String headerValue) throws HttpException {
 		if(headerValue != null && headerValue.startsWith("multipart")) {
 			try {
-				Header header = new Header(this.headerName, this.headerValue);
+				Header header = new Header(this.headerName, headerValue);
 				HeaderParameters parameters = header.getParameters();
 				String boundary = parameters.get(0).getSubParameter("boundary");
 				this.multipartParser = new MultipartParser();
@@ -685,14 +794,10 @@ class HttpParser {
 		}		
 	}
 	
-	private void handleContentLengthHeader(String headerValue) throws HttpException {
+	private void handleContentLengthHeader(ByteBuffer data, int start, int length) throws HttpException {
 		if(this.contentLength != CHUNKED_TRANSFER_ENCODING) {
-			try {
-				this.contentLength = Long.parseLong(this.headerValue);
-				context.contentLengthSet(true);
-			} catch(NumberFormatException e) {
-				throw new HttpException(HttpStatus.BAD_REQUEST);
-			}
+			this.contentLength = parseContentLength(data, start, length);
+			context.contentLengthSet(true);
 			
 			if(this.contentLength <= 0) {
                 this.contentLength = NO_TRANSFER_ENCODING;
@@ -700,6 +805,35 @@ class HttpParser {
 		}		
 	}
 	
+	private long parseContentLength(ByteBuffer data, int start, int length) throws HttpException {
+		int pos = start;
+		int end = start + length;
+		boolean negative = false;
+		
+		if(length > 0 && (data.get(pos) == '-' || data.get(pos) == '+')) {
+			negative = data.get(pos) == '-';
+			pos++;
+		}
+		
+		if(pos == end || end - pos > 18) {
+			throw new HttpException(HttpStatus.BAD_REQUEST);
+		}
+		
+		long value = 0;
+		
+		while(pos < end) {
+			byte ch = data.get(pos++);
+			
+			if(ch < '0' || ch > '9') {
+				throw new HttpException(HttpStatus.BAD_REQUEST);
+			}
+			
+			value = value * 10 + (ch - '0');
+		}
+		
+		return negative ? -value : value;
+	}
+	
 	private void handleTransferEncodingHeader(String headerValue) throws HttpException {
 		if(headerValue != null && headerValue.toLowerCase().equals("chunked")) {
 			this.contentLength = CHUNKED_TRANSFER_ENCODING;
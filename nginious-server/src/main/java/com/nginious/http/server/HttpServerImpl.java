@@ -66,7 +66,9 @@ public class HttpServerImpl extends Server implements HttpServer {
 	
 	private ConcurrentHashMap<String, UploadTracker> trackers;
 	
-	private long connectionTimeoutMillis;
+	private int pipelineDepth;
+	
+	private HttpCompression compression;
 	
 	/**
 	 * Constructs a new HTTP server with default configuration.
@@ -88,7 +90,9 @@ public class HttpServerImpl extends Server implements HttpServer {
 		this.webSocketSessionStatistics = new WebSocketSessionStatistics();
 		this.trackers = new ConcurrentHashMap<String, UploadTracker>();
 		
-		this.contextManager = new HttpContextManager();
+		setExecutorStrategy(config.getExecutor(), config.getMaxVirtualThreads());
+		setWorkerPool(config.getMinThreads(), config.getMaxThreads(), config.getQueueSize(), config.getTargetQueueWait());
+		this.contextManager = new HttpContextManager(this);
 		
 		if(config.getSession().equals("cookie")) {
 			this.sessionManager = new HttpCookieSessionManager();
@@ -97,9 +101,12 @@ public class HttpServerImpl extends Server implements HttpServer {
 		}
 		
 		this.started = false;
-		this.accessLog = new AccessLog(config.getAccessLogPath());
-		this.connectionTimeoutMillis = DEFAULT_CONNECTION_TIMEOUT_MILLIS;
+		this.accessLog = new AccessLog(config.getAccessLogPath(), config.getAccessLogFlushInterval(), config.getAccessLogOverflow());
+		setConnectionTimeoutMillis(DEFAULT_CONNECTION_TIMEOUT_MILLIS);
 		setPort(config.getPort());
+		setNumReactors(config.getReactors());
+		setPipelineDepth(config.getPipelineDepth());
+		this.compression = new HttpCompression(config.getCompressTypes(), config.getCompressMinSize(), getServerStatistics());
 	}
 	
 	UploadTracker getUploadTracker(String trackerId) {
@@ -118,6 +125,7 @@ public class HttpServerImpl extends Server implements HttpServer {
 		this.manager = manager;
 		manager.setHttpRequestStatistics(this.httpRequestStatistics);
 		manager.setWebSocketSessionStatistics(this.webSocketSessionStatistics);
+		manager.setServerStatistics(getServerStatistics());
 	}
 	
 	/**
@@ -185,16 +193,54 @@ public class HttpServerImpl extends Server implements HttpServer {
 	
 	/**
 	 * Returns connection timeout in milliseconds for this HTTP server. The connection timeout
-	 * defines the approximate amount of time the server will wait before closing
+	 * defines the approximate amount of time the server will wait for a new request on a kept
+	 * alive connection before closing it.
 	 *  
 	 * @return connection timeout in milliseconds
 	 */
 	public long getConnectionTimeoutMillis() {
-		return this.connectionTimeoutMillis;
+		return getTimeoutMillis(ConnectionTimeout.KEEP_ALIVE);
 	}
 	
+	/**
+	 * Sets the timeout in milliseconds for all connection phases to the specified timeout.
+	 * 
+	 * @param connectionTimeoutMillis the connection timeout in milliseconds
+	 * @see ConnectionTimeout
+	 */
 	public void setConnectionTimeoutMillis(long connectionTimeoutMillis) {
-		this.connectionTimeoutMillis = connectionTimeoutMillis;
+		for(ConnectionTimeout timeout : ConnectionTimeout.values()) {
+			setTimeoutMillis(timeout, connectionTimeoutMillis);
+		}
+	}
+	
+	/**
+	 * Returns the maximum number of pipelined requests parsed ahead for each connection while an
+	 * earlier request on the same connection is being processed.
+	 * 
+	 * @return the maximum pipeline depth
+	 */
+	public int getPipelineDepth() {
+		return this.pipelineDepth;
+	}
+	
+	/**
+	 * Sets the maximum number of pipelined requests parsed ahead for each connection. A depth of
+	 * one or less parses each request only once the previous request has completed.
+	 * 
+	 * @param pipelineDepth the maximum pipeline depth
+	 */
+	public void setPipelineDepth(int pipelineDepth) {
+		this.pipelineDepth = pipelineDepth > 1 ? pipelineDepth : 1;
+	}
+	
+	/**
+	 * Returns settings and deflater pool for compression of dynamic responses.
+	 * 
+	 * @return the HTTP compression
+	 */
+	HttpCompression getCompression() {
+		return this.compression;
 	}
 	
 	/**
@@ -217,6 +263,12 @@ public class HttpServerImpl extends Server implements HttpServer {
 			
 			accessLog.open();
 			done = super.start();
+			
+			if(done) {
+				// Applications are routable as soon as each one is published
+				manager.startApplications();
+			}
+			
 			return done;
 		} finally {
 			if(!done) {
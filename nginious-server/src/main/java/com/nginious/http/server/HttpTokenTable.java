@@ -0,0 +1,147 @@
+/**
+ * Copyright 2012 NetDigital Sweden AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.nginious.http.server;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A static table of well known HTTP tokens such as methods, versions and header names. Tokens are
+ * matched directly against request data in a byte buffer without creating any strings which lets
+ * {@link HttpParser} reuse the same string instances for common tokens in every request.
+ * 
+ * <p>
+ * Tokens are grouped by length and matched byte by byte. Matching is optionally case insensitive
+ * for ASCII letters as required for HTTP header names.
+ * </p>
+ * 
+ * @author Bojan Pisler, NetDigital Sweden AB
+ * @see HttpParser
+ *
+ */
+class HttpTokenTable {
+	
+	private String[] tokens;
+	
+	private byte[][] bytes;
+	
+	private int[][] indexes;
+	
+	private boolean ignoreCase;
+	
+	/**
+	 * Constructs a new token table with the specified tokens. Tokens must only contain ASCII characters.
+	 * 
+	 * @param tokens the tokens
+	 * @param ignoreCase whether or not to ignore case of ASCII letters when matching
+	 */
+	HttpTokenTable(String[] tokens, boolean ignoreCase) {
+		super();
+		this.tokens = tokens;
+		this.ignoreCase = ignoreCase;
+		this.bytes = new byte[tokens.length][];
+		int maxLength = 0;
+		
+		for(int i = 0; i < tokens.length; i++) {
+			String token = ignoreCase ? tokens[i].toLowerCase() : tokens[i];
+			this.bytes[i] = token.getBytes();
+			
+			if(token.length() > maxLength) {
+				maxLength = token.length();
+			}
+		}
+		
+		this.indexes = new int[maxLength + 1][];
+		
+		for(int length = 0; length <= maxLength; length++) {
+			int count = 0;
+			
+			for(byte[] token : this.bytes) {
+				if(token.length == length) {
+					count++;
+				}
+			}
+			
+			indexes[length] = new int[count];
+			count = 0;
+			
+			for(int i = 0; i < this.bytes.length; i++) {
+				if(bytes[i].length == length) {
+					indexes[length][count++] = i;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Returns number of tokens in this table.
+	 * 
+	 * @return the number of tokens
+	 */
+	int size() {
+		return tokens.length;
+	}
+	
+	/**
+	 * Returns token at the specified index.
+	 * 
+	 * @param index the token index
+	 * @return the token
+	 */
+	String get(int index) {
+		return tokens[index];
+	}
+	
+	/**
+	 * Looks up the token matching the bytes in the specified data starting at the specified position
+	 * with the specified length. The position of the data is not changed.
+	 * 
+	 * @param data the data to match
+	 * @param start start position in data
+	 * @param length number of bytes to match
+	 * @return index of the matching token or <code>-1</code> if no token matches
+	 */
+	int lookup(ByteBuffer data, int start, int length) {
+		if(length >= indexes.length) {
+			return -1;
+		}
+		
+		for(int index : indexes[length]) {
+			byte[] token = bytes[index];
+			int i = 0;
+			
+			while(i < length) {
+				byte ch = data.get(start + i);
+				
+				if(this.ignoreCase && ch >= 'A' && ch <= 'Z') {
+					ch += 'a' - 'A';
+				}
+				
+				if(ch != token[i]) {
+					break;
+				}
+				
+				i++;
+			}
+			
+			if(i == length) {
+				return index;
+			}
+		}
+		
+		return -1;
+	}
+}
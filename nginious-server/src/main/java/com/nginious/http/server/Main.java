@@ -36,6 +36,20 @@ import com.nginious.http.cmd.CommandLineException;
  * <li>-w [webapp] | --webapp=[dir] (webapp) - Directory or web  application.</li>
  * <li>-a [password] | --adminPassword=[password] (admin) - Web applications REST service admin password.</li>
  * <li>-s [type] | --session=[type] (memory) - Session manager type (memory|cookie).</li>
+ * <li>-r [reactors] | --reactors=[reactors] (cores) - Number of selector threads handling connection I/O.</li>
+ * <li>-l [depth] | --pipelineDepth=[depth] (16) - Maximum number of pipelined requests parsed ahead per connection.</li>
+ * <li>-e [strategy] | --executor=[strategy] (platform) - Request executor strategy (platform|virtual|bounded).</li>
+ * <li>-v [threads] | --maxVirtualThreads=[threads] (5000) - Maximum number of executing virtual threads for bounded executor.</li>
+ * <li>-m [threads] | --minThreads=[threads] (5) - Minimum number of worker pool threads.</li>
+ * <li>-x [threads] | --maxThreads=[threads] (500) - Maximum number of worker pool threads.</li>
+ * <li>-q [size] | --queueSize=[size] (5000) - Maximum number of queued requests when all worker pool threads are busy.</li>
+ * <li>-t [millis] | --targetQueueWait=[millis] (0) - Target queue wait for tuning worker pool threads, 0 disables tuning.</li>
+ * <li>-c [bytes] | --staticCacheSize=[bytes] (33554432) - Maximum bytes of static content cached per web application, 0 disables caching.</li>
+ * <li>-z [types] | --compressTypes=[types] (text, JSON, XML and JavaScript) - Content types compressed in dynamic responses and static content, empty disables compression.</li>
+ * <li>-Z [bytes] | --compressMinSize=[bytes] (1024) - Minimum content length of dynamic responses and static content to compress.</li>
+ * <li>-f [millis] | --accessLogFlushInterval=[millis] (100) - Interval between batched writes to the access log.</li>
+ * <li>-o [policy] | --accessLogOverflow=[policy] (block) - Policy when the access log queue is full (block|drop|spill).</li>
+ * <li>-D [mode] | --deploymentMode=[mode] (development) - Deployment mode, production disables reload checks (development|production).</li>
  * </ul>
  * </p>
  * 
@@ -0,0 +1,490 @@
+/**
+ * Copyright 2012 NetDigital Sweden AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.nginious.http.server;
+
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.log4j.Logger;
+
+import com.nginious.http.stats.ServerStatistics;
+
+/**
+ * A selector loop which handles I/O readiness for a subset of the connections accepted by a {@link Server}.
+ * A server runs one or more reactors and hands each accepted socket channel to one of them. The reactor
+ * registers the channel with its own selector and owns the resulting connection for its whole life, including
+ * after the connection has been switched to another protocol with {@link Connection#switchConnection(Connection)}.
+ * 
+ * <p>
+ * Operations queued by connections are executed by the reactor owning the connection. Reads are handed over
+ * to the servers thread pool while writes are executed directly by the reactor thread.
+ * </p>
+ * 
+ * <p>
+ * Each connection has at most one pending operation and is queued with the reactor at most once until the
+ * reactor has executed the operation. The selector is only woken up when the reactor thread is blocked
+ * in a select, operations scheduled while the reactor is busy are picked up on its next turn.
+ * </p>
+ * 
+ * <p>
+ * Connection deadlines are tracked in a {@link TimingWheel}. While any deadline is scheduled the reactor
+ * wakes up once per tick of the wheel and closes connections whose deadline has passed. Only connections
+ * in elapsed ticks are visited.
+ * </p>
+ * 
+ * @author Bojan Pisler, NetDigital Sweden AB
+ * @see Server
+ * @see Connection
+ *
+ */
+class Reactor implements Runnable {
+	
+	static final int OPERATION_READ = 1;
+	
+	static final int OPERATION_WRITE = 2;
+	
+	static final int OPERATION_CLOSE = 3;
+	
+	private static Logger logger = Logger.getLogger(Reactor.class);
+	
+	private Server server;
+	
+	private ServerStatistics statistics;
+	
+	private String name;
+	
+	private Thread thread;
+	
+	private volatile boolean started;
+	
+	private Selector selector;
+	
+	private ConcurrentLinkedQueue<Connection> pending;
+	
+	private ConcurrentLinkedQueue<SocketChannel> accepted;
+	
+	private AtomicBoolean selecting;
+	
+	private ConcurrentLinkedQueue<Connection> timeouts;
+	
+	private volatile boolean ticking;
+	
+	private TimingWheel wheel;
+	
+	private ArrayList<Connection> expired;
+	
+	/**
+	 * Constructs a new reactor for the specified server with the specified name.
+	 * 
+	 * @param server the server which accepts connections for this reactor
+	 * @param name the reactor name, used as thread name
+	 */
+	Reactor(Server server, String name) {
+		super();
+		this.server = server;
+		this.statistics = server.getServerStatistics();
+		this.name = name;
+		this.started = false;
+		this.pending = new ConcurrentLinkedQueue<Connection>();
+		this.accepted = new ConcurrentLinkedQueue<SocketChannel>();
+		this.selecting = new AtomicBoolean(false);
+		this.timeouts = new ConcurrentLinkedQueue<Connection>();
+		this.ticking = false;
+		this.expired = new ArrayList<Connection>();
+	}
+	
+	/**
+	 * Opens the selector for this reactor and starts the reactor thread.
+	 * 
+	 * @throws IOException if unable to open selector
+	 */
+	void start() throws IOException {
+		this.selector = Selector.open();
+		this.started = true;
+		this.thread = new Thread(this);
+		thread.setName(this.name);
+		thread.start();
+	}
+	
+	/**
+	 * Stops this reactor. The reactor thread is woken up and closes the selector once it
+	 * notices that the reactor is stopped.
+	 */
+	void stop() {
+		this.started = false;
+		Selector selector = this.selector;
+		
+		if(selector != null) {
+			selector.wakeup();
+		}
+		
+		if(this.thread != null && thread != Thread.currentThread()) {
+			try {
+				thread.join(1000L);
+			} catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+	
+	/**
+	 * Hands over the specified accepted socket channel to this reactor. The channel is registered
+	 * with this reactors selector by the reactor thread.
+	 * 
+	 * @param socket the accepted socket channel
+	 * @return <code>true</code> if the channel was handed over, <code>false</code> if this reactor is stopped
+	 */
+	boolean register(SocketChannel socket) {
+		Selector selector = this.selector;
+		
+		if(!this.started || selector == null) {
+			return false;
+		}
+		
+		accepted.add(socket);
+		wakeup(selector);
+		return true;
+	}
+	
+	/**
+	 * Schedules the specified operation for the specified connection. The operation replaces any operation
+	 * pending for the connection unless the pending operation is a close. The connection is only queued if
+	 * it has no pending operation.
+	 * 
+	 * @param conn the connection
+	 * @param operation the operation, one of {@link #OPERATION_READ}, {@link #OPERATION_WRITE} or {@link #OPERATION_CLOSE}
+	 * @return <code>true</code> if the operation was scheduled, <code>false</code> if this reactor is stopped
+	 */
+	boolean schedule(Connection conn, int operation) {
+		Selector selector = this.selector;
+		
+		if(selector == null) {
+			return false;
+		}
+		
+		if(conn.setPendingOperation(operation)) {
+			pending.add(conn);
+			wakeup(selector);
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Schedules the deadline for the specified connection with this reactors timing wheel. The connection
+	 * is queued at most once until the reactor has picked it up. The selector is only woken up if the
+	 * reactor is blocked without a select timeout.
+	 * 
+	 * @param conn the connection
+	 */
+	void scheduleTimeout(Connection conn) {
+		Selector selector = this.selector;
+		
+		if(selector == null || !conn.getTimer().markQueued()) {
+			return;
+		}
+		
+		timeouts.add(conn);
+		
+		if(!this.ticking) {
+			wakeup(selector);
+		}
+	}
+	
+	/**
+	 * Wakes up the specified selector if the reactor thread is blocked selecting.
+	 * 
+	 * @param selector the selector to wake up
+	 */
+	private void wakeup(Selector selector) {
+		if(selecting.get() && selecting.compareAndSet(true, false)) {
+			statistics.addSelectorWakeup();
+			selector.wakeup();
+		}
+	}
+	
+	/**
+	 * Executed continuously by the reactor thread until the reactor is stopped. Registers handed over
+	 * socket channels, executes queued operations, selects ready channels and handles connection timeouts.
+	 */
+	public void run() {
+		this.wheel = new TimingWheel(System.currentTimeMillis());
+		
+		try {
+			while(this.started) {
+				registerAccepted();
+				processPending();
+				scheduleTimeouts();
+				
+				int numKeys = 0;
+				this.ticking = !wheel.isEmpty();
+				selecting.set(true);
+				
+				if(!pending.isEmpty() || !accepted.isEmpty() || (!this.ticking && !timeouts.isEmpty())) {
+					selecting.set(false);
+					numKeys = selector.selectNow();
+				} else if(!this.ticking) {
+					numKeys = selector.select();
+				} else {
+					numKeys = selector.select(wheel.millisToNextTick(System.currentTimeMillis()));
+				}
+				
+				selecting.set(false);
+				
+				if(!this.started) {
+					return;
+				}
+				
+				if(numKeys > 0) {
+					Set<SelectionKey> keys = selector.selectedKeys();
+					Iterator<SelectionKey> it = keys.iterator();
+					
+					while(it.hasNext()) {
+						SelectionKey key = it.next();
+						it.remove();
+						
+						if(!key.isValid()) {
+							continue;
+						}
+						
+						if(key.isReadable()) {
+							key.interestOps(0);
+							Connection conn = (Connection)key.attachment();
+							server.process(conn);
+						} else if(key.isWritable()) {
+							write(key);
+						}
+					}
+				}
+				
+				handleTimeouts();
+			}
+		} catch(IOException e) {
+			logger.error("IO exception", e);
+		} finally {
+			closeAll();
+			
+			try {
+				selector.close();
+			} catch(IOException e) {}
+			
+			this.selector = null;
+		}
+	}
+	
+	/**
+	 * Closes the socket channels of all connections owned by this reactor. Called when this
+	 * reactor is stopped.
+	 */
+	private void closeAll() {
+		for(SelectionKey key : selector.keys()) {
+			try {
+				key.channel().close();
+			} catch(IOException e) {}
+			
+			Connection conn = (Connection)key.attachment();
+			
+			if(conn != null) {
+				conn.dispose();
+			}
+		}
+		
+		SocketChannel socket = null;
+		
+		while((socket = accepted.poll()) != null) {
+			try {
+				socket.close();
+			} catch(IOException e) {}
+		}
+	}
+	
+	/**
+	 * Registers all socket channels handed over by the acceptor with this reactors selector and
+	 * creates a connection for each of them.
+	 */
+	private void registerAccepted() {
+		SocketChannel socket = null;
+		
+		while((socket = accepted.poll()) != null) {
+			try {
+				SelectionKey connKey = socket.register(this.selector, SelectionKey.OP_READ);
+				Connection conn = server.createConnection(socket, connKey);
+				conn.setReactor(this);
+				connKey.attach(conn);
+				wheel.schedule(conn.getTimer(), conn.getDeadlineMillis());
+			} catch(IOException e) {
+				logger.warn("Unable to register connection", e);
+				
+				try {
+					socket.close();
+				} catch(IOException e2) {}
+			}
+		}
+	}
+	
+	/**
+	 * Executes the pending operations for all connections queued with this reactor.
+	 * 
+	 * @throws IOException if unable to close a connections socket channel
+	 */
+	private void processPending() throws IOException {
+		Connection conn = null;
+		
+		while((conn = pending.poll()) != null) {
+			SelectionKey key = conn.getSelectionKey();
+			int operation = conn.takePendingOperation();
+			
+			switch(operation) {
+			case OPERATION_READ:
+				if(key.isValid()) {
+					key.interestOps(SelectionKey.OP_READ);
+				}
+				break;
+			
+			case OPERATION_WRITE:
+				if(key.isValid()) {
+					key.interestOps(SelectionKey.OP_WRITE);
+				}
+				break;
+			
+			case OPERATION_CLOSE:
+				close(key, conn);
+				break;
+			}
+		}
+	}
+	
+	/**
+	 * Schedules the deadlines for all connections queued with {@link #scheduleTimeout(Connection)} in
+	 * this reactors timing wheel.
+	 */
+	private void scheduleTimeouts() {
+		Connection conn = null;
+		
+		while((conn = timeouts.poll()) != null) {
+			TimingWheel.Timer timer = conn.getTimer();
+			timer.clearQueued();
+			wheel.schedule(timer, conn.getDeadlineMillis());
+		}
+	}
+	
+	/**
+	 * Advances this reactors timing wheel and closes all connections which have timed out.
+	 * 
+	 * @throws IOException if unable to close a connections socket channel
+	 */
+	private void handleTimeouts() throws IOException {
+		long nowMillis = System.currentTimeMillis();
+		wheel.expire(nowMillis, this.expired);
+		
+		if(expired.isEmpty()) {
+			return;
+		}
+		
+		try {
+			for(Connection conn : this.expired) {
+				ConnectionTimeout timeout = conn.getExpiredTimeout(nowMillis);
+				
+				if(timeout != null) {
+					countTimeout(timeout);
+				}
+				
+				conn.timedOut();
+				close(conn.getSelectionKey(), conn);
+			}
+		} finally {
+			expired.clear();
+		}
+	}
+	
+	/**
+	 * Updates server statistics with the specified expired timeout.
+	 * 
+	 * @param timeout the expired timeout
+	 */
+	private void countTimeout(ConnectionTimeout timeout) {
+		switch(timeout) {
+		case HEADER_READ:
+			statistics.addHeaderReadTimeout();
+			break;
+		
+		case BODY_READ:
+			statistics.addBodyReadTimeout();
+			break;
+		
+		case KEEP_ALIVE:
+			statistics.addKeepAliveTimeout();
+			break;
+		
+		case WRITE:
+			statistics.addWriteTimeout();
+			break;
+		}
+	}
+	
+	/**
+	 * Cancels the specified selection key, closes the socket channel for the specified connection and
+	 * disposes the connection as well as any connection it has been switched to.
+	 * 
+	 * @param key the selection key for the connection
+	 * @param conn the connection to close
+	 * @throws IOException if unable to close the connections socket channel
+	 */
+	private void close(SelectionKey key, Connection conn) throws IOException {
+		Object attachment = key.attachment();
+		wheel.cancel(conn.getTimer());
+		
+		if(key.isValid()) {
+			key.interestOps(0);
+			key.cancel();
+		}
+		
+		try {
+			SocketChannel channel = conn.getChannel();
+			channel.close();
+		} finally {
+			conn.dispose();
+			
+			if(attachment != null && attachment != conn) {
+				((Connection)attachment).dispose();
+			}
+		}
+	}
+	
+	/**
+	 * Calls connection for the specified selection key to write data on the corresponding socket channel.
+	 * 
+	 * @param key the selection key
+	 */
+	private void write(SelectionKey key) {
+		Connection conn = (Connection)key.attachment();
+		
+		try {
+			conn.write();
+		} catch(IOException e) {
+			logger.warn("I/O exception on write", e);
+			conn.close(true);
+		}
+	}
+}
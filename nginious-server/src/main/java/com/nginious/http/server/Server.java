@@ -18,14 +18,12 @@ package com.nginious.http.server;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.nio.channels.AsynchronousCloseException;
 import java.nio.channels.SelectionKey;
-import java.nio.channels.Selector;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
-import java.util.Iterator;
-import java.util.Set;
-import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -34,6 +32,8 @@ import java.util.concurrent.atomic.AtomicInteger;
 import org.apache.log4j.LogMF;
 import org.apache.log4j.Logger;
 
+import com.nginious.http.stats.ServerStatistics;
+
 /**
  * A generic event based I/O server that accepts incoming connection requests. A new {@link Connection}
  * instance is assigned to incoming connections for handling reading and writing of data. A connection typically
@@ -45,13 +45,22 @@ import org.apache.log4j.Logger;
  * </p>
  * 
  * <p>
- * A single thread handles operations for all connections which are informed once data is available for reading or
- * channels are ready for writing. Calls to connections for reading and writing are handed over to a thread pool
- * The thread pool contains as many threads as there are available processor cores.
+ * A single acceptor thread accepts incoming connections and hands them over to one of several reactors
+ * in turn. Each {@link Reactor} runs its own selector and is informed once data is available for reading or
+ * channels are ready for writing for the connections it owns. A connection is owned by the same reactor for
+ * its whole life. The number of reactors defaults to the number of available processor cores. Calls to
+ * connections for reading are handed over to a thread pool which contains as many threads as there are
+ * available processor cores.
  * 
  * Connections can interact with this server by queuing operations for execution. By queuing a write
  * operation and last a close operation a connection can instruct the server to write all pending
- * data and then close the underlying socket channel for the connection.
+ * data and then close the underlying socket channel for the connection. A connection has at most one
+ * pending operation, a new operation replaces any pending operation except close. Reactors are only
+ * woken up when blocked waiting for I/O.
+ * 
+ * Connections allocate their read and write buffers from a {@link BufferPool} shared by all connections
+ * for this server. Connection deadlines for each {@link ConnectionTimeout} phase are tracked by each
+ * reactor in a {@link TimingWheel}.
  * 
  * <ul>
  * <li>Queue read - instruct the server to call the {@link Connection#read(SocketChannel)} method when data
@@ -63,6 +72,7 @@ import org.apache.log4j.Logger;
  * </p>
  *  
  * @author Bojan Pisler, NetDigital Sweden AB
+ * @see Reactor
  *
  */
 public abstract class Server implements Runnable {
@@ -73,17 +83,37 @@ public abstract class Server implements Runnable {
 	
 	private int port;
 	
+	private int numReactors;
+	
 	private ServerSocketChannel channel;
 	
 	private Thread thread;
 	
-	private boolean started;
+	private volatile boolean started;
 	
 	private ThreadPoolExecutor executor;
 	
-	private ConcurrentLinkedQueue<OperationEvent> events;
+	private Reactor[] reactors;
+	
+	private int nextReactor;
+	
+	private ServerStatistics serverStatistics;
+	
+	private BufferPool bufferPool;
+	
+	private long[] timeoutsMillis;
 	
-	private Selector selector;
+	private String executorStrategy;
+	
+	private int maxExecutingTasks;
+	
+	private int minWorkerThreads;
+	
+	private int maxWorkerThreads;
+	
+	private int workerQueueSize;
+	
+	private long targetQueueWaitMillis;
 	
 	/**
 	 * Constructs a new server with the specified name.
@@ -94,6 +124,15 @@ public abstract class Server implements Runnable {
 		super();
 		this.name = name;
 		this.started = false;
+		this.numReactors = Runtime.getRuntime().availableProcessors();
+		this.serverStatistics = new ServerStatistics();
+		this.bufferPool = new BufferPool(this.serverStatistics);
+		this.timeoutsMillis = new long[ConnectionTimeout.values().length];
+		this.executorStrategy = TaskExecutor.PLATFORM;
+		this.maxExecutingTasks = 5000;
+		this.minWorkerThreads = 5;
+		this.maxWorkerThreads = 500;
+		this.workerQueueSize = 5000;
 	}
 	
 	/**
@@ -105,6 +144,114 @@ public abstract class Server implements Runnable {
 		this.port = port;
 	}
 	
+	/**
+	 * Sets the number of reactors, each running its own selector thread, to the specified number. A value
+	 * less than one selects one reactor per available processor core.
+	 * 
+	 * @param numReactors the number of reactors
+	 */
+	protected void setNumReactors(int numReactors) {
+		if(numReactors < 1) {
+			numReactors = Runtime.getRuntime().availableProcessors();
+		}
+		
+		this.numReactors = numReactors;
+	}
+	
+	/**
+	 * Returns the number of reactors used by this server.
+	 * 
+	 * @return the number of reactors
+	 */
+	public int getNumReactors() {
+		return this.numReactors;
+	}
+	
+	/**
+	 * Sets the strategy used by task executors created by this server to the specified strategy. The
+	 * maximum number of executing tasks only applies to the bounded strategy.
+	 * 
+	 * @param executorStrategy the executor strategy, one of platform, virtual or bounded
+	 * @param maxExecutingTasks maximum number of concurrently executing tasks for each executor
+	 * @see TaskExecutor
+	 */
+	protected void setExecutorStrategy(String executorStrategy, int maxExecutingTasks) {
+		this.executorStrategy = executorStrategy;
+		this.maxExecutingTasks = maxExecutingTasks;
+	}
+	
+	/**
+	 * Returns the strategy used by task executors created by this server.
+	 * 
+	 * @return the executor strategy
+	 */
+	public String getExecutorStrategy() {
+		return this.executorStrategy;
+	}
+	
+	/**
+	 * Sets the worker pool settings used by task executors created by this server with the platform
+	 * executor strategy. The maximum number of threads is raised to the minimum number of threads if
+	 * lower. A target queue wait of zero disables tuning of the number of threads.
+	 * 
+	 * @param minThreads minimum number of threads kept in each worker pool
+	 * @param maxThreads maximum number of threads in each worker pool
+	 * @param queueSize maximum number of tasks queued in each worker pool
+	 * @param targetQueueWaitMillis target average queue wait in milliseconds for tuning
+	 * @see WorkerPool
+	 */
+	protected void setWorkerPool(int minThreads, int maxThreads, int queueSize, long targetQueueWaitMillis) {
+		this.minWorkerThreads = minThreads > 1 ? minThreads : 1;
+		this.maxWorkerThreads = maxThreads > this.minWorkerThreads ? maxThreads : this.minWorkerThreads;
+		this.workerQueueSize = queueSize > 1 ? queueSize : 1;
+		this.targetQueueWaitMillis = targetQueueWaitMillis;
+	}
+	
+	/**
+	 * Returns the minimum number of threads kept in worker pools created by this server.
+	 * 
+	 * @return the minimum number of worker threads
+	 */
+	public int getMinWorkerThreads() {
+		return this.minWorkerThreads;
+	}
+	
+	/**
+	 * Returns the maximum number of threads in worker pools created by this server.
+	 * 
+	 * @return the maximum number of worker threads
+	 */
+	public int getMaxWorkerThreads() {
+		return this.maxWorkerThreads;
+	}
+	
+	/**
+	 * Creates a task executor using the executor strategy of this server. Threads are named from the
+	 * specified name and tasks that can't be executed are passed to the specified handler.
+	 * 
+	 * @param name the name prefix for threads
+	 * @param handler handler for rejected tasks
+	 * @return the created task executor
+	 */
+	public TaskExecutor createTaskExecutor(String name, RejectedExecutionHandler handler) {
+		return createTaskExecutor(name, handler, null);
+	}
+	
+	/**
+	 * Creates a task executor using the executor strategy and worker pool settings of this server. Threads
+	 * are named from the specified name and tasks that can't be executed are passed to the specified handler.
+	 * Worker pool counters are reported to the specified server statistics.
+	 * 
+	 * @param name the name prefix for threads
+	 * @param handler handler for rejected tasks
+	 * @param stats the server statistics to report worker pool counters to or <code>null</code>
+	 * @return the created task executor
+	 */
+	public TaskExecutor createTaskExecutor(String name, RejectedExecutionHandler handler, ServerStatistics stats) {
+		return TaskExecutor.create(this.executorStrategy, name, this.maxExecutingTasks, handler,
+				this.minWorkerThreads, this.maxWorkerThreads, this.workerQueueSize, this.targetQueueWaitMillis, stats);
+	}
+	
 	/**
 	 * Starts this server. Incoming connection requests are accepted once the server is started.
 	 * 
@@ -124,16 +271,26 @@ public abstract class Server implements Runnable {
 					TimeUnit.SECONDS, 
 					new LinkedBlockingQueue<Runnable>(), 
 					new ServerThreadFactory());
-			this.events = new ConcurrentLinkedQueue<OperationEvent>();
 			
 			this.channel = ServerSocketChannel.open();
 			InetSocketAddress address = new InetSocketAddress(port);
 			channel.socket().bind(address);
-			channel.configureBlocking(false);
+			channel.configureBlocking(true);
 			LogMF.info(logger, "Listening {0}:{1}",  address.getAddress().getHostAddress(), address.getPort());
 			
+			this.reactors = new Reactor[this.numReactors];
+			this.nextReactor = 0;
+			
+			for(int i = 0; i < reactors.length; i++) {
+				reactors[i] = new Reactor(this, "reactor-" + (i + 1));
+				reactors[i].start();
+			}
+			
+			LogMF.info(logger, "Started {0} reactors", reactors.length);
+			
 			this.started = true;
 			this.thread = new Thread(this);
+			thread.setName("acceptor");
 			thread.start();
 			
 			logger.info("Started, ready for connections");
@@ -159,10 +316,20 @@ public abstract class Server implements Runnable {
 		}
 		
 		this.started = false;
+		channel.close();
+		
+		for(Reactor reactor : this.reactors) {
+			reactor.stop();
+		}
+		
 		executor.shutdownNow();
 		this.executor = null;
 		
-		channel.close();
+		long numBuffersInUse = serverStatistics.getNumBuffersInUse();
+		
+		if(numBuffersInUse > 0L) {
+			LogMF.warn(logger, "Buffer leak, {0} pooled buffers not released", numBuffersInUse);
+		}
 		
 		logger.info("Stopped");
 		return true;
@@ -176,7 +343,7 @@ public abstract class Server implements Runnable {
 	 * @return <code>true</code> if the read was queued, <code>false</code> otherwise
 	 */
 	public boolean queueRead(Connection conn) {
-		return queueEvent(new OperationEvent(conn, OperationEvent.Type.OPERATION_READ));
+		return schedule(conn, Reactor.OPERATION_READ);
 	}
 	
 	/**
@@ -187,7 +354,7 @@ public abstract class Server implements Runnable {
 	 * @return <code>true</code> if the write was queued, <code>false</code> otherwise
 	 */
 	public boolean queueWrite(Connection conn) {
-		return queueEvent(new OperationEvent(conn, OperationEvent.Type.OPERATION_WRITE));
+		return schedule(conn, Reactor.OPERATION_WRITE);
 	}
 	
 	/**
@@ -198,148 +365,88 @@ public abstract class Server implements Runnable {
 	 * @return <code>true</code> if the close was queued, <code>false</code> otherwise
 	 */
 	public boolean queueClose(Connection conn) {
-		return queueEvent(new OperationEvent(conn, OperationEvent.Type.OPERATION_CLOSE));
+		return schedule(conn, Reactor.OPERATION_CLOSE);
 	}
 	
 	/**
-	 * Queues the specified for execution. Wakes up the internal selector thread to process
-	 * queued events.
+	 * Schedules the specified operation with the reactor owning the specified connection. Repeated requests
+	 * for a connection which has not yet been handled by its reactor are coalesced into one.
 	 * 
-	 * @param event the event to queue
-	 * @return <code>true</code> if the event was queued, <code>false</code> otherwise.
+	 * @param conn the connection to schedule operation for
+	 * @param operation the operation
+	 * @return <code>true</code> if the operation was scheduled, <code>false</code> otherwise.
 	 */
-	private boolean queueEvent(OperationEvent event) {
-		if(this.selector != null) {
-			events.add(event);
-			selector.wakeup();
-			return true;
+	private boolean schedule(Connection conn, int operation) {
+		Reactor reactor = conn.getReactor();
+		
+		if(reactor != null) {
+			return reactor.schedule(conn, operation);
 		}
 		
 		return false;
 	}
 	
 	/**
-	 *  Executed continuously by a single thread until the server is stopped. Uses one selector
-	 *  to accept connection requests and data. Also handles queued operations and executes
-	 *  them.
+	 * Returns server statistics for this server.
+	 * 
+	 * @return the server statistics
 	 */
-	public void run() {
-		long connectionTimeoutMillis = getConnectionTimeoutMillis();
-		boolean timeoutHandling = connectionTimeoutMillis > 0L;
-		long lastTimeoutMillis = System.currentTimeMillis();
+	public ServerStatistics getServerStatistics() {
+		return this.serverStatistics;
+	}
+	
+	/**
+	 * Returns the pool of direct byte buffers shared by all connections for this server.
+	 * 
+	 * @return the buffer pool
+	 */
+	public BufferPool getBufferPool() {
+		return this.bufferPool;
+	}
+	
+	/**
+	 * Hands over reading of available data for the specified connection to the thread pool.
+	 * Called by reactors once data is available for reading.
+	 * 
+	 * @param conn the connection to read data for
+	 */
+	void process(Connection conn) {
+		ThreadPoolExecutor executor = this.executor;
 		
+		if(this.started && executor != null) {
+			executor.execute(new Processor(conn));
+		}
+	}
+	
+	/**
+	 *  Executed continuously by the acceptor thread until the server is stopped. Accepts connection
+	 *  requests and hands each accepted connection over to the next reactor in turn.
+	 */
+	public void run() {
 		try {
-			selector = Selector.open();
-			channel.register(selector, SelectionKey.OP_ACCEPT);
-			
 			while(this.started) {
-				while(!events.isEmpty()) {
-					OperationEvent event = events.poll();
-					Connection conn = event.getConnection();
-					SelectionKey key = conn.getSelectionKey();
-					OperationEvent.Type operation = event.getOperation();
-					
-					switch(operation) {
-					case OPERATION_READ:
-						if(key.isValid()) {
-							key.interestOps(SelectionKey.OP_READ);
-						}
-						break;
-					
-					case OPERATION_WRITE:
-						if(key.isValid()) {
-							key.interestOps(SelectionKey.OP_WRITE);
-						}
-						break;
-					
-					case OPERATION_CLOSE:
-						if(key.isValid()) {
-							key.interestOps(0);
-							key.cancel();
-						}
-						
-						SocketChannel channel = conn.getChannel();
-						channel.close();
-						break;
-					}
-				}
-				
-				int numKeys = 0;
+				SocketChannel socket = channel.accept();
 				
-				if(!timeoutHandling) {
-					numKeys = selector.select();
-				} else {
-					long timeoutMillis = connectionTimeoutMillis - (System.currentTimeMillis() - lastTimeoutMillis);
-					numKeys = selector.select(timeoutMillis);
-				}
-				
-				if(!this.started) {
-					return;
-				}
-				
-				if(numKeys > 0) {
-					Set<SelectionKey> keys = selector.selectedKeys();
-					Iterator<SelectionKey> it = keys.iterator();
+				try {
+					socket.configureBlocking(false);
+					socket.socket().setTcpNoDelay(true);
 					
-					while(it.hasNext()) {	
-						SelectionKey key = it.next();
-						it.remove();
-						
-						if(!key.isValid()) {
-							continue;
-						}
-						
-						if(key.isAcceptable()) {
-							SocketChannel socket = channel.accept();
-							socket.configureBlocking(false);
-							socket.socket().setTcpNoDelay(true);
-							
-							SelectionKey connKey = socket.register(key.selector(), SelectionKey.OP_READ, this);
-							connKey.selector().wakeup();
-							
-							Connection conn = createConnection(socket, connKey);
-							connKey.attach(conn);
-						} else if(key.isReadable()) {
-							key.interestOps(0);
-							Connection connector = (Connection)key.attachment();
-							
-							if(this.started) {
-								executor.execute(new Processor(connector));
-							}
-						} else if(key.isWritable()) {
-							write(key);
-						}
-					}
-				}
-				
-				if(timeoutHandling && System.currentTimeMillis() - lastTimeoutMillis >= connectionTimeoutMillis) {
-					lastTimeoutMillis = System.currentTimeMillis();
-					timeoutHandling = lastTimeoutMillis > 0L;
-					Set<SelectionKey> keys = selector.keys();
+					Reactor reactor = reactors[nextReactor];
+					nextReactor = (nextReactor + 1) % reactors.length;
 					
-					for(SelectionKey key : keys) {
-						Connection conn = (Connection)key.attachment();
-						
-						if(conn != null && conn.isTimedOut()) {
-							if(key.isValid()) {
-								key.interestOps(0);
-								key.cancel();
-							}
-							
-							SocketChannel channel = conn.getChannel();
-							channel.close();							
-						}
+					if(!reactor.register(socket)) {
+						socket.close();
 					}
+				} catch(IOException e) {
+					logger.warn("Unable to accept connection", e);
+					socket.close();
 				}
 			}
+		} catch(AsynchronousCloseException e) {
+			// Server socket channel closed by stop
 		} catch(IOException e) {
-			logger.error("IO exception", e);
-		} finally {
-			if(selector != null) {
-				try { 
-					selector.close();
-					this.selector = null;
-				} catch(IOException e) {}
+			if(this.started) {
+				logger.error("IO exception", e);
 			}
 		}
 	}
@@ -356,28 +463,25 @@ public abstract class Server implements Runnable {
 	protected abstract Connection createConnection(SocketChannel socket, SelectionKey connKey) throws IOException;
 	
 	/**
-	 * Returns the number of milliseconds a connection is allowed to be idle before closed. Subclasses must
-	 * implement this method to provide protocol specific timeouts.
+	 * Sets the number of milliseconds a connection is allowed to stay in the specified phase before
+	 * closed. A value of zero disables the timeout. Must be set before the server is started.
 	 * 
-	 * @return the maximum number of milliseconds a connection is allowed to be idle
+	 * @param timeout the connection phase
+	 * @param timeoutMillis the timeout in milliseconds
 	 */
-	public abstract long getConnectionTimeoutMillis();
+	public void setTimeoutMillis(ConnectionTimeout timeout, long timeoutMillis) {
+		timeoutsMillis[timeout.ordinal()] = timeoutMillis > 0L ? timeoutMillis : 0L;
+	}
 	
 	/**
-	 * Calls connection for the specified selection key to write data on the corresponding socket channel.
+	 * Returns the number of milliseconds a connection is allowed to stay in the specified phase before
+	 * closed.
 	 * 
-	 * @param key the selection key
-	 * @throws IOException if unable to write data
+	 * @param timeout the connection phase
+	 * @return the timeout in milliseconds or zero if disabled
 	 */
-	private void write(SelectionKey key) {
-		Connection connector = (Connection)key.attachment();
-		
-		try {
-			connector.write();
-		} catch(IOException e) {
-			logger.warn("I/O exception on write", e);
-			connector.close(true);
-		}
+	public long getTimeoutMillis(ConnectionTimeout timeout) {
+		return timeoutsMillis[timeout.ordinal()];
 	}
 	
 	/**
@@ -0,0 +1,281 @@
+/**
+ * Copyright 2012 NetDigital Sweden AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.nginious.http.server;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+
+import org.apache.log4j.LogMF;
+import org.apache.log4j.Logger;
+
+import com.nginious.http.stats.ServerStatistics;
+
+/**
+ * Executes tasks handed over from reactor threads, such as parsed HTTP requests and web socket messages,
+ * using one of the following strategies.
+ * 
+ * <ul>
+ * <li>platform - A {@link WorkerPool} of platform threads, by default between 5 and 500 threads with a
+ * queue of at most 5000 tasks. New threads are started before tasks are queued. Exceeding tasks are
+ * rejected.</li>
+ * <li>virtual - One new virtual thread for each task. Tasks are never rejected.</li>
+ * <li>bounded - One new virtual thread for each task with a maximum number of concurrently executing tasks.
+ * Exceeding tasks are rejected.</li>
+ * </ul>
+ * 
+ * <p>
+ * Rejected tasks are passed to the rejected execution handler given when the executor is created. For the
+ * bounded strategy the handler is called with a <code>null</code> thread pool executor.
+ * </p>
+ * 
+ * <p>
+ * Virtual threads are only available on Java runtimes with virtual thread support. The platform strategy
+ * is used in place of the virtual and bounded strategies on runtimes without virtual threads.
+ * </p>
+ * 
+ * @author Bojan Pisler, NetDigital Sweden AB
+ *
+ */
+public abstract class TaskExecutor {
+	
+	public static final String PLATFORM = "platform";
+	
+	public static final String VIRTUAL = "virtual";
+	
+	public static final String BOUNDED = "bounded";
+	
+	private static Logger logger = Logger.getLogger(TaskExecutor.class);
+	
+	private static final MethodHandle IS_VIRTUAL = createIsVirtualHandle();
+	
+	/**
+	 * Constructs a new task executor.
+	 */
+	TaskExecutor() {
+		super();
+	}
+	
+	/**
+	 * Creates a new task executor using the specified strategy. Threads are named from the specified
+	 * name. The maximum number of tasks only applies to the bounded strategy. The platform strategy uses
+	 * a worker pool with default settings.
+	 * 
+	 * @param strategy the strategy, one of platform, virtual or bounded
+	 * @param name the name prefix for threads
+	 * @param maxTasks maximum number of concurrently executing tasks for the bounded strategy
+	 * @param handler handler for tasks that can't be executed
+	 * @return the created task executor
+	 */
+	public static TaskExecutor create(String strategy, String name, int maxTasks, RejectedExecutionHandler handler) {
+		return create(strategy, name, maxTasks, handler, 5, 500, 5000, 0L, null);
+	}
+	
+	/**
+	 * Creates a new task executor using the specified strategy. Threads are named from the specified
+	 * name. The maximum number of tasks only applies to the bounded strategy. The worker pool settings
+	 * and statistics only apply to the platform strategy.
+	 * 
+	 * @param strategy the strategy, one of platform, virtual or bounded
+	 * @param name the name prefix for threads
+	 * @param maxTasks maximum number of concurrently executing tasks for the bounded strategy
+	 * @param handler handler for tasks that can't be executed
+	 * @param minThreads minimum number of worker pool threads
+	 * @param maxThreads maximum number of worker pool threads
+	 * @param queueSize maximum number of tasks queued in worker pool
+	 * @param targetQueueWaitMillis target worker pool queue wait for tuning or zero for no tuning
+	 * @param stats the server statistics to report worker pool counters to or <code>null</code>
+	 * @return the created task executor
+	 * @see WorkerPool
+	 */
+	static TaskExecutor create(String strategy, String name, int maxTasks, RejectedExecutionHandler handler,
+			int minThreads, int maxThreads, int queueSize, long targetQueueWaitMillis, ServerStatistics stats) {
+		ThreadFactory factory = null;
+		
+		if(strategy != null && !strategy.equals(PLATFORM)) {
+			if(!strategy.equals(VIRTUAL) && !strategy.equals(BOUNDED)) {
+				LogMF.warn(logger, "Unknown executor strategy {0}, using platform threads", strategy);
+			} else if((factory = createVirtualThreadFactory(name)) == null) {
+				LogMF.warn(logger, "Virtual threads not supported by runtime, using platform threads for {0}", name);
+			}
+		}
+		
+		if(factory == null) {
+			WorkerPool pool = new WorkerPool(name, minThreads, maxThreads, queueSize, handler, stats);
+			pool.setTargetQueueWaitMillis(targetQueueWaitMillis);
+			return new PlatformTaskExecutor(pool);
+		}
+		
+		if(strategy.equals(VIRTUAL)) {
+			return new VirtualTaskExecutor(factory);
+		}
+		
+		return new BoundedTaskExecutor(factory, maxTasks, handler);
+	}
+	
+	/**
+	 * Creates a thread factory for virtual threads named from the specified name. The factory is looked up
+	 * reflectively to allow the server to run on runtimes without virtual threads.
+	 * 
+	 * @param name the name prefix for threads
+	 * @return the virtual thread factory or <code>null</code> if virtual threads are not supported
+	 */
+	private static ThreadFactory createVirtualThreadFactory(String name) {
+		try {
+			Class<?> builderClazz = Class.forName("java.lang.Thread$Builder");
+			Method ofVirtual = Thread.class.getMethod("ofVirtual");
+			Method nameMethod = builderClazz.getMethod("name", String.class, long.class);
+			Method factoryMethod = builderClazz.getMethod("factory");
+			Object builder = ofVirtual.invoke(null);
+			builder = nameMethod.invoke(builder, name + "-", 1L);
+			return (ThreadFactory)factoryMethod.invoke(builder);
+		} catch(Exception e) {
+			return null;
+		}
+	}
+	
+	/**
+	 * Looks up the method handle for checking if a thread is virtual. The method is looked up reflectively
+	 * to allow the server to run on runtimes without virtual threads.
+	 * 
+	 * @return the method handle or <code>null</code> if virtual threads are not supported
+	 */
+	private static MethodHandle createIsVirtualHandle() {
+		try {
+			return MethodHandles.publicLookup().findVirtual(Thread.class, "isVirtual", MethodType.methodType(boolean.class));
+		} catch(Exception e) {
+			return null;
+		}
+	}
+	
+	/**
+	 * Checks if the current thread is a virtual thread. Virtual threads are created per task and should
+	 * not keep per thread caches of pooled resources.
+	 * 
+	 * @return <code>true</code> if the current thread is virtual, <code>false</code> otherwise
+	 */
+	static boolean isVirtualThread() {
+		if(IS_VIRTUAL == null) {
+			return false;
+		}
+		
+		try {
+			return (boolean)IS_VIRTUAL.invokeExact(Thread.currentThread());
+		} catch(Throwable t) {
+			return false;
+		}
+	}
+	
+	/**
+	 * Returns the strategy used by this task executor.
+	 * 
+	 * @return the strategy
+	 */
+	public abstract String getStrategy();
+	
+	/**
+	 * Executes the specified task. The task is passed to the rejected execution handler if it can't be
+	 * executed.
+	 * 
+	 * @param task the task to execute
+	 */
+	public abstract void execute(Runnable task);
+	
+	private static class PlatformTaskExecutor extends TaskExecutor {
+		
+		private WorkerPool pool;
+		
+		private PlatformTaskExecutor(WorkerPool pool) {
+			super();
+			this.pool = pool;
+		}
+		
+		public String getStrategy() {
+			return PLATFORM;
+		}
+		
+		public void execute(Runnable task) {
+			pool.execute(task);
+		}
+	}
+	
+	private static class VirtualTaskExecutor extends TaskExecutor {
+		
+		private ThreadFactory factory;
+		
+		private VirtualTaskExecutor(ThreadFactory factory) {
+			super();
+			this.factory = factory;
+		}
+		
+		public String getStrategy() {
+			return VIRTUAL;
+		}
+		
+		public void execute(Runnable task) {
+			factory.newThread(task).start();
+		}
+	}
+	
+	private static class BoundedTaskExecutor extends TaskExecutor {
+		
+		private ThreadFactory factory;
+		
+		private Semaphore permits;
+		
+		private RejectedExecutionHandler handler;
+		
+		private BoundedTaskExecutor(ThreadFactory factory, int maxTasks, RejectedExecutionHandler handler) {
+			super();
+			this.factory = factory;
+			this.permits = new Semaphore(maxTasks > 0 ? maxTasks : 1);
+			this.handler = handler;
+		}
+		
+		public String getStrategy() {
+			return BOUNDED;
+		}
+		
+		public void execute(final Runnable task) {
+			if(!permits.tryAcquire()) {
+				handler.rejectedExecution(task, null);
+				return;
+			}
+			
+			Runnable permitted = new Runnable() {
+				public void run() {
+					try {
+						task.run();
+					} finally {
+						permits.release();
+					}
+				}
+			};
+			
+			try {
+				factory.newThread(permitted).start();
+			} catch(RuntimeException e) {
+				permits.release();
+				throw e;
+			}
+		}
+	}
+}
@@ -0,0 +1,240 @@
+/**
+ * Copyright 2012 NetDigital Sweden AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.nginious.http.server;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A hashed timing wheel which keeps track of connection deadlines for a {@link Reactor}. The wheel
+ * consists of a fixed number of buckets where each bucket covers one tick. A connection is placed
+ * in the bucket for the tick of its deadline. Deadlines further away than one turn of the wheel are
+ * placed in the same way and are moved on when the bucket is visited before the deadline has passed.
+ * 
+ * <p>
+ * Each connection has one {@link Timer} which is linked into at most one bucket, scheduling and
+ * cancelling is done in constant time. Advancing the wheel only visits connections in elapsed
+ * buckets. A visited connection is expired if its current deadline has passed, moved if its deadline
+ * has been extended or removed if it no longer has a deadline.
+ * </p>
+ * 
+ * <p>
+ * A timing wheel is not thread safe and must only be used by the reactor thread owning it.
+ * </p>
+ * 
+ * @author Bojan Pisler, NetDigital Sweden AB
+ * @see Reactor
+ * @see Connection
+ *
+ */
+class TimingWheel {
+	
+	static final long TICK_MILLIS = 100L;
+	
+	private static final int NUM_BUCKETS = 512;
+	
+	private Timer[] buckets;
+	
+	private long currentTick;
+	
+	private int numTimers;
+	
+	/**
+	 * Constructs a new empty timing wheel starting at the specified time.
+	 * 
+	 * @param nowMillis the current time in milliseconds
+	 */
+	TimingWheel(long nowMillis) {
+		super();
+		this.buckets = new Timer[NUM_BUCKETS];
+		this.currentTick = nowMillis / TICK_MILLIS;
+		
+		for(int i = 0; i < NUM_BUCKETS; i++) {
+			Timer head = new Timer(null);
+			head.prev = head;
+			head.next = head;
+			buckets[i] = head;
+		}
+	}
+	
+	/**
+	 * Schedules the specified timer to expire at the specified deadline. The timer is moved if it
+	 * is already scheduled. A deadline of zero cancels the timer.
+	 * 
+	 * @param timer the timer to schedule
+	 * @param deadlineMillis the deadline in milliseconds or zero for no deadline
+	 */
+	void schedule(Timer timer, long deadlineMillis) {
+		cancel(timer);
+		
+		if(deadlineMillis == 0L) {
+			return;
+		}
+		
+		long tick = deadlineMillis / TICK_MILLIS;
+		
+		if(tick < this.currentTick) {
+			tick = this.currentTick;
+		}
+		
+		Timer head = buckets[(int)(tick % NUM_BUCKETS)];
+		timer.next = head.next;
+		timer.prev = head;
+		head.next.prev = timer;
+		head.next = timer;
+		timer.scheduledMillis = deadlineMillis;
+		this.numTimers++;
+	}
+	
+	/**
+	 * Removes the specified timer from this wheel if scheduled.
+	 * 
+	 * @param timer the timer to cancel
+	 */
+	void cancel(Timer timer) {
+		if(timer.next == null) {
+			return;
+		}
+		
+		timer.prev.next = timer.next;
+		timer.next.prev = timer.prev;
+		timer.prev = null;
+		timer.next = null;
+		timer.scheduledMillis = 0L;
+		this.numTimers--;
+	}
+	
+	/**
+	 * Returns whether or not this wheel has any scheduled timers.
+	 * 
+	 * @return <code>true</code> if no timers are scheduled, <code>false</code> otherwise
+	 */
+	boolean isEmpty() {
+		return this.numTimers == 0;
+	}
+	
+	/**
+	 * Advances this wheel to the specified time and adds connections with passed deadlines to the
+	 * specified list. Only ticks which have fully elapsed are visited and each bucket is visited at most
+	 * once, also when more than one turn of the wheel has elapsed since the last call.
+	 * 
+	 * @param nowMillis the current time in milliseconds
+	 * @param expired list to add expired connections to
+	 */
+	void expire(long nowMillis, List<Connection> expired) {
+		long nowTick = nowMillis / TICK_MILLIS;
+		long numTicks = nowTick - this.currentTick;
+		
+		if(numTicks > NUM_BUCKETS) {
+			numTicks = NUM_BUCKETS;
+		}
+		
+		for(long i = 0; i < numTicks && this.numTimers > 0; i++) {
+			Timer head = buckets[(int)(currentTick % NUM_BUCKETS)];
+			Timer timer = head.next;
+			this.currentTick++;
+			
+			while(timer != head) {
+				Timer next = timer.next;
+				long deadlineMillis = timer.conn.getDeadlineMillis();
+				
+				if(deadlineMillis == 0L) {
+					cancel(timer);
+				} else if(deadlineMillis > nowMillis) {
+					schedule(timer, deadlineMillis);
+				} else {
+					cancel(timer);
+					expired.add(timer.conn);
+				}
+				
+				timer = next;
+			}
+		}
+		
+		if(this.currentTick < nowTick) {
+			this.currentTick = nowTick;
+		}
+	}
+	
+	/**
+	 * Returns the number of milliseconds until the next tick of this wheel elapses.
+	 * 
+	 * @param nowMillis the current time in milliseconds
+	 * @return the number of milliseconds until next tick
+	 */
+	long millisToNextTick(long nowMillis) {
+		long millis = (this.currentTick + 1) * TICK_MILLIS - nowMillis;
+		return millis > 0L ? millis : 1L;
+	}
+	
+	/**
+	 * A connections entry in a timing wheel. Links are only touched by the reactor thread owning
+	 * the wheel. The scheduled deadline is read by other threads to decide whether the connection
+	 * must be rescheduled with its reactor after its deadline has been moved forward.
+	 * 
+	 * @author Bojan Pisler, NetDigital Sweden AB
+	 *
+	 */
+	static class Timer {
+		
+		private Connection conn;
+		
+		private Timer prev;
+		
+		private Timer next;
+		
+		private volatile long scheduledMillis;
+		
+		private AtomicBoolean queued;
+		
+		/**
+		 * Constructs a new unscheduled timer for the specified connection.
+		 * 
+		 * @param conn the connection
+		 */
+		Timer(Connection conn) {
+			super();
+			this.conn = conn;
+			this.queued = new AtomicBoolean(false);
+		}
+		
+		/**
+		 * Returns the deadline this timer is currently scheduled for in its wheel.
+		 * 
+		 * @return the scheduled deadline in milliseconds or zero if not scheduled
+		 */
+		long getScheduledMillis() {
+			return this.scheduledMillis;
+		}
+		
+		/**
+		 * Marks this timer as queued for scheduling with its reactor.
+		 * 
+		 * @return <code>true</code> if the timer was not already queued, <code>false</code> otherwise
+		 */
+		boolean markQueued() {
+			return queued.compareAndSet(false, true);
+		}
+		
+		/**
+		 * Clears the queued mark for this timer.
+		 */
+		void clearQueued() {
+			queued.set(false);
+		}
+	}
+}
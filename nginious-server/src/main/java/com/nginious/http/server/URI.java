@@ -19,6 +19,7 @@ package com.nginious.http.server;
 import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 
@@ -427,22 +428,10 @@ public class URI {
 	 * @throws UnsupportedEncodingException if encoding is not supported
 	 */
 	public void decodeQuery(HashMap<String, List<String>> paramsMap, String encoding) throws UnsupportedEncodingException {
-		if(this.query == null) {
-			return;
-		}
-		
-		String[] nameValues = query.split("&");
+		HttpParameters decoded = new HttpParameters();
+		decodeQuery(decoded, encoding);
 		
-		for(String nameValue : nameValues) {
-			String[] pair = nameValue.split("=");
-			String name = pair[0];
-			String value = pair.length > 1 ? pair[1] : null; // TODO, should value be null on no value???
-			name = URLDecoder.decode(name, encoding);
-			
-			if(value != null) {
-				value = URLDecoder.decode(value, encoding);
-			}
-			
+		for(String name : decoded.getNames()) {
 			List<String> params = paramsMap.get(name);
 			
 			if(params == null) {
@@ -450,7 +439,162 @@ public class URI {
 				paramsMap.put(name, params);
 			}
 			
-			params.add(value);
+			params.addAll(Arrays.asList(decoded.getValues(name)));
+		}
+	}
+	
+	/**
+	 * Decodes parameters in this URIs query part into the specified parameters container. The specified
+	 * encoding is used to URL decode the parameter names and values.
+	 * 
+	 * @param params the parameters container to add decoded parameters to
+	 * @param encoding the character encoding to use when URL decoding parameter names and values
+	 * @throws UnsupportedEncodingException if encoding is not supported
+	 */
+	void decodeQuery(HttpParameters params, String encoding) throws UnsupportedEncodingException {
+		if(this.query != null) {
+			decodeQuery(this.query, 0, query.length(), params, encoding);
+		}
+	}
+	
+	/**
+	 * Decodes form encoded parameters found in the specified data between the specified start and end positions
+	 * into the specified parameters container. The data is read as ISO-8859-1 characters without first being
+	 * copied into a string. The specified encoding is used to URL decode the parameter names and values.
+	 * 
+	 * @param data the form encoded data
+	 * @param start the start position in data
+	 * @param end the end position in data
+	 * @param params the parameters container to add decoded parameters to
+	 * @param encoding the character encoding to use when URL decoding parameter names and values
+	 * @throws UnsupportedEncodingException if encoding is not supported
+	 */
+	static void decodeQuery(byte[] data, int start, int end, HttpParameters params, String encoding) throws UnsupportedEncodingException {
+		decodeQuery(new Latin1Chars(data), start, end, params, encoding);
+	}
+	
+	private static void decodeQuery(CharSequence query, int start, int end, HttpParameters params, String encoding) 
+			throws UnsupportedEncodingException {
+		int pos = start;
+		
+		while(pos < end) {
+			int paramEnd = pos;
+			int valueStart = -1;
+			
+			for(; paramEnd < end; paramEnd++) {
+				char ch = query.charAt(paramEnd);
+				
+				if(ch == '&') {
+					break;
+				} else if(ch == '=' && valueStart < 0) {
+					valueStart = paramEnd + 1;
+				}
+			}
+			
+			if(paramEnd > pos) {
+				String name = urlDecode(query, pos, valueStart < 0 ? paramEnd : valueStart - 1, encoding);
+				String value = valueStart >= 0 && valueStart < paramEnd ? urlDecode(query, valueStart, paramEnd, encoding) : null;
+				params.add(name, value);
+			}
+			
+			pos = paramEnd + 1;
+		}
+	}
+	
+	/**
+	 * URL decodes the characters between the specified start and end positions with the specified encoding.
+	 * Characters without any escapes are returned without decoding. Malformed escapes are kept as is.
+	 */
+	private static String urlDecode(CharSequence value, int start, int end, String encoding) throws UnsupportedEncodingException {
+		int pos = start;
+		
+		while(pos < end && value.charAt(pos) != '%' && value.charAt(pos) != '+') {
+			pos++;
+		}
+		
+		if(pos == end) {
+			return value.subSequence(start, end).toString();
+		}
+		
+		StringBuilder out = new StringBuilder(end - start);
+		out.append(value, start, pos);
+		byte[] bytes = null;
+		
+		while(pos < end) {
+			char ch = value.charAt(pos);
+			
+			if(ch == '+') {
+				out.append(' ');
+				pos++;
+			} else if(ch == '%') {
+				if(bytes == null) {
+					bytes = new byte[(end - pos) / 3];
+				}
+				
+				int count = 0;
+				
+				while(pos + 2 < end && value.charAt(pos) == '%') {
+					int high = Character.digit(value.charAt(pos + 1), 16);
+					int low = Character.digit(value.charAt(pos + 2), 16);
+					
+					if(high < 0 || low < 0) {
+						break;
+					}
+					
+					bytes[count++] = (byte)((high << 4) + low);
+					pos += 3;
+				}
+				
+				if(count > 0) {
+					out.append(new String(bytes, 0, count, encoding));
+				} else {
+					out.append(ch);
+					pos++;
+				}
+			} else {
+				out.append(ch);
+				pos++;
+			}
+		}
+		
+		return out.toString();
+	}
+	
+	/**
+	 * Bytes read as ISO-8859-1 characters.
+	 * 
+	 * @author Bojan Pisler, NetDigital Sweden AB
+	 *
+	 */
+	private static class Latin1Chars implements CharSequence {
+		
+		private byte[] data;
+		
+		private Latin1Chars(byte[] data) {
+			super();
+			this.data = data;
+		}
+		
+		public int length() {
+			return data.length;
+		}
+		
+		public char charAt(int index) {
+			return (char)(data[index] & 0xff);
+		}
+		
+		public CharSequence subSequence(int start, int end) {
+			char[] chars = new char[end - start];
+			
+			for(int i = start; i < end; i++) {
+				chars[i - start] = (char)(data[i] & 0xff);
+			}
+			
+			return new String(chars);
+		}
+		
+		public String toString() {
+			return subSequence(0, data.length).toString();
 		}
 	}
 }
@@ -0,0 +1,387 @@
+/**
+ * Copyright 2012 NetDigital Sweden AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.nginious.http.server;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.LogMF;
+import org.apache.log4j.Logger;
+
+import com.nginious.http.stats.ServerStatistics;
+
+/**
+ * A pool of platform worker threads which starts new threads before queueing tasks. A standard thread
+ * pool executor only starts threads beyond its core size once its queue is full. This pool instead
+ * queues a task only when an idle worker is available to pick it up or when the maximum number of
+ * workers are started. Tasks are rejected once all workers are busy and the queue is full.
+ * 
+ * <p>
+ * Workers beyond the minimum number of threads are stopped after being idle for 10 seconds. Started
+ * workers, busy workers, queued tasks and the time each task waits before execution starts are reported
+ * to the server statistics if set.
+ * </p>
+ * 
+ * <p>
+ * The pool can optionally tune its maximum number of threads from observed queue wait. With a target
+ * queue wait set the pool starts with its minimum number of threads as maximum. Once every second the
+ * maximum is doubled, up to the configured maximum, if the average queue wait exceeded the target. The
+ * maximum is lowered by one quarter, down to the minimum, if the average queue wait was below half the
+ * target and less than half the allowed workers were busy at the same time.
+ * </p>
+ * 
+ * @author Bojan Pisler, NetDigital Sweden AB
+ * @see TaskExecutor
+ * @see ServerStatistics
+ *
+ */
+class WorkerPool extends ThreadPoolExecutor {
+	
+	private static final long TUNE_INTERVAL_MILLIS = 1000L;
+	
+	private static Logger logger = Logger.getLogger(WorkerPool.class);
+	
+	private String name;
+	
+	private ServerStatistics stats;
+	
+	private AtomicInteger numSubmitted;
+	
+	private int maxThreads;
+	
+	private long targetQueueWaitNanos;
+	
+	private AtomicLong intervalWaitNanos;
+	
+	private AtomicLong intervalTasks;
+	
+	private AtomicInteger intervalPeakActive;
+	
+	private AtomicBoolean tuning;
+	
+	private volatile long nextTuneMillis;
+	
+	/**
+	 * Constructs a new worker pool with threads named from the specified name.
+	 * 
+	 * @param name the name prefix for threads
+	 * @param minThreads the minimum number of threads kept in pool
+	 * @param maxThreads the maximum number of threads
+	 * @param queueSize the maximum number of queued tasks
+	 * @param handler handler for rejected tasks
+	 * @param stats the server statistics to report to or <code>null</code>
+	 */
+	WorkerPool(String name, int minThreads, int maxThreads, int queueSize, RejectedExecutionHandler handler, ServerStatistics stats) {
+		super(minThreads, maxThreads, 10, TimeUnit.SECONDS,
+				new WorkerQueue(queueSize),
+				new WorkerThreadFactory(name, stats),
+				new WorkerRejectionHandler(handler));
+		this.name = name;
+		this.stats = stats;
+		this.numSubmitted = new AtomicInteger(0);
+		this.maxThreads = getMaximumPoolSize();
+		this.intervalWaitNanos = new AtomicLong(0L);
+		this.intervalTasks = new AtomicLong(0L);
+		this.intervalPeakActive = new AtomicInteger(0);
+		this.tuning = new AtomicBoolean(false);
+		((WorkerQueue)getQueue()).setPool(this);
+	}
+	
+	/**
+	 * Sets the target average time tasks wait in queue before execution to the specified number of
+	 * milliseconds and enables tuning of the maximum number of threads. A target of zero or less
+	 * disables tuning and restores the configured maximum number of threads.
+	 * 
+	 * @param targetQueueWaitMillis the target queue wait in milliseconds
+	 */
+	void setTargetQueueWaitMillis(long targetQueueWaitMillis) {
+		if(targetQueueWaitMillis <= 0L) {
+			this.targetQueueWaitNanos = 0L;
+			setMaximumPoolSize(this.maxThreads);
+			return;
+		}
+		
+		this.targetQueueWaitNanos = TimeUnit.MILLISECONDS.toNanos(targetQueueWaitMillis);
+		this.nextTuneMillis = System.currentTimeMillis() + TUNE_INTERVAL_MILLIS;
+		setMaximumPoolSize(getCorePoolSize());
+	}
+	
+	/**
+	 * Returns the number of tasks submitted to this pool that have not yet completed, including
+	 * queued tasks.
+	 * 
+	 * @return the number of submitted tasks
+	 */
+	int getNumSubmitted() {
+		return numSubmitted.get();
+	}
+	
+	/**
+	 * Executes the specified task in an idle or new worker thread or queues the task if the maximum
+	 * number of workers are busy.
+	 * 
+	 * @param task the task to execute
+	 */
+	public void execute(Runnable task) {
+		numSubmitted.incrementAndGet();
+		super.execute(new WorkerTask(task));
+	}
+	
+	protected void beforeExecute(Thread thread, Runnable runnable) {
+		long waitNanos = System.nanoTime() - ((WorkerTask)runnable).getSubmitNanos();
+		
+		if(stats != null) {
+			stats.addWorkerTaskStart(waitNanos);
+		}
+		
+		if(this.targetQueueWaitNanos > 0L) {
+			intervalWaitNanos.addAndGet(waitNanos);
+			intervalTasks.incrementAndGet();
+			int active = getActiveCount();
+			int peak = intervalPeakActive.get();
+			
+			while(active > peak && !intervalPeakActive.compareAndSet(peak, active)) {
+				peak = intervalPeakActive.get();
+			}
+			
+			if(System.currentTimeMillis() >= this.nextTuneMillis) {
+				tune();
+			}
+		}
+	}
+	
+	protected void afterExecute(Runnable runnable, Throwable t) {
+		numSubmitted.decrementAndGet();
+		
+		if(stats != null) {
+			stats.addWorkerTaskEnd();
+		}
+	}
+	
+	/**
+	 * Adjusts the maximum number of threads from the average queue wait and peak number of busy workers
+	 * observed since the last adjustment.
+	 */
+	private void tune() {
+		if(!tuning.compareAndSet(false, true)) {
+			return;
+		}
+		
+		try {
+			this.nextTuneMillis = System.currentTimeMillis() + TUNE_INTERVAL_MILLIS;
+			long tasks = intervalTasks.getAndSet(0L);
+			long waitNanos = intervalWaitNanos.getAndSet(0L);
+			int peakActive = intervalPeakActive.getAndSet(0);
+			
+			if(tasks == 0L) {
+				return;
+			}
+			
+			long avgWaitNanos = waitNanos / tasks;
+			int curMaxThreads = getMaximumPoolSize();
+			int newMaxThreads = curMaxThreads;
+			
+			if(avgWaitNanos > this.targetQueueWaitNanos) {
+				newMaxThreads = Math.min(this.maxThreads, curMaxThreads * 2);
+			} else if(avgWaitNanos < this.targetQueueWaitNanos / 2 && peakActive < curMaxThreads / 2) {
+				newMaxThreads = Math.max(getCorePoolSize(), curMaxThreads - curMaxThreads / 4);
+			}
+			
+			if(newMaxThreads != curMaxThreads) {
+				setMaximumPoolSize(newMaxThreads);
+				LogMF.debug(logger, "Worker pool {0} maximum threads {1} -> {2}, average queue wait {3} ms",
+						this.name, curMaxThreads, newMaxThreads, TimeUnit.NANOSECONDS.toMillis(avgWaitNanos));
+			}
+		} finally {
+			tuning.set(false);
+		}
+	}
+	
+	/**
+	 * A queued task with the time it was submitted to the pool.
+	 * 
+	 * @author Bojan Pisler, NetDigital Sweden AB
+	 *
+	 */
+	private static class WorkerTask implements Runnable {
+		
+		private Runnable task;
+		
+		private long submitNanos;
+		
+		private WorkerTask(Runnable task) {
+			super();
+			this.task = task;
+			this.submitNanos = System.nanoTime();
+		}
+		
+		private Runnable getTask() {
+			return this.task;
+		}
+		
+		private long getSubmitNanos() {
+			return this.submitNanos;
+		}
+		
+		public void run() {
+			task.run();
+		}
+	}
+	
+	/**
+	 * Task queue which refuses tasks while the pool can start more workers and no worker is idle. A
+	 * thread pool executor starts a new worker when its queue refuses a task.
+	 * 
+	 * @author Bojan Pisler, NetDigital Sweden AB
+	 *
+	 */
+	private static class WorkerQueue extends LinkedBlockingQueue<Runnable> {
+		
+		private static final long serialVersionUID = 1L;
+		
+		private transient WorkerPool pool;
+		
+		private WorkerQueue(int capacity) {
+			super(capacity);
+		}
+		
+		private void setPool(WorkerPool pool) {
+			this.pool = pool;
+		}
+		
+		public boolean offer(Runnable task) {
+			if(pool == null) {
+				return enqueue(task);
+			}
+			
+			int poolSize = pool.getPoolSize();
+			
+			if(poolSize >= pool.getMaximumPoolSize() || pool.getNumSubmitted() <= poolSize) {
+				return enqueue(task);
+			}
+			
+			return false;
+		}
+		
+		/**
+		 * Queues the specified task without considering the number of workers.
+		 * 
+		 * @param task the task to queue
+		 * @return <code>true</code> if queued, <code>false</code> if queue is full
+		 */
+		private boolean enqueue(Runnable task) {
+			if(!super.offer(task)) {
+				return false;
+			}
+			
+			if(pool != null && pool.stats != null) {
+				pool.stats.addWorkerTaskQueued();
+			}
+			
+			return true;
+		}
+		
+		public Runnable take() throws InterruptedException {
+			return dequeued(super.take());
+		}
+		
+		public Runnable poll(long timeout, TimeUnit unit) throws InterruptedException {
+			return dequeued(super.poll(timeout, unit));
+		}
+		
+		private Runnable dequeued(Runnable task) {
+			if(task != null && pool != null && pool.stats != null) {
+				pool.stats.addWorkerTaskDequeued();
+			}
+			
+			return task;
+		}
+	}
+	
+	/**
+	 * Called by the pool when its queue refuses a task and no more workers can be started. The task is
+	 * queued if the queue has room, otherwise it is passed to the rejected execution handler of the pool.
+	 * 
+	 * @author Bojan Pisler, NetDigital Sweden AB
+	 *
+	 */
+	private static class WorkerRejectionHandler implements RejectedExecutionHandler {
+		
+		private RejectedExecutionHandler handler;
+		
+		private WorkerRejectionHandler(RejectedExecutionHandler handler) {
+			super();
+			this.handler = handler;
+		}
+		
+		public void rejectedExecution(Runnable runnable, ThreadPoolExecutor executor) {
+			WorkerPool pool = (WorkerPool)executor;
+			
+			if(!executor.isShutdown() && ((WorkerQueue)executor.getQueue()).enqueue(runnable)) {
+				return;
+			}
+			
+			pool.numSubmitted.decrementAndGet();
+			handler.rejectedExecution(((WorkerTask)runnable).getTask(), executor);
+		}
+	}
+	
+	private static class WorkerThreadFactory implements ThreadFactory {
+		
+		private String name;
+		
+		private ServerStatistics stats;
+		
+		private AtomicInteger threadIdCreator;
+		
+		private WorkerThreadFactory(String name, ServerStatistics stats) {
+			super();
+			this.name = name;
+			this.stats = stats;
+			this.threadIdCreator = new AtomicInteger(1);
+		}
+		
+		public Thread newThread(final Runnable r) {
+			Runnable worker = r;
+			
+			if(stats != null) {
+				worker = new Runnable() {
+					public void run() {
+						stats.addWorkerStart();
+						
+						try {
+							r.run();
+						} finally {
+							stats.addWorkerStop();
+						}
+					}
+				};
+			}
+			
+			Thread thread = new Thread(worker);
+			int threadId = threadIdCreator.getAndIncrement();
+			thread.setName(name + "-" + threadId);
+			return thread;
+		}
+	}
+}
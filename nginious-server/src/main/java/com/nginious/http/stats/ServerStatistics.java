@@ -0,0 +1,567 @@
+/**
+ * Copyright 2012 NetDigital Sweden AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.nginious.http.stats;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Maintains server internal counters from server start until current time. Unlike {@link HttpRequestStatistics}
+ * the counters are not segmented by time. Below is the list of counters.
+ * 
+ * <ul>
+ * <li>numRequests - number of HTTP requests parsed.</li>
+ * <li>numInlineRequests - number of HTTP requests executed on the thread that parsed the request.</li>
+ * <li>numSelectorWakeups - number of times a reactor selector was woken up to handle scheduled operations.</li>
+ * <li>numBufferAcquires - number of buffers acquired from the buffer pool.</li>
+ * <li>numBufferHits - number of buffer acquires served by already pooled buffers.</li>
+ * <li>numBuffersInUse - number of buffers currently acquired from the buffer pool.</li>
+ * <li>numBuffersPooled - number of buffers currently held by the buffer pool.</li>
+ * <li>numHeaderReadTimeouts - number of connections closed when timing out waiting for request line and headers.</li>
+ * <li>numBodyReadTimeouts - number of connections closed when timing out waiting for request body data.</li>
+ * <li>numKeepAliveTimeouts - number of connections closed when timing out idle waiting for a new request on a kept alive connection.</li>
+ * <li>numWriteTimeouts - number of connections closed when timing out waiting for the client to accept response data.</li>
+ * <li>numWorkerThreads - number of currently started request worker threads.</li>
+ * <li>numActiveWorkerThreads - number of request worker threads currently executing a request.</li>
+ * <li>numQueuedTasks - number of requests currently queued waiting for a worker thread.</li>
+ * <li>numExecutedTasks - number of requests that have started executing in a worker thread.</li>
+ * <li>averageQueueWaitMillis - average time in milliseconds from a request being handed to the worker pool until execution starts.</li>
+ * <li>maxQueueWaitMillis - longest time in milliseconds from a request being handed to the worker pool until execution started.</li>
+ * <li>numStaticContentLookups - number of static content lookups in web application static content caches.</li>
+ * <li>numStaticContentHits - number of static content lookups served by already cached content.</li>
+ * <li>staticContentCacheBytes - number of bytes of static content currently held by static content caches.</li>
+ * <li>numCompressedResponses - number of dynamic responses compressed with gzip or deflate content encoding.</li>
+ * <li>compressBytesSaved - number of response body bytes saved by compressing dynamic responses.</li>
+ * <li>compressMillis - time in milliseconds spent compressing dynamic responses.</li>
+ * </ul>
+ * 
+ * @author Bojan Pisler, NetDigital Sweden AB
+ *
+ */
+public class ServerStatistics {
+	
+	private AtomicLong numRequestsCounter;
+	
+	private AtomicLong numInlineRequestsCounter;
+	
+	private AtomicLong numSelectorWakeupsCounter;
+	
+	private AtomicLong numBufferAcquiresCounter;
+	
+	private AtomicLong numBufferHitsCounter;
+	
+	private AtomicLong numBuffersInUseCounter;
+	
+	private AtomicLong numBuffersPooledCounter;
+	
+	private AtomicLong numHeaderReadTimeoutsCounter;
+	
+	private AtomicLong numBodyReadTimeoutsCounter;
+	
+	private AtomicLong numKeepAliveTimeoutsCounter;
+	
+	private AtomicLong numWriteTimeoutsCounter;
+	
+	private AtomicLong numWorkerThreadsCounter;
+	
+	private AtomicLong numActiveWorkerThreadsCounter;
+	
+	private AtomicLong numQueuedTasksCounter;
+	
+	private AtomicLong numExecutedTasksCounter;
+	
+	private AtomicLong totalQueueWaitNanosCounter;
+	
+	private AtomicLong maxQueueWaitNanosCounter;
+	
+	private AtomicLong numStaticContentLookupsCounter;
+	
+	private AtomicLong numStaticContentHitsCounter;
+	
+	private AtomicLong staticContentCacheBytesCounter;
+	
+	private AtomicLong numCompressedResponsesCounter;
+	
+	private AtomicLong compressBytesSavedCounter;
+	
+	private AtomicLong compressNanosCounter;
+	
+	/**
+	 * Constructs a new server statistics with all counters set to zero.
+	 */
+	public ServerStatistics() {
+		super();
+		this.numRequestsCounter = new AtomicLong(0L);
+		this.numInlineRequestsCounter = new AtomicLong(0L);
+		this.numSelectorWakeupsCounter = new AtomicLong(0L);
+		this.numBufferAcquiresCounter = new AtomicLong(0L);
+		this.numBufferHitsCounter = new AtomicLong(0L);
+		this.numBuffersInUseCounter = new AtomicLong(0L);
+		this.numBuffersPooledCounter = new AtomicLong(0L);
+		this.numHeaderReadTimeoutsCounter = new AtomicLong(0L);
+		this.numBodyReadTimeoutsCounter = new AtomicLong(0L);
+		this.numKeepAliveTimeoutsCounter = new AtomicLong(0L);
+		this.numWriteTimeoutsCounter = new AtomicLong(0L);
+		this.numWorkerThreadsCounter = new AtomicLong(0L);
+		this.numActiveWorkerThreadsCounter = new AtomicLong(0L);
+		this.numQueuedTasksCounter = new AtomicLong(0L);
+		this.numExecutedTasksCounter = new AtomicLong(0L);
+		this.totalQueueWaitNanosCounter = new AtomicLong(0L);
+		this.maxQueueWaitNanosCounter = new AtomicLong(0L);
+		this.numStaticContentLookupsCounter = new AtomicLong(0L);
+		this.numStaticContentHitsCounter = new AtomicLong(0L);
+		this.staticContentCacheBytesCounter = new AtomicLong(0L);
+		this.numCompressedResponsesCounter = new AtomicLong(0L);
+		this.compressBytesSavedCounter = new AtomicLong(0L);
+		this.compressNanosCounter = new AtomicLong(0L);
+	}
+	
+	/**
+	 * Increments the number of parsed HTTP requests.
+	 */
+	public void addRequest() {
+		numRequestsCounter.incrementAndGet();
+	}
+	
+	/**
+	 * Returns the number of parsed HTTP requests.
+	 * 
+	 * @return the number of requests
+	 */
+	public long getNumRequests() {
+		return numRequestsCounter.get();
+	}
+	
+	/**
+	 * Increments the number of HTTP requests executed on the thread that parsed the request.
+	 */
+	public void addInlineRequest() {
+		numInlineRequestsCounter.incrementAndGet();
+	}
+	
+	/**
+	 * Returns the number of HTTP requests executed on the thread that parsed the request.
+	 * 
+	 * @return the number of inline requests
+	 */
+	public long getNumInlineRequests() {
+		return numInlineRequestsCounter.get();
+	}
+	
+	/**
+	 * Increments the number of selector wakeups.
+	 */
+	public void addSelectorWakeup() {
+		numSelectorWakeupsCounter.incrementAndGet();
+	}
+	
+	/**
+	 * Returns the number of selector wakeups.
+	 * 
+	 * @return the number of selector wakeups
+	 */
+	public long getNumSelectorWakeups() {
+		return numSelectorWakeupsCounter.get();
+	}
+	
+	/**
+	 * Returns the average number of selector wakeups per parsed HTTP request.
+	 * 
+	 * @return the number of selector wakeups per request or 0 if no requests have been parsed
+	 */
+	public double getSelectorWakeupsPerRequest() {
+		long numRequests = getNumRequests();
+		
+		if(numRequests == 0L) {
+			return 0.0d;
+		}
+		
+		return (double)getNumSelectorWakeups() / numRequests;
+	}
+	
+	/**
+	 * Increments the number of buffers acquired from the buffer pool.
+	 * 
+	 * @param hit <code>true</code> if the buffer was already pooled, <code>false</code> if it was allocated
+	 */
+	public void addBufferAcquire(boolean hit) {
+		numBufferAcquiresCounter.incrementAndGet();
+		numBuffersInUseCounter.incrementAndGet();
+		
+		if(hit) {
+			numBufferHitsCounter.incrementAndGet();
+			numBuffersPooledCounter.decrementAndGet();
+		}
+	}
+	
+	/**
+	 * Decrements the number of buffers in use after a buffer has been released to the buffer pool.
+	 * 
+	 * @param retained <code>true</code> if the buffer was kept by the pool, <code>false</code> if it was dropped
+	 */
+	public void addBufferRelease(boolean retained) {
+		numBuffersInUseCounter.decrementAndGet();
+		
+		if(retained) {
+			numBuffersPooledCounter.incrementAndGet();
+		}
+	}
+	
+	/**
+	 * Increments the number of buffers held by the buffer pool with the specified number of newly allocated buffers.
+	 * 
+	 * @param numBuffers the number of allocated buffers
+	 */
+	public void addBuffersPooled(int numBuffers) {
+		numBuffersPooledCounter.addAndGet(numBuffers);
+	}
+	
+	/**
+	 * Returns the number of buffers acquired from the buffer pool.
+	 * 
+	 * @return the number of buffer acquires
+	 */
+	public long getNumBufferAcquires() {
+		return numBufferAcquiresCounter.get();
+	}
+	
+	/**
+	 * Returns the number of buffer acquires served by already pooled buffers.
+	 * 
+	 * @return the number of buffer hits
+	 */
+	public long getNumBufferHits() {
+		return numBufferHitsCounter.get();
+	}
+	
+	/**
+	 * Returns the ratio of buffer acquires served by already pooled buffers.
+	 * 
+	 * @return the buffer hit rate or 0 if no buffers have been acquired
+	 */
+	public double getBufferHitRate() {
+		long numAcquires = getNumBufferAcquires();
+		
+		if(numAcquires == 0L) {
+			return 0.0d;
+		}
+		
+		return (double)getNumBufferHits() / numAcquires;
+	}
+	
+	/**
+	 * Returns the number of buffers currently acquired from the buffer pool.
+	 * 
+	 * @return the number of buffers in use
+	 */
+	public long getNumBuffersInUse() {
+		return numBuffersInUseCounter.get();
+	}
+	
+	/**
+	 * Returns the number of buffers currently held by the buffer pool.
+	 * 
+	 * @return the number of pooled buffers
+	 */
+	public long getNumBuffersPooled() {
+		return numBuffersPooledCounter.get();
+	}
+	
+	/**
+	 * Increments the number of connections closed when timing out waiting for request line and headers.
+	 */
+	public void addHeaderReadTimeout() {
+		numHeaderReadTimeoutsCounter.incrementAndGet();
+	}
+	
+	/**
+	 * Returns the number of connections closed when timing out waiting for request line and headers.
+	 * 
+	 * @return the number of header read timeouts
+	 */
+	public long getNumHeaderReadTimeouts() {
+		return numHeaderReadTimeoutsCounter.get();
+	}
+	
+	/**
+	 * Increments the number of connections closed when timing out waiting for request body data.
+	 */
+	public void addBodyReadTimeout() {
+		numBodyReadTimeoutsCounter.incrementAndGet();
+	}
+	
+	/**
+	 * Returns the number of connections closed when timing out waiting for request body data.
+	 * 
+	 * @return the number of body read timeouts
+	 */
+	public long getNumBodyReadTimeouts() {
+		return numBodyReadTimeoutsCounter.get();
+	}
+	
+	/**
+	 * Increments the number of connections closed when timing out idle waiting for a new request on a kept alive connection.
+	 */
+	public void addKeepAliveTimeout() {
+		numKeepAliveTimeoutsCounter.incrementAndGet();
+	}
+	
+	/**
+	 * Returns the number of connections closed when timing out idle waiting for a new request on a kept alive connection.
+	 * 
+	 * @return the number of keep alive timeouts
+	 */
+	public long getNumKeepAliveTimeouts() {
+		return numKeepAliveTimeoutsCounter.get();
+	}
+	
+	/**
+	 * Increments the number of connections closed when timing out waiting for the client to accept response data.
+	 */
+	public void addWriteTimeout() {
+		numWriteTimeoutsCounter.incrementAndGet();
+	}
+	
+	/**
+	 * Returns the number of connections closed when timing out waiting for the client to accept response data.
+	 * 
+	 * @return the number of write timeouts
+	 */
+	public long getNumWriteTimeouts() {
+		return numWriteTimeoutsCounter.get();
+	}
+	
+	/**
+	 * Increments the number of started request worker threads.
+	 */
+	public void addWorkerStart() {
+		numWorkerThreadsCounter.incrementAndGet();
+	}
+	
+	/**
+	 * Decrements the number of started request worker threads after a worker thread has stopped.
+	 */
+	public void addWorkerStop() {
+		numWorkerThreadsCounter.decrementAndGet();
+	}
+	
+	/**
+	 * Returns the number of currently started request worker threads.
+	 * 
+	 * @return the number of worker threads
+	 */
+	public long getNumWorkerThreads() {
+		return numWorkerThreadsCounter.get();
+	}
+	
+	/**
+	 * Increments the number of requests queued waiting for a worker thread.
+	 */
+	public void addWorkerTaskQueued() {
+		numQueuedTasksCounter.incrementAndGet();
+	}
+	
+	/**
+	 * Decrements the number of requests queued waiting for a worker thread after a request has been
+	 * taken from the queue.
+	 */
+	public void addWorkerTaskDequeued() {
+		numQueuedTasksCounter.decrementAndGet();
+	}
+	
+	/**
+	 * Returns the number of requests currently queued waiting for a worker thread.
+	 * 
+	 * @return the number of queued requests
+	 */
+	public long getNumQueuedTasks() {
+		return numQueuedTasksCounter.get();
+	}
+	
+	/**
+	 * Increments the number of executing requests and records the specified time the request waited
+	 * before execution started.
+	 * 
+	 * @param queueWaitNanos the queue wait in nanoseconds
+	 */
+	public void addWorkerTaskStart(long queueWaitNanos) {
+		numActiveWorkerThreadsCounter.incrementAndGet();
+		numExecutedTasksCounter.incrementAndGet();
+		totalQueueWaitNanosCounter.addAndGet(queueWaitNanos);
+		long maxQueueWaitNanos = maxQueueWaitNanosCounter.get();
+		
+		while(queueWaitNanos > maxQueueWaitNanos && !maxQueueWaitNanosCounter.compareAndSet(maxQueueWaitNanos, queueWaitNanos)) {
+			maxQueueWaitNanos = maxQueueWaitNanosCounter.get();
+		}
+	}
+	
+	/**
+	 * Decrements the number of executing requests after a request has been executed.
+	 */
+	public void addWorkerTaskEnd() {
+		numActiveWorkerThreadsCounter.decrementAndGet();
+	}
+	
+	/**
+	 * Returns the number of request worker threads currently executing a request.
+	 * 
+	 * @return the number of active worker threads
+	 */
+	public long getNumActiveWorkerThreads() {
+		return numActiveWorkerThreadsCounter.get();
+	}
+	
+	/**
+	 * Returns the number of requests that have started executing in a worker thread.
+	 * 
+	 * @return the number of executed requests
+	 */
+	public long getNumExecutedTasks() {
+		return numExecutedTasksCounter.get();
+	}
+	
+	/**
+	 * Returns the average time in milliseconds from a request being handed to the worker pool until
+	 * execution started.
+	 * 
+	 * @return the average queue wait or 0 if no requests have been executed
+	 */
+	public double getAverageQueueWaitMillis() {
+		long numExecutedTasks = getNumExecutedTasks();
+		
+		if(numExecutedTasks == 0L) {
+			return 0.0d;
+		}
+		
+		return (double)totalQueueWaitNanosCounter.get() / numExecutedTasks / 1000000.0d;
+	}
+	
+	/**
+	 * Returns the longest time in milliseconds from a request being handed to the worker pool until
+	 * execution started.
+	 * 
+	 * @return the longest queue wait
+	 */
+	public long getMaxQueueWaitMillis() {
+		return maxQueueWaitNanosCounter.get() / 1000000L;
+	}
+	
+	/**
+	 * Increments the number of static content lookups in a static content cache.
+	 * 
+	 * @param hit <code>true</code> if the content was already cached, <code>false</code> otherwise
+	 */
+	public void addStaticContentLookup(boolean hit) {
+		numStaticContentLookupsCounter.incrementAndGet();
+		
+		if(hit) {
+			numStaticContentHitsCounter.incrementAndGet();
+		}
+	}
+	
+	/**
+	 * Adds the specified number of bytes to the number of bytes held by static content caches. A negative
+	 * number of bytes is added when cached content is evicted.
+	 * 
+	 * @param numBytes the number of bytes to add
+	 */
+	public void addStaticContentCacheBytes(long numBytes) {
+		staticContentCacheBytesCounter.addAndGet(numBytes);
+	}
+	
+	/**
+	 * Returns the number of static content lookups in static content caches.
+	 * 
+	 * @return the number of lookups
+	 */
+	public long getNumStaticContentLookups() {
+		return numStaticContentLookupsCounter.get();
+	}
+	
+	/**
+	 * Returns the number of static content lookups served by already cached content.
+	 * 
+	 * @return the number of hits
+	 */
+	public long getNumStaticContentHits() {
+		return numStaticContentHitsCounter.get();
+	}
+	
+	/**
+	 * Returns the ratio of static content lookups served by already cached content.
+	 * 
+	 * @return the static content hit rate or 0 if no lookups have been made
+	 */
+	public double getStaticContentHitRate() {
+		long numLookups = getNumStaticContentLookups();
+		
+		if(numLookups == 0L) {
+			return 0.0d;
+		}
+		
+		return (double)getNumStaticContentHits() / numLookups;
+	}
+	
+	/**
+	 * Returns the number of bytes of static content currently held by static content caches.
+	 * 
+	 * @return the number of cached bytes
+	 */
+	public long getStaticContentCacheBytes() {
+		return staticContentCacheBytesCounter.get();
+	}
+	
+	/**
+	 * Increments the number of compressed dynamic responses and adds the specified number of saved bytes
+	 * and time spent compressing.
+	 * 
+	 * @param bytesIn number of uncompressed response body bytes
+	 * @param bytesOut number of compressed response body bytes
+	 * @param compressNanos time in nanoseconds spent compressing
+	 */
+	public void addCompressedResponse(long bytesIn, long bytesOut, long compressNanos) {
+		numCompressedResponsesCounter.incrementAndGet();
+		compressBytesSavedCounter.addAndGet(bytesIn - bytesOut);
+		compressNanosCounter.addAndGet(compressNanos);
+	}
+	
+	/**
+	 * Returns the number of dynamic responses compressed with gzip or deflate content encoding.
+	 * 
+	 * @return the number of compressed responses
+	 */
+	public long getNumCompressedResponses() {
+		return numCompressedResponsesCounter.get();
+	}
+	
+	/**
+	 * Returns the number of response body bytes saved by compressing dynamic responses.
+	 * 
+	 * @return the number of saved bytes
+	 */
+	public long getCompressBytesSaved() {
+		return compressBytesSavedCounter.get();
+	}
+	
+	/**
+	 * Returns the time in milliseconds spent compressing dynamic responses.
+	 * 
+	 * @return the compression time in milliseconds
+	 */
+	public long getCompressMillis() {
+		return compressNanosCounter.get() / 1000000L;
+	}
+}
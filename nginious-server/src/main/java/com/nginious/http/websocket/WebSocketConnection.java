@@ -50,10 +50,9 @@ class WebSocketConnection extends Connection {
 	private WebSocketMessageQueue queue;
 	
 	/**
-	 * Constructs a new web socket connection.
+	 * Constructs a new web socket connection. The read buffer is acquired once the server is set.
 	 */
 	WebSocketConnection() {
-		this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
 		this.parser = new WebSocketParser();		
 	}
 	
@@ -70,18 +69,23 @@ class WebSocketConnection extends Connection {
 	WebSocketConnection(Server server, SocketChannel channel, SelectionKey key, WebSocketSessionImpl session) throws IOException {
 		super(server, channel, key);
 		this.server = server;
-		this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+		this.buffer = server.getBufferPool().acquire(BUFFER_SIZE);
 		this.parser = new WebSocketParser();
 		this.session = session;
-		this.queue = WebSocketMessageQueue.getInstance();
 	}
 	
 	/**
-	 * Sets server to the specified server for this web socket connection.
+	 * Sets server to the specified server for this web socket connection. A read buffer is acquired
+	 * from the servers buffer pool unless already acquired.
 	 */
 	protected void setServer(Server server) {
 		this.server = server;
+		this.queue = WebSocketMessageQueue.getInstance(server);
 		super.setServer(this.server);
+		
+		if(this.buffer == null) {
+			this.buffer = server.getBufferPool().acquire(BUFFER_SIZE);
+		}
 	}
 	
 	/**
@@ -102,7 +106,6 @@ class WebSocketConnection extends Connection {
 	 */
 	void setSession(WebSocketSessionImpl session) {
 		this.session = session;
-		this.queue = WebSocketMessageQueue.getInstance();
 	}
 	
 	/**
@@ -142,18 +145,21 @@ class WebSocketConnection extends Connection {
 	}
 	
 	/**
-	 * Returns whether or not this web socket connection has timed out.
-	 * 
-	 * @return <code>false</code>
+	 * Performs necessary cleanup when a connection had timed out. Web socket connections are only
+	 * timed out when the client stops accepting written data.
 	 */
-	protected boolean isTimedOut() {
-		return false;
+	protected void timedOut() {
+		return;
 	}
 	
 	/**
-	 * Performs necessary cleanup when a connection had timed out.
+	 * Releases the read buffer for this web socket connection to the servers buffer pool.
 	 */
-	protected void timedOut() {
-		return;
+	protected void release() {
+		if(this.server != null) {
+			server.getBufferPool().release(this.buffer);
+		}
+		
+		this.buffer = null;
 	}
 }
@@ -17,22 +17,26 @@
 package com.nginious.http.websocket;
 
 import java.io.IOException;
-import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.RejectedExecutionHandler;
 import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
+
+import com.nginious.http.server.Server;
+import com.nginious.http.server.TaskExecutor;
 
 /**
  * The web socket message queue is a singleton which handles queueing and execution of web socket messages once 
- * they have been parsed. The queue can contain a maximum of 5000 messages. Any exceeding messages connections are 
- * closed with a status code of internal server error.
+ * they have been parsed. Messages are executed by a task executor using the executor strategy of the server
+ * for the first web socket connection. Connections for messages that are rejected by the executor are closed
+ * with a status code of internal server error.
  * 
  * <p>
- * A minimum of 5 threads and a maximum of 500 threads are used for handling the queued contexts. The thread
- * pool is increased / decreased as needed depending on the queue size.
+ * With the default platform strategy messages are executed by a worker pool with the servers configured number
+ * of threads and queue size. With the virtual and bounded strategies each message is executed in its own virtual
+ * thread.
  * </p>
  * 
  * @author Bojan Pisler, NetDigital Sweden AB
+ * @see TaskExecutor
  *
  */
 class WebSocketMessageQueue implements RejectedExecutionHandler {
@@ -41,26 +45,30 @@ class WebSocketMessageQueue implements RejectedExecutionHandler {
 	
 	private static Object lock = new Object();
 	
-	private ThreadPoolExecutor executor;
+	private TaskExecutor executor;
 	
 	/**
-	 * Constructs a new web socket message queue.
+	 * Constructs a new web socket message queue using the executor strategy of the specified server.
+	 * 
+	 * @param server the server
 	 */
-	private WebSocketMessageQueue() {
+	private WebSocketMessageQueue(Server server) {
 		super();
-		this.executor = new ThreadPoolExecutor(5, 500, 10, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(5000));
+		this.executor = server.createTaskExecutor("websocket", this);
 	}
 	
 	/**
-	 * Returns the web socket message queue instance.
+	 * Returns the web socket message queue instance. The instance is created using the executor strategy
+	 * of the specified server if not already created.
 	 * 
+	 * @param server the server
 	 * @return the web socket message queue instance
 	 */
-	static WebSocketMessageQueue getInstance() {
+	static WebSocketMessageQueue getInstance(Server server) {
 		if(queue == null) {
 			synchronized(lock) {
 				if(queue == null) {
-					queue = new WebSocketMessageQueue();
+					queue = new WebSocketMessageQueue(server);
 				}
 			}
 		}
@@ -83,7 +91,7 @@ class WebSocketMessageQueue implements RejectedExecutionHandler {
 	 * that was rejected.
 	 * 
 	 * @param runnable the processor for handling the message
-	 * @param executor the queue
+	 * @param executor the queue or <code>null</code> for the bounded executor strategy
 	 */
 	public void rejectedExecution(Runnable runnable, ThreadPoolExecutor executor) {
 		Processor processor = (Processor)runnable;
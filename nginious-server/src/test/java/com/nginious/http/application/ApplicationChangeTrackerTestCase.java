@@ -0,0 +1,115 @@
+/**
+ * Copyright 2012 NetDigital Sweden AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.nginious.http.application;
+
+import java.io.File;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import com.nginious.http.TestUtils;
+import com.nginious.http.common.FileUtils;
+
+public class ApplicationChangeTrackerTestCase extends TestCase {
+	
+	private File webAppDir;
+	
+	private ApplicationChangeTracker tracker;
+	
+	public ApplicationChangeTrackerTestCase() {
+		super();
+	}
+	
+	public ApplicationChangeTrackerTestCase(String name) {
+		super(name);
+	}
+	
+	protected void setUp() throws Exception {
+		super.setUp();
+		this.webAppDir = new File("build/test-change-tracker");
+		
+		if(webAppDir.exists()) {
+			FileUtils.deleteDir(this.webAppDir);
+		}
+		
+		new File(this.webAppDir, "WEB-INF/classes/com").mkdirs();
+		new File(this.webAppDir, "WEB-INF/lib").mkdirs();
+		this.tracker = new ApplicationChangeTracker("test", this.webAppDir);
+		tracker.start();
+	}
+	
+	protected void tearDown() throws Exception {
+		tracker.stop();
+		FileUtils.deleteDir(this.webAppDir);
+	}
+	
+	public void testVersion() throws Exception {
+		long version = tracker.getVersion();
+		Thread.sleep(100L);
+		assertEquals(version, tracker.getVersion());
+		
+		FileUtils.copyFile("build/classes/testload1/classes/com/nginious/http/loader/TestBean1.class", 
+				new File(this.webAppDir, "WEB-INF/classes/com/TestBean1.class").getPath());
+		version = waitForChange(version);
+		
+		File dir = new File(this.webAppDir, "WEB-INF/classes/com/nginious");
+		assertTrue(dir.mkdir());
+		version = waitForChange(version);
+		
+		// Directories created after start are tracked
+		FileUtils.copyFile("build/classes/testload1/classes/com/nginious/http/loader/TestBean1.class", 
+				new File(dir, "TestBean1.class").getPath());
+		version = waitForChange(version);
+		
+		assertTrue(new File(dir, "TestBean1.class").delete());
+		version = waitForChange(version);
+		
+		FileUtils.copyFile(TestUtils.findFile("build/libs", "testload1").getPath(), 
+				new File(this.webAppDir, "WEB-INF/lib/test.jar").getPath());
+		waitForChange(version);
+	}
+	
+	public void testStop() throws Exception {
+		tracker.stop();
+		long version = tracker.getVersion();
+		FileUtils.copyFile("build/classes/testload1/classes/com/nginious/http/loader/TestBean1.class", 
+				new File(this.webAppDir, "WEB-INF/classes/com/TestBean1.class").getPath());
+		Thread.sleep(200L);
+		assertEquals(version, tracker.getVersion());
+	}
+	
+	private long waitForChange(long version) throws InterruptedException {
+		long timeout = System.currentTimeMillis() + 10000L;
+		
+		while(tracker.getVersion() == version && System.currentTimeMillis() < timeout) {
+			Thread.sleep(10L);
+		}
+		
+		assertTrue(tracker.getVersion() != version);
+		Thread.sleep(100L);
+		return tracker.getVersion();
+	}
+	
+	public static Test suite() {
+		return new TestSuite(ApplicationChangeTrackerTestCase.class);
+	}
+	
+	public static void main(String[] argv) {
+		junit.textui.TestRunner.run(suite());
+	}
+}
@@ -34,6 +34,10 @@ import com.nginious.http.common.FileUtils;
 
 public class ApplicationClassLoaderTestCase extends TestCase {
 	
+	private SharedLibraryRegistry registry;
+	
+	private ArrayList<ApplicationClassLoader> loaders;
+	
     public ApplicationClassLoaderTestCase() {
 		super();
 	}
@@ -44,6 +48,8 @@ public class ApplicationClassLoaderTestCase extends TestCase {
 
 	protected void setUp() throws Exception {
 		super.setUp();
+		this.registry = new SharedLibraryRegistry();
+		this.loaders = new ArrayList<ApplicationClassLoader>();
 		File dir = new File("build/test-webapps/classload/WEB-INF/lib");
 		dir.mkdirs();
 		dir = new File("build/test-webapps/classload/WEB-INF/classes");
@@ -52,6 +58,13 @@ public class ApplicationClassLoaderTestCase extends TestCase {
 
 	protected void tearDown() throws Exception {
 		super.tearDown();
+		
+		for(ApplicationClassLoader loader : this.loaders) {
+			loader.release();
+		}
+		
+		assertEquals(0, registry.size());
+		
 		FileUtils.deleteDir("build/test-webapps");
 	}	
 
@@ -59,7 +72,7 @@ public class ApplicationClassLoaderTestCase extends TestCase {
 		File webappDir = new File("build/test-webapps/classload");
 		ClassLoader contextLoader = Thread.currentThread().getContextClassLoader();
 		
-		ApplicationClassLoader loader = new ApplicationClassLoader(contextLoader, webappDir);
+		ApplicationClassLoader loader = createLoader(contextLoader, webappDir);
 		
 		try {
 			loader.loadClass("com.nginious.http.loader.ClassLoadTest1");
@@ -99,7 +112,7 @@ public class ApplicationClassLoaderTestCase extends TestCase {
 		File webappDir = new File("build/test-webapps/classload");
 		ClassLoader contextLoader = Thread.currentThread().getContextClassLoader();
 		
-		ApplicationClassLoader loader = new ApplicationClassLoader(contextLoader, webappDir);
+		ApplicationClassLoader loader = createLoader(contextLoader, webappDir);
 		
 		try {
 			loader.loadClass("com.nginious.http.loader.ClassLoadTest1");
@@ -151,7 +164,7 @@ public class ApplicationClassLoaderTestCase extends TestCase {
 		File propsFile = new File("build/test-webapps/classload/WEB-INF/classes/test.properties");
 		propsFile.delete();
 		
-		ApplicationClassLoader loader = new ApplicationClassLoader(contextLoader, webappDir);
+		ApplicationClassLoader loader = createLoader(contextLoader, webappDir);
 		
 		Class<?> clazz = loader.loadClass("com.nginious.http.loader.ClassLoadTest3");
 		Object obj = clazz.newInstance();
@@ -162,7 +175,7 @@ public class ApplicationClassLoaderTestCase extends TestCase {
 		File webappDir = new File("build/test-webapps/classload");
 		ClassLoader contextLoader = Thread.currentThread().getContextClassLoader();
 		
-		ApplicationClassLoader loader = new ApplicationClassLoader(contextLoader, webappDir);
+		ApplicationClassLoader loader = createLoader(contextLoader, webappDir);
 		
 		URL resourceUrl = loader.getResource("test.properties");
 		assertNull(resourceUrl);
@@ -217,7 +230,7 @@ public class ApplicationClassLoaderTestCase extends TestCase {
 		File webappDir = new File("build/test-webapps/classload");
 		ClassLoader contextLoader = Thread.currentThread().getContextClassLoader();
 		
-		ApplicationClassLoader loader = new ApplicationClassLoader(contextLoader, webappDir);
+		ApplicationClassLoader loader = createLoader(contextLoader, webappDir);
 		
 		URL resourceUrl = loader.getResource("test.properties");
 		assertNull(resourceUrl);		
@@ -277,7 +290,7 @@ public class ApplicationClassLoaderTestCase extends TestCase {
 			File webappDir = new File("build/test-webapps/classload");
 			ClassLoader contextLoader = Thread.currentThread().getContextClassLoader();
 			
-			ApplicationClassLoader loader = new ApplicationClassLoader(contextLoader, webappDir);
+			ApplicationClassLoader loader = createLoader(contextLoader, webappDir);
 			
 			for (int j = 0; j < 50; j++) {
 				String clazzName = j % 2 == 0 ? "com.nginious.http.loader.ClassReferenceTest1" : "com.nginious.http.loader.ClassReferenceTest2";
@@ -301,6 +314,12 @@ public class ApplicationClassLoaderTestCase extends TestCase {
 		}
 	}
 
+	private ApplicationClassLoader createLoader(ClassLoader parent, File webappDir) {
+		ApplicationClassLoader loader = new ApplicationClassLoader(parent, webappDir, this.registry);
+		loaders.add(loader);
+		return loader;
+	}
+	
 	public static Test suite() {
 		return new TestSuite(ApplicationClassLoaderTestCase.class);
 	}
@@ -0,0 +1,138 @@
+/**
+ * Copyright 2012 NetDigital Sweden AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.nginious.http.application;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.HashSet;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import com.nginious.http.TestUtils;
+import com.nginious.http.common.FileUtils;
+import com.nginious.http.server.HttpServer;
+import com.nginious.http.server.HttpServerConfiguration;
+import com.nginious.http.server.HttpServerFactory;
+
+public class ApplicationStartupTestCase extends TestCase {
+	
+	private HttpServer server;
+	
+	private File tmpDir;
+	
+	public ApplicationStartupTestCase() {
+		super();
+	}
+	
+	public ApplicationStartupTestCase(String name) {
+		super(name);
+	}
+	
+	protected void setUp() throws Exception {
+		super.setUp();
+		this.tmpDir = new File(System.getProperty("java.io.tmpdir"), "webapps");
+		tmpDir.mkdir();
+		
+		File srcFile = TestUtils.findFile("build/libs", "testload1.war");
+		FileUtils.copyFile(srcFile.getAbsolutePath(), new File(tmpDir, "one.war").getAbsolutePath());
+		srcFile = TestUtils.findFile("build/libs", "testload2.war");
+		FileUtils.copyFile(srcFile.getAbsolutePath(), new File(tmpDir, "two.war").getAbsolutePath());
+		srcFile = TestUtils.findFile("build/libs", "testweb.war");
+		FileUtils.copyFile(srcFile.getAbsolutePath(), new File(tmpDir, "three.war").getAbsolutePath());
+		
+		File destDir = new File(this.tmpDir, "four");
+		FileUtils.copyDir("build/resources/testweb", destDir.getAbsolutePath());
+		destDir = new File(this.tmpDir, "four/WEB-INF/classes");
+		FileUtils.copyDir("build/classes/testweb/classes", destDir.getAbsolutePath());
+		
+		FileOutputStream out = new FileOutputStream(new File(tmpDir, "four/static/large.txt"));
+		
+		for(int i = 0; i < 256; i++) {
+			out.write("Static test content\n".getBytes());
+		}
+		
+		out.close();
+		
+		out = new FileOutputStream(new File(tmpDir, "broken.war"));
+		out.write("not a war archive".getBytes());
+		out.close();
+	}
+	
+	protected void tearDown() throws Exception {
+		super.tearDown();
+		
+		if(this.server != null) {
+			server.stop();
+		}
+		
+		FileUtils.deleteDir(this.tmpDir);
+		File bakDir = new File(System.getProperty("java.io.tmpdir"), "backup");
+		
+		if(bakDir.exists()) {
+			FileUtils.deleteDir(bakDir);
+		}
+	}
+	
+	public void testParallelStartup() throws Exception {
+		HttpServerConfiguration config = new HttpServerConfiguration();
+		config.setWebappsDir(tmpDir.getAbsolutePath());
+		config.setServerLogPath("build/test-server.log");
+		config.setAccessLogPath("build/test-access.log");
+		config.setPort(9000);
+		HttpServerFactory factory = HttpServerFactory.getInstance();
+		this.server = factory.create(config);
+		server.start();
+		
+		ApplicationManager manager = server.getApplicationManager();
+		assertNull(manager.getApplication("broken"));
+		
+		for(String name : new String[] { "one", "two", "three", "four" }) {
+			ApplicationImpl application = (ApplicationImpl)manager.getApplication(name);
+			assertNotNull(application);
+			assertNotNull(application.getStaticContentCache());
+			
+			HashSet<String> phases = new HashSet<String>();
+			
+			for(ApplicationStartupPhase phase : application.getStartupPhases()) {
+				assertTrue(phase.getDuration() >= 0L);
+				phases.add(phase.getName());
+			}
+			
+			assertEquals("deploy", application.getStartupPhases().get(0).getName());
+			assertTrue(phases.contains("load"));
+			assertTrue(phases.contains("publish"));
+			assertTrue(phases.contains("static"));
+			assertTrue(phases.contains("total"));
+		}
+		
+		ApplicationImpl application = (ApplicationImpl)manager.getApplication("four");
+		assertTrue(new File(application.getBaseDir(), "static/test.txt").isFile());
+		assertFalse(new File(application.getBaseDir(), "static/test.txt.gz").exists());
+		assertTrue(new File(application.getBaseDir(), "static/large.txt").isFile());
+		assertTrue(new File(application.getBaseDir(), "static/large.txt.gz").isFile());
+	}
+	
+	public static Test suite() {
+		return new TestSuite(ApplicationStartupTestCase.class);
+	}
+	
+	public static void main(String[] argv) {
+		junit.textui.TestRunner.run(suite());
+	}
+}
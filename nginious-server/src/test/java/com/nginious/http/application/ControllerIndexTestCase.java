@@ -0,0 +1,137 @@
+/**
+ * Copyright 2012 NetDigital Sweden AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.nginious.http.application;
+
+import java.io.File;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import com.nginious.http.common.FileUtils;
+
+public class ControllerIndexTestCase extends TestCase {
+	
+	private File classesDir;
+	
+	public ControllerIndexTestCase() {
+		super();
+	}
+	
+	public ControllerIndexTestCase(String name) {
+		super(name);
+	}
+	
+	protected void setUp() throws Exception {
+		super.setUp();
+		this.classesDir = new File("build/test-controller-index/classes");
+		
+		if(classesDir.exists()) {
+			FileUtils.deleteDir(this.classesDir);
+		}
+		
+		classesDir.mkdirs();
+	}
+	
+	protected void tearDown() throws Exception {
+		FileUtils.deleteDir(this.classesDir.getParentFile());
+	}
+	
+	public void testIndex() throws Exception {
+		FileUtils.copyDir("build/classes/testweb/classes", classesDir.getPath());
+		ControllerIndex index = new ControllerIndex(this.classesDir);
+		assertNull(index.lookup("/uncompressed"));
+		assertTrue(index.refresh());
+		assertTrue(index.size() > 0);
+		
+		ControllerIndex.Entry entry = index.lookup("/uncompressed");
+		assertNotNull(entry);
+		assertEquals("com.nginious.http.service.TestUncompressedController", entry.getClassName());
+		assertEquals("/uncompressed", entry.getPath());
+		assertEquals(new File(classesDir, "com/nginious/http/service/TestUncompressedController.class"), entry.getClassFile());
+		
+		entry = index.lookup("/users/alice/orders/42");
+		assertNotNull(entry);
+		assertEquals("com.nginious.http.service.TestPathParametersController", entry.getClassName());
+		assertEquals("/users/{user}/orders/{order}", entry.getPath());
+		
+		entry = index.lookup("/lambda");
+		assertNotNull(entry);
+		assertEquals("com.nginious.http.service.TestLambdaController", entry.getClassName());
+		
+		assertNull(index.lookup("/missing"));
+		assertFalse(index.refresh());
+	}
+	
+	public void testRefresh() throws Exception {
+		File loaderDir = new File(this.classesDir, "com/nginious/http/loader");
+		loaderDir.mkdirs();
+		File reloadFile = new File(loaderDir, "ReloadTestController.class");
+		File reload2File = new File(loaderDir, "ReloadTestController2.class");
+		FileUtils.copyFile("build/classes/testload1/classes/com/nginious/http/loader/ReloadTestController.class", reloadFile.getPath());
+		FileUtils.copyFile("build/classes/testload1/classes/com/nginious/http/loader/ClassLoadTest1.class", 
+				new File(loaderDir, "ClassLoadTest1.class").getPath());
+		
+		ControllerIndex index = new ControllerIndex(this.classesDir);
+		assertTrue(index.refresh());
+		assertEquals(1, index.size());
+		assertEquals("com.nginious.http.loader.ReloadTestController", index.lookup("/reload").getClassName());
+		assertNull(index.lookup("/reload2"));
+		
+		FileUtils.copyFile("build/classes/testload1/classes/com/nginious/http/loader/ReloadTestController2.class", reload2File.getPath());
+		assertTrue(index.refresh());
+		assertEquals(2, index.size());
+		assertEquals("com.nginious.http.loader.ReloadTestController2", index.lookup("/reload2").getClassName());
+		
+		assertTrue(reloadFile.delete());
+		assertTrue(index.refresh());
+		assertEquals(1, index.size());
+		assertNull(index.lookup("/reload"));
+		
+		FileUtils.deleteDir(new File(this.classesDir, "com"));
+		assertFalse(loaderDir.exists());
+		assertTrue(index.refresh());
+		assertEquals(0, index.size());
+		assertNull(index.lookup("/reload2"));
+	}
+	
+	public void testUpdate() throws Exception {
+		File classFile = new File(this.classesDir, "ReloadTestController.class");
+		FileUtils.copyFile("build/classes/testload1/classes/com/nginious/http/loader/ReloadTestController.class", classFile.getPath());
+		
+		ControllerIndex index = new ControllerIndex(this.classesDir);
+		index.refresh();
+		assertNotNull(index.lookup("/reload"));
+		
+		FileUtils.copyFile("build/classes/testload1/classes/com/nginious/http/loader/ReloadTestController2.class", classFile.getPath());
+		index.update(classFile);
+		assertNull(index.lookup("/reload"));
+		assertNotNull(index.lookup("/reload2"));
+		
+		assertTrue(classFile.delete());
+		index.update(classFile);
+		assertEquals(0, index.size());
+	}
+	
+	public static Test suite() {
+		return new TestSuite(ControllerIndexTestCase.class);
+	}
+	
+	public static void main(String[] argv) {
+		junit.textui.TestRunner.run(suite());
+	}
+}
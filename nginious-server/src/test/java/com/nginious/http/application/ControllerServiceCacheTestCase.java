@@ -0,0 +1,169 @@
+/**
+ * Copyright 2012 NetDigital Sweden AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.nginious.http.application;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import com.nginious.http.TestUtils;
+import com.nginious.http.common.FileUtils;
+
+public class ControllerServiceCacheTestCase extends TestCase {
+	
+	private File webappDir1;
+	
+	private File webappDir2;
+	
+	private File cacheDir;
+	
+	private SharedLibraryRegistry registry;
+	
+	private ArrayList<ApplicationClassLoader> loaders;
+	
+	public ControllerServiceCacheTestCase() {
+		super();
+	}
+	
+	public ControllerServiceCacheTestCase(String name) {
+		super(name);
+	}
+	
+	protected void setUp() throws Exception {
+		super.setUp();
+		this.registry = new SharedLibraryRegistry();
+		this.loaders = new ArrayList<ApplicationClassLoader>();
+		this.webappDir1 = new File("build/test-webapps/services1");
+		this.webappDir2 = new File("build/test-webapps/services2");
+		this.cacheDir = new File("build/test-webapps/services");
+		new File(webappDir1, "WEB-INF/lib").mkdirs();
+		new File(webappDir2, "WEB-INF/lib").mkdirs();
+	}
+	
+	protected void tearDown() throws Exception {
+		super.tearDown();
+		
+		for(ApplicationClassLoader loader : this.loaders) {
+			loader.release();
+		}
+		
+		assertEquals(0, registry.size());
+		
+		File dir = new File("build/test-webapps");
+		
+		if(dir.exists()) {
+			FileUtils.deleteDir(dir.getPath());
+		}
+	}
+	
+	public void testKey() throws Exception {
+		File srcFile1 = TestUtils.findFile("build/libs", "testload1.jar");
+		File srcFile2 = TestUtils.findFile("build/libs", "testload2.jar");
+		FileUtils.copyFile(srcFile1.getAbsolutePath(), new File(webappDir1, "WEB-INF/lib/loader.jar").getAbsolutePath());
+		FileUtils.copyFile(srcFile2.getAbsolutePath(), new File(webappDir2, "WEB-INF/lib/loader.jar").getAbsolutePath());
+		ClassLoader contextLoader = Thread.currentThread().getContextClassLoader();
+		
+		ApplicationClassLoader loader1 = createLoader(contextLoader, webappDir1);
+		ApplicationClassLoader loader2 = createLoader(contextLoader, webappDir2);
+		Class<?> clazz1 = loader1.loadClass("com.nginious.http.loader.ReloadTestController");
+		Class<?> clazz2 = loader2.loadClass("com.nginious.http.loader.ReloadTestController");
+		
+		String key1 = ControllerServiceCache.createKey(clazz1);
+		assertEquals(key1, ControllerServiceCache.createKey(clazz1));
+		assertFalse(key1.equals(ControllerServiceCache.createKey(clazz2)));
+		assertFalse(key1.equals(ControllerServiceCache.createKey(loader1.loadClass("com.nginious.http.loader.ReloadTestController2"))));
+		
+		loader1.release();
+		loader2.release();
+	}
+	
+	public void testPrecompile() throws Exception {
+		ClassLoader contextLoader = Thread.currentThread().getContextClassLoader();
+		ControllerServiceFactory factory = new ControllerServiceFactory(new ApplicationClassLoader(contextLoader));
+		assertTrue(factory.precompileControllerService(TestController.class, cacheDir));
+		assertFalse(factory.precompileControllerService(TestController.class, cacheDir));
+		
+		String key = ControllerServiceCache.createKey(TestController.class);
+		assertTrue(new File(cacheDir, key + ".svc").isFile());
+		
+		ControllerServiceCache cache = new ControllerServiceCache(cacheDir, new File(webappDir1, ControllerServiceCache.SERVICES_DIR));
+		assertTrue(cache.contains(key));
+		ControllerServiceCache.Entry entry = cache.get(key);
+		assertNotNull(entry);
+		assertTrue(entry.getClassNames().contains(TestControllerBean.class.getName()));
+		
+		ControllerService service = factory.createControllerService(new TestController());
+		assertEquals(service.getHttpMethods(), entry.getHttpMethods());
+		
+		// Cached entries are used in place of generating controller services
+		cache.put(key, new ControllerServiceCache.Entry(entry.getClassName(), entry.getClassBytes(), "CACHED", entry.getClassNames()));
+		factory = new ControllerServiceFactory(new ApplicationClassLoader(contextLoader));
+		factory.setCache(cache);
+		service = factory.createControllerService(new TestController());
+		assertEquals("CACHED", service.getHttpMethods());
+		
+		// Corrupt entries are ignored
+		FileUtils.copyFile(TestUtils.findFile("build/libs", "testload1.jar").getAbsolutePath(), new File(cacheDir, key + ".svc").getAbsolutePath());
+		assertNull(cache.get(key));
+		factory = new ControllerServiceFactory(new ApplicationClassLoader(contextLoader));
+		factory.setCache(cache);
+		service = factory.createControllerService(new TestController());
+		assertEquals(entry.getHttpMethods(), service.getHttpMethods());
+	}
+	
+	public void testInsecureDir() throws Exception {
+		ControllerServiceFactory factory = new ControllerServiceFactory(new ApplicationClassLoader(Thread.currentThread().getContextClassLoader()));
+		assertTrue(factory.precompileControllerService(TestController.class, cacheDir));
+		assertTrue(ControllerServiceCache.isSecure(cacheDir));
+		
+		String key = ControllerServiceCache.createKey(TestController.class);
+		ControllerServiceCache cache = new ControllerServiceCache(cacheDir);
+		assertNotNull(cache.get(key));
+		
+		// Entries in directories writable by others are never read
+		Files.setPosixFilePermissions(cacheDir.toPath(), PosixFilePermissions.fromString("rwxrwxrwx"));
+		assertFalse(ControllerServiceCache.isSecure(cacheDir));
+		assertNull(cache.get(key));
+		
+		Files.setPosixFilePermissions(cacheDir.toPath(), PosixFilePermissions.fromString("rwx------"));
+		assertNotNull(cache.get(key));
+		
+		// Entries writable by others are never read
+		File file = new File(cacheDir, key + ".svc");
+		Files.setPosixFilePermissions(file.toPath(), PosixFilePermissions.fromString("rw-rw-rw-"));
+		assertNull(cache.get(key));
+	}
+	
+	private ApplicationClassLoader createLoader(ClassLoader parent, File webappDir) {
+		ApplicationClassLoader loader = new ApplicationClassLoader(parent, webappDir, this.registry);
+		loaders.add(loader);
+		return loader;
+	}
+	
+	public static Test suite() {
+		return new TestSuite(ControllerServiceCacheTestCase.class);
+	}
+	
+	public static void main(String[] argv) {
+		junit.textui.TestRunner.run(suite());
+	}
+}
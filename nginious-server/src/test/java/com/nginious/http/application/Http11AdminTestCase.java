@@ -258,6 +258,8 @@ public class Http11AdminTestCase extends XMLTestCase {
 		assertXpathExists("/application-info/versions/application-version", xml);
 		assertXpathEvaluatesTo("0", "/application-info/versions/application-version/version-number", xml);
 		assertXpathExists("/application-info/versions/application-version/publish-time", xml);
+		assertXpathEvaluatesTo("deploy", "/application-info/startup-phases/application-startup-phase[1]/name", xml);
+		assertXpathExists("/application-info/startup-phases/application-startup-phase[name='total']/duration", xml);
 	}
 	
 	private void publishExists(HttpTestConnection conn, String warFileName) throws Exception {
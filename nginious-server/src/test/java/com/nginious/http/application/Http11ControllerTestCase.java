@@ -214,6 +214,57 @@ public class Http11ControllerTestCase extends TestCase {
 		}		
 	}
 	
+	public void testPathParameters() throws Exception {
+		String request = "GET /test/users/alice/orders/42 HTTP/1.1\015\012" + 
+			"Host: localhost\015\012" +
+			"Content-Length: 0\015\012" + 
+			"Connection: close\015\012\015\012";
+		
+		String expectedResponse = "HTTP/1.1 200 OK\015\012" +
+			"Content-Type: text/plain\015\012" +
+			"Date: <date>\015\012" + 
+			"Content-Length: 20\015\012" +
+			"Connection: close\015\012" +
+			"Server: Nginious/1.0.0\015\012\015\012" +
+			"user=alice order=42\n";
+		
+		HttpTestConnection conn = null;
+		
+		try {
+			conn = new HttpTestConnection();
+			conn.write(request);
+			
+			String response = conn.readString();
+			expectedResponse = conn.setHeaders(response, expectedResponse);
+			assertEquals(expectedResponse, response);			
+		} finally {
+			if(conn != null) {
+				conn.close();
+			}
+		}		
+	}
+	
+	public void testPathParametersNotFound() throws Exception {
+		String request = "GET /test/users/alice/orders HTTP/1.1\015\012" + 
+			"Host: localhost\015\012" +
+			"Content-Length: 0\015\012" + 
+			"Connection: close\015\012\015\012";
+		
+		HttpTestConnection conn = null;
+		
+		try {
+			conn = new HttpTestConnection();
+			conn.write(request);
+			
+			String response = conn.readString();
+			assertTrue(response.startsWith("HTTP/1.1 404 Not Found\015\012"));
+		} finally {
+			if(conn != null) {
+				conn.close();
+			}
+		}		
+	}
+	
 	public static Test suite() {
 		return new TestSuite(Http11ControllerTestCase.class);
 	}
@@ -229,6 +229,86 @@ public class Http11ReloadableControllerTestCase extends TestCase {
 		}
 }
 	
+	public void testProductionMode() throws Exception {
+		server.stop();
+		HttpServerConfiguration config = new HttpServerConfiguration();
+		config.setWebappsDir(tmpDir.getAbsolutePath());
+		config.setServerLogPath("build/test-server.log");
+		config.setAccessLogPath("build/test-access.log");
+		config.setPort(9000);
+		config.setDeploymentMode("production");
+		HttpServerFactory factory = HttpServerFactory.getInstance();
+		this.server = factory.create(config);
+		server.start();
+		
+		String request = "GET /test/reload HTTP/1.1\015\012" + 
+			"Host: localhost\015\012" +
+			"Connection: close\015\012\015\012";
+		
+		String responseTemplate = "HTTP/1.1 200 OK\015\012" +
+			"Content-Type: text/plain; charset=utf-8\015\012" +
+			"Date: <date>\015\012" + 
+			"Content-Length: 23\015\012" +
+			"Connection: close\015\012" +
+			"Server: Nginious/1.0.0\015\012\015\012" +
+			"ReloadTestController 1\n";
+		
+		HttpTestConnection conn = null;
+		
+		try {
+			conn = new HttpTestConnection();
+			conn.write(request);
+			
+			String response = conn.readString();
+			String expectedResponse = conn.setHeaders(response, responseTemplate);
+			assertEquals(expectedResponse, response);			
+		} finally {
+			if(conn != null) {
+				conn.close();
+			}
+		}
+		
+		// Changed classes are not reloaded in production mode
+		Thread.sleep(1000L);
+		FileUtils.copyFile("build/classes/testload2/classes/com/nginious/http/loader/ReloadTestController.class", destFile.getAbsolutePath());
+		Thread.sleep(200L);
+		
+		conn = null;
+		
+		try {
+			conn = new HttpTestConnection();
+			conn.write(request);
+			
+			String response = conn.readString();
+			String expectedResponse = conn.setHeaders(response, responseTemplate);
+			assertEquals(expectedResponse, response);			
+		} finally {
+			if(conn != null) {
+				conn.close();
+			}
+		}
+		
+		request = "GET /test/reload2 HTTP/1.1\015\012" + 
+				"Host: localhost\015\012" +
+				"Connection: close\015\012\015\012";
+		
+		File destFile2 = new File(this.tmpDir, "test/WEB-INF/classes/com/nginious/http/loader/ReloadTestController2.class");
+		FileUtils.copyFile("build/classes/testload1/classes/com/nginious/http/loader/ReloadTestController2.class", destFile2.getAbsolutePath());
+		conn = null;
+		
+		try {
+			conn = new HttpTestConnection();
+			conn.write(request);
+			
+			String response = conn.readString();
+			assertTrue(response.startsWith("HTTP/1.1 404 Not Found\015\012"));
+		} finally {
+			if(conn != null) {
+				conn.close();
+			}
+		}
+	}
+	
 	public static Test suite() {
 		return new TestSuite(Http11ReloadableControllerTestCase.class);
 	}
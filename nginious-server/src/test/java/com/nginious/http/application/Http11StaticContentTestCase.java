@@ -23,6 +23,7 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.text.SimpleDateFormat;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.Locale;
@@ -57,6 +58,7 @@ public class Http11StaticContentTestCase extends TestCase {
 		config.setServerLogPath("build/test-server.log");
 		config.setAccessLogPath("build/test-access.log");
 		config.setPort(9000);
+		config.setCompressTypes(config.getCompressTypes() + ",application/msword");
 		HttpServerFactory factory = HttpServerFactory.getInstance();
 		this.server = factory.create(config);
 		server.start();
@@ -710,13 +712,14 @@ public class Http11StaticContentTestCase extends TestCase {
 			"Accept-Encoding: gzip\015\012" +
 			"Connection: close\015\012\015\012";
 		
+		// Images are not a compressed content type and are served uncompressed
 		String expectedResponseHeaders = "HTTP/1.1 200 OK\015\012" +
 			"Content-Type: image/jpeg\015\012" +
 			"ETag: 509BF211D6D16657F179A19783AC9BE0\015\012" +
 			"Date: <date>\015\012" +
-			"Content-Encoding: gzip\015\012" + 
 			"Last-Modified: <modified>\015\012" + 
-			"Content-Length: 57467\015\012" +
+			"Accept-Ranges: bytes\015\012" +
+			"Content-Length: 79885\015\012" +
 			"Connection: close\015\012" +
 			"Server: Nginious/1.0.0\015\012\015\012";
 		
@@ -732,19 +735,10 @@ public class Http11StaticContentTestCase extends TestCase {
 			expectedResponseHeaders = conn.setHeaders(responseHeaders, expectedResponseHeaders);
 			assertEquals(expectedResponseHeaders, responseHeaders);	
 			
-			ByteArrayInputStream in = new ByteArrayInputStream(response, contentStart, response.length - contentStart);
-			GZIPInputStream zIn = new GZIPInputStream(in);
-			ByteArrayOutputStream out = new ByteArrayOutputStream();
-			byte[] b = new byte[1024];
-			int len = 0;
-			
-			while((len = zIn.read(b)) > 0) {
-				out.write(b, 0, len);
-			}
-			
-			byte[] fileContent = out.toByteArray();
+			int contentLength = response.length - contentStart;
 			File file = new File("src/testweb/webapp/static/test.jpg");
-			assertEquals((int)file.length(), fileContent.length);
+			assertEquals(file.length(), contentLength);
+			assertFalse(new File("build/resources/testweb/static/test.jpg.gz").exists());
 		} finally {
 			if(conn != null) {
 				conn.close();
@@ -801,6 +795,75 @@ public class Http11StaticContentTestCase extends TestCase {
 		}		
 	}
 	
+	public void testLargeRange() throws Exception {
+		String request = "GET /test/static/test.doc HTTP/1.1\015\012" + 
+			"Host: localhost\015\012" +
+			"Range: 1000000-1099999\015\012" +
+			"Content-Length: 0\015\012" + 
+			"Connection: close\015\012\015\012";
+		
+		HttpTestConnection conn = null;
+		
+		try {
+			conn = new HttpTestConnection();
+			conn.write(request);
+			
+			byte[] response = conn.readBytes();
+			int contentStart = conn.findContentStart(response);
+			String responseHeaders = new String(response, 0, contentStart);
+			assertTrue(responseHeaders.startsWith("HTTP/1.1 206 Partial Content\015\012"));
+			assertTrue(responseHeaders.indexOf("Content-Length: 100000\015\012") != -1);
+			
+			int contentLength = response.length - contentStart;
+			byte[] body = new byte[contentLength];
+			System.arraycopy(response, contentStart, body, 0, contentLength);
+			assertEquals(100000, contentLength);
+			assertEquals(new File("src/testweb/webapp/static/test.doc"), body, 1000000, 1099999);
+		} finally {
+			if(conn != null) {
+				conn.close();
+			}
+		}		
+	}
+	
+	public void testLargeKeepAlive() throws Exception {
+		String request = "GET /test/static/test.doc HTTP/1.1\015\012" + 
+			"Host: localhost\015\012" +
+			"Content-Length: 0\015\012" + 
+			"Connection: keep-alive\015\012\015\012";
+		
+		HttpTestConnection conn = null;
+		RandomAccessFile in = null;
+		
+		try {
+			File file = new File("src/testweb/webapp/static/test.doc");
+			in = new RandomAccessFile(file, "r");
+			byte[] fileContent = new byte[(int)file.length()];
+			in.readFully(fileContent);
+			
+			// Second response must follow file content of first response
+			conn = new HttpTestConnection();
+			conn.write(request + request);
+			
+			for(int i = 0; i < 2; i++) {
+				byte[] body = conn.readKeepAliveBody();
+				assertTrue(Arrays.equals(fileContent, body));
+			}
+			
+			conn.write(request.replaceFirst("keep-alive", "close"));
+			byte[] body = conn.readBody();
+			assertTrue(Arrays.equals(fileContent, body));
+		} finally {
+			if(in != null) {
+				try { in.close(); } catch(IOException e) {}
+			}
+			
+			if(conn != null) {
+				conn.close();
+			}
+		}		
+	}
+	
 	public void testIfModifiedSince1() throws Exception {
 		String request = "GET /test/static/test.txt HTTP/1.1\015\012" + 
 			"Host: localhost\015\012" +
@@ -0,0 +1,96 @@
+/**
+ * Copyright 2012 NetDigital Sweden AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.nginious.http.application;
+
+import java.lang.management.ManagementFactory;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+public class HttpRouterBenchmarkTestCase extends TestCase {
+	
+	private static final int NUM_LOOKUPS = 1000000;
+	
+	private static final int NUM_ROUTES = 200;
+	
+	private static final String[] PATHS = { "/service100", "/users/alice/orders/42", "/css/main.css", "/missing" };
+	
+	public HttpRouterBenchmarkTestCase() {
+		super();
+	}
+	
+	public HttpRouterBenchmarkTestCase(String name) {
+		super(name);
+	}
+	
+	protected void setUp() throws Exception {
+		super.setUp();
+	}
+	
+	protected void tearDown() throws Exception {
+		super.tearDown();
+	}
+	
+	public void testRouteAllocation() throws Exception {
+		HttpRouter.Builder builder = new HttpRouter.Builder();
+		
+		for(int i = 0; i < NUM_ROUTES; i++) {
+			builder.addRoute("/service" + i, new HttpService() {}, "GET", false, true);
+		}
+		
+		builder.addRoute("/users/{user}/orders/{order}", new HttpService() {}, "GET", false, true);
+		builder.addStatic("/css", true);
+		HttpRouter router = builder.build();
+		
+		// Warm up before measuring
+		route(router, NUM_LOOKUPS);
+		
+		com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+		long threadId = Thread.currentThread().getId();
+		long startBytes = bean.getThreadAllocatedBytes(threadId);
+		long startNanos = System.nanoTime();
+		route(router, NUM_LOOKUPS);
+		long nanos = System.nanoTime() - startNanos;
+		long bytes = bean.getThreadAllocatedBytes(threadId) - startBytes;
+		
+		System.out.println("routes=" + router.size() + " lookups=" + NUM_LOOKUPS + " bytes/lookup=" + (bytes / NUM_LOOKUPS) + 
+				" ns/lookup=" + (nanos / NUM_LOOKUPS));
+	}
+	
+	private void route(HttpRouter router, int numLookups) {
+		int found = 0;
+		
+		for(int i = 0; i < numLookups; i++) {
+			String path = PATHS[i % PATHS.length];
+			
+			if(router.route(path) != null || router.isStatic(path)) {
+				found++;
+			}
+		}
+		
+		assertEquals(numLookups - numLookups / PATHS.length, found);
+	}
+	
+	public static Test suite() {
+		return new TestSuite(HttpRouterBenchmarkTestCase.class);
+	}
+	
+	public static void main(String[] argv) {
+		junit.textui.TestRunner.run(suite());
+	}
+}
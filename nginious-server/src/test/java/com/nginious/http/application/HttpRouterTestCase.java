@@ -0,0 +1,160 @@
+/**
+ * Copyright 2012 NetDigital Sweden AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.nginious.http.application;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+public class HttpRouterTestCase extends TestCase {
+	
+	public HttpRouterTestCase() {
+		super();
+	}
+	
+	public HttpRouterTestCase(String name) {
+		super(name);
+	}
+	
+	protected void setUp() throws Exception {
+		super.setUp();
+	}
+	
+	protected void tearDown() throws Exception {
+		super.tearDown();
+	}
+	
+	public void testLiteralRoutes() throws Exception {
+		HttpService index = new HttpService() {};
+		HttpService user = new HttpService() {};
+		HttpService users = new HttpService() {};
+		
+		HttpRouter.Builder builder = new HttpRouter.Builder();
+		builder.addRoute("/", index, "GET", false, true);
+		builder.addRoute("/user", user, "GET, POST", true, false);
+		builder.addRoute("/users", users, "GET", false, true);
+		HttpRouter router = builder.build();
+		
+		assertEquals(3, router.size());
+		assertSame(index, router.route("/").getService());
+		assertSame(user, router.route("/user").getService());
+		assertSame(users, router.route("/users").getService());
+		assertNull(router.route("/use"));
+		assertNull(router.route("/userss"));
+		assertNull(router.route("/other"));
+		
+		HttpRouter.Route route = router.route("/user");
+		assertEquals("/user", route.getPath());
+		assertEquals("GET, POST", route.getAllowedMethods());
+		assertTrue(route.isInline());
+		assertFalse(route.isCompressed());
+		assertFalse(route.hasParameters());
+		assertNull(route.getParameters("/user"));
+	}
+	
+	public void testTemplateRoutes() throws Exception {
+		HttpService orders = new HttpService() {};
+		HttpService order = new HttpService() {};
+		HttpService current = new HttpService() {};
+		
+		HttpRouter.Builder builder = new HttpRouter.Builder();
+		builder.addRoute("/users/{user}/orders", orders, "GET", false, true);
+		builder.addRoute("/users/{user}/orders/{order}", order, "GET", false, true);
+		builder.addRoute("/users/current/orders/{order}", current, "GET", false, true);
+		HttpRouter router = builder.build();
+		
+		HttpRouter.Route route = router.route("/users/alice/orders/42");
+		assertSame(order, route.getService());
+		assertTrue(route.hasParameters());
+		
+		String[] params = route.getParameters("/users/alice/orders/42");
+		assertEquals(4, params.length);
+		assertEquals("user", params[0]);
+		assertEquals("alice", params[1]);
+		assertEquals("order", params[2]);
+		assertEquals("42", params[3]);
+		
+		route = router.route("/users/alice/orders");
+		assertSame(orders, route.getService());
+		assertEquals("alice", route.getParameters("/users/alice/orders")[1]);
+		
+		assertSame(current, router.route("/users/current/orders/7").getService());
+		assertSame(orders, router.route("/users/current/orders").getService());
+		
+		assertNull(router.route("/users//orders"));
+		assertNull(router.route("/users/alice/orders/42/items"));
+		assertNull(router.route("/users/alice"));
+	}
+	
+	public void testStatic() throws Exception {
+		HttpRouter.Builder builder = new HttpRouter.Builder();
+		builder.addRoute("/service", new HttpService() {}, "GET", false, true);
+		builder.addStatic("/css", true);
+		builder.addStatic("/index.html", false);
+		HttpRouter router = builder.build();
+		
+		assertTrue(router.isStatic("/css/main.css"));
+		assertTrue(router.isStatic("/css/images/logo.png"));
+		assertTrue(router.isStatic("/index.html"));
+		assertFalse(router.isStatic("/css"));
+		assertFalse(router.isStatic("/index.htm"));
+		assertFalse(router.isStatic("/index.html/other"));
+		assertFalse(router.isStatic("/service"));
+		assertFalse(router.isStatic("/missing.html"));
+	}
+	
+	public void testFilters() throws Exception {
+		HttpService service = new HttpService() {};
+		HttpService other = new HttpService() {};
+		HttpService first = new HttpService() {};
+		HttpService second = new HttpService() {};
+		
+		HttpRouter.Builder builder = new HttpRouter.Builder();
+		builder.addFilter("/secure/.*", second);
+		builder.addFilter("/secure/.*", first);
+		builder.addRoute("/secure/service", service, "GET", false, true);
+		builder.addRoute("/other", other, "GET", false, true);
+		HttpRouter router = builder.build();
+		
+		assertSame(other, router.route("/other").getService());
+		
+		HttpService chain = router.route("/secure/service").getService();
+		assertTrue(chain instanceof ControllerChain);
+		
+		HttpService[] services = ((ControllerChain)chain).getServices();
+		assertEquals(3, services.length);
+		assertSame(first, services[0]);
+		assertSame(second, services[1]);
+		assertSame(service, services[2]);
+	}
+	
+	public void testNormalize() throws Exception {
+		assertFalse(HttpRouter.isTemplate("/users"));
+		assertTrue(HttpRouter.isTemplate("/users/{user}"));
+		assertEquals("/users", HttpRouter.normalize("/users"));
+		assertEquals(HttpRouter.normalize("/users/{user}/orders/{order}"), HttpRouter.normalize("/users/{id}/orders/{number}"));
+		assertFalse(HttpRouter.normalize("/users/{user}").equals(HttpRouter.normalize("/users/{user}/orders")));
+	}
+	
+	public static Test suite() {
+		return new TestSuite(HttpRouterTestCase.class);
+	}
+	
+	public static void main(String[] argv) {
+		junit.textui.TestRunner.run(suite());
+	}
+}
@@ -0,0 +1,185 @@
+/**
+ * Copyright 2012 NetDigital Sweden AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.nginious.http.application;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import com.nginious.http.TestUtils;
+import com.nginious.http.common.FileUtils;
+
+public class SharedLibraryClassLoaderTestCase extends TestCase {
+	
+	private File webappDir1;
+	
+	private File webappDir2;
+	
+	private SharedLibraryRegistry registry;
+	
+	private ArrayList<ApplicationClassLoader> loaders;
+	
+	public SharedLibraryClassLoaderTestCase() {
+		super();
+	}
+	
+	public SharedLibraryClassLoaderTestCase(String name) {
+		super(name);
+	}
+	
+	protected void setUp() throws Exception {
+		super.setUp();
+		this.registry = new SharedLibraryRegistry();
+		this.loaders = new ArrayList<ApplicationClassLoader>();
+		this.webappDir1 = new File("build/test-webapps/shared1");
+		this.webappDir2 = new File("build/test-webapps/shared2");
+		new File(webappDir1, "WEB-INF/lib").mkdirs();
+		new File(webappDir2, "WEB-INF/lib").mkdirs();
+	}
+	
+	protected void tearDown() throws Exception {
+		super.tearDown();
+		
+		for(ApplicationClassLoader loader : this.loaders) {
+			loader.release();
+		}
+		
+		assertEquals(0, registry.size());
+		
+		File dir = new File("build/test-webapps");
+		
+		if(dir.exists()) {
+			FileUtils.deleteDir(dir.getPath());
+		}
+	}
+	
+	public void testSharing() throws Exception {
+		File srcFile = TestUtils.findFile("build/libs", "testload1");
+		FileUtils.copyFile(srcFile.getAbsolutePath(), new File(webappDir1, "WEB-INF/lib/nginious-loader.jar").getAbsolutePath());
+		FileUtils.copyFile(srcFile.getAbsolutePath(), new File(webappDir2, "WEB-INF/lib/loader-copy.jar").getAbsolutePath());
+		ClassLoader contextLoader = Thread.currentThread().getContextClassLoader();
+		
+		ApplicationClassLoader loader1 = createLoader(contextLoader, webappDir1);
+		ApplicationClassLoader loader2 = createLoader(contextLoader, webappDir2);
+		assertEquals(1, loader1.getNumSharedLibraries());
+		assertEquals(1, loader2.getNumSharedLibraries());
+		
+		Class<?> clazz1 = loader1.loadClass("com.nginious.http.loader.ClassLoadTest1");
+		Class<?> clazz2 = loader2.loadClass("com.nginious.http.loader.ClassLoadTest1");
+		assertSame(clazz1, clazz2);
+		assertEquals("ClassLoader1-ClassLoadTest1", clazz2.newInstance().toString());
+		assertTrue(loader1.hasLoaded(clazz1));
+		assertTrue(loader2.hasLoaded(clazz2));
+		assertFalse(loader2.reloadIfModified(clazz2));
+		
+		assertEquals(0, loader1.getNumSharedClasses());
+		assertEquals(1, loader2.getNumSharedClasses());
+		assertTrue(loader2.getSharedClassBytes() > 0L);
+		
+		loader2.loadClass("com.nginious.http.loader.ClassLoadTest1");
+		assertEquals(1, loader2.getNumSharedClasses());
+		
+		assertNotNull(loader2.getResource("test.properties"));
+		assertNotNull(loader2.getResource("com/nginious/http/loader/ClassLoadTest2.class"));
+		
+		SharedLibraryClassLoader shared = (SharedLibraryClassLoader)clazz1.getClassLoader();
+		int references = shared.getReferences();
+		loader1.release();
+		assertEquals(references - 1, shared.getReferences());
+		
+		Class<?> clazz3 = loader2.loadClass("com.nginious.http.loader.ClassLoadTest3");
+		assertEquals("ClassLoader1-ClassLoadTest3", clazz3.newInstance().toString());
+		loader2.release();
+		assertEquals(references - 2, shared.getReferences());
+	}
+	
+	public void testCopy() throws Exception {
+		File srcFile = TestUtils.findFile("build/libs", "testload1");
+		FileUtils.copyFile(srcFile.getAbsolutePath(), new File(webappDir1, "WEB-INF/lib/nginious-loader.jar").getAbsolutePath());
+		ClassLoader contextLoader = Thread.currentThread().getContextClassLoader();
+		
+		ApplicationClassLoader loader = createLoader(contextLoader, webappDir1);
+		Class<?> clazz = loader.loadClass("com.nginious.http.loader.ClassLoadTest1");
+		SharedLibraryClassLoader shared = (SharedLibraryClassLoader)clazz.getClassLoader();
+		File copyFile = new File(shared.getURLs()[0].toURI());
+		assertTrue(copyFile.isFile());
+		assertEquals(shared.getHash(), SharedLibraryClassLoader.hash(copyFile));
+		assertFalse(copyFile.getName().equals(shared.getHash() + ".jar"));
+		assertTrue(ControllerServiceCache.isSecure(copyFile.getParentFile()));
+		assertTrue(ControllerServiceCache.isSecure(copyFile));
+		
+		loader.release();
+		assertEquals(0, registry.size());
+		assertFalse(copyFile.exists());
+	}
+	
+	public void testNotShared() throws Exception {
+		createJar(new File(webappDir1, "WEB-INF/lib/partial.jar"));
+		createJar(new File(webappDir2, "WEB-INF/lib/partial.jar"));
+		ClassLoader contextLoader = Thread.currentThread().getContextClassLoader();
+		assertFalse(SharedLibraryClassLoader.isSelfContained(new File(webappDir1, "WEB-INF/lib/partial.jar"), contextLoader));
+		
+		ApplicationClassLoader loader1 = createLoader(contextLoader, webappDir1);
+		ApplicationClassLoader loader2 = createLoader(contextLoader, webappDir2);
+		assertEquals(0, loader1.getNumSharedLibraries());
+		assertEquals(0, loader2.getNumSharedLibraries());
+		
+		Class<?> clazz1 = loader1.loadClass("com.nginious.http.loader.ClassLoadTest3");
+		Class<?> clazz2 = loader2.loadClass("com.nginious.http.loader.ClassLoadTest3");
+		assertNotSame(clazz1, clazz2);
+		assertEquals(0, loader2.getNumSharedClasses());
+		
+		loader1.release();
+		loader2.release();
+	}
+	
+	private void createJar(File jarFile) throws Exception {
+		JarOutputStream out = null;
+		
+		try {
+			out = new JarOutputStream(new FileOutputStream(jarFile));
+			out.putNextEntry(new JarEntry("com/nginious/http/loader/ClassLoadTest3.class"));
+			out.write(Files.readAllBytes(new File("build/classes/testload1/classes/com/nginious/http/loader/ClassLoadTest3.class").toPath()));
+			out.closeEntry();
+		} finally {
+			if(out != null) {
+				out.close();
+			}
+		}
+	}
+	
+	private ApplicationClassLoader createLoader(ClassLoader parent, File webappDir) {
+		ApplicationClassLoader loader = new ApplicationClassLoader(parent, webappDir, this.registry);
+		loaders.add(loader);
+		return loader;
+	}
+	
+	public static Test suite() {
+		return new TestSuite(SharedLibraryClassLoaderTestCase.class);
+	}
+	
+	public static void main(String[] argv) {
+		junit.textui.TestRunner.run(suite());
+	}
+}
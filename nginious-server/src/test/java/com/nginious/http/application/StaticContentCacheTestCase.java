@@ -0,0 +1,195 @@
+/**
+ * Copyright 2012 NetDigital Sweden AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.nginious.http.application;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import com.nginious.http.HttpMethod;
+import com.nginious.http.common.StringUtils;
+import com.nginious.http.server.HttpTestRequest;
+import com.nginious.http.server.HttpTestResponse;
+import com.nginious.http.stats.ServerStatistics;
+
+public class StaticContentCacheTestCase extends TestCase {
+	
+	private File baseDir;
+	
+	public StaticContentCacheTestCase() {
+		super();
+	}
+	
+	public StaticContentCacheTestCase(String name) {
+		super(name);
+	}
+	
+	protected void setUp() throws Exception {
+		super.setUp();
+		this.baseDir = new File("build/test-static-cache");
+		baseDir.mkdirs();
+	}
+	
+	protected void tearDown() throws Exception {
+		File[] files = baseDir.listFiles();
+		
+		if(files != null) {
+			for(File file : files) {
+				file.delete();
+			}
+		}
+		
+		baseDir.delete();
+	}
+	
+	public void testHit() throws Exception {
+		ServerStatistics stats = new ServerStatistics();
+		StaticContentCache cache = new StaticContentCache(1024L, stats);
+		byte[] content = createFile("a.txt", 100, (byte)'a');
+		
+		HttpTestResponse response = execute(cache, "/a.txt");
+		assertTrue(Arrays.equals(content, response.getContent()));
+		assertEquals(100L, cache.getCachedBytes());
+		assertEquals(1, cache.size());
+		
+		StaticContent cached = cache.get(this.baseDir, "/a.txt");
+		response = execute(cache, "/a.txt");
+		assertTrue(Arrays.equals(content, response.getContent()));
+		assertSame(cached, cache.get(this.baseDir, "/a.txt"));
+		
+		assertEquals(4L, stats.getNumStaticContentLookups());
+		assertEquals(3L, stats.getNumStaticContentHits());
+		assertEquals(0.75d, stats.getStaticContentHitRate(), 0.0001d);
+		assertEquals(100L, stats.getStaticContentCacheBytes());
+		
+		cache.clear();
+		assertEquals(0L, cache.getCachedBytes());
+		assertEquals(0L, stats.getStaticContentCacheBytes());
+	}
+	
+	public void testModified() throws Exception {
+		StaticContentCache cache = new StaticContentCache(1024L, null);
+		createFile("a.txt", 100, (byte)'a');
+		execute(cache, "/a.txt");
+		StaticContent cached = cache.get(this.baseDir, "/a.txt");
+		
+		byte[] content = createFile("a.txt", 50, (byte)'b');
+		
+		// Modifications are only checked once per interval
+		assertSame(cached, cache.get(this.baseDir, "/a.txt"));
+		Thread.sleep(StaticContentCache.CHECK_INTERVAL + 100L);
+		
+		HttpTestResponse response = execute(cache, "/a.txt");
+		assertTrue(Arrays.equals(content, response.getContent()));
+		assertNotSame(cached, cache.get(this.baseDir, "/a.txt"));
+		assertEquals(50L, cache.getCachedBytes());
+	}
+	
+	public void testEviction() throws Exception {
+		ServerStatistics stats = new ServerStatistics();
+		StaticContentCache cache = new StaticContentCache(250L, stats);
+		createFile("a.txt", 100, (byte)'a');
+		createFile("b.txt", 100, (byte)'b');
+		createFile("c.txt", 100, (byte)'c');
+		
+		execute(cache, "/a.txt");
+		execute(cache, "/b.txt");
+		StaticContent cached = cache.get(this.baseDir, "/b.txt");
+		
+		// Least recently used content is evicted
+		execute(cache, "/a.txt");
+		execute(cache, "/c.txt");
+		assertEquals(200L, cache.getCachedBytes());
+		assertEquals(2, cache.size());
+		assertEquals(200L, stats.getStaticContentCacheBytes());
+		assertNotSame(cached, cache.get(this.baseDir, "/b.txt"));
+		
+		// Content larger than cache is not kept
+		createFile("d.txt", 300, (byte)'d');
+		execute(cache, "/d.txt");
+		assertTrue(cache.getCachedBytes() <= 250L);
+		assertEquals(cache.getCachedBytes(), stats.getStaticContentCacheBytes());
+	}
+	
+	public void testLargeContent() throws Exception {
+		StaticContentCache cache = new StaticContentCache(1024L, null);
+		byte[] content = createFile("large.bin", (int)StaticContent.MAX_CACHED_LENGTH + 4096, (byte)'l');
+		
+		HttpTestResponse response = execute(cache, "/large.bin");
+		assertTrue(Arrays.equals(content, response.getContent()));
+		assertEquals(0L, cache.getCachedBytes());
+		assertEquals(1, cache.size());
+		
+		MessageDigest md = MessageDigest.getInstance("MD5");
+		String entityTag = StringUtils.asHexString(md.digest(content));
+		assertEquals(entityTag, response.getHeader("ETag"));
+	}
+	
+	public void testDisabled() throws Exception {
+		ServerStatistics stats = new ServerStatistics();
+		StaticContentCache cache = new StaticContentCache(0L, stats);
+		byte[] content = createFile("a.txt", 100, (byte)'a');
+		
+		HttpTestResponse response = execute(cache, "/a.txt");
+		assertTrue(Arrays.equals(content, response.getContent()));
+		execute(cache, "/a.txt");
+		assertEquals(0, cache.size());
+		assertEquals(0L, stats.getNumStaticContentHits());
+		assertEquals(0L, stats.getStaticContentCacheBytes());
+	}
+	
+	private HttpTestResponse execute(StaticContentCache cache, String path) throws Exception {
+		HttpTestRequest request = new HttpTestRequest();
+		request.setMethod(HttpMethod.GET);
+		request.setVersion("HTTP/1.1");
+		request.setPath(path);
+		HttpTestResponse response = new HttpTestResponse();
+		cache.execute(this.baseDir, path, request, response);
+		return response;
+	}
+	
+	private byte[] createFile(String name, int length, byte value) throws Exception {
+		byte[] content = new byte[length];
+		Arrays.fill(content, value);
+		File file = new File(this.baseDir, name);
+		FileOutputStream out = null;
+		
+		try {
+			out = new FileOutputStream(file);
+			out.write(content);
+		} finally {
+			if(out != null) {
+				out.close();
+			}
+		}
+		
+		return content;
+	}
+	
+	public static Test suite() {
+		return new TestSuite(StaticContentCacheTestCase.class);
+	}
+	
+	public static void main(String[] argv) {
+		junit.textui.TestRunner.run(suite());
+	}
+}
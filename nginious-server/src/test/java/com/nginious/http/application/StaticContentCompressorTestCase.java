@@ -0,0 +1,234 @@
+/**
+ * Copyright 2012 NetDigital Sweden AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.nginious.http.application;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import com.nginious.http.HttpMethod;
+import com.nginious.http.server.HttpTestRequest;
+import com.nginious.http.server.HttpTestResponse;
+
+public class StaticContentCompressorTestCase extends TestCase {
+	
+	private static final String CONTENT_TYPES = "text/plain,text/css";
+	
+	private static final long MIN_SIZE = 100L;
+	
+	private File baseDir;
+	
+	public StaticContentCompressorTestCase() {
+		super();
+	}
+	
+	public StaticContentCompressorTestCase(String name) {
+		super(name);
+	}
+	
+	protected void setUp() throws Exception {
+		super.setUp();
+		this.baseDir = new File("build/test-static-compress");
+		delete(this.baseDir);
+		new File(this.baseDir, "css").mkdirs();
+		new File(this.baseDir, "WEB-INF").mkdirs();
+	}
+	
+	protected void tearDown() throws Exception {
+		delete(this.baseDir);
+	}
+	
+	public void testCompress() throws Exception {
+		byte[] content = createFile("a.txt", 1000, (byte)'a');
+		byte[] cssContent = createFile("css/b.css", 1000, (byte)'b');
+		createFile("c.zip", 1000, (byte)'c');
+		createFile("WEB-INF/d.txt", 1000, (byte)'d');
+		createFile("e.jpg", 1000, (byte)'e');
+		createFile("f.txt", 10, (byte)'f');
+		
+		StaticContentCompressor compressor = new StaticContentCompressor(this.baseDir, CONTENT_TYPES, MIN_SIZE);
+		Set<String> manifest = compressor.compress();
+		
+		Set<String> expected = new HashSet<String>();
+		expected.add("/a.txt");
+		expected.add("/css/b.css");
+		assertEquals(expected, manifest);
+		
+		assertTrue(Arrays.equals(content, gunzip(new File(this.baseDir, "a.txt.gz"))));
+		assertTrue(Arrays.equals(cssContent, gunzip(new File(this.baseDir, "css/b.css.gz"))));
+		assertFalse(new File(this.baseDir, "c.zip.gz").exists());
+		assertFalse(new File(this.baseDir, "WEB-INF/d.txt.gz").exists());
+		assertFalse(new File(this.baseDir, "a.txt.gz.gz").exists());
+		assertFalse(new File(this.baseDir, "e.jpg.gz").exists());
+		assertFalse(new File(this.baseDir, "f.txt.gz").exists());
+	}
+	
+	public void testUpToDate() throws Exception {
+		createFile("a.txt", 1000, (byte)'a');
+		File file = new File(this.baseDir, "a.txt");
+		File gzipFile = new File(this.baseDir, "a.txt.gz");
+		new StaticContentCompressor(this.baseDir, CONTENT_TYPES, MIN_SIZE).compress();
+		
+		// Up to date variant is not rewritten
+		long lastModified = file.lastModified() + 10000L;
+		gzipFile.setLastModified(lastModified);
+		Set<String> manifest = new StaticContentCompressor(this.baseDir, CONTENT_TYPES, MIN_SIZE).compress();
+		assertTrue(manifest.contains("/a.txt"));
+		assertEquals(lastModified, gzipFile.lastModified());
+	}
+	
+	public void testStale() throws Exception {
+		createFile("a.txt", 1000, (byte)'a');
+		File file = new File(this.baseDir, "a.txt");
+		File gzipFile = new File(this.baseDir, "a.txt.gz");
+		new StaticContentCompressor(this.baseDir, CONTENT_TYPES, MIN_SIZE).compress();
+		
+		// Variant older than its file is rewritten
+		byte[] content = createFile("a.txt", 500, (byte)'b');
+		gzipFile.setLastModified(file.lastModified() - 10000L);
+		Set<String> manifest = new StaticContentCompressor(this.baseDir, CONTENT_TYPES, MIN_SIZE).compress();
+		assertTrue(manifest.contains("/a.txt"));
+		assertTrue(gzipFile.lastModified() >= file.lastModified());
+		assertTrue(Arrays.equals(content, gunzip(gzipFile)));
+	}
+	
+	public void testServe() throws Exception {
+		byte[] content = createFile("a.txt", 1000, (byte)'a');
+		createFile("b.txt", 1000, (byte)'b');
+		StaticContentCache cache = new StaticContentCache(4096L, null);
+		cache.setGzipPaths(new StaticContentCompressor(this.baseDir, CONTENT_TYPES, MIN_SIZE).compress());
+		
+		HttpTestResponse response = execute(cache, "/a.txt");
+		assertEquals("gzip", response.getHeader("Content-Encoding"));
+		assertTrue(Arrays.equals(content, gunzip(response.getContent())));
+		
+		// Content without a variant in manifest is served uncompressed
+		createFile("c.txt", 1000, (byte)'c');
+		createFile("c.txt.gz", 10, (byte)'c');
+		response = execute(cache, "/c.txt");
+		assertNull(response.getHeader("Content-Encoding"));
+		assertEquals(1000, response.getContent().length);
+		
+		// Content modified after publish is served uncompressed
+		byte[] modified = createFile("b.txt", 500, (byte)'d');
+		new File(this.baseDir, "b.txt.gz").setLastModified(new File(this.baseDir, "b.txt").lastModified() - 10000L);
+		response = execute(cache, "/b.txt");
+		assertNull(response.getHeader("Content-Encoding"));
+		assertTrue(Arrays.equals(modified, response.getContent()));
+	}
+	
+	public void testDisabled() throws Exception {
+		createFile("a.txt", 1000, (byte)'a');
+		assertTrue(new StaticContentCompressor(this.baseDir, "", MIN_SIZE).compress().isEmpty());
+		assertFalse(new File(this.baseDir, "a.txt.gz").exists());
+	}
+	
+	public void testMissingBaseDir() throws Exception {
+		StaticContentCompressor compressor = new StaticContentCompressor(new File(this.baseDir, "missing"), CONTENT_TYPES, MIN_SIZE);
+		assertTrue(compressor.compress().isEmpty());
+	}
+	
+	private HttpTestResponse execute(StaticContentCache cache, String path) throws Exception {
+		HttpTestRequest request = new HttpTestRequest();
+		request.setMethod(HttpMethod.GET);
+		request.setVersion("HTTP/1.1");
+		request.setPath(path);
+		request.addHeader("Accept-Encoding", "gzip");
+		HttpTestResponse response = new HttpTestResponse();
+		cache.execute(this.baseDir, path, request, response);
+		return response;
+	}
+	
+	private byte[] gunzip(File file) throws Exception {
+		FileInputStream in = null;
+		
+		try {
+			in = new FileInputStream(file);
+			return gunzip(in);
+		} finally {
+			if(in != null) {
+				in.close();
+			}
+		}
+	}
+	
+	private byte[] gunzip(byte[] content) throws Exception {
+		return gunzip(new ByteArrayInputStream(content));
+	}
+	
+	private byte[] gunzip(InputStream in) throws Exception {
+		GZIPInputStream zIn = new GZIPInputStream(in);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] b = new byte[4096];
+		int len = 0;
+		
+		while((len = zIn.read(b)) > 0) {
+			out.write(b, 0, len);
+		}
+		
+		return out.toByteArray();
+	}
+	
+	private byte[] createFile(String name, int length, byte value) throws Exception {
+		byte[] content = new byte[length];
+		Arrays.fill(content, value);
+		File file = new File(this.baseDir, name);
+		FileOutputStream out = null;
+		
+		try {
+			out = new FileOutputStream(file);
+			out.write(content);
+		} finally {
+			if(out != null) {
+				out.close();
+			}
+		}
+		
+		return content;
+	}
+	
+	private void delete(File file) {
+		File[] files = file.listFiles();
+		
+		if(files != null) {
+			for(File child : files) {
+				delete(child);
+			}
+		}
+		
+		file.delete();
+	}
+	
+	public static Test suite() {
+		return new TestSuite(StaticContentCompressorTestCase.class);
+	}
+	
+	public static void main(String[] argv) {
+		junit.textui.TestRunner.run(suite());
+	}
+}
@@ -51,6 +51,9 @@ public class Suite extends TestSuite {
     	
     	suite.addTest(new Http11StaticContentTestCase("testAcceptEncoding1"));
     	suite.addTest(new Http11StaticContentTestCase("testAcceptEncoding2"));
+    	
+    	suite.addTest(new Http11StaticContentTestCase("testLargeRange"));
+    	suite.addTest(new Http11StaticContentTestCase("testLargeKeepAlive"));
 
     	suite.addTest(new Http11StaticContentTestCase("testIfModifiedSince1"));
     	suite.addTest(new Http11StaticContentTestCase("testIfModifiedSince2"));
@@ -68,6 +71,18 @@ public class Suite extends TestSuite {
     	
     	suite.addTest(new Http11StaticContentTestCase("testStaticContentOptions"));
     	
+    	suite.addTest(new StaticContentCacheTestCase("testHit"));
+    	suite.addTest(new StaticContentCacheTestCase("testModified"));
+    	suite.addTest(new StaticContentCacheTestCase("testEviction"));
+    	suite.addTest(new StaticContentCacheTestCase("testLargeContent"));
+    	suite.addTest(new StaticContentCacheTestCase("testDisabled"));
+    	suite.addTest(new StaticContentCompressorTestCase("testCompress"));
+    	suite.addTest(new StaticContentCompressorTestCase("testUpToDate"));
+    	suite.addTest(new StaticContentCompressorTestCase("testStale"));
+    	suite.addTest(new StaticContentCompressorTestCase("testServe"));
+    	suite.addTest(new StaticContentCompressorTestCase("testDisabled"));
+    	suite.addTest(new StaticContentCompressorTestCase("testMissingBaseDir"));
+    	
     	suite.addTest(new Http11MethodsTestCase("testControllerOptions"));
     	suite.addTest(new Http11MethodsTestCase("testDefaultGet"));
     	suite.addTest(new Http11MethodsTestCase("testDefaultPost"));
@@ -89,16 +104,37 @@ public class Suite extends TestSuite {
     	suite.addTest(new Http11UnpackedTestCase("testPutRequest"));
     	suite.addTest(new Http11UnpackedTestCase("testDeleteRequest"));
     	
+    	suite.addTest(new HttpRouterTestCase("testLiteralRoutes"));
+    	suite.addTest(new HttpRouterTestCase("testTemplateRoutes"));
+    	suite.addTest(new HttpRouterTestCase("testStatic"));
+    	suite.addTest(new HttpRouterTestCase("testFilters"));
+    	suite.addTest(new HttpRouterTestCase("testNormalize"));
+    	
+    	suite.addTest(new ControllerIndexTestCase("testIndex"));
+    	suite.addTest(new ControllerIndexTestCase("testRefresh"));
+    	suite.addTest(new ControllerIndexTestCase("testUpdate"));
+    	
+    	suite.addTest(new ApplicationChangeTrackerTestCase("testVersion"));
+    	suite.addTest(new ApplicationChangeTrackerTestCase("testStop"));
+    	
     	suite.addTest(new ApplicationClassLoaderTestCase("testCrossReference"));
     	suite.addTest(new ApplicationClassLoaderTestCase("testClassLoading"));
     	suite.addTest(new ApplicationClassLoaderTestCase("testJarLoading"));
     	suite.addTest(new ApplicationClassLoaderTestCase("testJarResourceLoading"));
     	suite.addTest(new ApplicationClassLoaderTestCase("testClassResourceLoading"));
+    	suite.addTest(new SharedLibraryClassLoaderTestCase("testSharing"));
+    	suite.addTest(new SharedLibraryClassLoaderTestCase("testCopy"));
+    	suite.addTest(new SharedLibraryClassLoaderTestCase("testNotShared"));
+    	suite.addTest(new ControllerServiceCacheTestCase("testKey"));
+    	suite.addTest(new ControllerServiceCacheTestCase("testPrecompile"));
+    	suite.addTest(new ControllerServiceCacheTestCase("testInsecureDir"));
     	
     	suite.addTest(new Http11AdminTestCase("testPublish"));
     	suite.addTest(new Http11AdminTestCase("testRepublish"));
+    	suite.addTest(new ApplicationStartupTestCase("testParallelStartup"));
     	
     	suite.addTest(new Http11ReloadableControllerTestCase("testReloadableController"));
+    	suite.addTest(new Http11ReloadableControllerTestCase("testProductionMode"));
     	suite.addTest(new NullWebAppsDirTestCase("testNullWebAppsDir"));
     	
     	return suite;
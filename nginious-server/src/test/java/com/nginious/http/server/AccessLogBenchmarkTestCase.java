@@ -0,0 +1,108 @@
+/**
+ * Copyright 2012 NetDigital Sweden AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.nginious.http.server;
+
+import java.lang.management.ManagementFactory;
+import java.text.SimpleDateFormat;
+
+import com.nginious.http.HttpMethod;
+import com.nginious.http.HttpStatus;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+public class AccessLogBenchmarkTestCase extends TestCase {
+	
+	private static final int NUM_LINES = 500000;
+	
+	private static final String AGENT = "Mozilla/5.0 (X11; Linux x86_64; rv:15.0) Gecko/20100101 Firefox/15.0";
+	
+	public AccessLogBenchmarkTestCase() {
+		super();
+	}
+	
+	public AccessLogBenchmarkTestCase(String name) {
+		super(name);
+	}
+	
+	protected void setUp() throws Exception {
+		super.setUp();
+	}
+	
+	protected void tearDown() throws Exception {
+		super.tearDown();
+	}
+	
+	public void testFormat() throws Exception {
+		long millis = System.currentTimeMillis();
+		SimpleDateFormat format = new SimpleDateFormat("dd/MMM/yyyy:HH:mm:ss Z");
+		String expected = "127.0.0.1 - - [" + format.format(millis) + "] \"GET /test/methods?id=1 HTTP/1.1\" 200 1234 " +
+				"\"http://localhost/\" \"" + AGENT + "\" \"-\"\n";
+		byte[] line = AccessLog.format("127.0.0.1", millis, HttpMethod.GET, "/test/methods?id=1", "HTTP/1.1", 
+				HttpStatus.OK, 1234, "http://localhost/", AGENT);
+		assertEquals(expected, new String(line, "iso-8859-1"));
+		
+		expected = "127.0.0.1 - - [" + format.format(millis) + "] \"null null null\" 400 -1 \"-\" \"-\" \"-\"\n";
+		line = AccessLog.format("127.0.0.1", millis, null, null, null, HttpStatus.BAD_REQUEST, -1, null, null);
+		assertEquals(expected, new String(line, "iso-8859-1"));
+		
+		line = AccessLog.format("127.0.0.1", millis, HttpMethod.GET, "/\u00e5\u20ac", "HTTP/1.1", 
+				HttpStatus.OK, 0, null, null);
+		assertTrue(new String(line, "iso-8859-1").contains("\"GET /\u00e5? HTTP/1.1\" 200 0 "));
+	}
+	
+	public void testFormatAllocation() throws Exception {
+		// Warm up before measuring
+		int lineLength = format(NUM_LINES);
+		
+		com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+		long threadId = Thread.currentThread().getId();
+		long startBytes = bean.getThreadAllocatedBytes(threadId);
+		long startNanos = System.nanoTime();
+		format(NUM_LINES);
+		long nanos = System.nanoTime() - startNanos;
+		long bytes = bean.getThreadAllocatedBytes(threadId) - startBytes;
+		
+		System.out.println("lines=" + NUM_LINES + " bytes/line=" + (bytes / NUM_LINES) + 
+				" ns/line=" + (nanos / NUM_LINES));
+		
+		// Formatting should allocate little more than the formatted line itself
+		assertTrue("bytes/line=" + (bytes / NUM_LINES), bytes / NUM_LINES <= 4 * lineLength);
+	}
+	
+	private int format(int numLines) {
+		int length = 0;
+		
+		for(int i = 0; i < numLines; i++) {
+			byte[] line = AccessLog.format("127.0.0.1", System.currentTimeMillis(), HttpMethod.GET, "/test/methods?id=1", 
+					"HTTP/1.1", HttpStatus.OK, i, "http://localhost/", AGENT);
+			assertEquals('\n', line[line.length - 1]);
+			length = line.length;
+		}
+		
+		return length;
+	}
+	
+	public static Test suite() {
+		return new TestSuite(AccessLogBenchmarkTestCase.class);
+	}
+	
+	public static void main(String[] argv) {
+		junit.textui.TestRunner.run(suite());
+	}
+}
@@ -0,0 +1,150 @@
+/**
+ * Copyright 2012 NetDigital Sweden AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.nginious.http.server;
+
+import java.nio.ByteBuffer;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import com.nginious.http.stats.ServerStatistics;
+
+public class BufferPoolTestCase extends TestCase {
+	
+	public BufferPoolTestCase() {
+		super();
+	}
+	
+	public BufferPoolTestCase(String name) {
+		super(name);
+	}
+	
+	protected void setUp() throws Exception {
+		super.setUp();
+	}
+	
+	protected void tearDown() throws Exception {
+	}
+	
+	public void testSizeClasses() throws Exception {
+		ServerStatistics stats = new ServerStatistics();
+		BufferPool pool = new BufferPool(stats);
+		
+		ByteBuffer buffer = pool.acquire(100);
+		assertTrue(buffer.isDirect());
+		assertEquals(1024, buffer.capacity());
+		assertEquals(0, buffer.position());
+		assertEquals(1024, buffer.limit());
+		pool.release(buffer);
+		
+		buffer = pool.acquire(4096);
+		assertEquals(4096, buffer.capacity());
+		pool.release(buffer);
+		
+		buffer = pool.acquire(5000);
+		assertEquals(8192, buffer.capacity());
+		pool.release(buffer);
+		
+		buffer = pool.acquire(100000);
+		assertEquals(100000, buffer.capacity());
+		pool.release(buffer);
+		
+		assertEquals(3, stats.getNumBufferAcquires());
+		assertEquals(0, stats.getNumBuffersInUse());
+	}
+	
+	public void testReuse() throws Exception {
+		ServerStatistics stats = new ServerStatistics();
+		BufferPool pool = new BufferPool(stats);
+		
+		ByteBuffer buffer = pool.acquire(8192);
+		assertEquals(0, stats.getNumBufferHits());
+		assertEquals(1, stats.getNumBuffersInUse());
+		assertEquals(7, stats.getNumBuffersPooled());
+		
+		buffer.put((byte)1);
+		pool.release(buffer);
+		assertEquals(0, stats.getNumBuffersInUse());
+		assertEquals(8, stats.getNumBuffersPooled());
+		
+		ByteBuffer reused = pool.acquire(8192);
+		assertSame(buffer, reused);
+		assertEquals(0, reused.position());
+		assertEquals(1, stats.getNumBufferHits());
+		assertEquals(0.5d, stats.getBufferHitRate());
+		
+		pool.discard(reused);
+		assertEquals(0, stats.getNumBuffersInUse());
+		assertEquals(7, stats.getNumBuffersPooled());
+		
+		pool.release(ByteBuffer.allocate(8192));
+		assertEquals(0, stats.getNumBuffersInUse());
+		assertEquals(7, stats.getNumBuffersPooled());
+	}
+	
+	public void testConnectionBuffers() throws Exception {
+		HttpServerConfiguration config = new HttpServerConfiguration();
+		config.setWebappsDir(null);
+		config.setServerLogPath("build/test-server.log");
+		config.setAccessLogPath("build/test-access.log");
+		config.setPort(9000);
+		HttpServerFactory factory = HttpServerFactory.getInstance();
+		HttpServerImpl server = (HttpServerImpl)factory.create(config);
+		ServerStatistics stats = server.getServerStatistics();
+		HttpTestConnection conn = null;
+		
+		try {
+			server.start();
+			conn = new HttpTestConnection();
+			
+			for(int i = 0; i < 3; i++) {
+				String request = "GET /nonexist.html HTTP/1.1\015\012" +
+					"Host: localhost\015\012" +
+					"Connection: keep-alive\015\012\015\012";
+				conn.write(request.getBytes());
+				conn.readKeepAliveBody();
+			}
+			
+			conn.close();
+			conn = null;
+			long numBuffersInUse = stats.getNumBuffersInUse();
+			
+			for(int i = 0; i < 50 && numBuffersInUse > 0; i++) {
+				Thread.sleep(20L);
+				numBuffersInUse = stats.getNumBuffersInUse();
+			}
+			
+			assertEquals(0, numBuffersInUse);
+			assertTrue(stats.getNumBufferHits() > 0);
+		} finally {
+			if(conn != null) {
+				conn.close();
+			}
+			
+			server.stop();
+		}
+	}
+	
+	public static Test suite() {
+		return new TestSuite(BufferPoolTestCase.class);
+	}
+	
+	public static void main(String[] argv) {
+		junit.textui.TestRunner.run(suite());
+	}
+}
@@ -53,6 +53,43 @@ public class DateTestCase extends TestCase {
 		assertNotNull(date);
 	}
 	
+	public void testFormat() throws Exception {
+		assertEquals("Sun, 06 Nov 1994 08:49:37 GMT", HttpDate.format(784111777000L));
+		assertEquals("Thu, 01 Jan 1970 00:00:00 GMT", HttpDate.format(0L));
+		assertEquals("Tue, 29 Feb 2000 23:59:59 GMT", HttpDate.format(951868799999L));
+		assertEquals("Wed, 31 Dec 1969 23:59:59 GMT", HttpDate.format(-1000L));
+		
+		Date date = new Date(1350000000000L);
+		assertEquals(HttpDate.format(date.getTime()), Header.formatDate(date));
+		assertEquals(date, Header.parseDate(Header.formatDate(date)));
+	}
+	
+	public void testParse() throws Exception {
+		assertEquals(784111777000L, HttpDate.parse("Sun, 06 Nov 1994 08:49:37 GMT"));
+		assertEquals(784111777000L, HttpDate.parse("Sunday, 06-Nov-94 08:49:37 GMT"));
+		assertEquals(784111777000L, HttpDate.parse("Sun Nov  6 08:49:37 1994"));
+		assertEquals(784111777000L, HttpDate.parse("Sun, 06 Nov 1994 09:49:37 +0100"));
+		
+		assertEquals(-1L, HttpDate.parse(null));
+		assertEquals(-1L, HttpDate.parse(""));
+		assertEquals(-1L, HttpDate.parse("Sun, 06 Nov 1994"));
+		assertEquals(-1L, HttpDate.parse("Sun, 32 Nov 1994 08:49:37 GMT"));
+		assertEquals(-1L, HttpDate.parse("Sun, 06 Nox 1994 08:49:37 GMT"));
+		assertEquals(-1L, HttpDate.parse("Sun, 06 Nov 1994 25:49:37 GMT"));
+		assertNull(Header.parseDate("not a date"));
+	}
+	
+	public void testCurrentDate() throws Exception {
+		long now = System.currentTimeMillis();
+		long parsed = HttpDate.parse(HttpDate.currentDate());
+		assertTrue(Math.abs(parsed - now) < 2000L);
+		
+		String header = new String(HttpDate.currentDateHeader(), "iso-8859-1");
+		assertTrue(header.startsWith("Date: "));
+		assertTrue(header.endsWith("\r\n"));
+		assertEquals(29, header.length() - 8);
+	}
+	
 	public static Test suite() {
 		return new TestSuite(DateTestCase.class);
 	}
@@ -0,0 +1,182 @@
+/**
+ * Copyright 2012 NetDigital Sweden AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.nginious.http.server;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+public class FileLogConsumerTestCase extends TestCase {
+	
+	private File logFile;
+	
+	public FileLogConsumerTestCase() {
+		super();
+	}
+	
+	public FileLogConsumerTestCase(String name) {
+		super(name);
+	}
+	
+	protected void setUp() throws Exception {
+		super.setUp();
+		this.logFile = new File("build/test-consumer.log");
+		logFile.delete();
+	}
+	
+	protected void tearDown() throws Exception {
+		super.tearDown();
+		logFile.delete();
+	}
+	
+	public void testWrite() throws Exception {
+		FileLogConsumer consumer = new FileLogConsumer(logFile.getPath(), 16, 10L, FileLogConsumer.OverflowPolicy.BLOCK);
+		consumer.start();
+		
+		for(int i = 0; i < 1000; i++) {
+			consumer.consume(("line " + i + "\n").getBytes());
+		}
+		
+		Thread.sleep(100L);
+		assertEquals(1000, readLines().size());
+		consumer.stop();
+		
+		List<String> lines = readLines();
+		assertEquals(1000, lines.size());
+		
+		for(int i = 0; i < 1000; i++) {
+			assertEquals("line " + i, lines.get(i));
+		}
+	}
+	
+	public void testLargeLine() throws Exception {
+		FileLogConsumer consumer = new FileLogConsumer(logFile.getPath(), 16, 10L, FileLogConsumer.OverflowPolicy.BLOCK);
+		consumer.start();
+		StringBuffer large = new StringBuffer();
+		
+		while(large.length() < 100000) {
+			large.append("0123456789");
+		}
+		
+		consumer.consume("first\n".getBytes());
+		consumer.consume((large + "\n").getBytes());
+		consumer.consume("last\n".getBytes());
+		consumer.stop();
+		
+		List<String> lines = readLines();
+		assertEquals(3, lines.size());
+		assertEquals("first", lines.get(0));
+		assertEquals(large.toString(), lines.get(1));
+		assertEquals("last", lines.get(2));
+	}
+	
+	public void testDrop() throws Exception {
+		FileLogConsumer consumer = new FileLogConsumer(logFile.getPath(), 16, 10L, FileLogConsumer.OverflowPolicy.DROP);
+		
+		for(int i = 0; i < 20; i++) {
+			consumer.consume(("line " + i + "\n").getBytes());
+		}
+		
+		assertEquals(4, consumer.getNumDroppedLines());
+		consumer.start();
+		consumer.stop();
+		
+		List<String> lines = readLines();
+		assertEquals(16, lines.size());
+		assertEquals("line 15", lines.get(15));
+	}
+	
+	public void testSpill() throws Exception {
+		FileLogConsumer consumer = new FileLogConsumer(logFile.getPath(), 16, 10L, FileLogConsumer.OverflowPolicy.SPILL);
+		
+		for(int i = 0; i < 100; i++) {
+			consumer.consume(("line " + i + "\n").getBytes());
+		}
+		
+		assertEquals(0, consumer.getNumDroppedLines());
+		consumer.start();
+		consumer.stop();
+		
+		List<String> lines = readLines();
+		assertEquals(100, lines.size());
+		
+		for(int i = 0; i < 100; i++) {
+			assertEquals("line " + i, lines.get(i));
+		}
+	}
+	
+	public void testConcurrentProducers() throws Exception {
+		final FileLogConsumer consumer = new FileLogConsumer(logFile.getPath(), 64, 1L, FileLogConsumer.OverflowPolicy.BLOCK);
+		consumer.start();
+		Thread[] producers = new Thread[4];
+		
+		for(int i = 0; i < producers.length; i++) {
+			final int producer = i;
+			
+			producers[i] = new Thread() {
+				public void run() {
+					for(int j = 0; j < 10000; j++) {
+						consumer.consume(("producer " + producer + " line " + j + "\n").getBytes());
+					}
+				}
+			};
+			
+			producers[i].start();
+		}
+		
+		for(Thread producer : producers) {
+			producer.join();
+		}
+		
+		consumer.stop();
+		List<String> lines = readLines();
+		assertEquals(40000, lines.size());
+		assertEquals(40000, new HashSet<String>(lines).size());
+	}
+	
+	private List<String> readLines() throws Exception {
+		ArrayList<String> lines = new ArrayList<String>();
+		BufferedReader reader = new BufferedReader(new FileReader(this.logFile));
+		
+		try {
+			String line = null;
+			
+			while((line = reader.readLine()) != null) {
+				lines.add(line);
+			}
+		} finally {
+			reader.close();
+		}
+		
+		return lines;
+	}
+	
+	public static Test suite() {
+		return new TestSuite(FileLogConsumerTestCase.class);
+	}
+	
+	public static void main(String[] argv) {
+		junit.textui.TestRunner.run(suite());
+	}
+}
@@ -0,0 +1,256 @@
+/**
+ * Copyright 2012 NetDigital Sweden AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.nginious.http.server;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import com.nginious.http.application.Application;
+import com.nginious.http.application.ApplicationManager;
+import com.nginious.http.service.TestCompressController;
+import com.nginious.http.service.TestUncompressedController;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+public class Http11CompressTestCase extends TestCase {
+	
+	private HttpServerImpl server;
+	
+	public Http11CompressTestCase() {
+		super();
+	}
+	
+	public Http11CompressTestCase(String name) {
+		super(name);
+	}
+	
+	protected void setUp() throws Exception {
+		super.setUp();
+		HttpServerConfiguration config = new HttpServerConfiguration();
+		config.setWebappsDir(null);
+		config.setServerLogPath("build/test-server.log");
+		config.setAccessLogPath("build/test-access.log");
+		config.setPort(9000);
+		HttpServerFactory factory = HttpServerFactory.getInstance();
+		this.server = (HttpServerImpl)factory.create(config);
+		ApplicationManager manager = server.getApplicationManager();
+		Application application = manager.createApplication("test");
+		application.addController(new TestCompressController());
+		application.addController(new TestUncompressedController());
+		manager.publish(application);
+		server.start();
+	}
+	
+	protected void tearDown() throws Exception {
+		if(this.server != null) {
+			server.stop();
+		}
+	}
+	
+	public void testGzip() throws Exception {
+		byte[] data = request("/test/compress?lines=200", "HTTP/1.1", "gzip, deflate");
+		String headers = getHeaders(data);
+		assertTrue(headers.startsWith("HTTP/1.1 200 OK\015\012"));
+		assertTrue(headers.contains("Content-Encoding: gzip\015\012"));
+		assertTrue(headers.contains("Transfer-Encoding: chunked\015\012"));
+		assertTrue(headers.contains("Vary: Accept-Encoding\015\012"));
+		assertFalse(headers.contains("Content-Length: "));
+		
+		byte[] body = dechunk(data, findContentStart(data));
+		assertEquals(createContent(200), inflate(new GZIPInputStream(new ByteArrayInputStream(body))));
+		assertEquals(1L, server.getServerStatistics().getNumCompressedResponses());
+		assertTrue(server.getServerStatistics().getCompressBytesSaved() > 0L);
+	}
+	
+	public void testDeflate() throws Exception {
+		byte[] data = request("/test/compress?lines=200", "HTTP/1.1", "deflate, gzip;q=0");
+		String headers = getHeaders(data);
+		assertTrue(headers.startsWith("HTTP/1.1 200 OK\015\012"));
+		assertTrue(headers.contains("Content-Encoding: deflate\015\012"));
+		assertTrue(headers.contains("Transfer-Encoding: chunked\015\012"));
+		
+		byte[] body = dechunk(data, findContentStart(data));
+		assertEquals(createContent(200), inflate(new InflaterInputStream(new ByteArrayInputStream(body))));
+	}
+	
+	public void testHttp10() throws Exception {
+		byte[] data = request("/test/compress?lines=200", "HTTP/1.0", "gzip");
+		String headers = getHeaders(data);
+		assertTrue(headers.startsWith("HTTP/1.1 200 OK\015\012"));
+		assertTrue(headers.contains("Content-Encoding: gzip\015\012"));
+		assertFalse(headers.contains("Transfer-Encoding: "));
+		
+		int start = findContentStart(data);
+		InputStream in = new GZIPInputStream(new ByteArrayInputStream(data, start, data.length - start));
+		assertEquals(createContent(200), inflate(in));
+	}
+	
+	public void testNotAccepted() throws Exception {
+		byte[] data = request("/test/compress?lines=200", "HTTP/1.1", null);
+		String headers = getHeaders(data);
+		assertTrue(headers.startsWith("HTTP/1.1 200 OK\015\012"));
+		assertFalse(headers.contains("Content-Encoding: "));
+		assertTrue(headers.contains("Vary: Accept-Encoding\015\012"));
+		assertEquals(createContent(200), getBody(data));
+		assertEquals(0L, server.getServerStatistics().getNumCompressedResponses());
+	}
+	
+	public void testUncompressed() throws Exception {
+		byte[] data = request("/test/uncompressed", "HTTP/1.1", "gzip");
+		String headers = getHeaders(data);
+		assertTrue(headers.startsWith("HTTP/1.1 200 OK\015\012"));
+		assertFalse(headers.contains("Content-Encoding: "));
+		assertFalse(headers.contains("Vary: "));
+		assertEquals(createContent(200), getBody(data));
+		assertEquals(0L, server.getServerStatistics().getNumCompressedResponses());
+	}
+	
+	public void testIsCompressed() throws Exception {
+		assertTrue(server.getApplicationManagerImpl().isCompressed("/test/compress"));
+		assertFalse(server.getApplicationManagerImpl().isCompressed("/test/uncompressed"));
+		assertFalse(server.getApplicationManagerImpl().isCompressed("/test/nonexistent"));
+		assertFalse(server.getApplicationManagerImpl().isCompressed("/nonexistent/compress"));
+	}
+	
+	public void testSelectEncoding() throws Exception {
+		assertEquals("gzip", HttpCompression.selectEncoding("gzip"));
+		assertEquals("gzip", HttpCompression.selectEncoding("deflate, gzip"));
+		assertEquals("gzip", HttpCompression.selectEncoding("GZIP;q=0.5"));
+		assertEquals("deflate", HttpCompression.selectEncoding("gzip;q=0, deflate"));
+		assertNull(HttpCompression.selectEncoding("gzip;q=0"));
+		assertNull(HttpCompression.selectEncoding("identity"));
+		assertNull(HttpCompression.selectEncoding(null));
+	}
+	
+	public void testCompressedType() throws Exception {
+		HttpCompression compression = new HttpCompression("text/html, text/plain", 1024, null);
+		assertTrue(compression.isEnabled());
+		assertTrue(compression.isCompressedType("text/plain"));
+		assertTrue(compression.isCompressedType("text/html; charset=utf-8"));
+		assertFalse(compression.isCompressedType("image/jpeg"));
+		assertFalse(compression.isCompressedType(null));
+		assertTrue(compression.isCompressedLength(1024));
+		assertFalse(compression.isCompressedLength(1023));
+		assertFalse(new HttpCompression("", 1024, null).isEnabled());
+	}
+	
+	private byte[] request(String path, String version, String acceptEncoding) throws Exception {
+		HttpTestConnection conn = null;
+		
+		try {
+			conn = new HttpTestConnection(10000);
+			StringBuffer request = new StringBuffer();
+			request.append("GET " + path + " " + version + "\015\012");
+			request.append("Host: localhost\015\012");
+			request.append("Connection: close\015\012");
+			
+			if(acceptEncoding != null) {
+				request.append("Accept-Encoding: " + acceptEncoding + "\015\012");
+			}
+			
+			request.append("\015\012");
+			conn.write(request.toString());
+			return conn.readBytes();
+		} finally {
+			if(conn != null) {
+				conn.close();
+			}
+		}
+	}
+	
+	private int findContentStart(byte[] data) {
+		for(int i = 0; i < data.length - 3; i++) {
+			if(data[i] == 13 && data[i + 1] == 10 && data[i + 2] == 13 && data[i + 3] == 10) {
+				return i + 4;
+			}
+		}
+		
+		return -1;
+	}
+	
+	private String getHeaders(byte[] data) throws Exception {
+		return new String(data, 0, findContentStart(data), "iso-8859-1");
+	}
+	
+	private String getBody(byte[] data) throws Exception {
+		int start = findContentStart(data);
+		String headers = getHeaders(data);
+		
+		if(headers.contains("Transfer-Encoding: chunked\015\012")) {
+			return new String(dechunk(data, start), "utf-8");
+		}
+		
+		return new String(data, start, data.length - start, "utf-8");
+	}
+	
+	private byte[] dechunk(byte[] data, int pos) throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		
+		while(true) {
+			int end = pos;
+			
+			while(data[end] != 13) {
+				end++;
+			}
+			
+			int len = Integer.parseInt(new String(data, pos, end - pos, "iso-8859-1").trim(), 16);
+			pos = end + 2;
+			
+			if(len == 0) {
+				return out.toByteArray();
+			}
+			
+			out.write(data, pos, len);
+			pos += len + 2;
+		}
+	}
+	
+	private String inflate(InputStream in) throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buff = new byte[1024];
+		int len = 0;
+		
+		while((len = in.read(buff)) > 0) {
+			out.write(buff, 0, len);
+		}
+		
+		return new String(out.toByteArray(), "utf-8");
+	}
+	
+	private String createContent(int lines) {
+		StringBuffer content = new StringBuffer();
+		
+		for(int i = 0; i < lines; i++) {
+			content.append("Line " + i + " Hello World!" + System.getProperty("line.separator"));
+		}
+		
+		return content.toString();
+	}
+	
+	public static Test suite() {
+		return new TestSuite(Http11CompressTestCase.class);
+	}
+	
+	public static void main(String[] argv) {
+		junit.textui.TestRunner.run(suite());
+	}
+}
@@ -0,0 +1,243 @@
+/**
+ * Copyright 2012 NetDigital Sweden AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.nginious.http.server;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import com.nginious.http.application.Application;
+import com.nginious.http.application.ApplicationManager;
+import com.nginious.http.service.TestBlockingController;
+
+public class Http11ExecutorBenchmarkTestCase extends TestCase {
+	
+	private static final int NUM_CLIENTS = 64;
+	
+	private static final long DURATION_MILLIS = 1500L;
+	
+	private static final byte[] REQUEST = ("GET /test/blocking HTTP/1.1\015\012" +
+			"Host: localhost\015\012" +
+			"Connection: keep-alive\015\012\015\012").getBytes();
+	
+	private HttpServerImpl server;
+	
+	private AtomicLong rejected;
+	
+	public Http11ExecutorBenchmarkTestCase() {
+		super();
+	}
+	
+	public Http11ExecutorBenchmarkTestCase(String name) {
+		super(name);
+	}
+	
+	protected void tearDown() throws Exception {
+		if(this.server != null) {
+			server.stop();
+			this.server = null;
+		}
+	}
+	
+	private void startServer(String executor) throws Exception {
+		HttpServerConfiguration config = new HttpServerConfiguration();
+		config.setWebappsDir(null);
+		config.setServerLogPath("build/test-server.log");
+		config.setAccessLogPath("build/test-access.log");
+		config.setPort(9000);
+		config.setExecutor(executor);
+		config.setMaxVirtualThreads(NUM_CLIENTS / 2);
+		HttpServerFactory factory = HttpServerFactory.getInstance();
+		this.server = (HttpServerImpl)factory.create(config);
+		ApplicationManager manager = server.getApplicationManager();
+		Application application = manager.createApplication("test");
+		application.addController(new TestBlockingController());
+		manager.publish(application);
+		server.start();
+	}
+	
+	public void testExecutorStrategies() throws Exception {
+		String[] executors = { TaskExecutor.PLATFORM, TaskExecutor.VIRTUAL, TaskExecutor.BOUNDED };
+		
+		for(String executor : executors) {
+			startServer(executor);
+			
+			try {
+				long requests = benchmark();
+				assertTrue(requests > 0);
+				System.out.println("executor=" + executor + " (" + server.getContextManager().getExecutorStrategy() + ") clients=" + NUM_CLIENTS +
+						" requests/sec=" + (requests * 1000L / DURATION_MILLIS) + " rejected=" + rejected.get());
+			} finally {
+				server.stop();
+				this.server = null;
+			}
+		}
+	}
+	
+	private long benchmark() throws Exception {
+		CountDownLatch start = new CountDownLatch(1);
+		CountDownLatch stop = new CountDownLatch(NUM_CLIENTS);
+		AtomicLong counter = new AtomicLong();
+		this.rejected = new AtomicLong();
+		Client[] clients = new Client[NUM_CLIENTS];
+		
+		for(int i = 0; i < NUM_CLIENTS; i++) {
+			clients[i] = new Client(start, stop, counter);
+			Thread thread = new Thread(clients[i]);
+			thread.setName("benchmark-client-" + i);
+			thread.start();
+		}
+		
+		long endTimeMillis = System.currentTimeMillis() + DURATION_MILLIS;
+		
+		for(Client client : clients) {
+			client.setEndTimeMillis(endTimeMillis);
+		}
+		
+		start.countDown();
+		stop.await();
+		
+		for(Client client : clients) {
+			assertNull(client.getThrowable());
+		}
+		
+		return counter.get();
+	}
+	
+	private class Client implements Runnable {
+		
+		private CountDownLatch start;
+		
+		private CountDownLatch stop;
+		
+		private AtomicLong counter;
+		
+		private volatile long endTimeMillis;
+		
+		private Throwable t;
+		
+		Client(CountDownLatch start, CountDownLatch stop, AtomicLong counter) {
+			this.start = start;
+			this.stop = stop;
+			this.counter = counter;
+		}
+		
+		void setEndTimeMillis(long endTimeMillis) {
+			this.endTimeMillis = endTimeMillis;
+		}
+		
+		Throwable getThrowable() {
+			return this.t;
+		}
+		
+		public void run() {
+			Socket socket = null;
+			
+			try {
+				start.await();
+				byte[] buff = new byte[4096];
+				
+				while(System.currentTimeMillis() < this.endTimeMillis) {
+					if(socket == null) {
+						socket = new Socket("localhost", 9000);
+						socket.setSoTimeout(5000);
+						socket.setTcpNoDelay(true);
+					}
+					
+					OutputStream out = socket.getOutputStream();
+					out.write(REQUEST);
+					out.flush();
+					
+					if(readResponse(socket.getInputStream(), buff)) {
+						counter.incrementAndGet();
+					} else {
+						// Rejected requests are answered with 503 and the connection is closed
+						rejected.incrementAndGet();
+						socket.close();
+						socket = null;
+					}
+				}
+			} catch(Throwable t) {
+				this.t = t;
+			} finally {
+				if(socket != null) {
+					try { socket.close(); } catch(IOException e) {}
+				}
+				
+				stop.countDown();
+			}
+		}
+		
+		private boolean readResponse(InputStream in, byte[] buff) throws IOException {
+			int len = 0;
+			int headerEnd = -1;
+			
+			while(headerEnd < 0) {
+				int read = in.read(buff, len, buff.length - len);
+				
+				if(read < 0) {
+					throw new IOException("Connection closed");
+				}
+				
+				len += read;
+				
+				for(int i = 3; i < len && headerEnd < 0; i++) {
+					if(buff[i - 3] == '\r' && buff[i - 2] == '\n' && buff[i - 1] == '\r' && buff[i] == '\n') {
+						headerEnd = i + 1;
+					}
+				}
+			}
+			
+			String header = new String(buff, 0, headerEnd);
+			
+			if(header.startsWith("HTTP/1.1 503")) {
+				return false;
+			}
+			
+			int idx = header.indexOf("Content-Length: ");
+			int contentLength = Integer.parseInt(header.substring(idx + 16, header.indexOf('\r', idx)));
+			int remaining = contentLength - (len - headerEnd);
+			
+			while(remaining > 0) {
+				int read = in.read(buff, 0, Math.min(remaining, buff.length));
+				
+				if(read < 0) {
+					throw new IOException("Connection closed");
+				}
+				
+				remaining -= read;
+			}
+			
+			return true;
+		}
+	}
+	
+	public static Test suite() {
+		return new TestSuite(Http11ExecutorBenchmarkTestCase.class);
+	}
+	
+	public static void main(String[] argv) {
+		junit.textui.TestRunner.run(suite());
+	}
+}
@@ -0,0 +1,269 @@
+/**
+ * Copyright 2012 NetDigital Sweden AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.nginious.http.server;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import com.nginious.http.application.Application;
+import com.nginious.http.application.ApplicationManager;
+import com.nginious.http.service.TestInlineController;
+import com.nginious.http.service.TestMethodsController;
+
+public class Http11InlineBenchmarkTestCase extends TestCase {
+	
+	private static final int NUM_CLIENTS = 32;
+	
+	private static final long DURATION_MILLIS = 1500L;
+	
+	private static final int NUM_BUCKETS = 24;
+	
+	private static final byte[] POOLED_REQUEST = ("GET /test/methods HTTP/1.1\015\012" +
+			"Host: localhost\015\012" +
+			"Connection: keep-alive\015\012\015\012").getBytes();
+	
+	private static final byte[] INLINE_REQUEST = ("GET /test/inline HTTP/1.1\015\012" +
+			"Host: localhost\015\012" +
+			"Connection: keep-alive\015\012\015\012").getBytes();
+	
+	private HttpServer server;
+	
+	public Http11InlineBenchmarkTestCase() {
+		super();
+	}
+	
+	public Http11InlineBenchmarkTestCase(String name) {
+		super(name);
+	}
+	
+	protected void setUp() throws Exception {
+		super.setUp();
+		HttpServerConfiguration config = new HttpServerConfiguration();
+		config.setWebappsDir(null);
+		config.setServerLogPath("build/test-server.log");
+		config.setAccessLogPath("build/test-access.log");
+		config.setPort(9000);
+		HttpServerFactory factory = HttpServerFactory.getInstance();
+		this.server = factory.create(config);
+		ApplicationManager manager = server.getApplicationManager();
+		Application application = manager.createApplication("test");
+		application.addController(new TestMethodsController());
+		application.addController(new TestInlineController());
+		manager.publish(application);
+		server.start();
+	}
+	
+	protected void tearDown() throws Exception {
+		if(this.server != null) {
+			server.stop();
+			this.server = null;
+		}
+	}
+	
+	public void testInlineLatency() throws Exception {
+		// Warm up both paths before measuring
+		benchmark(POOLED_REQUEST, new AtomicLongArray(NUM_BUCKETS));
+		benchmark(INLINE_REQUEST, new AtomicLongArray(NUM_BUCKETS));
+		
+		AtomicLongArray pooled = new AtomicLongArray(NUM_BUCKETS);
+		long pooledRequests = benchmark(POOLED_REQUEST, pooled);
+		AtomicLongArray inline = new AtomicLongArray(NUM_BUCKETS);
+		long inlineRequests = benchmark(INLINE_REQUEST, inline);
+		assertTrue(pooledRequests > 0);
+		assertTrue(inlineRequests > 0);
+		
+		printHistogram("pooled", pooledRequests, pooled);
+		printHistogram("inline", inlineRequests, inline);
+	}
+	
+	private void printHistogram(String mode, long requests, AtomicLongArray histogram) {
+		System.out.println("mode=" + mode + " clients=" + NUM_CLIENTS + " requests/sec=" + (requests * 1000L / DURATION_MILLIS) +
+				" p50=" + percentile(histogram, requests, 0.50d) + "us p90=" + percentile(histogram, requests, 0.90d) +
+				"us p99=" + percentile(histogram, requests, 0.99d) + "us");
+		
+		for(int i = 0; i < NUM_BUCKETS; i++) {
+			long count = histogram.get(i);
+			
+			if(count > 0) {
+				System.out.println("  <" + (1L << (i + 1)) + "us " + count);
+			}
+		}
+	}
+	
+	private long percentile(AtomicLongArray histogram, long requests, double percentile) {
+		long limit = (long)(requests * percentile);
+		long count = 0L;
+		
+		for(int i = 0; i < NUM_BUCKETS; i++) {
+			count += histogram.get(i);
+			
+			if(count > limit) {
+				return 1L << (i + 1);
+			}
+		}
+		
+		return 1L << NUM_BUCKETS;
+	}
+	
+	private long benchmark(byte[] request, AtomicLongArray histogram) throws Exception {
+		CountDownLatch start = new CountDownLatch(1);
+		CountDownLatch stop = new CountDownLatch(NUM_CLIENTS);
+		AtomicLong counter = new AtomicLong();
+		Client[] clients = new Client[NUM_CLIENTS];
+		
+		for(int i = 0; i < NUM_CLIENTS; i++) {
+			clients[i] = new Client(request, histogram, start, stop, counter);
+			Thread thread = new Thread(clients[i]);
+			thread.setName("benchmark-client-" + i);
+			thread.start();
+		}
+		
+		long endTimeMillis = System.currentTimeMillis() + DURATION_MILLIS;
+		
+		for(Client client : clients) {
+			client.setEndTimeMillis(endTimeMillis);
+		}
+		
+		start.countDown();
+		stop.await();
+		
+		for(Client client : clients) {
+			assertNull(client.getThrowable());
+		}
+		
+		return counter.get();
+	}
+	
+	private class Client implements Runnable {
+		
+		private byte[] request;
+		
+		private AtomicLongArray histogram;
+		
+		private CountDownLatch start;
+		
+		private CountDownLatch stop;
+		
+		private AtomicLong counter;
+		
+		private volatile long endTimeMillis;
+		
+		private Throwable t;
+		
+		Client(byte[] request, AtomicLongArray histogram, CountDownLatch start, CountDownLatch stop, AtomicLong counter) {
+			this.request = request;
+			this.histogram = histogram;
+			this.start = start;
+			this.stop = stop;
+			this.counter = counter;
+		}
+		
+		void setEndTimeMillis(long endTimeMillis) {
+			this.endTimeMillis = endTimeMillis;
+		}
+		
+		Throwable getThrowable() {
+			return this.t;
+		}
+		
+		public void run() {
+			Socket socket = null;
+			
+			try {
+				start.await();
+				socket = new Socket("localhost", 9000);
+				socket.setSoTimeout(5000);
+				socket.setTcpNoDelay(true);
+				OutputStream out = socket.getOutputStream();
+				InputStream in = socket.getInputStream();
+				byte[] buff = new byte[4096];
+				
+				while(System.currentTimeMillis() < this.endTimeMillis) {
+					long startNanos = System.nanoTime();
+					out.write(request);
+					out.flush();
+					readResponse(in, buff);
+					long micros = (System.nanoTime() - startNanos) / 1000L;
+					int bucket = 63 - Long.numberOfLeadingZeros(micros | 1L);
+					histogram.incrementAndGet(Math.min(bucket, NUM_BUCKETS - 1));
+					counter.incrementAndGet();
+				}
+			} catch(Throwable t) {
+				this.t = t;
+			} finally {
+				if(socket != null) {
+					try { socket.close(); } catch(IOException e) {}
+				}
+				
+				stop.countDown();
+			}
+		}
+		
+		private void readResponse(InputStream in, byte[] buff) throws IOException {
+			int len = 0;
+			int headerEnd = -1;
+			
+			while(headerEnd < 0) {
+				int read = in.read(buff, len, buff.length - len);
+				
+				if(read < 0) {
+					throw new IOException("Connection closed");
+				}
+				
+				len += read;
+				
+				for(int i = 3; i < len && headerEnd < 0; i++) {
+					if(buff[i - 3] == '\r' && buff[i - 2] == '\n' && buff[i - 1] == '\r' && buff[i] == '\n') {
+						headerEnd = i + 1;
+					}
+				}
+			}
+			
+			String header = new String(buff, 0, headerEnd);
+			int idx = header.indexOf("Content-Length: ");
+			int contentLength = Integer.parseInt(header.substring(idx + 16, header.indexOf('\r', idx)));
+			int remaining = contentLength - (len - headerEnd);
+			
+			while(remaining > 0) {
+				int read = in.read(buff, 0, Math.min(remaining, buff.length));
+				
+				if(read < 0) {
+					throw new IOException("Connection closed");
+				}
+				
+				remaining -= read;
+			}
+		}
+	}
+	
+	public static Test suite() {
+		return new TestSuite(Http11InlineBenchmarkTestCase.class);
+	}
+	
+	public static void main(String[] argv) {
+		junit.textui.TestRunner.run(suite());
+	}
+}
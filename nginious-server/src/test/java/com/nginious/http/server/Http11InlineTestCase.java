@@ -0,0 +1,136 @@
+/**
+ * Copyright 2012 NetDigital Sweden AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.nginious.http.server;
+
+import com.nginious.http.application.Application;
+import com.nginious.http.application.ApplicationManager;
+import com.nginious.http.service.TestInlineController;
+import com.nginious.http.service.TestMethodsController;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+public class Http11InlineTestCase extends TestCase {
+	
+	private static final String INLINE_REQUEST = "GET /test/inline HTTP/1.1\015\012" +
+		"Host: localhost\015\012\015\012";
+	
+	private static final String POOLED_REQUEST = "GET /test/methods HTTP/1.1\015\012" +
+		"Host: localhost\015\012\015\012";
+	
+	private HttpServerImpl server;
+	
+	public Http11InlineTestCase() {
+		super();
+	}
+	
+	public Http11InlineTestCase(String name) {
+		super(name);
+	}
+	
+	protected void setUp() throws Exception {
+		super.setUp();
+		HttpServerConfiguration config = new HttpServerConfiguration();
+		config.setWebappsDir(null);
+		config.setServerLogPath("build/test-server.log");
+		config.setAccessLogPath("build/test-access.log");
+		config.setPort(9000);
+		HttpServerFactory factory = HttpServerFactory.getInstance();
+		this.server = (HttpServerImpl)factory.create(config);
+		ApplicationManager manager = server.getApplicationManager();
+		Application application = manager.createApplication("test");
+		application.addController(new TestInlineController());
+		application.addController(new TestMethodsController());
+		manager.publish(application);
+		server.start();
+	}
+	
+	protected void tearDown() throws Exception {
+		if(this.server != null) {
+			server.stop();
+		}
+	}
+	
+	public void testInline() throws Exception {
+		HttpTestConnection conn = null;
+		
+		try {
+			conn = new HttpTestConnection(10000);
+			
+			for(int i = 0; i < 3; i++) {
+				conn.write(INLINE_REQUEST);
+				String response = conn.readKeepAliveString();
+				assertTrue(response.startsWith("HTTP/1.1 200 OK\015\012"));
+				assertTrue(response.endsWith("GET Hello World!\012"));
+			}
+			
+			conn.write(POOLED_REQUEST);
+			String response = conn.readKeepAliveString();
+			assertTrue(response.startsWith("HTTP/1.1 200 OK\015\012"));
+			assertEquals(3L, server.getServerStatistics().getNumInlineRequests());
+		} finally {
+			if(conn != null) {
+				conn.close();
+			}
+		}
+	}
+	
+	public void testInlinePipelining() throws Exception {
+		HttpTestConnection conn = null;
+		
+		try {
+			conn = new HttpTestConnection(10000);
+			StringBuffer request = new StringBuffer();
+			
+			for(int i = 0; i < 40; i++) {
+				request.append(i % 4 == 3 ? POOLED_REQUEST : INLINE_REQUEST);
+			}
+			
+			conn.write(request.toString());
+			
+			for(int i = 0; i < 40; i++) {
+				String response = conn.readKeepAliveString();
+				assertTrue(response.startsWith("HTTP/1.1 200 OK\015\012"));
+				assertTrue(response.endsWith("GET Hello World!\012"));
+			}
+			
+			assertEquals(30L, server.getServerStatistics().getNumInlineRequests());
+		} finally {
+			if(conn != null) {
+				conn.close();
+			}
+		}
+	}
+	
+	public void testIsInline() throws Exception {
+		assertTrue(server.getApplicationManagerImpl().isInline("/test/inline"));
+		assertFalse(server.getApplicationManagerImpl().isInline("/test/methods"));
+		assertFalse(server.getApplicationManagerImpl().isInline("/test/nonexistent"));
+		assertFalse(server.getApplicationManagerImpl().isInline("/nonexistent/inline"));
+		assertTrue(server.getApplicationManagerImpl().isInline("/admin/serverstats"));
+		assertFalse(server.getApplicationManagerImpl().isInline("/admin/application"));
+	}
+	
+	public static Test suite() {
+		return new TestSuite(Http11InlineTestCase.class);
+	}
+	
+	public static void main(String[] argv) {
+		junit.textui.TestRunner.run(suite());
+	}
+}
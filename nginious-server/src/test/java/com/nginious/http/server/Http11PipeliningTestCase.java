@@ -0,0 +1,188 @@
+/**
+ * Copyright 2012 NetDigital Sweden AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.nginious.http.server;
+
+import com.nginious.http.application.Application;
+import com.nginious.http.application.ApplicationManager;
+import com.nginious.http.service.TestMethodsController;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+public class Http11PipeliningTestCase extends TestCase {
+	
+	private static final String POST_REQUEST = "POST /test/methods HTTP/1.1\015\012" +
+		"Host: localhost\015\012" +
+		"Content-Type: text/xml; charset=utf-8\015\012" +
+		"Connection: <connection>\015\012" +
+		"Content-Length: 4\015\012\015\012Test";
+	
+	private static final String CHUNKED_REQUEST = "POST /test/methods HTTP/1.1\015\012" +
+		"Host: localhost\015\012" +
+		"Content-Type: text/xml; charset=utf-8\015\012" +
+		"Transfer-Encoding: chunked\015\012\015\012" +
+		"4\015\012Test\015\0120\015\012\015\012";
+	
+	private static final String GET_REQUEST = "GET /test/nonexistent HTTP/1.1\015\012" +
+		"Host: localhost\015\012\015\012";
+	
+	private HttpServerImpl server;
+	
+	public Http11PipeliningTestCase() {
+		super();
+	}
+	
+	public Http11PipeliningTestCase(String name) {
+		super(name);
+	}
+	
+	protected void setUp() throws Exception {
+		super.setUp();
+		HttpServerConfiguration config = new HttpServerConfiguration();
+		config.setWebappsDir(null);
+		config.setServerLogPath("build/test-server.log");
+		config.setAccessLogPath("build/test-access.log");
+		config.setPort(9000);
+		config.setPipelineDepth(4);
+		HttpServerFactory factory = HttpServerFactory.getInstance();
+		this.server = (HttpServerImpl)factory.create(config);
+		ApplicationManager manager = server.getApplicationManager();
+		Application application = manager.createApplication("test");
+		application.addController(new TestMethodsController());
+		manager.publish(application);
+		server.start();
+	}
+	
+	protected void tearDown() throws Exception {
+		if(this.server != null) {
+			server.stop();
+		}
+	}
+	
+	public void testPipelining() throws Exception {
+		HttpTestConnection conn = null;
+		
+		try {
+			conn = new HttpTestConnection(10000);
+			String keepAlive = POST_REQUEST.replaceFirst("<connection>", "keep-alive");
+			StringBuffer request = new StringBuffer();
+			
+			for(int i = 0; i < 10; i++) {
+				request.append(i % 3 == 1 ? GET_REQUEST : keepAlive);
+			}
+			
+			conn.write(request.toString());
+			
+			for(int i = 0; i < 10; i++) {
+				String response = conn.readKeepAliveString();
+				
+				if(i % 3 == 1) {
+					assertTrue(response.startsWith("HTTP/1.1 404 Not Found\015\012"));
+				} else {
+					assertTrue(response.startsWith("HTTP/1.1 200 OK\015\012"));
+					assertTrue(response.endsWith("POST Hello World!\012"));
+				}
+			}
+			
+			// Connection must remain open after pipelined requests
+			conn.write(keepAlive);
+			String response = conn.readKeepAliveString();
+			assertTrue(response.startsWith("HTTP/1.1 200 OK\015\012"));
+		} finally {
+			if(conn != null) {
+				conn.close();
+			}
+		}
+	}
+	
+	public void testChunkedPipelining() throws Exception {
+		HttpTestConnection conn = null;
+		
+		try {
+			conn = new HttpTestConnection(10000);
+			String request = CHUNKED_REQUEST + GET_REQUEST + CHUNKED_REQUEST;
+			conn.write(request);
+			
+			String response = conn.readKeepAliveString();
+			assertTrue(response.endsWith("POST Hello World!\012"));
+			response = conn.readKeepAliveString();
+			assertTrue(response.startsWith("HTTP/1.1 404 Not Found\015\012"));
+			response = conn.readKeepAliveString();
+			assertTrue(response.endsWith("POST Hello World!\012"));
+		} finally {
+			if(conn != null) {
+				conn.close();
+			}
+		}
+	}
+	
+	public void testSplitPipelining() throws Exception {
+		HttpTestConnection conn = null;
+		
+		try {
+			conn = new HttpTestConnection(10000);
+			String keepAlive = POST_REQUEST.replaceFirst("<connection>", "keep-alive");
+			String request = keepAlive + keepAlive.substring(0, 20);
+			conn.write(request);
+			
+			String response = conn.readKeepAliveString();
+			assertTrue(response.endsWith("POST Hello World!\012"));
+			
+			// Remainder of second request arrives after first response
+			conn.write(keepAlive.substring(20));
+			response = conn.readKeepAliveString();
+			assertTrue(response.endsWith("POST Hello World!\012"));
+		} finally {
+			if(conn != null) {
+				conn.close();
+			}
+		}
+	}
+	
+	public void testPipelinedClose() throws Exception {
+		HttpTestConnection conn = null;
+		
+		try {
+			conn = new HttpTestConnection(10000);
+			String request = POST_REQUEST.replaceFirst("<connection>", "keep-alive") +
+				POST_REQUEST.replaceFirst("<connection>", "close") +
+				POST_REQUEST.replaceFirst("<connection>", "keep-alive");
+			conn.write(request);
+			
+			String response = conn.readKeepAliveString();
+			assertTrue(response.indexOf("Connection: keep-alive") != -1);
+			response = conn.readKeepAliveString();
+			assertTrue(response.indexOf("Connection: close") != -1);
+			
+			// Requests following a request closing the connection are not processed
+			assertTrue(conn.checkClosed());
+		} finally {
+			if(conn != null) {
+				conn.close();
+			}
+		}
+	}
+	
+	public static Test suite() {
+		return new TestSuite(Http11PipeliningTestCase.class);
+	}
+	
+	public static void main(String[] argv) {
+		junit.textui.TestRunner.run(suite());
+	}
+}
@@ -84,6 +84,7 @@ public class Http11TimeoutTestCase extends TestCase {
 			conn.write(request);
 			boolean closed = conn.checkClosed();
 			assertTrue(closed);
+			assertEquals(1, server.getServerStatistics().getNumHeaderReadTimeouts());
 		} finally {
 			if(client != null) {
 				try { client.close(); } catch(IOException e) {}
@@ -121,6 +122,7 @@ public class Http11TimeoutTestCase extends TestCase {
 			conn.write(request);
 			boolean closed = conn.checkClosed();
 			assertTrue(closed);			
+			assertEquals(1, server.getServerStatistics().getNumKeepAliveTimeouts());
 		} finally {
 			if(client != null) {
 				try { client.close(); } catch(IOException e) {}
@@ -168,6 +170,32 @@ public class Http11TimeoutTestCase extends TestCase {
 		}		
 	}
 	
+	public void testBodyTimeout() throws Exception {
+		String request = "POST /test/methods HTTP/1.1\015\012" + 
+			"Host: localhost\015\012" +
+			"Content-Type: text/xml; charset=utf-8\015\012" +
+			"Connection: keep-alive\015\012" + 
+			"Content-Length: 4\015\012\015\012Te";
+		
+		HttpTestConnection conn = null;
+		
+		try {
+			conn = new HttpTestConnection(10000);
+			conn.write(request);
+			Thread.sleep(4000L);
+			
+			conn.write("st");
+			boolean closed = conn.checkClosed();
+			assertTrue(closed);
+			assertEquals(1, server.getServerStatistics().getNumBodyReadTimeouts());
+			assertEquals(0, server.getServerStatistics().getNumHeaderReadTimeouts());
+		} finally {
+			if(conn != null) {
+				conn.close();
+			}
+		}
+	}
+	
 	private void assertResponseEquals(String expectedResponse, String response) throws Exception{
 		int startIdx = response.indexOf("Date: ");
 		int endIdx = response.indexOf("\015\012", startIdx);
@@ -0,0 +1,109 @@
+/**
+ * Copyright 2012 NetDigital Sweden AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.nginious.http.server;
+
+import java.nio.ByteBuffer;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+public class HttpHeadersTestCase extends TestCase {
+	
+	public HttpHeadersTestCase() {
+		super();
+	}
+
+	public HttpHeadersTestCase(String name) {
+		super(name);
+	}
+
+	protected void setUp() throws Exception {
+		super.setUp();
+	}
+
+	protected void tearDown() throws Exception {
+		super.tearDown();
+	}
+	
+	public void testHeaders() throws Exception {
+		HttpHeaders headers = new HttpHeaders();
+		headers.add("Content-Length", "10");
+		headers.add("Set-Cookie", "a=1");
+		headers.add("set-cookie", "b=2");
+		
+		assertEquals(3, headers.size());
+		assertEquals("10", headers.get("content-length"));
+		assertEquals("10", headers.get("CONTENT-LENGTH"));
+		assertEquals("a=1", headers.get("Set-Cookie"));
+		assertNull(headers.get("Content-Type"));
+		assertTrue(headers.contains("SET-COOKIE"));
+		assertFalse(headers.contains("Content-Type"));
+		
+		String[] values = headers.getValues("Set-Cookie");
+		assertEquals(2, values.length);
+		assertEquals("a=1", values[0]);
+		assertEquals("b=2", values[1]);
+		assertNull(headers.getValues("Content-Type"));
+		
+		String[] names = headers.getNames();
+		assertEquals(2, names.length);
+		assertEquals("Content-Length", names[0]);
+		assertEquals("Set-Cookie", names[1]);
+		
+		for(int i = 0; i < 40; i++) {
+			headers.add("X-Header-" + i, Integer.toString(i));
+		}
+		
+		assertEquals(43, headers.size());
+		assertEquals("39", headers.get("x-header-39"));
+	}
+	
+	public void testDataHeaders() throws Exception {
+		ByteBuffer data = ByteBuffer.allocateDirect(64);
+		data.put("Host: localhost\015\012Accept: */*\015\012".getBytes());
+		
+		HttpHeaders headers = new HttpHeaders();
+		headers.add("Host", HttpHeaders.hash("Host"), data, 6, 9);
+		headers.add("Accept", HttpHeaders.hash("Accept"), data, 25, 3);
+		
+		assertEquals("localhost", headers.get("host"));
+		assertEquals("*/*", headers.get("accept"));
+		assertSame(headers.get("host"), headers.get("Host"));
+		
+		headers.clear();
+		assertEquals(0, headers.size());
+		assertNull(headers.get("Host"));
+		
+		headers.add("Accept", HttpHeaders.hash("Accept"), data, 25, 3);
+		assertEquals("*/*", headers.getValue(0));
+	}
+	
+	public void testHash() throws Exception {
+		assertEquals(HttpHeaders.hash("content-type"), HttpHeaders.hash("Content-Type"));
+		assertEquals(HttpHeaders.hash("content-type"), HttpHeaders.hash("CONTENT-TYPE"));
+		assertEquals("content-type".hashCode(), HttpHeaders.hash("Content-Type"));
+	}
+	
+	public static Test suite() {
+		return new TestSuite(HttpHeadersTestCase.class);
+	}
+	
+	public static void main(String[] argv) {
+		junit.textui.TestRunner.run(suite());
+	}
+}
@@ -0,0 +1,104 @@
+/**
+ * Copyright 2012 NetDigital Sweden AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.nginious.http.server;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+public class HttpParametersTestCase extends TestCase {
+	
+	public HttpParametersTestCase() {
+		super();
+	}
+	
+	public HttpParametersTestCase(String name) {
+		super(name);
+	}
+	
+	protected void setUp() throws Exception {
+		super.setUp();
+	}
+	
+	protected void tearDown() throws Exception {
+		super.tearDown();
+	}
+	
+	public void testParameters() throws Exception {
+		HttpParameters params = new HttpParameters();
+		
+		for(int i = 0; i < 20; i++) {
+			params.add("name" + (i % 10), "value" + i);
+		}
+		
+		assertEquals(20, params.size());
+		assertEquals("value3", params.get("name3"));
+		assertNull(params.get("Name3"));
+		assertNull(params.get("missing"));
+		assertNull(params.getValues("missing"));
+		
+		String[] values = params.getValues("name3");
+		assertEquals(2, values.length);
+		assertEquals("value3", values[0]);
+		assertEquals("value13", values[1]);
+		
+		String[] names = params.getNames();
+		assertEquals(10, names.length);
+		assertEquals("name0", names[0]);
+		assertEquals("name9", names[9]);
+	}
+	
+	public void testDecodeQuery() throws Exception {
+		URI uri = new URI("/test?a=1&b=2+3&a=%34&c&d=&=e&f=g=h&&i=%zz%2&j=%c3%a5%c3%a4");
+		uri.parse();
+		HttpParameters params = new HttpParameters();
+		uri.decodeQuery(params, "utf-8");
+		
+		String[] values = params.getValues("a");
+		assertEquals(2, values.length);
+		assertEquals("1", values[0]);
+		assertEquals("4", values[1]);
+		assertEquals("2 3", params.get("b"));
+		assertNull(params.get("c"));
+		assertNull(params.get("d"));
+		assertEquals(1, params.getValues("c").length);
+		assertEquals("e", params.get(""));
+		assertEquals("g=h", params.get("f"));
+		assertEquals("%zz%2", params.get("i"));
+		assertEquals("\u00e5\u00e4", params.get("j"));
+		assertEquals(9, params.size());
+	}
+	
+	public void testDecodeForm() throws Exception {
+		byte[] data = "xxname=J%F6rgen+Svensson&city=G\u00f6teborg&empty=xx".getBytes("iso-8859-1");
+		HttpParameters params = new HttpParameters();
+		URI.decodeQuery(data, 2, data.length - 2, params, "iso-8859-1");
+		
+		assertEquals(3, params.size());
+		assertEquals("J\u00f6rgen Svensson", params.get("name"));
+		assertEquals("G\u00f6teborg", params.get("city"));
+		assertNull(params.get("empty"));
+	}
+	
+	public static Test suite() {
+		return new TestSuite(HttpParametersTestCase.class);
+	}
+	
+	public static void main(String[] argv) {
+		junit.textui.TestRunner.run(suite());
+	}
+}
@@ -0,0 +1,120 @@
+/**
+ * Copyright 2012 NetDigital Sweden AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.nginious.http.server;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.HashSet;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+public class HttpParserBenchmarkTestCase extends TestCase {
+	
+	private static final int NUM_REQUESTS = 200000;
+	
+	private static final byte[] REQUEST = ("GET /test/methods?id=1 HTTP/1.1\015\012" +
+			"Host: localhost\015\012" +
+			"User-Agent: Mozilla/5.0 (X11; Linux x86_64; rv:15.0) Gecko/20100101 Firefox/15.0\015\012" +
+			"Accept: text/html,application/xhtml+xml,application/xml;q=0.9,*/*;q=0.8\015\012" +
+			"Accept-Language: en-us,en;q=0.5\015\012" +
+			"Accept-Encoding: gzip, deflate\015\012" +
+			"Cookie: session=0123456789abcdef\015\012" +
+			"Connection: keep-alive\015\012\015\012").getBytes();
+	
+	private HttpServerImpl server;
+	
+	private SocketChannel channel;
+	
+	public HttpParserBenchmarkTestCase() {
+		super();
+	}
+	
+	public HttpParserBenchmarkTestCase(String name) {
+		super(name);
+	}
+	
+	protected void setUp() throws Exception {
+		super.setUp();
+		HttpServerConfiguration config = new HttpServerConfiguration();
+		config.setWebappsDir(null);
+		config.setServerLogPath("build/test-server.log");
+		config.setAccessLogPath("build/test-access.log");
+		config.setPort(9000);
+		HttpServerFactory factory = HttpServerFactory.getInstance();
+		this.server = (HttpServerImpl)factory.create(config);
+		server.start();
+		this.channel = SocketChannel.open();
+	}
+	
+	protected void tearDown() throws Exception {
+		if(this.channel != null) {
+			channel.close();
+		}
+		
+		if(this.server != null) {
+			server.stop();
+		}
+	}
+	
+	public void testParserAllocation() throws Exception {
+		HashSet<String> hostnames = new HashSet<String>();
+		hostnames.add("localhost");
+		HttpConnection conn = new HttpConnection(server, channel, null, hostnames);
+		
+		try {
+			HttpParser parser = new HttpParser(server.getApplicationManagerImpl(), conn, hostnames);
+			ByteBuffer data = ByteBuffer.allocateDirect(REQUEST.length);
+			
+			// Warm up before measuring
+			parse(parser, data, NUM_REQUESTS);
+			
+			com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+			long threadId = Thread.currentThread().getId();
+			long startBytes = bean.getThreadAllocatedBytes(threadId);
+			long startNanos = System.nanoTime();
+			parse(parser, data, NUM_REQUESTS);
+			long nanos = System.nanoTime() - startNanos;
+			long bytes = bean.getThreadAllocatedBytes(threadId) - startBytes;
+			
+			System.out.println("requests=" + NUM_REQUESTS + " bytes/request=" + (bytes / NUM_REQUESTS) + 
+					" ns/request=" + (nanos / NUM_REQUESTS));
+		} finally {
+			conn.release();
+		}
+	}
+	
+	private void parse(HttpParser parser, ByteBuffer data, int numRequests) throws Exception {
+		for(int i = 0; i < numRequests; i++) {
+			data.clear();
+			data.put(REQUEST);
+			assertTrue(parser.parse(data));
+			assertEquals("localhost", parser.getContext().getHeader("Host"));
+			parser.reset();
+		}
+	}
+	
+	public static Test suite() {
+		return new TestSuite(HttpParserBenchmarkTestCase.class);
+	}
+	
+	public static void main(String[] argv) {
+		junit.textui.TestRunner.run(suite());
+	}
+}
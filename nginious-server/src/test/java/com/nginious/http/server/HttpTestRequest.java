@@ -31,6 +31,7 @@ import com.nginious.http.HttpCookie;
 import com.nginious.http.HttpMethod;
 import com.nginious.http.HttpRequest;
 import com.nginious.http.HttpSession;
+import com.nginious.http.common.PathParameters;
 import com.nginious.http.upload.FilePart;
 import com.nginious.http.upload.UploadTracker;
 
@@ -218,6 +219,11 @@ public class HttpTestRequest implements HttpRequest {
 		return params.keySet().toArray(new String[params.size()]);
 	}
 	
+	public String getPathParameter(String name) {
+		Object captured = attributes.get(PathParameters.ATTRIBUTE);
+		return captured instanceof String[] ? PathParameters.get((String[])captured, name) : null;
+	}
+	
 	public void setAttribute(String name, Object value) {
 		attributes.put(name, value);
 	}
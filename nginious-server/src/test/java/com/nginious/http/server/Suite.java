@@ -24,16 +24,36 @@ public class Suite extends TestSuite {
     public static Test suite() {
     	TestSuite suite = new TestSuite();
     	
+    	suite.addTest(new BufferPoolTestCase("testSizeClasses"));
+    	suite.addTest(new BufferPoolTestCase("testReuse"));
+    	suite.addTest(new BufferPoolTestCase("testConnectionBuffers"));
     	suite.addTest(new ByteRangeTestCase("testByteRange"));
     	suite.addTest(new DateTestCase("testDate"));
+    	suite.addTest(new DateTestCase("testFormat"));
+    	suite.addTest(new DateTestCase("testParse"));
+    	suite.addTest(new DateTestCase("testCurrentDate"));
     	suite.addTest(new DigestAuthenticationTestCase("testChallenge"));
     	suite.addTest(new DigestAuthenticationTestCase("testResponse"));
     	suite.addTest(new DigestAuthenticationTestCase("testCasing"));
     	suite.addTest(new DigestAuthenticationTestCase("testMissingFields"));
     	suite.addTest(new HeaderTestCase("testHeader"));
     	suite.addTest(new HeaderTestCase("testAuthorization"));
+    	suite.addTest(new HttpHeadersTestCase("testHeaders"));
+    	suite.addTest(new HttpHeadersTestCase("testDataHeaders"));
+    	suite.addTest(new HttpHeadersTestCase("testHash"));
+    	suite.addTest(new HttpParametersTestCase("testParameters"));
+    	suite.addTest(new HttpParametersTestCase("testDecodeQuery"));
+    	suite.addTest(new HttpParametersTestCase("testDecodeForm"));
     	suite.addTest(new HttpCookieTestCase("testCookie"));
     	suite.addTest(new MimeTypesTestCase("testMimeTypes"));
+    	suite.addTest(new TimingWheelTestCase("testExpire"));
+    	suite.addTest(new TimingWheelTestCase("testReschedule"));
+    	suite.addTest(new TaskExecutorTestCase("testPlatform"));
+    	suite.addTest(new TaskExecutorTestCase("testBounded"));
+    	suite.addTest(new TaskExecutorTestCase("testVirtual"));
+    	suite.addTest(new WorkerPoolTestCase("testGrowBeforeQueue"));
+    	suite.addTest(new WorkerPoolTestCase("testIdleWorkers"));
+    	suite.addTest(new WorkerPoolTestCase("testTuning"));
     	suite.addTest(new URITestCase("testURI"));
     	
     	suite.addTest(new Http09MethodsTestCase("testGetRequest"));
@@ -59,6 +79,22 @@ public class Suite extends TestSuite {
     	
     	suite.addTest(new Http11KeepAliveTestCase("testKeepAlive"));
     	
+    	suite.addTest(new Http11PipeliningTestCase("testPipelining"));
+    	suite.addTest(new Http11PipeliningTestCase("testChunkedPipelining"));
+    	suite.addTest(new Http11PipeliningTestCase("testSplitPipelining"));
+    	suite.addTest(new Http11PipeliningTestCase("testPipelinedClose"));
+    	suite.addTest(new Http11InlineTestCase("testInline"));
+    	suite.addTest(new Http11InlineTestCase("testInlinePipelining"));
+    	suite.addTest(new Http11InlineTestCase("testIsInline"));
+    	suite.addTest(new Http11CompressTestCase("testGzip"));
+    	suite.addTest(new Http11CompressTestCase("testDeflate"));
+    	suite.addTest(new Http11CompressTestCase("testHttp10"));
+    	suite.addTest(new Http11CompressTestCase("testNotAccepted"));
+    	suite.addTest(new Http11CompressTestCase("testUncompressed"));
+    	suite.addTest(new Http11CompressTestCase("testIsCompressed"));
+    	suite.addTest(new Http11CompressTestCase("testSelectEncoding"));
+    	suite.addTest(new Http11CompressTestCase("testCompressedType"));
+    	
     	suite.addTest(new Http11ChunkedTestCase("testChunkedClientEncoding"));
     	suite.addTest(new Http11ChunkedTestCase("testFragmentedChunkedClientEncoding"));
     	suite.addTest(new Http11ChunkedTestCase("testEmptyChunkedClientEncoding"));
@@ -114,10 +150,16 @@ public class Suite extends TestSuite {
     	suite.addTest(new Http11AccessLogTestCase("testWildcardOptionsRequest"));
     	suite.addTest(new Http11AccessLogTestCase("testTrace"));
     	suite.addTest(new Http11AccessLogTestCase("testBadEncoding"));
+    	suite.addTest(new FileLogConsumerTestCase("testWrite"));
+    	suite.addTest(new FileLogConsumerTestCase("testLargeLine"));
+    	suite.addTest(new FileLogConsumerTestCase("testDrop"));
+    	suite.addTest(new FileLogConsumerTestCase("testSpill"));
+    	suite.addTest(new FileLogConsumerTestCase("testConcurrentProducers"));
     	
     	suite.addTest(new Http11TimeoutTestCase("testInitialTimeout"));
     	suite.addTest(new Http11TimeoutTestCase("testSubsequentTimeout"));
     	suite.addTest(new Http11TimeoutTestCase("testMultipleRequests"));
+    	suite.addTest(new Http11TimeoutTestCase("testBodyTimeout"));
     	
     	suite.addTest(new Http11StressTestCase("testResource"));
     	suite.addTest(new Http11StressTestCase("testStress"));
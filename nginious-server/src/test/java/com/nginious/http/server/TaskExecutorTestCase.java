@@ -0,0 +1,155 @@
+/**
+ * Copyright 2012 NetDigital Sweden AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.nginious.http.server;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+public class TaskExecutorTestCase extends TestCase {
+	
+	public TaskExecutorTestCase() {
+		super();
+	}
+	
+	public TaskExecutorTestCase(String name) {
+		super(name);
+	}
+	
+	protected void setUp() throws Exception {
+		super.setUp();
+	}
+	
+	protected void tearDown() throws Exception {
+	}
+	
+	public void testPlatform() throws Exception {
+		RejectionCounter counter = new RejectionCounter();
+		TaskExecutor executor = TaskExecutor.create(TaskExecutor.PLATFORM, "test", 1, counter);
+		assertEquals(TaskExecutor.PLATFORM, executor.getStrategy());
+		
+		CountDownLatch done = new CountDownLatch(10);
+		
+		for(int i = 0; i < 10; i++) {
+			executor.execute(new CountDownTask(null, done));
+		}
+		
+		assertTrue(done.await(5, TimeUnit.SECONDS));
+		assertEquals(0, counter.get());
+		
+		executor = TaskExecutor.create("unknown", "test", 1, counter);
+		assertEquals(TaskExecutor.PLATFORM, executor.getStrategy());
+	}
+	
+	public void testBounded() throws Exception {
+		RejectionCounter counter = new RejectionCounter();
+		TaskExecutor executor = TaskExecutor.create(TaskExecutor.BOUNDED, "test", 2, counter);
+		
+		if(executor.getStrategy().equals(TaskExecutor.PLATFORM)) {
+			// Runtime without virtual threads
+			return;
+		}
+		
+		assertEquals(TaskExecutor.BOUNDED, executor.getStrategy());
+		CountDownLatch block = new CountDownLatch(1);
+		CountDownLatch done = new CountDownLatch(2);
+		executor.execute(new CountDownTask(block, done));
+		executor.execute(new CountDownTask(block, done));
+		executor.execute(new CountDownTask(block, done));
+		assertEquals(1, counter.get());
+		
+		block.countDown();
+		assertTrue(done.await(5, TimeUnit.SECONDS));
+		
+		// Permits are released once tasks are done
+		CountDownLatch doneAgain = new CountDownLatch(1);
+		Thread.sleep(100L);
+		executor.execute(new CountDownTask(null, doneAgain));
+		assertTrue(doneAgain.await(5, TimeUnit.SECONDS));
+		assertEquals(1, counter.get());
+	}
+	
+	public void testVirtual() throws Exception {
+		RejectionCounter counter = new RejectionCounter();
+		TaskExecutor executor = TaskExecutor.create(TaskExecutor.VIRTUAL, "test", 1, counter);
+		
+		if(executor.getStrategy().equals(TaskExecutor.PLATFORM)) {
+			// Runtime without virtual threads
+			return;
+		}
+		
+		CountDownLatch block = new CountDownLatch(1);
+		CountDownLatch done = new CountDownLatch(100);
+		
+		for(int i = 0; i < 100; i++) {
+			executor.execute(new CountDownTask(block, done));
+		}
+		
+		block.countDown();
+		assertTrue(done.await(5, TimeUnit.SECONDS));
+		assertEquals(0, counter.get());
+	}
+	
+	private class CountDownTask implements Runnable {
+		
+		private CountDownLatch block;
+		
+		private CountDownLatch done;
+		
+		private CountDownTask(CountDownLatch block, CountDownLatch done) {
+			this.block = block;
+			this.done = done;
+		}
+		
+		public void run() {
+			try {
+				if(block != null) {
+					block.await();
+				}
+			} catch(InterruptedException e) {}
+			
+			done.countDown();
+		}
+	}
+	
+	private class RejectionCounter implements RejectedExecutionHandler {
+		
+		private AtomicInteger rejected = new AtomicInteger();
+		
+		public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+			rejected.incrementAndGet();
+		}
+		
+		int get() {
+			return rejected.get();
+		}
+	}
+	
+	public static Test suite() {
+		return new TestSuite(TaskExecutorTestCase.class);
+	}
+	
+	public static void main(String[] argv) {
+		junit.textui.TestRunner.run(suite());
+	}
+}
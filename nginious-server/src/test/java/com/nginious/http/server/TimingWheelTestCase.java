@@ -0,0 +1,143 @@
+/**
+ * Copyright 2012 NetDigital Sweden AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.nginious.http.server;
+
+import java.io.IOException;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+public class TimingWheelTestCase extends TestCase {
+	
+	public TimingWheelTestCase() {
+		super();
+	}
+	
+	public TimingWheelTestCase(String name) {
+		super(name);
+	}
+	
+	protected void setUp() throws Exception {
+		super.setUp();
+	}
+	
+	protected void tearDown() throws Exception {
+	}
+	
+	public void testExpire() throws Exception {
+		long nowMillis = 100000L;
+		TimingWheel wheel = new TimingWheel(nowMillis);
+		assertTrue(wheel.isEmpty());
+		assertEquals(100L, wheel.millisToNextTick(nowMillis));
+		
+		TestConnection conn1 = new TestConnection(nowMillis + 1000L);
+		TestConnection conn2 = new TestConnection(nowMillis + 2000L);
+		TestConnection conn3 = new TestConnection(nowMillis + 3000L);
+		wheel.schedule(conn1.getTimer(), conn1.getDeadlineMillis());
+		wheel.schedule(conn2.getTimer(), conn2.getDeadlineMillis());
+		wheel.schedule(conn3.getTimer(), conn3.getDeadlineMillis());
+		assertFalse(wheel.isEmpty());
+		assertEquals(nowMillis + 1000L, conn1.getTimer().getScheduledMillis());
+		
+		ArrayList<Connection> expired = new ArrayList<Connection>();
+		wheel.expire(nowMillis + 500L, expired);
+		assertEquals(0, expired.size());
+		
+		wheel.expire(nowMillis + 1100L, expired);
+		assertEquals(1, expired.size());
+		assertSame(conn1, expired.get(0));
+		assertEquals(0L, conn1.getTimer().getScheduledMillis());
+		expired.clear();
+		
+		wheel.cancel(conn2.getTimer());
+		wheel.expire(nowMillis + 2500L, expired);
+		assertEquals(0, expired.size());
+		
+		wheel.expire(nowMillis + 60000L, expired);
+		assertEquals(1, expired.size());
+		assertSame(conn3, expired.get(0));
+		assertTrue(wheel.isEmpty());
+	}
+	
+	public void testReschedule() throws Exception {
+		long nowMillis = 100000L;
+		TimingWheel wheel = new TimingWheel(nowMillis);
+		TestConnection conn1 = new TestConnection(nowMillis + 1000L);
+		TestConnection conn2 = new TestConnection(nowMillis + 1000L);
+		TestConnection conn3 = new TestConnection(nowMillis + 120000L);
+		wheel.schedule(conn1.getTimer(), conn1.getDeadlineMillis());
+		wheel.schedule(conn2.getTimer(), conn2.getDeadlineMillis());
+		wheel.schedule(conn3.getTimer(), conn3.getDeadlineMillis());
+		
+		// Extended deadline is moved, cleared deadline is removed
+		conn1.deadlineMillis = nowMillis + 5000L;
+		conn2.deadlineMillis = 0L;
+		ArrayList<Connection> expired = new ArrayList<Connection>();
+		wheel.expire(nowMillis + 1100L, expired);
+		assertEquals(0, expired.size());
+		assertEquals(nowMillis + 5000L, conn1.getTimer().getScheduledMillis());
+		assertEquals(0L, conn2.getTimer().getScheduledMillis());
+		
+		wheel.expire(nowMillis + 5100L, expired);
+		assertEquals(1, expired.size());
+		assertSame(conn1, expired.get(0));
+		expired.clear();
+		
+		// Deadline more than one turn of the wheel away
+		wheel.expire(nowMillis + 60000L, expired);
+		assertEquals(0, expired.size());
+		assertFalse(wheel.isEmpty());
+		
+		wheel.expire(nowMillis + 120100L, expired);
+		assertEquals(1, expired.size());
+		assertSame(conn3, expired.get(0));
+		assertTrue(wheel.isEmpty());
+	}
+	
+	private class TestConnection extends Connection {
+		
+		private long deadlineMillis;
+		
+		private TestConnection(long deadlineMillis) {
+			super();
+			this.deadlineMillis = deadlineMillis;
+		}
+		
+		long getDeadlineMillis() {
+			return this.deadlineMillis;
+		}
+		
+		protected void read(SocketChannel channel) throws IOException {
+			return;
+		}
+		
+		protected void timedOut() {
+			return;
+		}
+	}
+	
+	public static Test suite() {
+		return new TestSuite(TimingWheelTestCase.class);
+	}
+	
+	public static void main(String[] argv) {
+		junit.textui.TestRunner.run(suite());
+	}
+}
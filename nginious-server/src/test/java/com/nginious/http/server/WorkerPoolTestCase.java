@@ -0,0 +1,197 @@
+/**
+ * Copyright 2012 NetDigital Sweden AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.nginious.http.server;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import com.nginious.http.stats.ServerStatistics;
+
+public class WorkerPoolTestCase extends TestCase {
+	
+	private WorkerPool pool;
+	
+	public WorkerPoolTestCase() {
+		super();
+	}
+	
+	public WorkerPoolTestCase(String name) {
+		super(name);
+	}
+	
+	protected void setUp() throws Exception {
+		super.setUp();
+	}
+	
+	protected void tearDown() throws Exception {
+		if(this.pool != null) {
+			pool.shutdownNow();
+		}
+	}
+	
+	public void testGrowBeforeQueue() throws Exception {
+		ServerStatistics stats = new ServerStatistics();
+		RejectionCounter counter = new RejectionCounter();
+		this.pool = new WorkerPool("test", 1, 4, 2, counter, stats);
+		CountDownLatch block = new CountDownLatch(1);
+		CountDownLatch started = new CountDownLatch(4);
+		CountDownLatch done = new CountDownLatch(6);
+		
+		// New threads are started up to maximum before queueing
+		for(int i = 0; i < 4; i++) {
+			pool.execute(new BlockingTask(block, started, done));
+		}
+		
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+		assertEquals(4, pool.getPoolSize());
+		assertEquals(0, pool.getQueue().size());
+		assertEquals(4L, stats.getNumWorkerThreads());
+		assertEquals(4L, stats.getNumActiveWorkerThreads());
+		
+		// Queue once all threads are busy, reject once queue is full
+		pool.execute(new BlockingTask(block, null, done));
+		pool.execute(new BlockingTask(block, null, done));
+		pool.execute(new BlockingTask(block, null, done));
+		assertEquals(4, pool.getPoolSize());
+		assertEquals(2L, stats.getNumQueuedTasks());
+		assertEquals(1, counter.get());
+		
+		block.countDown();
+		assertTrue(done.await(5, TimeUnit.SECONDS));
+		Thread.sleep(100L);
+		assertEquals(0L, stats.getNumQueuedTasks());
+		assertEquals(0L, stats.getNumActiveWorkerThreads());
+		assertEquals(6L, stats.getNumExecutedTasks());
+		assertTrue(stats.getAverageQueueWaitMillis() >= 0.0d);
+		assertEquals(0, pool.getNumSubmitted());
+	}
+	
+	public void testIdleWorkers() throws Exception {
+		this.pool = new WorkerPool("test", 1, 4, 10, new RejectionCounter(), null);
+		
+		// Idle workers are reused instead of starting new threads
+		for(int i = 0; i < 10; i++) {
+			CountDownLatch done = new CountDownLatch(1);
+			pool.execute(new BlockingTask(null, null, done));
+			assertTrue(done.await(5, TimeUnit.SECONDS));
+			Thread.sleep(10L);
+		}
+		
+		assertEquals(1, pool.getPoolSize());
+	}
+	
+	public void testTuning() throws Exception {
+		this.pool = new WorkerPool("test", 1, 8, 1000, new RejectionCounter(), null);
+		pool.setTargetQueueWaitMillis(1L);
+		assertEquals(1, pool.getMaximumPoolSize());
+		
+		// Queue wait above target raises maximum number of threads
+		long endMillis = System.currentTimeMillis() + 1500L;
+		
+		while(System.currentTimeMillis() < endMillis) {
+			CountDownLatch done = new CountDownLatch(4);
+			
+			for(int i = 0; i < 4; i++) {
+				pool.execute(new SleepingTask(20L, done));
+			}
+			
+			assertTrue(done.await(5, TimeUnit.SECONDS));
+		}
+		
+		assertTrue(pool.getMaximumPoolSize() > 1);
+		
+		pool.setTargetQueueWaitMillis(0L);
+		assertEquals(8, pool.getMaximumPoolSize());
+	}
+	
+	private class BlockingTask implements Runnable {
+		
+		private CountDownLatch block;
+		
+		private CountDownLatch started;
+		
+		private CountDownLatch done;
+		
+		private BlockingTask(CountDownLatch block, CountDownLatch started, CountDownLatch done) {
+			this.block = block;
+			this.started = started;
+			this.done = done;
+		}
+		
+		public void run() {
+			if(started != null) {
+				started.countDown();
+			}
+			
+			try {
+				if(block != null) {
+					block.await();
+				}
+			} catch(InterruptedException e) {}
+			
+			done.countDown();
+		}
+	}
+	
+	private class SleepingTask implements Runnable {
+		
+		private long sleepMillis;
+		
+		private CountDownLatch done;
+		
+		private SleepingTask(long sleepMillis, CountDownLatch done) {
+			this.sleepMillis = sleepMillis;
+			this.done = done;
+		}
+		
+		public void run() {
+			try {
+				Thread.sleep(sleepMillis);
+			} catch(InterruptedException e) {}
+			
+			done.countDown();
+		}
+	}
+	
+	private class RejectionCounter implements RejectedExecutionHandler {
+		
+		private AtomicInteger rejected = new AtomicInteger();
+		
+		public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+			rejected.incrementAndGet();
+		}
+		
+		int get() {
+			return rejected.get();
+		}
+	}
+	
+	public static Test suite() {
+		return new TestSuite(WorkerPoolTestCase.class);
+	}
+	
+	public static void main(String[] argv) {
+		junit.textui.TestRunner.run(suite());
+	}
+}
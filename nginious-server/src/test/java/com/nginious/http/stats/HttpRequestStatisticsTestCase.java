@@ -247,6 +247,66 @@ public class HttpRequestStatisticsTestCase extends XMLTestCase {
 		}		
 	}
 	
+	public void testAdminServerStatistics() throws Exception {
+		HttpTestConnection conn = null;
+		
+		try {
+			conn = new HttpTestConnection();
+			
+			String requestHeader = "GET /admin/serverstats HTTP/1.1\015\012" + 
+				"Authorization: Digest username=\"admin\", " +
+				"realm=\"admin\", " +
+				"nonce=\"dcd98b7102dd2f0e8b11d0f600bfb0c093\", " +
+				"uri=\"/admin\", " +
+				"qop=auth, " +
+				"nc=00000001, " +
+				"cnonce=\"0a4f113b\", " +
+				"response=\"fae9315716e12851e61f9608eda5543f\", " +
+				"opaque=\"5ccc069c403ebaf9f0171e9517f40e41\"\015\012" +
+				"Host: localhost\015\012" +
+				"Accept: text/xml\015\012" +
+				"Connection: keep-alive\015\012\015\012";
+			
+			byte[] header = requestHeader.getBytes();
+			conn.write(header);
+			conn.readKeepAliveBody();
+			
+			conn.write(header);
+			byte[] responseBytes = conn.readKeepAliveBody();
+			String xml = new String(responseBytes);
+			
+			assertXpathExists("server-statistics-info", xml);
+			assertXpathExists("server-statistics-info/num-selector-wakeups", xml);
+			assertXpathExists("server-statistics-info/selector-wakeups-per-request", xml);
+			assertXpathExists("server-statistics-info/num-buffer-acquires", xml);
+			assertXpathExists("server-statistics-info/buffer-hit-rate", xml);
+			assertXpathExists("server-statistics-info/num-buffers-in-use", xml);
+			assertXpathExists("server-statistics-info/num-buffers-pooled", xml);
+			assertXpathExists("server-statistics-info/num-header-read-timeouts", xml);
+			assertXpathExists("server-statistics-info/num-body-read-timeouts", xml);
+			assertXpathExists("server-statistics-info/num-keep-alive-timeouts", xml);
+			assertXpathExists("server-statistics-info/num-write-timeouts", xml);
+			assertXpathExists("server-statistics-info/num-inline-requests", xml);
+			assertXpathExists("server-statistics-info/num-worker-threads", xml);
+			assertXpathExists("server-statistics-info/num-active-worker-threads", xml);
+			assertXpathExists("server-statistics-info/num-queued-tasks", xml);
+			assertXpathExists("server-statistics-info/num-executed-tasks", xml);
+			assertXpathExists("server-statistics-info/average-queue-wait-millis", xml);
+			assertXpathExists("server-statistics-info/max-queue-wait-millis", xml);
+			assertXpathExists("server-statistics-info/num-static-content-lookups", xml);
+			assertXpathExists("server-statistics-info/static-content-hit-rate", xml);
+			assertXpathExists("server-statistics-info/static-content-cache-bytes", xml);
+			assertXpathExists("server-statistics-info/num-compressed-responses", xml);
+			assertXpathExists("server-statistics-info/compress-bytes-saved", xml);
+			assertXpathExists("server-statistics-info/compress-millis", xml);
+			assertXpathEvaluatesTo("2", "server-statistics-info/num-requests", xml);
+		} finally {
+			if(conn != null) {
+				conn.close();
+			}
+		}		
+	}
+	
 	public static Test suite() {
 		return new TestSuite(HttpRequestStatisticsTestCase.class);
 	}